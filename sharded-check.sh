@@ -0,0 +1,58 @@
+#!/bin/bash
+
+# Checks that a sharded build, whose integration is split among several worker
+# JVMs on this machine, integrates the same entries as a build that runs
+# entirely in one JVM.  Both builds run a single iteration over the same input
+# and their operation logs are compared once sorted, since the workers'
+# results are merged shard by shard rather than in input order.
+#
+# usage: ./sharded-check.sh wordnet-dir lexfile-dir wiktionary-input [workers]
+#
+# The Wiktionary input is either a binary file (ending in .bin) or a
+# preprocessed JSON file.  Set JAVA_OPTS to size the coordinator's heap; each
+# worker gets an equal share of it unless crown.workerJvmOptions is set.
+
+if [ $# -lt 3 ] ; then
+    echo "usage: $0 wordnet-dir lexfile-dir wiktionary-input [workers]"
+    exit 1
+fi
+
+WORDNET_DIR=$1
+LEXFILE_DIR=$2
+INPUT=$3
+NUM_WORKERS=${4:-3}
+
+if [[ "$INPUT" == *.bin ]] ; then
+    INPUT_ARGS="-b $INPUT"
+else
+    INPUT_ARGS="-p $INPUT"
+fi
+
+JAR=target/crown-2.0.0-jar-with-dependencies.jar
+if [ ! -e "$JAR" ] ; then
+    echo "Compiling the CROWN Build"
+    mvn package -Dmaven.javadoc.skip=true >/dev/null || exit 1
+fi
+
+CHECK_DIR=sharded-check
+rm -rf $CHECK_DIR
+mkdir -p $CHECK_DIR
+
+for W in 0 $NUM_WORKERS ; do
+    mkdir -p $CHECK_DIR/working-$W $CHECK_DIR/dict-$W
+    CMD="java $JAVA_OPTS -jar $JAR $INPUT_ARGS -i 1 -W $W -T $CHECK_DIR/working-$W $WORDNET_DIR $LEXFILE_DIR $CHECK_DIR/dict-$W"
+    echo $CMD
+    $CMD || { echo >&2 "Build with $W workers failed"; exit 1; }
+done
+
+sort $CHECK_DIR/working-0/operations-log.0.tsv > $CHECK_DIR/single.tsv
+sort $CHECK_DIR/working-$NUM_WORKERS/operations-log.0.tsv > $CHECK_DIR/sharded.tsv
+
+if diff -q $CHECK_DIR/single.tsv $CHECK_DIR/sharded.tsv >/dev/null ; then
+    echo "The builds with 0 and $NUM_WORKERS workers integrated the same" \
+         "$(wc -l < $CHECK_DIR/single.tsv) operations"
+else
+    echo >&2 "The builds with 0 and $NUM_WORKERS workers differ:"
+    diff $CHECK_DIR/single.tsv $CHECK_DIR/sharded.tsv | head -20 >&2
+    exit 1
+fi
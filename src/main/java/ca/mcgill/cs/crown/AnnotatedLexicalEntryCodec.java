@@ -0,0 +1,504 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.SynsetID;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+
+import edu.stanford.nlp.util.CoreMap;
+
+import edu.ucla.sspace.util.Duple;
+
+import ca.mcgill.cs.crown.CrownOperations.Reason;
+
+
+/**
+ * A compact binary encoding of streams of {@link AnnotatedLexicalEntry}
+ * instances, which allows integration results to be written to disk or
+ * shipped to another process.  Each entry is identified by its {@link #key
+ * key} and so must be matched with its {@link LexicalEntry} by the reader.
+ *
+ * <p> Each operation is encoded as its ordinal among the {@link
+ * CrownOperations#SINGLE_ARG_OPERATIONS}, the {@link
+ * CrownOperations#SET_ARG_OPERATIONS} and {@link
+ * CrownOperations.Lexicalization}, whose names are written at the start of the
+ * stream so that a stream written with different operations is rejected.
+ * Synsets are encoded as their part of speech and offset, and so can only be
+ * read with the same dictionary they were written with.  A {@link Reason} is
+ * encoded as its origin, heuristic and score, followed by any other properties
+ * as typed key/value pairs.  Strings that repeat across reasons (origins,
+ * heuristics, property names and short values) are written once per stream
+ * and then referred to by number.
+ */
+public class AnnotatedLexicalEntryCodec {
+
+    /**
+     * The version of the encoding, which is written at the start of each
+     * stream
+     */
+    private static final int VERSION = 2;
+
+    private static final byte END = 0;
+
+    private static final byte ENTRY = 1;
+
+    private static final byte STRING = 0;
+
+    private static final byte INT = 1;
+
+    private static final byte LONG = 2;
+
+    private static final byte DOUBLE = 3;
+
+    private static final byte BOOLEAN = 4;
+
+    private static final byte STRING_ARRAY = 5;
+
+    private static final int HAS_HEURISTIC = 1;
+
+    private static final int HAS_SCORE = 2;
+
+    /**
+     * Strings no longer than this are added to the string table
+     */
+    private static final int MAX_SHARED_STRING_LENGTH = 64;
+
+    private static final int NUM_SINGLE_ARG_OPS =
+        CrownOperations.SINGLE_ARG_OPERATIONS.size();
+
+    private static final int NUM_SET_ARG_OPS =
+        CrownOperations.SET_ARG_OPERATIONS.size();
+
+    private static final int LEXICALIZATION_OP =
+        NUM_SINGLE_ARG_OPS + NUM_SET_ARG_OPS;
+
+    private static final POS[] POS_VALUES = POS.values();
+
+    /**
+     * Returns the key by which an entry is identified in a stream.
+     */
+    public static String key(LexicalEntry e) {
+        return e.getPos().getTag() + e.getId();
+    }
+
+    /**
+     * Returns the names of the operations, in ordinal order.
+     */
+    private static List<String> operationNames() {
+        List<String> names = new ArrayList<String>();
+        for (Class<?> op : CrownOperations.SINGLE_ARG_OPERATIONS)
+            names.add(op.getName());
+        for (Class<?> op : CrownOperations.SET_ARG_OPERATIONS)
+            names.add(op.getName());
+        names.add(CrownOperations.Lexicalization.class.getName());
+        return names;
+    }
+
+    /**
+     * Writes a stream of entries to a {@link DataOutput}, which the writer
+     * does not close.
+     */
+    public static class Writer {
+
+        private final DataOutput out;
+
+        private final Map<String,Integer> stringToIndex;
+
+        private boolean finished;
+
+        /**
+         * Creates a writer, immediately writing the stream's header.
+         */
+        public Writer(DataOutput out) throws IOException {
+            this.out = out;
+            stringToIndex = new HashMap<String,Integer>();
+            finished = false;
+            writeVarInt(out, VERSION);
+            List<String> ops = operationNames();
+            writeVarInt(out, ops.size());
+            for (String op : ops)
+                writeUtf8(out, op);
+        }
+
+        public void write(AnnotatedLexicalEntry ale) throws IOException {
+            if (finished)
+                throw new IllegalStateException("Stream is already finished");
+            out.writeByte(ENTRY);
+            writeUtf8(out, key(ale));
+            CoreMap operations = ale.getOperations();
+
+            int numOps = 0;
+            for (Class<? extends CoreAnnotation<Duple<Reason,ISynset>>> op
+                     : CrownOperations.SINGLE_ARG_OPERATIONS) {
+                if (operations.get(op) != null)
+                    numOps++;
+            }
+            for (Class<? extends CoreAnnotation<Set<Duple<Reason,ISynset>>>> op
+                     : CrownOperations.SET_ARG_OPERATIONS) {
+                Set<Duple<Reason,ISynset>> ops = operations.get(op);
+                if (ops != null)
+                    numOps += ops.size();
+            }
+            Set<Duple<Reason,String>> lexs =
+                operations.get(CrownOperations.Lexicalization.class);
+            if (lexs != null)
+                numOps += lexs.size();
+            writeVarInt(out, numOps);
+
+            for (int i = 0; i < NUM_SINGLE_ARG_OPS; ++i) {
+                Duple<Reason,ISynset> dup = operations.get(
+                    CrownOperations.SINGLE_ARG_OPERATIONS.get(i));
+                if (dup != null)
+                    writeSynsetOp(i, dup);
+            }
+            for (int i = 0; i < NUM_SET_ARG_OPS; ++i) {
+                Set<Duple<Reason,ISynset>> ops = operations.get(
+                    CrownOperations.SET_ARG_OPERATIONS.get(i));
+                if (ops == null)
+                    continue;
+                for (Duple<Reason,ISynset> dup : ops)
+                    writeSynsetOp(NUM_SINGLE_ARG_OPS + i, dup);
+            }
+            if (lexs != null) {
+                for (Duple<Reason,String> dup : lexs) {
+                    writeVarInt(out, LEXICALIZATION_OP);
+                    writeReason(dup.x);
+                    writeUtf8(out, dup.y);
+                }
+            }
+        }
+
+        /**
+         * Marks the end of the stream, after which no more entries may be
+         * written.
+         */
+        public void finish() throws IOException {
+            if (!finished) {
+                out.writeByte(END);
+                finished = true;
+            }
+        }
+
+        private void writeSynsetOp(int ordinal, Duple<Reason,ISynset> dup)
+                throws IOException {
+            writeVarInt(out, ordinal);
+            writeReason(dup.x);
+            out.writeByte(dup.y.getPOS().ordinal());
+            out.writeInt(dup.y.getOffset());
+        }
+
+        /**
+         * Writes the reason as its origin, heuristic and score, followed by
+         * its other properties as typed key/value pairs.
+         */
+        public void writeReason(Reason r) throws IOException {
+            writeShared(r.getOrigin().getName());
+            String heuristic = r.getHeuristic();
+            double score = r.getScore();
+            int flags = ((heuristic != null) ? HAS_HEURISTIC : 0)
+                | ((Double.isNaN(score)) ? 0 : HAS_SCORE);
+            out.writeByte(flags);
+            if (heuristic != null)
+                writeShared(heuristic);
+            if (!Double.isNaN(score))
+                out.writeDouble(score);
+
+            Map<String,Object> props = r.getProperties();
+            writeVarInt(out, props.size());
+            for (Map.Entry<String,Object> e : props.entrySet()) {
+                writeShared(e.getKey());
+                writeValue(e.getValue());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer)value);
+            }
+            else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long)value);
+            }
+            else if (value instanceof Number) {
+                out.writeByte(DOUBLE);
+                out.writeDouble(((Number)value).doubleValue());
+            }
+            else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean)value);
+            }
+            else if (value instanceof List) {
+                List<?> values = (List<?>)value;
+                out.writeByte(STRING_ARRAY);
+                writeVarInt(out, values.size());
+                for (Object o : values)
+                    writeShared(String.valueOf(o));
+            }
+            else {
+                out.writeByte(STRING);
+                writeShared(String.valueOf(value));
+            }
+        }
+
+        /**
+         * Writes a string that is likely to repeat, either by its number in
+         * the string table or, the first time it is seen, in full.  The low
+         * bit of the number says which.
+         */
+        private void writeShared(String s) throws IOException {
+            Integer index = stringToIndex.get(s);
+            if (index != null) {
+                writeVarInt(out, index << 1);
+                return;
+            }
+            writeVarInt(out, 1);
+            writeUtf8(out, s);
+            if (s.length() <= MAX_SHARED_STRING_LENGTH)
+                stringToIndex.put(s, stringToIndex.size());
+        }
+    }
+
+    /**
+     * Reads a stream written by a {@link Writer} from a {@link DataInput},
+     * which the reader does not close.
+     */
+    public static class Reader {
+
+        private final DataInput in;
+
+        private final IDictionary dict;
+
+        private final Map<String,LexicalEntry> keyToEntry;
+
+        private final List<String> strings;
+
+        private boolean finished;
+
+        /**
+         * Creates a reader, immediately reading the stream's header.
+         *
+         * @param dict the dictionary with which the stream was written, or
+         *        {@code null} if the stream will only be {@link #skip()
+         *        skipped}
+         * @param keyToEntry the entries that may be in the stream, by their
+         *        {@link AnnotatedLexicalEntryCodec#key key}
+         */
+        public Reader(DataInput in, IDictionary dict,
+                      Map<String,LexicalEntry> keyToEntry) throws IOException {
+            this.in = in;
+            this.dict = dict;
+            this.keyToEntry = keyToEntry;
+            strings = new ArrayList<String>();
+            finished = false;
+
+            int version = readVarInt(in);
+            if (version != VERSION)
+                throw new IOException("Unsupported stream version: " + version);
+            int numOps = readVarInt(in);
+            List<String> ops = new ArrayList<String>();
+            for (int i = 0; i < numOps; ++i)
+                ops.add(readUtf8(in));
+            if (!ops.equals(operationNames()))
+                throw new IOException("Stream was written with different " +
+                                      "CrownOperations: " + ops);
+        }
+
+        /**
+         * Returns the next entry in the stream, or {@code null} if there are
+         * no more.
+         *
+         * @throws IOException if the entry or one of its synsets is unknown
+         */
+        public AnnotatedLexicalEntry read() throws IOException {
+            if (dict == null)
+                throw new IllegalStateException(
+                    "Cannot read entries without a dictionary");
+            if (!hasNext())
+                return null;
+            String key = readUtf8(in);
+            LexicalEntry e = keyToEntry.get(key);
+            if (e == null)
+                throw new IOException("Stream refers to unknown entry " + key);
+            AnnotatedLexicalEntry ale = new AnnotatedLexicalEntryImpl(e);
+
+            int numOps = readVarInt(in);
+            for (int i = 0; i < numOps; ++i) {
+                int op = readVarInt(in);
+                Reason r = readReason();
+                if (op < NUM_SINGLE_ARG_OPS) {
+                    ale.setOp(CrownOperations.SINGLE_ARG_OPERATIONS.get(op),
+                              r, readSynset());
+                }
+                else if (op < LEXICALIZATION_OP) {
+                    ale.addOp(CrownOperations.SET_ARG_OPERATIONS.get(
+                                  op - NUM_SINGLE_ARG_OPS), r, readSynset());
+                }
+                else if (op == LEXICALIZATION_OP) {
+                    ale.addOp(CrownOperations.Lexicalization.class, r,
+                              readUtf8(in));
+                }
+                else
+                    throw new IOException("Unknown operation: " + op);
+            }
+            return ale;
+        }
+
+        /**
+         * Reads past the next entry in the stream without resolving it,
+         * returning {@code false} if there are no more.
+         */
+        public boolean skip() throws IOException {
+            if (!hasNext())
+                return false;
+            readUtf8(in);
+            int numOps = readVarInt(in);
+            for (int i = 0; i < numOps; ++i) {
+                int op = readVarInt(in);
+                readReason();
+                if (op == LEXICALIZATION_OP)
+                    readUtf8(in);
+                else {
+                    in.readByte();
+                    in.readInt();
+                }
+            }
+            return true;
+        }
+
+        private boolean hasNext() throws IOException {
+            if (finished)
+                return false;
+            byte marker = in.readByte();
+            if (marker == END) {
+                finished = true;
+                return false;
+            }
+            if (marker != ENTRY)
+                throw new IOException("Corrupt stream: " + marker);
+            return true;
+        }
+
+        private ISynset readSynset() throws IOException {
+            POS pos = POS_VALUES[in.readByte()];
+            int offset = in.readInt();
+            if (dict == null)
+                return null;
+            ISynset syn = dict.getSynset(new SynsetID(offset, pos));
+            if (syn == null)
+                throw new IOException("Stream refers to synset " + offset +
+                                      " (" + pos + "), which is not in the " +
+                                      "dictionary");
+            return syn;
+        }
+
+        public Reason readReason() throws IOException {
+            String origin = readShared();
+            Reason r;
+            try {
+                r = new Reason(Class.forName(origin));
+            } catch (ClassNotFoundException cnfe) {
+                throw new IOException(cnfe);
+            }
+            int flags = in.readByte();
+            if ((flags & HAS_HEURISTIC) != 0)
+                r.set(Reason.HEURISTIC, readShared());
+            if ((flags & HAS_SCORE) != 0)
+                r.set(Reason.SCORE, in.readDouble());
+            int numProps = readVarInt(in);
+            for (int i = 0; i < numProps; ++i) {
+                String key = readShared();
+                r.setProperty(key, readValue());
+            }
+            return r;
+        }
+
+        private Object readValue() throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+            case STRING:
+                return readShared();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case STRING_ARRAY: {
+                int n = readVarInt(in);
+                List<String> values = new ArrayList<String>(n);
+                for (int i = 0; i < n; ++i)
+                    values.add(readShared());
+                return values;
+            }
+            default:
+                throw new IOException("Unknown value type: " + type);
+            }
+        }
+
+        private String readShared() throws IOException {
+            int code = readVarInt(in);
+            if ((code & 1) == 0)
+                return strings.get(code >>> 1);
+            String s = readUtf8(in);
+            if (s.length() <= MAX_SHARED_STRING_LENGTH)
+                strings.add(s);
+            return s;
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    static void writeUtf8(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readUtf8(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
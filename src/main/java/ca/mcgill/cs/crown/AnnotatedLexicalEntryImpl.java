@@ -8,6 +8,7 @@
 package ca.mcgill.cs.crown;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -103,6 +104,34 @@ public class AnnotatedLexicalEntryImpl implements AnnotatedLexicalEntry {
         return entry.getPos();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public String getGloss() {
+        return entry.getGloss();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<String> getGlosses() {
+        return entry.getGlosses();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Map<String,String> getRawGlosses() {
+        return entry.getRawGlosses();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<Relation> getRelations() {
+        return entry.getRelations();
+    }
+
     /**
      * {@inheritDoc}
      */
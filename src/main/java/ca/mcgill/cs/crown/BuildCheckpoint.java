@@ -0,0 +1,321 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.IDictionary;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+
+/**
+ * The durable record of how far a multi-iteration {@link CrownCreator} build
+ * has progressed, which allows a build that was interrupted to be resumed.
+ * Each iteration has two checkpoints:
+ *
+ * <ul>
+ *
+ * <li> <i>integrated</i>, written once all entries have been processed, which
+ * records the entries to be integrated along with the entries that remain
+ * (and what they looked up).  Synsets are recorded by their offsets in the
+ * dictionary the iteration started from.
+ *
+ * <li> <i>built</i>, written once that iteration's dictionary has been
+ * created, which records the lemmas the iteration changed.
+ *
+ * </ul>
+ *
+ * Each checkpoint is written to a temporary file that is synced to disk and
+ * then renamed, so a checkpoint file exists only if it is complete.  A
+ * checkpoint written by a different version is treated as absent, so its
+ * stage is redone.
+ */
+public class BuildCheckpoint {
+
+    private static final int MAGIC = 0x4352434b;
+
+    private static final int VERSION = 3;
+
+    private final File checkpointDir;
+
+    /**
+     * Creates checkpoints in a {@code checkpoints/} subdirectory of the
+     * build's working directory.
+     */
+    public BuildCheckpoint(File workingDir) {
+        checkpointDir = new File(workingDir, "checkpoints");
+        if (!checkpointDir.exists())
+            checkpointDir.mkdirs();
+    }
+
+    private File integratedFile(int iterNum) {
+        return new File(checkpointDir, "iter-" + iterNum + ".integrated");
+    }
+
+    private File builtFile(int iterNum) {
+        return new File(checkpointDir, "iter-" + iterNum + ".built");
+    }
+
+    /**
+     * Returns {@code true} if all the entries in this iteration were
+     * processed.
+     */
+    public boolean isIntegrated(int iterNum) {
+        return isValid(integratedFile(iterNum));
+    }
+
+    /**
+     * Returns {@code true} if this iteration's dictionary was created.
+     */
+    public boolean isBuilt(int iterNum) {
+        return isValid(builtFile(iterNum));
+    }
+
+    /**
+     * Returns {@code true} if the file exists and starts with the header of a
+     * checkpoint written by this version.
+     */
+    private static boolean isValid(File f) {
+        if (!f.exists())
+            return false;
+        try (DataInputStream in =
+                 new DataInputStream(new FileInputStream(f))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes all checkpoints, e.g., before starting a new build.
+     */
+    public void clear() {
+        for (File f : checkpointDir.listFiles())
+            f.delete();
+    }
+
+    /**
+     * Records the result of processing the entries in this iteration.
+     *
+     * @param toIntegrate the entries to be integrated
+     * @param remaining the entries that were not integrated
+     * @param entryDependencies the keys of what each remaining entry looked up
+     */
+    public void saveIntegrated(int iterNum,
+                               List<AnnotatedLexicalEntry> toIntegrate,
+                               Collection<LexicalEntry> remaining,
+                               Map<LexicalEntry,long[]> entryDependencies) {
+        write(integratedFile(iterNum), out -> {
+                AnnotatedLexicalEntryCodec.Writer writer =
+                    new AnnotatedLexicalEntryCodec.Writer(out);
+                for (AnnotatedLexicalEntry ale : toIntegrate)
+                    writer.write(ale);
+                writer.finish();
+
+                out.writeInt(remaining.size());
+                for (LexicalEntry e : remaining) {
+                    writeKey(out, e);
+                    long[] deps = entryDependencies.get(e);
+                    if (deps == null)
+                        out.writeInt(-1);
+                    else {
+                        out.writeInt(deps.length);
+                        for (long d : deps)
+                            out.writeLong(d);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Restores the result of processing the entries in this iteration.  The
+     * entries that were integrated in this iteration are returned, and all of
+     * them are removed from {@code entries}, which must be the entries that
+     * this iteration started with.
+     *
+     * @param dict the dictionary that the iteration started from, or {@code
+     *        null} if the entries to be integrated are not needed
+     */
+    public List<AnnotatedLexicalEntry> loadIntegrated(
+            int iterNum, IDictionary dict, Collection<LexicalEntry> entries,
+            Map<LexicalEntry,long[]> entryDependencies) {
+
+        Map<String,LexicalEntry> keyToEntry =
+            new HashMap<String,LexicalEntry>(entries.size() * 2);
+        for (LexicalEntry e : entries)
+            keyToEntry.put(toKey(e), e);
+
+        List<AnnotatedLexicalEntry> toIntegrate =
+            new ArrayList<AnnotatedLexicalEntry>();
+        read(integratedFile(iterNum), in -> {
+                AnnotatedLexicalEntryCodec.Reader reader =
+                    new AnnotatedLexicalEntryCodec.Reader(in, dict, keyToEntry);
+                if (dict == null) {
+                    while (reader.skip())
+                        ;
+                }
+                else {
+                    AnnotatedLexicalEntry ale;
+                    while ((ale = reader.read()) != null)
+                        toIntegrate.add(ale);
+                }
+
+                Set<LexicalEntry> remaining = new HashSet<LexicalEntry>();
+                int numRemaining = in.readInt();
+                for (int i = 0; i < numRemaining; ++i) {
+                    LexicalEntry e = keyToEntry.get(readKey(in));
+                    int numDeps = in.readInt();
+                    long[] deps = (numDeps < 0) ? null : new long[numDeps];
+                    for (int j = 0; j < numDeps; ++j)
+                        deps[j] = in.readLong();
+                    if (e == null)
+                        continue;
+                    remaining.add(e);
+                    if (deps != null)
+                        entryDependencies.put(e, deps);
+                }
+                entries.retainAll(remaining);
+                entryDependencies.keySet().retainAll(remaining);
+            });
+        return toIntegrate;
+    }
+
+    /**
+     * Restores the entries that remained after this iteration, removing the
+     * others from {@code entries}, which must be the entries that this
+     * iteration started with.
+     */
+    public void restoreRemaining(int iterNum, Collection<LexicalEntry> entries,
+                                 Map<LexicalEntry,long[]> entryDependencies) {
+        loadIntegrated(iterNum, null, entries, entryDependencies);
+    }
+
+    /**
+     * Records that this iteration's dictionary was created, along with the
+     * keys of the lemmas it changed.
+     */
+    public void saveBuilt(int iterNum, TLongSet changedKeys) {
+        write(builtFile(iterNum), out -> {
+                long[] keys = changedKeys.toArray();
+                out.writeInt(keys.length);
+                for (long k : keys)
+                    out.writeLong(k);
+            });
+    }
+
+    /**
+     * Returns the keys of the lemmas changed by this iteration.
+     */
+    public TLongSet loadBuilt(int iterNum) {
+        TLongSet changedKeys = new TLongHashSet();
+        read(builtFile(iterNum), in -> {
+                int n = in.readInt();
+                for (int i = 0; i < n; ++i)
+                    changedKeys.add(in.readLong());
+            });
+        return changedKeys;
+    }
+
+    private static String toKey(LexicalEntry e) {
+        return AnnotatedLexicalEntryCodec.key(e);
+    }
+
+    private static void writeKey(DataOutputStream out, LexicalEntry e)
+            throws IOException {
+        out.writeUTF(toKey(e));
+    }
+
+    private static String readKey(DataInputStream in) throws IOException {
+        return in.readUTF();
+    }
+
+    /**
+     * Writes the file by writing a temporary file, syncing it, and then
+     * renaming it, so that the file is never seen partially written, even
+     * after a crash or power loss.
+     */
+    private static void write(File f, Writer writer) {
+        File tmp = new File(f.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(fos));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writer.write(out);
+                out.flush();
+                // Otherwise the rename can reach the disk before the contents
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), f.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(f.getParentFile());
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Syncs the directory so that a file renamed in it stays renamed.  Not all
+     * platforms allow a directory to be opened, in which case the rename is
+     * left to the file system.
+     */
+    private static void syncDirectory(File dir) {
+        try (FileChannel fc = FileChannel.open(dir.toPath(),
+                                               StandardOpenOption.READ)) {
+            fc.force(true);
+        } catch (IOException ioe) {
+            // Not supported here
+        }
+    }
+
+    private static void read(File f, Reader reader) {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new IOException(f + " is not a checkpoint from this " +
+                                      "version");
+            reader.read(in);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private interface Reader {
+        void read(DataInputStream in) throws IOException;
+    }
+}
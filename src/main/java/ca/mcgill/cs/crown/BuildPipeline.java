@@ -9,34 +9,88 @@ package ca.mcgill.cs.crown;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.POS;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
 
 
 public class BuildPipeline implements EnrichmentProcedure {
 
+    /**
+     * The policies for ordering the pipeline's {@link EnrichmentProcedure}s,
+     * since the first procedure to integrate an entry determines where it is
+     * attached.
+     */
+    public enum Ordering {
+
+        /**
+         * Applies the procedures in the order in which they were added, which
+         * is expected to run from the most to the least precise.
+         */
+        PRECISION,
+
+        /**
+         * Applies the procedures in increasing order of their mean cost
+         * divided by their success rate, as measured since the metrics were
+         * last reset, which minimizes the expected time until a procedure
+         * integrates the entry.  When more than one procedure could integrate
+         * an entry, this may change which one does so.
+         */
+        COST
+    }
+
+    /**
+     * The procedures in the order in which they were added
+     */
     private final List<EnrichmentProcedure> procedures;
 
+    /**
+     * For each part of speech, the procedures that handle it, in the order in
+     * which they are currently applied.  This is replaced rather than modified,
+     * so integration may proceed concurrently with reordering.
+     */
+    private volatile Map<POS,EnrichmentProcedure[]> posToProcedures;
+
+    private Ordering ordering;
+
     private final List<AugmentationProcedure> augmentationProcedures;    
 
     private IDictionary dictionary;
 
     private SimilarityFunction simFunc;
+
+    /**
+     * The timing and success counts of each procedure, which are created the
+     * first time the procedure is used
+     */
+    private final Map<Object,ProcedureMetrics> procedureMetrics;
     
     public BuildPipeline() {
         procedures = new ArrayList<EnrichmentProcedure>();
         augmentationProcedures = new ArrayList<AugmentationProcedure>();
         simFunc = null;
+        procedureMetrics = new ConcurrentHashMap<Object,ProcedureMetrics>();
+        ordering = Ordering.PRECISION;
+        reorder();
     }
 
     public BuildPipeline(Collection<EnrichmentProcedure> procedures) {
         this.procedures = new ArrayList<EnrichmentProcedure>(procedures);
         augmentationProcedures = new ArrayList<AugmentationProcedure>();
         simFunc = null;
+        procedureMetrics = new ConcurrentHashMap<Object,ProcedureMetrics>();
+        ordering = Ordering.PRECISION;
+        reorder();
     }
     
     public void add(EnrichmentProcedure ep) {
@@ -46,6 +100,7 @@ public class BuildPipeline implements EnrichmentProcedure {
             return;
         }
         procedures.add(ep);
+        reorder();
     }
 
     public void add(AugmentationProcedure ap) {
@@ -59,12 +114,83 @@ public class BuildPipeline implements EnrichmentProcedure {
     
     /**
      * Returns the current list of enrichment procedures in the order in which
-     * they will be used to integrate new {@link LexicalEntry} instances.
+     * they were added, which is the order in which they will be used to
+     * integrate new {@link LexicalEntry} instances under {@link
+     * Ordering#PRECISION}.
      */
     public List<EnrichmentProcedure> getProcedures() {
         return procedures;
     }
 
+    /**
+     * Returns the procedures that will be applied to entries with the provided
+     * part of speech, in the order in which they will be applied.
+     */
+    public List<EnrichmentProcedure> getProcedures(POS pos) {
+        List<EnrichmentProcedure> eps = new ArrayList<EnrichmentProcedure>();
+        for (EnrichmentProcedure ep : posToProcedures.get(pos))
+            eps.add(ep);
+        return eps;
+    }
+
+    public Ordering getOrdering() {
+        return ordering;
+    }
+
+    /**
+     * Sets the policy for ordering the procedures and reorders them
+     * accordingly, using the current metrics for {@link Ordering#COST}.
+     */
+    public void setOrdering(Ordering ordering) {
+        this.ordering = ordering;
+        reorder();
+    }
+
+    /**
+     * Recomputes the order in which the procedures are applied for each part
+     * of speech according to the current {@link Ordering}.  Under {@link
+     * Ordering#COST}, this should be called before the metrics are reset so
+     * that the order reflects the costs measured in the previous iteration.
+     * Procedures that have not yet been measured are tried first, so that
+     * they can be.
+     */
+    public void reorder() {
+        Map<POS,EnrichmentProcedure[]> m =
+            new EnumMap<POS,EnrichmentProcedure[]>(POS.class);
+        Map<EnrichmentProcedure,Double> costs =
+            new HashMap<EnrichmentProcedure,Double>();
+        for (EnrichmentProcedure ep : procedures)
+            costs.put(ep, expectedCost(ep));
+        for (POS pos : POS.values()) {
+            List<EnrichmentProcedure> eps = new ArrayList<EnrichmentProcedure>();
+            for (EnrichmentProcedure ep : procedures) {
+                if (ep.getHandledPos().contains(pos))
+                    eps.add(ep);
+            }
+            // The sort is stable, so ties keep their order of precision
+            if (ordering == Ordering.COST)
+                eps.sort(Comparator.comparing(costs::get));
+            m.put(pos, eps.toArray(new EnrichmentProcedure[eps.size()]));
+        }
+        posToProcedures = m;
+    }
+
+    /**
+     * Returns the expected time in nanoseconds spent on the procedure for each
+     * entry it integrates, i.e., its mean cost divided by its success rate,
+     * with the success rate smoothed so that procedures that have never
+     * succeeded are still ordered by their cost.
+     */
+    private double expectedCost(EnrichmentProcedure ep) {
+        ProcedureMetrics pm = procedureMetrics.get(ep);
+        if (pm == null || pm.invocations() == 0)
+            return 0;
+        long calls = pm.invocations();
+        double meanNanos = (double)pm.totalNanos() / calls;
+        double successRate = (pm.successes() + 1d) / (calls + 2d);
+        return meanNanos / successRate;
+    }
+
     public IDictionary getDictionary() {
         return dictionary;
     }    
@@ -98,17 +224,50 @@ public class BuildPipeline implements EnrichmentProcedure {
     // }
     
     /**
-     * Applies each of the {@link EnrichmentProcedure} instances in order and
-     * returns the first non-{@code null} {@code AnnotatedLexicalEntry}
-     * integration provided by a procedure.
+     * Returns the procedures that could integrate the entry, in the order in
+     * which they would be applied: those that handle the entry's part of
+     * speech and consider its {@link EntryFeatures} applicable.  If the list
+     * is empty, the entry cannot be integrated and need not be examined any
+     * further.
+     */
+    public List<EnrichmentProcedure> route(LexicalEntry e) {
+        EntryFeatures features = new EntryFeatures(e);
+        List<EnrichmentProcedure> route = new ArrayList<EnrichmentProcedure>();
+        for (EnrichmentProcedure ep : posToProcedures.get(e.getPos())) {
+            if (ep.isApplicable(features))
+                route.add(ep);
+        }
+        return route;
+    }
+
+    /**
+     * Applies each of the {@link EnrichmentProcedure} instances that could
+     * integrate the entry in order and returns the first non-{@code null}
+     * {@code AnnotatedLexicalEntry} integration provided by a procedure.
      */
     public AnnotatedLexicalEntry integrate(LexicalEntry e) {
-        for (EnrichmentProcedure ep : procedures) {
+        return integrate(e, route(e));
+    }
+
+    /**
+     * Applies each of the procedures on the entry's route, as returned by
+     * {@link #route(LexicalEntry)}, in order and returns the first non-{@code
+     * null} {@code AnnotatedLexicalEntry} integration provided by a
+     * procedure.
+     */
+    public AnnotatedLexicalEntry integrate(LexicalEntry e,
+                                           List<EnrichmentProcedure> route) {
+        for (EnrichmentProcedure ep : route) {
+            long start = System.nanoTime();
             AnnotatedLexicalEntry integration = ep.integrate(e);
+            metricsFor(ep).record(System.nanoTime() - start,
+                                  integration != null);
             //System.out.printf("%s on %s: %s%n", ep, e, integration);
             if (integration != null) {
                 for (AugmentationProcedure ap : augmentationProcedures) {
+                    start = System.nanoTime();
                     ap.augment(integration);
+                    metricsFor(ap).record(System.nanoTime() - start, true);
                 }                
                 return integration;
             }
@@ -116,6 +275,45 @@ public class BuildPipeline implements EnrichmentProcedure {
         return null;
     }
 
+    private ProcedureMetrics metricsFor(Object procedure) {
+        ProcedureMetrics m = procedureMetrics.get(procedure);
+        if (m == null) {
+            m = procedureMetrics.computeIfAbsent(procedure,
+                p -> new ProcedureMetrics(p.getClass().getSimpleName()));
+        }
+        return m;
+    }
+
+    /**
+     * Returns the metrics for each procedure that has been used since the
+     * metrics were last reset, with the {@link EnrichmentProcedure}s in
+     * pipeline order followed by the {@link AugmentationProcedure}s.
+     * Augmentation procedures always count as successful.
+     */
+    public List<ProcedureMetrics> getMetrics() {
+        List<ProcedureMetrics> metrics = new ArrayList<ProcedureMetrics>();
+        for (EnrichmentProcedure ep : procedures) {
+            ProcedureMetrics m = procedureMetrics.get(ep);
+            if (m != null)
+                metrics.add(m);
+        }
+        for (AugmentationProcedure ap : augmentationProcedures) {
+            ProcedureMetrics m = procedureMetrics.get(ap);
+            if (m != null)
+                metrics.add(m);
+        }
+        return metrics;
+    }
+
+    /**
+     * Resets the metrics of every procedure, e.g., at the start of an
+     * iteration.
+     */
+    public void resetMetrics() {
+        for (ProcedureMetrics m : procedureMetrics.values())
+            m.reset();
+    }
+
     /**
      * Optimizes the order in which the pipeline's {@link EnrichmentProcedure}s
      * are applied in order to use the most accurate procedures first.
@@ -15,6 +15,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +27,7 @@ import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import java.util.logging.Level;
 
@@ -40,6 +42,9 @@ import edu.stanford.nlp.util.CoreMap;
 
 import edu.ucla.sspace.common.ArgOptions;
 
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
 import edu.ucla.sspace.util.Counter;
 import edu.ucla.sspace.util.Duple;
 import edu.ucla.sspace.util.ObjectCounter;
@@ -71,6 +76,8 @@ import ca.mcgill.cs.crown.similarity.SimilarityFunction;
 import ca.mcgill.cs.crown.similarity.Word2VecSimilarity;
 
 import ca.mcgill.cs.crown.util.CrownLogger;
+import ca.mcgill.cs.crown.util.DependencyTrackingDictionary;
+import ca.mcgill.cs.crown.util.GlossAnnotationCache;
 import ca.mcgill.cs.crown.util.WordNetUtils;
 
 import com.google.common.io.Files;
@@ -85,14 +92,129 @@ public class CrownCreator {
     private static final int DEFAULT_NUM_ITERATIONS = 3;
 
     private static final double MAX_DISTINCT_SIMILARITY = 0.3;
+
+    /**
+     * The system property that, when set to {@code true}, uses JWI's
+     * file-backed dictionary with caching instead of loading a full snapshot
+     * of the dictionary into memory.
+     */
+    public static final String CACHED_DICTIONARY_PROPERTY =
+        "crown.cachedDictionary";
+
+    /**
+     * The system property naming a file in which the CoreNLP annotations of
+     * glosses are kept across builds, so that each gloss is only ever parsed
+     * once.  If unset, annotations are only shared within a single build.
+     */
+    public static final String GLOSS_ANNOTATIONS_PROPERTY =
+        "crown.glossAnnotations";
+
+    /**
+     * The system property that, when set to {@code true}, processes every
+     * remaining entry in every iteration, rather than only those entries whose
+     * dictionary lookups could have been affected by the previous iteration.
+     */
+    public static final String FULL_ITERATIONS_PROPERTY =
+        "crown.fullIterations";
+
+    /**
+     * The system property that, when set to {@code true}, runs grind in every
+     * iteration, rather than reusing the previous iteration's database when
+     * none of the lexicographer files have changed.
+     */
+    public static final String FULL_DB_BUILDS_PROPERTY =
+        "crown.fullDbBuilds";
+
+    /**
+     * The system property that, when set to {@code true}, generates each
+     * database with the in-process {@link LexFileCompiler} instead of grind.
+     * Grind remains the default, and the reference for the compiler's output,
+     * until the two are shown to produce identical databases from the WordNet
+     * 3.0 lexicographer files.
+     */
+    public static final String IN_PROCESS_GRIND_PROPERTY =
+        "crown.inProcessGrind";
+
+    /**
+     * The system property naming the {@link BuildPipeline.Ordering} in which
+     * the enrichment procedures are applied, either {@code precision} (the
+     * default), which keeps the output identical to the fixed order, or {@code
+     * cost}, which reorders the procedures after each iteration by their
+     * measured cost and success rate.
+     */
+    public static final String PROCEDURE_ORDER_PROPERTY =
+        "crown.procedureOrder";
+
+    /**
+     * The system property giving the JVM options (separated by whitespace)
+     * with which each {@link IntegrationWorker} is started, e.g., {@code
+     * -Xmx12g}, in place of the heap settings of the coordinating JVM.  If
+     * unset, the coordinator's maximum heap size is split evenly among the
+     * workers.
+     */
+    public static final String WORKER_JVM_OPTIONS_PROPERTY =
+        "crown.workerJvmOptions";
     
     private final File wordNetDictDir;
 
     private final File wordNetLexFileDir;
 
+    /**
+     * Whether to resume from the checkpoints left in the working directory by
+     * an earlier build, rather than starting over.
+     */
+    private boolean resume;
+
+    /**
+     * The number of threads used to integrate entries
+     */
+    private int numThreads;
+
+    /**
+     * The number of {@link IntegrationWorker} processes among which entries
+     * are sharded, or {@code 0} to integrate them all in this process
+     */
+    private int numWorkers;
+
     public CrownCreator(File wordNetDictDir, File wordNetLexFileDir) {
         this.wordNetDictDir = wordNetDictDir;
         this.wordNetLexFileDir = wordNetLexFileDir;
+        this.resume = false;
+        this.numThreads = Runtime.getRuntime().availableProcessors();
+        this.numWorkers = 0;
+    }
+
+    /**
+     * Sets whether {@link #build(Collection,int,File,File) build} should skip
+     * the stages completed by an earlier build using the same working
+     * directory and entries, as recorded by its {@link BuildCheckpoint}s.
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Sets the number of threads used to integrate entries, which defaults to
+     * the number of available processors.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one thread: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the number of {@link IntegrationWorker} processes started on this
+     * machine to integrate shards of the entries in each iteration, or {@code
+     * 0} (the default) to integrate all of them in this process.  The threads
+     * set by {@link #setNumThreads(int)} are divided among the workers.
+     */
+    public void setNumWorkers(int numWorkers) {
+        if (numWorkers < 0)
+            throw new IllegalArgumentException(
+                "Cannot have a negative number of workers: " + numWorkers);
+        this.numWorkers = numWorkers;
     }
 
     /**
@@ -143,76 +265,129 @@ public class CrownCreator {
         // Open the current version of the WN/CROWN dictionary that we use.
         // This is initially the WN dictionary, but on later passes, we add
         // new items and it is replaced with the expanded CROWN dictionary.
-        IDictionary dict = WordNetUtils.open(curDictDir);
+        IDictionary dict = openDictionary(curDictDir);
+        File openedDictDir = curDictDir;
 
-        Grind grind = new Grind();
+        String glossAnnotationsFile =
+            System.getProperty(GLOSS_ANNOTATIONS_PROPERTY);
+        if (glossAnnotationsFile != null)
+            GlossAnnotationCache.open(new File(glossAnnotationsFile));
 
-        // TODO: one day replace this with ADW when it proves fast enough, or at
-        // least test it out, whre possible
-        //
-        // TODO: let people specify the vector location
-        
-        //SimilarityFunction gst = new GreedyStringTiling(4);
-        SimilarityFunction gst = new Word2VecSimilarity(entries, dict,
-                new File("vectors/GoogleNews-vectors-negative300.bin"));
+        Grind grind = new Grind();
+        grind.setIncremental(!Boolean.getBoolean(FULL_DB_BUILDS_PROPERTY));
+        grind.setInProcess(Boolean.getBoolean(IN_PROCESS_GRIND_PROPERTY));
 
-        // InvFreqSimilarity gst = 
-        //     new InvFreqSimilarity(entries, dict);
+        SimilarityFunction gst = createSimilarityFunction(entries, dict);
 
         List<AnnotatedLexicalEntry> toIntegrate =
             new ArrayList<AnnotatedLexicalEntry>(500_000);
-        BuildPipeline pipeline = new BuildPipeline();
-                
-        pipeline.add(new WiktionaryAnnotationBasedExtractor(dict, gst));
-        pipeline.add(new RelationBasedIntegrator(dict, gst));
-        pipeline.add(new AntonymExtractor(dict, gst));
-        pipeline.add(new SynonymExtractor(dict, gst));
-        pipeline.add(new NearSynonymExtractor(dict, gst));
-        pipeline.add(new AdverbExtractor(dict, gst));
-        pipeline.add(new TaxonomicExtractor(dict, gst));
-        pipeline.add(new GroupExtractor(dict, gst));
-        pipeline.add(new PersonPatternExtractor(dict, gst));
-        pipeline.add(new ParseExtractor(dict, gst));
-        pipeline.add(new ConjunctionProcedure(dict, gst));
-        pipeline.add(new WikiMarkupExtractor(dict, gst));
-        pipeline.add(new VerbPatternExtractor(dict, gst));
-        pipeline.add(new NounPatternExtractor(dict, gst));
-        pipeline.add(new AdjectivePatternExtractor(dict, gst));
-        
-        
-        // For adding pointers
-        pipeline.add(new DomainLinkAugmenter(dict, gst));
+        BuildPipeline pipeline = createPipeline(dict, gst);
 
-        // 
-        pipeline.setSimilarityFunction(gst);
-        
-        // TODO: re-order the pipeline based on accuracy
+        // The lemmas each unintegrated entry looked up when it was last
+        // processed, and the lemmas changed by the previous iteration.  An
+        // entry only needs to be processed again if the two overlap.
+        Map<LexicalEntry,long[]> entryDependencies =
+            new ConcurrentHashMap<LexicalEntry,long[]>();
+        TLongSet changedKeys = null;
+        boolean fullIterations = Boolean.getBoolean(FULL_ITERATIONS_PROPERTY);
+
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        if (!resume)
+            checkpoint.clear();
+
+        IntegrationExecutor executor = new IntegrationExecutor(numThreads);
         
         for (int iterNum = 0; iterNum < numIterations; ++iterNum) {
 
+            // If this iteration's dictionary was already built, pick up where
+            // it left off and move on to the next
+            File builtLexFileDir =
+                new File(workingDir, "dbfiles-iter-" + iterNum);
+            File builtDictDir = new File(outputDir, "crown-dict-iter-" + iterNum);
+            if (resume && checkpoint.isBuilt(iterNum)
+                    && checkpoint.isIntegrated(iterNum)
+                    && builtLexFileDir.exists() && builtDictDir.exists()) {
+                checkpoint.restoreRemaining(iterNum, entries,
+                                            entryDependencies);
+                changedKeys = checkpoint.loadBuilt(iterNum);
+                curDictDir = builtDictDir;
+                curLexFileDir = builtLexFileDir;
+                CrownLogger.info("Resuming after completed iteration %d, " +
+                                 "with %d entries remaining",
+                                 iterNum, entries.size());
+                continue;
+            }
+
             CrownLogger.info("Beginning iteration %d with %d entries " +
                            "to integrate", iterNum, entries.size());
 
+            Collection<LexicalEntry> toProcess = entries;
+            if (changedKeys != null && !fullIterations) {
+                toProcess = selectAffected(entries, entryDependencies,
+                                           changedKeys);
+                CrownLogger.info("Reprocessing %d entries whose lookups " +
+                                 "were affected by iteration %d",
+                                 toProcess.size(), iterNum - 1);
+            }
+
             // Open the current version of the WN/CROWN dictionary that we use.
             // This is initially the WN dictionary, but on later passes, we add
             // new items and it is replaced with the expanded CROWN dictionary.
-            dict.close(); // close old version
-            dict = WordNetUtils.open(curDictDir);
+            // The first iteration uses the dictionary that is already open.
+            if (!curDictDir.equals(openedDictDir)) {
+                dict.close(); // close old version
+                dict = openDictionary(curDictDir);
+                openedDictDir = curDictDir;
+            }
 
             // Update the similarity model based on the new dictionary
             if (iterNum > 0) {
                 //gst.reset(dict, entries);
             }
+            // Workers compute their own vectors
+            if (gst instanceof Word2VecSimilarity && numWorkers == 0)
+                ((Word2VecSimilarity)gst).precompute(dict);
             
             // Update the integration pipeline so that it uses the new
             // dictionary for determining presence in CROWN.  This lets us attach
             // new items in this iteration as children of previously-added new
             // items.
-            pipeline.setDictionary(dict);
+            pipeline.setDictionary(new DependencyTrackingDictionary(dict));
 
 
             toIntegrate.clear();
-            toIntegrate.addAll(foobar(entries, pipeline));
+            if (resume && checkpoint.isIntegrated(iterNum)) {
+                toIntegrate.addAll(checkpoint.loadIntegrated(
+                    iterNum, dict, entries, entryDependencies));
+                CrownLogger.info("Resuming with the %d entries to integrate " +
+                                 "from iteration %d", toIntegrate.size(),
+                                 iterNum);
+            }
+            else {
+                if (numWorkers > 0) {
+                    toIntegrate.addAll(integrateSharded(
+                        entries, toProcess, dict, curDictDir, workingDir,
+                        iterNum, entryDependencies));
+                }
+                else {
+                    pipeline.resetMetrics();
+                    toIntegrate.addAll(
+                        foobar(entries, toProcess, pipeline, entryDependencies,
+                               executor));
+                    logMetrics(pipeline, iterNum, new File(
+                        workingDir, "procedure-metrics." + iterNum + ".json"));
+                    pipeline.reorder();
+                }
+                checkpoint.saveIntegrated(iterNum, toIntegrate, entries,
+                                          entryDependencies);
+            }
+            if (gst instanceof Word2VecSimilarity) {
+                CrownLogger.verbose("Gloss vector cache: %s",
+                    ((Word2VecSimilarity)gst).getCache());
+            }
+            GlossAnnotationCache.get().flush();
+            CrownLogger.verbose("Gloss annotation cache: %s",
+                                GlossAnnotationCache.get());
             
             // This is where we will write the updated lexicographer files that
             // will contain data that has been merged in as well as new synsets.
@@ -231,6 +406,7 @@ public class CrownCreator {
                 // Generate the new lexicographer files and keep track of which
                 // annotations were actually included in creating the build.
                 LexicographerFileCreator lfc = new LexicographerFileCreator(dict);
+                lfc.setNumThreads(numThreads);
                 CrownLogger.info("Generating new CROWN lexicographer files");
                 List<AnnotatedLexicalEntry> successfulOperations =
                     lfc.integrate(curLexFileDir, updatedLexFileDir,
@@ -244,10 +420,12 @@ public class CrownCreator {
                 File operationsLog = new File(
                     workingDir, "operations-log." + iterNum + ".tsv");
                 logOperations(successfulOperations, operationsLog);
+                changedKeys = getChangedKeys(successfulOperations);
                 CrownLogger.info("Creating CROWN database");
                 grind.createDb(workingDir, updatedLexFileDir,
                                curDictDir, nextDictDir);
                 CrownLogger.info("Successfully created CROWN database");
+                checkpoint.saveBuilt(iterNum, changedKeys);
 
                 final Counter<String> successfulOpFreqs =
                     new ObjectCounter<String>();
@@ -284,14 +462,325 @@ public class CrownCreator {
             curLexFileDir = updatedLexFileDir;
 
         }
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the similarity function used to compare glosses, whose
+     * vocabulary covers the glosses of the entries and of the dictionary.
+     */
+    static SimilarityFunction createSimilarityFunction(
+            Collection<LexicalEntry> entries, IDictionary dict) {
+        // TODO: one day replace this with ADW when it proves fast enough, or at
+        // least test it out, whre possible
+        //
+        // TODO: let people specify the vector location
+        
+        //SimilarityFunction gst = new GreedyStringTiling(4);
+        //
+        // NOTE: prefer the memory-mapped version of the vectors if someone has
+        // converted them with MappedVectorStore, which loads instantly
+        File vectorsFile = new File("vectors/GoogleNews-vectors-negative300.vec");
+        if (!vectorsFile.exists())
+            vectorsFile = new File("vectors/GoogleNews-vectors-negative300.bin");
+
+        // InvFreqSimilarity gst = 
+        //     new InvFreqSimilarity(entries, dict);
+
+        return new Word2VecSimilarity(entries, dict, vectorsFile);
+    }
+
+    /**
+     * Returns the pipeline of procedures used to integrate entries, in order
+     * of their precision.
+     */
+    static BuildPipeline createPipeline(IDictionary dict,
+                                        SimilarityFunction gst) {
+        BuildPipeline pipeline = new BuildPipeline();
+                
+        pipeline.add(new WiktionaryAnnotationBasedExtractor(dict, gst));
+        pipeline.add(new RelationBasedIntegrator(dict, gst));
+        pipeline.add(new AntonymExtractor(dict, gst));
+        pipeline.add(new SynonymExtractor(dict, gst));
+        pipeline.add(new NearSynonymExtractor(dict, gst));
+        pipeline.add(new AdverbExtractor(dict, gst));
+        pipeline.add(new TaxonomicExtractor(dict, gst));
+        pipeline.add(new GroupExtractor(dict, gst));
+        pipeline.add(new PersonPatternExtractor(dict, gst));
+        pipeline.add(new ParseExtractor(dict, gst));
+        pipeline.add(new ConjunctionProcedure(dict, gst));
+        pipeline.add(new WikiMarkupExtractor(dict, gst));
+        pipeline.add(new VerbPatternExtractor(dict, gst));
+        pipeline.add(new NounPatternExtractor(dict, gst));
+        pipeline.add(new AdjectivePatternExtractor(dict, gst));
+        
+        
+        // For adding pointers
+        pipeline.add(new DomainLinkAugmenter(dict, gst));
+
+        // 
+        pipeline.setSimilarityFunction(gst);
+
+        pipeline.setOrdering(BuildPipeline.Ordering.valueOf(
+            System.getProperty(PROCEDURE_ORDER_PROPERTY, "precision")
+                .toUpperCase()));
+        return pipeline;
+    }
+
+    /**
+     * Opens the dictionary in the specified directory, using a fully-loaded
+     * {@link ca.mcgill.cs.crown.util.SnapshotDictionary} unless the {@value
+     * #CACHED_DICTIONARY_PROPERTY} property is set, in which case the
+     * file-backed cached dictionary is used instead.  The load time is logged
+     * so the two can be compared, along with the change in heap usage when
+     * logging at {@link Level#FINER}, since measuring it forces two full
+     * garbage collections.
+     */
+    private static IDictionary openDictionary(File dictDir) {
+        boolean useCached = Boolean.getBoolean(CACHED_DICTIONARY_PROPERTY);
+        boolean measureHeap = CrownLogger.isLoggable(Level.FINER);
+        Runtime rt = Runtime.getRuntime();
+        long heapBefore = 0;
+        if (measureHeap) {
+            System.gc();
+            heapBefore = rt.totalMemory() - rt.freeMemory();
+        }
+        long startTime = System.nanoTime();
+        IDictionary dict = (useCached)
+            ? WordNetUtils.open(dictDir)
+            : WordNetUtils.openSnapshot(dictDir);
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        String type = (useCached) ? "cached" : "snapshot";
+        if (measureHeap) {
+            System.gc();
+            long heapAfter = rt.totalMemory() - rt.freeMemory();
+            CrownLogger.veryVerbose(
+                "Opened %s dictionary from %s in %d ms (heap +%.1f MB)",
+                type, dictDir, elapsedMs,
+                (heapAfter - heapBefore) / (1024d * 1024d));
+        }
+        else {
+            CrownLogger.info("Opened %s dictionary from %s in %d ms",
+                             type, dictDir, elapsedMs);
+        }
+        return dict;
+    }
+
+    /**
+     * Logs how often each of the pipeline's procedures ran and succeeded and
+     * how long they took, and writes the same metrics as JSON to the provided
+     * file.
+     */
+    private static void logMetrics(BuildPipeline pipeline, int iterNum,
+                                   File metricsFile) {
+        List<ProcedureMetrics> metrics = pipeline.getMetrics();
+        CrownLogger.info("Procedure metrics for iteration %d:%n%s", iterNum,
+                         ProcedureMetrics.toTable(metrics));
+        try (PrintWriter pw = new PrintWriter(metricsFile)) {
+            pw.println(ProcedureMetrics.toJson(metrics).toString());
+        } catch (IOException ioe) {
+            throw new Error(ioe);
+        }
     }
 
+    /**
+     * Returns those entries whose recorded dependencies include any of the
+     * changed keys, or that have no recorded dependencies.
+     */
+    private static List<LexicalEntry> selectAffected(
+            Collection<LexicalEntry> entries,
+            Map<LexicalEntry,long[]> entryDependencies,
+            TLongSet changedKeys) {
+        List<LexicalEntry> affected = new ArrayList<LexicalEntry>();
+        for (LexicalEntry e : entries) {
+            long[] deps = entryDependencies.get(e);
+            if (deps == null
+                    || DependencyTrackingDictionary.isAffected(deps, changedKeys))
+                affected.add(e);
+        }
+        return affected;
+    }
+
+    /**
+     * Returns the dependency keys of everything changed by the integrated
+     * entries: the entries' own lemmas and the lemmas of every synset they
+     * were attached to or related with.
+     */
+    private static TLongSet getChangedKeys(
+            List<AnnotatedLexicalEntry> successfulOperations) {
+        TLongSet changed = new TLongHashSet();
+        for (AnnotatedLexicalEntry ale : successfulOperations) {
+            changed.add(DependencyTrackingDictionary.key(
+                            ale.getLemma(), ale.getPos()));
+            CoreMap operations = ale.getOperations();
+
+            for (Class<? extends CoreAnnotation<Duple<Reason,ISynset>>> op
+                     : CrownOperations.SINGLE_ARG_OPERATIONS) {
+                Duple<Reason,ISynset> dup = operations.get(op);
+                if (dup != null)
+                    DependencyTrackingDictionary.addKeys(dup.y, changed);
+            }
+
+            for (Class<? extends CoreAnnotation<Set<Duple<Reason,ISynset>>>> op
+                     : CrownOperations.SET_ARG_OPERATIONS) {
+                Set<Duple<Reason,ISynset>> ops = operations.get(op);
+                if (ops == null)
+                    continue;
+                for (Duple<Reason,ISynset> dup : ops)
+                    DependencyTrackingDictionary.addKeys(dup.y, changed);
+            }
+
+            Set<Duple<Reason,String>> lexs =
+                operations.get(CrownOperations.Lexicalization.class);
+            if (lexs != null) {
+                for (Duple<Reason,String> dup : lexs) {
+                    changed.add(DependencyTrackingDictionary.key(
+                                    dup.y, ale.getPos()));
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Integrates the entries in {@code toProcess} by dealing them out into
+     * one shard per worker, integrating each shard in an {@link
+     * IntegrationWorker} process that uses the dictionary in {@code dictDir},
+     * and merging the workers' results.  As with {@link #foobar}, the
+     * integrated entries are removed from {@code entries} and what the others
+     * looked up is recorded in {@code entryDependencies}.
+     *
+     * @param dict the dictionary in {@code dictDir}, which is used to resolve
+     *        the synsets in the workers' results
+     */
+    private List<AnnotatedLexicalEntry> integrateSharded(
+            Collection<LexicalEntry> entries,
+            Collection<LexicalEntry> toProcess,
+            IDictionary dict, File dictDir, File workingDir, int iterNum,
+            Map<LexicalEntry,long[]> entryDependencies) {
+
+        long startTime = System.nanoTime();
+
+        // Deal the entries out in turn, rather than in contiguous blocks, so
+        // that each shard gets a similar mix of cheap and expensive entries
+        List<List<LexicalEntry>> shards = new ArrayList<List<LexicalEntry>>();
+        for (int k = 0; k < numWorkers; ++k)
+            shards.add(new ArrayList<LexicalEntry>());
+        int n = 0;
+        for (LexicalEntry e : toProcess)
+            shards.get(n++ % numWorkers).add(e);
+
+        File shardsDir = new File(workingDir, "shards-iter-" + iterNum);
+        List<File> shardDirs = new ArrayList<File>();
+        WiktionaryReader wiktReader = new WiktionaryReader();
+        for (int k = 0; k < numWorkers; ++k) {
+            File shardDir = new File(shardsDir, "shard-" + k);
+            shardDir.mkdirs();
+            wiktReader.saveAsBinary(shards.get(k),
+                                    IntegrationWorker.entriesFile(shardDir));
+            shardDirs.add(shardDir);
+        }
+
+        // Let the workers reuse every gloss this process has parsed
+        GlossAnnotationCache.get().flush();
+
+        int threadsPerWorker = Math.max(1, numThreads / numWorkers);
+        CrownLogger.info("Integrating %d entries in %d workers with %d " +
+                         "threads each", toProcess.size(), numWorkers,
+                         threadsPerWorker);
+        List<Process> workers = new ArrayList<Process>();
+        try {
+            for (File shardDir : shardDirs) {
+                workers.add(IntegrationWorker.start(
+                    dictDir, shardDir, iterNum, threadsPerWorker, numWorkers));
+            }
+            for (int k = 0; k < workers.size(); ++k) {
+                int status = workers.get(k).waitFor();
+                if (status != 0) {
+                    throw new Error("Integration worker for shard " + k +
+                                    " failed with exit status " + status);
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new Error(e);
+        } finally {
+            for (Process p : workers)
+                p.destroy();
+        }
+
+        List<AnnotatedLexicalEntry> toIntegrate =
+            new ArrayList<AnnotatedLexicalEntry>();
+        Set<LexicalEntry> integrated = new HashSet<LexicalEntry>();
+        for (int k = 0; k < numWorkers; ++k) {
+            // Loading the shard's checkpoint leaves only the shard's remaining
+            // entries in the list and only their dependencies in the map
+            List<LexicalEntry> remaining =
+                new ArrayList<LexicalEntry>(shards.get(k));
+            Map<LexicalEntry,long[]> shardDependencies =
+                new HashMap<LexicalEntry,long[]>();
+            toIntegrate.addAll(new BuildCheckpoint(shardDirs.get(k))
+                .loadIntegrated(iterNum, dict, remaining, shardDependencies));
+            integrated.addAll(shards.get(k));
+            integrated.removeAll(remaining);
+            entryDependencies.putAll(shardDependencies);
+        }
+        entries.removeIf(integrated::contains);
+        entryDependencies.keySet().removeAll(integrated);
+
+        CrownLogger.info("Integrated %d entries in %d shards in %.1f seconds, " +
+                         "attaching %d tentatively", toProcess.size(),
+                         numWorkers, (System.nanoTime() - startTime) / 1e9,
+                         toIntegrate.size());
+        return toIntegrate;
+    }
+
+    /**
+     * Integrates the entries of one shard written by {@link #integrateSharded}
+     * using the dictionary in {@code dictDir}, and records the result as a
+     * {@link BuildCheckpoint} in the shard's directory.  This is run by an
+     * {@link IntegrationWorker}.
+     */
+    void integrateShard(File dictDir, File shardDir, int iterNum) {
+        List<LexicalEntry> entries = new WiktionaryReader()
+            .loadFromBinary(IntegrationWorker.entriesFile(shardDir));
+        CrownLogger.info("Integrating shard %s with %d entries",
+                         shardDir, entries.size());
+
+        IDictionary dict = openDictionary(dictDir);
+        SimilarityFunction gst = createSimilarityFunction(entries, dict);
+        if (gst instanceof Word2VecSimilarity)
+            ((Word2VecSimilarity)gst).precompute(dict);
+        BuildPipeline pipeline = createPipeline(dict, gst);
+        pipeline.setDictionary(new DependencyTrackingDictionary(dict));
+
+        Map<LexicalEntry,long[]> entryDependencies =
+            new ConcurrentHashMap<LexicalEntry,long[]>();
+        IntegrationExecutor executor = new IntegrationExecutor(numThreads);
+        List<AnnotatedLexicalEntry> toIntegrate =
+            foobar(entries, entries, pipeline, entryDependencies, executor);
+        executor.shutdown();
+        logMetrics(pipeline, iterNum, new File(
+            shardDir, "procedure-metrics." + iterNum + ".json"));
+
+        new BuildCheckpoint(shardDir).saveIntegrated(
+            iterNum, toIntegrate, entries, entryDependencies);
+        dict.close();
+    }
+
+    /**
+     * Tries to integrate each of the entries in {@code toProcess}, removing
+     * from {@code entries} those that were integrated and recording in {@code
+     * entryDependencies} what the others looked up.
+     */
     private List<AnnotatedLexicalEntry>
         foobar(Collection<LexicalEntry> entries,
-               BuildPipeline pipeline) {
+               Collection<LexicalEntry> toProcess,
+               BuildPipeline pipeline,
+               Map<LexicalEntry,long[]> entryDependencies,
+               IntegrationExecutor executor) {
         
-        final AtomicInteger numEntriesProcessed = new AtomicInteger(0);
-        final AtomicInteger numEntriesAttached = new AtomicInteger(0);
+        final LongAdder numEntriesAttached = new LongAdder();
+        final LongAdder numEntriesUnrouted = new LongAdder();
 
         final Counter<String> operationFreqs =
             new ObjectCounter<String>();
@@ -299,14 +788,30 @@ public class CrownCreator {
         final ConcurrentMap<LexicalEntry,AnnotatedLexicalEntry> entryToIntegration
             = new ConcurrentHashMap<LexicalEntry,AnnotatedLexicalEntry>();
         
-        entries.parallelStream().forEach(
+        long startTime = System.nanoTime();
+        executor.forEach(toProcess,
             e -> tryIntegrate(e, pipeline, entryToIntegration, operationFreqs,
-                              numEntriesAttached, numEntriesProcessed));
+                              numEntriesAttached, numEntriesUnrouted,
+                              entryDependencies),
+            () -> logProgress(numEntriesAttached, numEntriesUnrouted,
+                              operationFreqs));
+        double elapsedSec = (System.nanoTime() - startTime) / 1e9;
+        int numEntriesProcessed = toProcess.size();
 
         CrownLogger.verbose("Finished processing %d entries, " +
-                            "attached %d tentatively",
-                            numEntriesProcessed.get(),
-                            numEntriesAttached.get());        
+                            "attached %d tentatively, %d had no " +
+                            "applicable procedure",
+                            numEntriesProcessed,
+                            numEntriesAttached.sum(),
+                            numEntriesUnrouted.sum());        
+
+        // Report throughput so that scaling across core counts (and with
+        // WordNetUtils.SERIALIZE_PROPERTY on or off) can be compared
+        CrownLogger.info("Processed %d entries in %.1f seconds " +
+                         "(%.1f entries/sec, %d threads)",
+                         numEntriesProcessed, elapsedSec,
+                         numEntriesProcessed / Math.max(elapsedSec, 1e-9),
+                         executor.getNumThreads());
         
         List<AnnotatedLexicalEntry> toIntegrate =
             new ArrayList<AnnotatedLexicalEntry>(entryToIntegration.values());
@@ -316,8 +821,10 @@ public class CrownCreator {
         Iterator<LexicalEntry> iter = entries.iterator();
         while (iter.hasNext()) {
             LexicalEntry e = iter.next();
-            if (entryToIntegration.containsKey(e))
+            if (entryToIntegration.containsKey(e)) {
                 iter.remove();
+                entryDependencies.remove(e);
+            }
         }
 
         return toIntegrate;
@@ -328,8 +835,24 @@ public class CrownCreator {
                               ConcurrentMap<LexicalEntry,AnnotatedLexicalEntry>
                                   entryToIntegration,
                               Counter<String> operationFreqs,
-                              AtomicInteger numEntriesAttached,
-                              AtomicInteger numEntriesProcessed) {
+                              LongAdder numEntriesAttached,
+                              LongAdder numEntriesUnrouted,
+                              Map<LexicalEntry,long[]> entryDependencies) {
+
+        // Record everything this entry looks up so that the next iteration can
+        // skip it if none of those lookups would give a different result
+        DependencyTrackingDictionary.startTracking();
+        AnnotatedLexicalEntry ale = null;
+
+        // Find which procedures could act on this entry at all.  If none can,
+        // skip the similarity check below, whose dictionary lookups and gloss
+        // comparisons are far more expensive than the routing.  Such an entry
+        // records no dependencies, since no change to the dictionary could
+        // let it be integrated.
+        List<EnrichmentProcedure> route = pipeline.route(entry);
+        boolean isRoutable = !route.isEmpty();
+        if (!isRoutable)
+            numEntriesUnrouted.increment();
 
         // Sanity check here that we're not going to be integrating an existing
         // sense.  This method performs a gloss similarity comparison and tests
@@ -337,48 +860,57 @@ public class CrownCreator {
         // enough to weed out many of the false-positive new sense integrations
         // without adversely impacting the senses we can still learn (i.e.,
         // favors higher recall in terms of how many sense are integrated).
-        if (!isTooSimilarToExistingDefinitions(
+        if (isRoutable && !isTooSimilarToExistingDefinitions(
                 pipeline.getDictionary(), pipeline.getSimilarityFunction(),
                 entry)) {
 
             //System.out.printf("Trying to integrate with %s%n", Thread.currentThread());
-            AnnotatedLexicalEntry ale = pipeline.integrate(entry);
+            ale = pipeline.integrate(entry, route);
             if (ale != null) {
                 entryToIntegration.put(entry, ale);
-                numEntriesAttached.incrementAndGet();
+                numEntriesAttached.increment();
                 incrementOperationFreq(operationFreqs, ale);
                 // System.out.printf("%s ==> %s%n", entry, ale);
             }
         }
+        long[] dependencies = DependencyTrackingDictionary.stopTracking();
+        if (ale == null)
+            entryDependencies.put(entry, dependencies);
+    }
 
-        if (numEntriesProcessed.incrementAndGet() % 10_000 == 0) {
-            CrownLogger.verbose("Processed %d entries, " +
-                              "attached %d tentatively",
-                              numEntriesProcessed.get(),
-                              numEntriesAttached.get());
-            // If we're reporting a lot of stats, dump a list of the
-            // current attachment causes
-            if (CrownLogger.isLoggable(Level.FINE)) {
-                synchronized(operationFreqs) {
-                    List<String> causesByFreq =
-                        new ArrayList<String>(operationFreqs.items());
-                    Collections.sort(causesByFreq, new Comparator<String>(){
-                        public int compare(String s1, String s2) {
-                            return operationFreqs.getCount(s2) -
-                                operationFreqs.getCount(s1);
-                        }
-                    });
-                
-                    StringBuilder sb = new StringBuilder(
-                        "Integration operations by frequency");
-                    for (String cause : causesByFreq) {
-                        sb.append('\n').append(cause).append(":\t")
-                            .append(operationFreqs.getCount(cause));
+    /**
+     * Reports the integration counters while entries are being processed,
+     * which is called periodically by the {@link IntegrationExecutor}.
+     */
+    private static void logProgress(LongAdder numEntriesAttached,
+                                    LongAdder numEntriesUnrouted,
+                                    Counter<String> operationFreqs) {
+        CrownLogger.verbose("Attached %d entries tentatively, " +
+                            "%d had no applicable procedure",
+                            numEntriesAttached.sum(),
+                            numEntriesUnrouted.sum());
+        // If we're reporting a lot of stats, dump a list of the
+        // current attachment causes
+        if (CrownLogger.isLoggable(Level.FINE)) {
+            synchronized(operationFreqs) {
+                List<String> causesByFreq =
+                    new ArrayList<String>(operationFreqs.items());
+                Collections.sort(causesByFreq, new Comparator<String>(){
+                    public int compare(String s1, String s2) {
+                        return operationFreqs.getCount(s2) -
+                            operationFreqs.getCount(s1);
                     }
-                    CrownLogger.verbose(sb.toString());
+                });
+
+                StringBuilder sb = new StringBuilder(
+                    "Integration operations by frequency");
+                for (String cause : causesByFreq) {
+                    sb.append('\n').append(cause).append(":\t")
+                        .append(operationFreqs.getCount(cause));
                 }
+                CrownLogger.verbose(sb.toString());
             }
-        }        
+        }
     }
 
     /**
@@ -389,7 +921,7 @@ public class CrownCreator {
                                                       LexicalEntry e) {
         POS pos = e.getPos();
         String lemma = e.getLemma();
-        String entGloss = e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String entGloss = e.getGloss();
         
         for (ISynset syn : WordNetUtils.getSynsets(dict, lemma, pos)) {
             String wnGloss =
@@ -494,7 +1026,7 @@ public class CrownCreator {
         int i = opStr.indexOf('$');
         if (i > 0)
             opStr = opStr.substring(i+1).trim();
-        String aleGloss = ale.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String aleGloss = ale.getGloss();
         
         ISynset arg = argDetails.y;
         String argId = (arg == null)
@@ -552,12 +1084,31 @@ public class CrownCreator {
 
             int numIterations = (opts.hasOption('i'))
                 ? opts.getIntOption('i') : DEFAULT_NUM_ITERATIONS;
+            boolean resume = opts.hasOption('R');
+            int numThreads = (opts.hasOption('t'))
+                ? opts.getIntOption('t')
+                : Runtime.getRuntime().availableProcessors();
+            if (numThreads < 1) {
+                System.out.println("Must use at least one thread");
+                System.exit(1);
+            }
+            int numWorkers = (opts.hasOption('W'))
+                ? opts.getIntOption('W') : 0;
+            if (numWorkers < 0) {
+                System.out.println("Cannot use a negative number of workers");
+                System.exit(1);
+            }
+            if (resume && !opts.hasOption('T')) {
+                System.out.println("Resuming requires specifying the " +
+                                   "working directory of the earlier build");
+                System.exit(1);
+            }
             File tmpDir = null;
             if (opts.hasOption('T')) {
                 tmpDir = new File(opts.getStringOption('T'));
                 if (!tmpDir.exists())
                     tmpDir.mkdir();
-                else {
+                else if (!resume) {
                     // Clean up any files that were there before.
                     deleteContents(tmpDir);
                 }
@@ -587,13 +1138,19 @@ public class CrownCreator {
                 ? new File(opts.getStringOption('u')) : null;
             File preprocessedWiktFile = (opts.hasOption('p'))
                 ? new File(opts.getStringOption('p')) : null;
+            File binaryWiktFile = (opts.hasOption('b'))
+                ? new File(opts.getStringOption('b')) : null;
 
             WiktionaryReader wiktReader = new WiktionaryReader();
             List<LexicalEntry> entries = null;
+            long loadStartTime = System.nanoTime();
             
             // Try working from the fastest-to-read input form first, creating
             // cached copies of the processed output where necessary.
-            if (preprocessedWiktFile != null) {
+            if (binaryWiktFile != null) {
+                entries = wiktReader.loadFromBinary(binaryWiktFile);
+            }
+            else if (preprocessedWiktFile != null) {
                 entries = wiktReader.loadFromPreprocessed(preprocessedWiktFile);
             }
             else if (ukpWiktDir != null) {
@@ -616,9 +1173,20 @@ public class CrownCreator {
                                    "one of [TODO]");
                 System.exit(1);
             }
+            CrownLogger.info("Loaded %d Wiktionary entries in %.1f seconds",
+                             entries.size(),
+                             (System.nanoTime() - loadStartTime) / 1e9);
+
+            if (opts.hasOption('B')) {
+                wiktReader.saveAsBinary(
+                    entries, new File(opts.getStringOption('B')));
+            }
             
             CrownCreator crownCreator =
                 new CrownCreator(wordNetDictDir, wordNetLexFileDir);
+            crownCreator.setResume(resume);
+            crownCreator.setNumThreads(numThreads);
+            crownCreator.setNumWorkers(numWorkers);
             crownCreator.build(entries, numIterations, baseOutputDir, tmpDir);
         }
         catch (Throwable t) {
@@ -654,6 +1222,10 @@ public class CrownCreator {
                           "the JSON file containing a preprocessed " +
                           "Wiktionary data (from jwktl)",
                           true, "FILE", "Wiktionary Input Options");
+        options.addOption('b', "binary-wiktionary", 
+                          "the binary file containing preprocessed " +
+                          "Wiktionary data (the fastest input to load)",
+                          true, "FILE", "Wiktionary Input Options");
 
         // Allows for caching the output into files
         options.addOption('U', "save-ukp-wiktionary-dir",
@@ -664,6 +1236,10 @@ public class CrownCreator {
                           "the JSON file into which will be written the " +
                           "preprocessed Wiktionary data (from jwktl)",
                           true, "FILE", "Wiktionary Cached Input Options");
+        options.addOption('B', "save-binary-wiktionary", 
+                          "the binary file into which will be written the " +
+                          "preprocessed Wiktionary data",
+                          true, "FILE", "Wiktionary Cached Input Options");
 
         // Various programmatic options
         options.addOption('i', "num-iterations", 
@@ -671,6 +1247,19 @@ public class CrownCreator {
                           "should be processed to allow for recursive " +
                           "linking (default: 3)",
                           true, "INT", "CROWN Options");
+        options.addOption('t', "threads", 
+                          "The number of threads used to integrate " +
+                          "entries (default: the number of processors)",
+                          true, "INT", "CROWN Options");
+        options.addOption('W', "workers", 
+                          "The number of worker JVMs on this machine among " +
+                          "which the entries are sharded, each using an " +
+                          "equal share of the threads and of this JVM's " +
+                          "maximum heap, unless the " +
+                          WORKER_JVM_OPTIONS_PROPERTY + " property gives " +
+                          "the workers' JVM options (default: 0, which " +
+                          "integrates all entries in this JVM)",
+                          true, "INT", "CROWN Options");
 
         options.addOption('v', "verbose", "prints verbose output",
                           false, null, "CROWN Options");
@@ -684,6 +1273,11 @@ public class CrownCreator {
                           "the directory where all temporary build data will " +
                           "be written, which can be useful for debugging",
                           true, "DIR", "CROWN Misc. Options"); 
+        options.addOption('R', "resume", 
+                          "resumes an interrupted build from the last " +
+                          "completed stage recorded in its working " +
+                          "directory (requires -T)",
+                          false, null, "CROWN Misc. Options");
 
         return options;
     }
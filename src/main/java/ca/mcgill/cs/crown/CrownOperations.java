@@ -9,6 +9,9 @@ package ca.mcgill.cs.crown;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -141,20 +144,81 @@ public final class CrownOperations {
      * which the operation originated, which has to be specified in the
      * constructor.  Typically, the contents of this class will simply be
      * serialized as JSON and included in the logging.
+     *
+     * <p> A reason is created for every operation, so the properties nearly
+     * every procedure records, the {@value #HEURISTIC} and the {@value
+     * #SCORE}, are kept in fields, and any others are kept in a map that is
+     * only created once one is set.  The JSON is only built when requested by
+     * {@link #toJson()}.
      */
     public static class Reason {
-        
+
+        /**
+         * The property naming the heuristic that produced the operation
+         */
+        public static final String HEURISTIC = "heuristic";
+
+        /**
+         * The property recording the similarity score of the chosen synset
+         */
+        public static final String SCORE = "max_score";
+
+        private static final String ORIGIN = "origin";
+
         private final Class<?> origin;
 
-        private final JSONObject props;
+        private String heuristic;
+
+        /**
+         * The score, or {@code NaN} if none has been set
+         */
+        private double score;
+
+        /**
+         * All other properties, in the order they were set, which are either
+         * {@code String}, {@code Integer}, {@code Double} or {@code
+         * List<String>} values.  This is {@code null} until a property is set.
+         */
+        private Map<String,Object> properties;
 
         public Reason(Class<?> origin) {
             this.origin = origin;
-            props = new JSONObject();
+            this.heuristic = null;
+            this.score = Double.NaN;
+            this.properties = null;
+        }
+
+        /**
+         * Recreates a reason from the JSON returned by {@link #toJson()}.
+         */
+        public static Reason fromJson(JSONObject json) {
             try {
-                props.put("origin", origin.getName());
-            } catch (JSONException je) {
-                // ignore all this 
+                Reason r = new Reason(Class.forName(json.getString(ORIGIN)));
+                Iterator<?> keys = json.keys();
+                while (keys.hasNext()) {
+                    String key = (String)keys.next();
+                    if (key.equals(ORIGIN))
+                        continue;
+                    Object value = json.get(key);
+                    if (value instanceof JSONArray) {
+                        JSONArray arr = (JSONArray)value;
+                        List<String> values =
+                            new ArrayList<String>(arr.length());
+                        for (int i = 0; i < arr.length(); ++i)
+                            values.add(arr.getString(i));
+                        value = values;
+                    }
+                    else if (value instanceof Number
+                             && !(value instanceof Integer))
+                        value = ((Number)value).doubleValue();
+                    else if (!(value instanceof Integer))
+                        value = String.valueOf(value);
+                    r.setProperty(key, value);
+                }
+                return r;
+            } catch (ClassNotFoundException | JSONException e) {
+                throw new IllegalArgumentException(
+                    "Not a valid reason: " + json, e);
             }
         }
 
@@ -162,28 +226,48 @@ public final class CrownOperations {
             return origin;
         }
 
+        /**
+         * Returns the heuristic that produced the operation, or {@code null}
+         * if none was set.
+         */
+        public String getHeuristic() {
+            return heuristic;
+        }
+
+        /**
+         * Returns the similarity score of the chosen synset, or {@code NaN} if
+         * none was set.
+         */
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Returns the properties other than the origin, heuristic and score,
+         * in the order in which they were set.
+         */
+        public Map<String,Object> getProperties() {
+            return (properties == null)
+                ? Collections.<String,Object>emptyMap()
+                : Collections.unmodifiableMap(properties);
+        }
+
         public void set(String property, String value) {
-            try {
-                props.put(property, value);
-            } catch (JSONException je) {
-                // ignore all this 
-            }
+            if (property.equals(HEURISTIC))
+                heuristic = value;
+            else
+                setProperty(property, value);
         }
 
         public void set(String property, int value) {
-            try {
-                props.put(property, value);
-            } catch (JSONException je) {
-                // ignore all this 
-            }
+            setProperty(property, value);
         }
 
         public void set(String property, double value) {
-            try {
-                props.put(property, value);
-            } catch (JSONException je) {
-                // ignore all this 
-            }
+            if (property.equals(SCORE))
+                score = value;
+            else
+                setProperty(property, value);
         }
 
         /**
@@ -192,23 +276,62 @@ public final class CrownOperations {
          * {@code String} instances and added as an array
          */
         public void set(String property, Collection<?> values) {
+            List<String> strs = new ArrayList<String>(values.size());
+            for (Object o : values) {
+                strs.add(String.valueOf(o));
+            }
+            setProperty(property, strs);
+        }
+
+        /**
+         * Sets a property that is not kept in a field, whose value must be
+         * one of the types listed for {@link #properties}.
+         */
+        void setProperty(String property, Object value) {
+            if (property.equals(HEURISTIC))
+                heuristic = (String)value;
+            else if (property.equals(SCORE))
+                score = ((Number)value).doubleValue();
+            else {
+                if (properties == null)
+                    properties = new LinkedHashMap<String,Object>(4);
+                properties.put(property, value);
+            }
+        }
+
+        /**
+         * Returns a new JSON object containing the origin and all the
+         * properties.  Non-finite scores, which JSON cannot represent, are
+         * omitted.
+         */
+        public JSONObject toJson() {
+            JSONObject json = new JSONObject();
             try {
-                JSONArray arr = new JSONArray();
-                for (Object o : values) {
-                    arr.put(String.valueOf(o));
+                json.put(ORIGIN, origin.getName());
+                if (heuristic != null)
+                    json.put(HEURISTIC, heuristic);
+                if (!Double.isNaN(score) && !Double.isInfinite(score))
+                    json.put(SCORE, score);
+                if (properties != null) {
+                    for (Map.Entry<String,Object> e : properties.entrySet()) {
+                        Object value = e.getValue();
+                        if (value instanceof List)
+                            value = new JSONArray((List<?>)value);
+                        else if (value instanceof Double
+                                 && (((Double)value).isNaN()
+                                     || ((Double)value).isInfinite()))
+                            continue;
+                        json.put(e.getKey(), value);
+                    }
                 }
-                props.put(property, arr);
             } catch (JSONException je) {
                 // ignore all this 
             }
-        }
-
-        public JSONObject toJson() {
-            return props;
+            return json;
         }
 
         public String toString() {
-            return "Reason:" + props.toString();
+            return "Reason:" + toJson().toString();
         }
     }
 } 
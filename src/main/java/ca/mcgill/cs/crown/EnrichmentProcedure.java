@@ -7,7 +7,11 @@
 
 package ca.mcgill.cs.crown;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import edu.mit.jwi.IDictionary;
+import edu.mit.jwi.item.POS;
 
 public interface EnrichmentProcedure {
 
@@ -25,4 +29,27 @@ public interface EnrichmentProcedure {
      * attach new entries.
      */
     void setDictionary(IDictionary dictionary);
+
+    /**
+     * Returns the parts of speech of the entries this procedure is able to
+     * integrate.  A {@link BuildPipeline} never invokes a procedure on an
+     * entry with any other part of speech, so a procedure must return {@code
+     * null} for every such entry.  By default, all parts of speech are
+     * handled.
+     */
+    default Set<POS> getHandledPos() {
+        return EnumSet.allOf(POS.class);
+    }
+
+    /**
+     * Returns {@code false} if this procedure cannot integrate an entry with
+     * the provided features, whatever the contents of the dictionary, in which
+     * case a {@link BuildPipeline} will not invoke the procedure on the entry.
+     * This is meant to be a cheap, conservative check: returning {@code true}
+     * for an entry that the procedure will not integrate costs only the time
+     * needed to find that out.  By default, every entry is applicable.
+     */
+    default boolean isApplicable(EntryFeatures features) {
+        return true;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.item.POS;
+
+
+/**
+ * The cheap-to-compute surface features of a {@link LexicalEntry} that {@link
+ * EnrichmentProcedure}s use to decide whether they could possibly integrate
+ * it, without consulting the dictionary.  The features are computed once per
+ * entry by the {@link BuildPipeline} and shared by all of its procedures.
+ */
+public class EntryFeatures {
+
+    private final LexicalEntry entry;
+
+    /**
+     * Whether any raw gloss contains a {@code [[wiki link]]}
+     */
+    private final boolean hasLinks;
+
+    /**
+     * Whether any raw gloss begins with a {@code {{annotation}}}
+     */
+    private final boolean hasAnnotations;
+
+    /**
+     * Whether any semicolon-separated part of a cleaned gloss has at most two
+     * tokens
+     */
+    private final boolean hasShortSubdefinition;
+
+    /**
+     * The number of the entry's relations of each {@link
+     * Relation.RelationType}, indexed by ordinal
+     */
+    private final int[] relationCounts;
+
+    private final int numRawGlosses;
+
+    public EntryFeatures(LexicalEntry entry) {
+        this.entry = entry;
+        Map<String,String> rawGlosses = entry.getRawGlosses();
+        boolean links = false, annots = false;
+        if (rawGlosses != null) {
+            for (String rawGloss : rawGlosses.keySet()) {
+                links |= rawGloss.contains("[[");
+                annots |= rawGloss.startsWith("{{");
+            }
+        }
+        hasLinks = links;
+        hasAnnotations = annots;
+        numRawGlosses = (rawGlosses == null) ? 0 : rawGlosses.size();
+
+        boolean shortSubdef = false;
+        Set<String> glosses = entry.getGlosses();
+        if (glosses != null) {
+            outer:
+            for (String gloss : glosses) {
+                for (String subdef : gloss.split(";")) {
+                    if (subdef.trim().split("\\s+").length <= 2) {
+                        shortSubdef = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        hasShortSubdefinition = shortSubdef;
+
+        relationCounts = new int[Relation.RelationType.values().length];
+        List<Relation> relations = entry.getRelations();
+        if (relations != null) {
+            for (Relation r : relations)
+                relationCounts[r.getType().ordinal()]++;
+        }
+    }
+
+    public LexicalEntry getEntry() {
+        return entry;
+    }
+
+    public POS getPos() {
+        return entry.getPos();
+    }
+
+    public boolean hasLinks() {
+        return hasLinks;
+    }
+
+    public boolean hasAnnotations() {
+        return hasAnnotations;
+    }
+
+    public boolean hasShortSubdefinition() {
+        return hasShortSubdefinition;
+    }
+
+    public boolean hasRawGlosses() {
+        return numRawGlosses > 0;
+    }
+
+    public int getRelationCount(Relation.RelationType type) {
+        return relationCounts[type.ordinal()];
+    }
+}
@@ -8,21 +8,30 @@
 package ca.mcgill.cs.crown;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import edu.ucla.sspace.util.LineReader;
 
-import com.google.common.io.Files;
+import ca.mcgill.cs.crown.util.CrownLogger;
 
 
 /**
@@ -31,9 +40,109 @@ import com.google.common.io.Files;
  */
 public class Grind {
 
+    /**
+     * The file in each generated dictionary directory that records the hash of
+     * every grind input the database was generated from
+     */
+    static final String INPUT_HASHES_FILE = "lexfile-hashes.tsv";
+
+    private boolean incremental = true;
+
+    private boolean inProcess = false;
+
+    /**
+     * Sets whether the database of the current dictionary is reused, rather
+     * than generated again by grind, when none of grind's inputs have changed
+     * since it was generated.  This is the default.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets whether the database is generated by {@link LexFileCompiler}
+     * rather than by running grind, which is the default.
+     */
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
     public void createDb(File workingDir, File lexFileDir,
                          File curDictDir, File newDictDir) throws IOException {
 
+        // Create the new lexnames file, which is a mapping between file offset
+        // and the lexicography file name.  The in-process compiler numbers
+        // the files from it.
+        createLexnames(curDictDir, newDictDir, lexFileDir);
+
+        Map<String,String> inputHashes = hashInputs(lexFileDir);
+        if (incremental && inputHashes.equals(loadInputHashes(curDictDir))) {
+            // Grind would produce exactly the same database, so link to the
+            // current one instead.  The files are never modified in place, so
+            // the dictionaries can safely share them.
+            CrownLogger.info("No lexicographer files have changed since %s " +
+                             "was generated; reusing its database", curDictDir);
+            for (File f : curDictDir.listFiles()) {
+                if (isDatabaseFile(f.getName()))
+                    link(f, new File(newDictDir, f.getName()));
+            }
+        }
+        else if (inProcess) {
+            new LexFileCompiler().compile(
+                lexFileDir, lexFileNames(lexFileDir),
+                LexFileCompiler.loadLexnames(new File(newDictDir, "lexnames")),
+                curDictDir, newDictDir);
+        }
+        else {
+            runGrind(workingDir, lexFileDir);
+
+            // Copy grind's output to the directory that will contain the
+            // data used by CROWN (a paralle of WN's dict/ directory)
+            for (File f : lexFileDir.listFiles()) {
+                if (isDatabaseFile(f.getName()))
+                    copy(f, new File(newDictDir, f.getName()));
+            }
+        }
+        saveInputHashes(newDictDir, inputHashes);
+
+        // Copy over the verb sentence indices.  We don't actually modify
+        // these (though we could) and for verb frames, list a default
+        // frame, which is likely incorrect for a minority of verbs.
+        copy(new File(curDictDir, "sents.vrb"),
+             new File(newDictDir, "sents.vrb"));
+        copy(new File(curDictDir, "sentidx.vrb"),
+             new File(newDictDir, "sentidx.vrb"));
+    }
+
+    /**
+     * Returns {@code true} if the file is one of the database files that grind
+     * generates.
+     */
+    static boolean isDatabaseFile(String name) {
+        return name.startsWith("data.") || name.startsWith("index.");
+    }
+
+    /**
+     * Returns the names of the lexicographer files in the directory, in the
+     * order in which they are given to grind.
+     */
+    static List<String> lexFileNames(File lexFileDir) {
+        List<String> names = new ArrayList<String>();
+        for (String file : lexFileDir.list()) {
+            if (file.startsWith("noun.") || file.startsWith("adj.")
+                || file.startsWith("adv.") || file.startsWith("verb.")) {
+                names.add(file);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Runs grind on the lexicographer files in the directory, which leaves the
+     * database files it generates in the same directory.
+     */
+    void runGrind(File workingDir, File lexFileDir) throws IOException {
+
         File grindLogFile = new File(workingDir, "grind-log.log");
 
         List<String> grindCmdTokens = new ArrayList<String>(
@@ -43,85 +152,121 @@ public class Grind {
                 }));
 
         // We then need to specify which files grind will process
-        for (String file : lexFileDir.list()) {
-            if (file.startsWith("noun.") || file.startsWith("adj.")
-                || file.startsWith("adv.") || file.startsWith("verb.")) {
-                grindCmdTokens.add(file);
-            }
-        }
+        grindCmdTokens.addAll(lexFileNames(lexFileDir));
 
         ProcessBuilder grindProcessBuilder = new ProcessBuilder(grindCmdTokens);
         grindProcessBuilder.directory(lexFileDir);
+        // Interleave grind's errors with its output so that both can be read
+        // to the end on this thread.  Once the stream is exhausted, every line
+        // has been seen, so there is no need to wait on reader threads.
+        grindProcessBuilder.redirectErrorStream(true);
             
         Process grindProcess = grindProcessBuilder.start();
-        
-        StreamConsumer outSc =
-            new StreamConsumer(grindProcess.getInputStream());
-        Thread outThread = new Thread(outSc);
-        StreamConsumer errSc =
-            new StreamConsumer(grindProcess.getErrorStream());
-        Thread errThread = new Thread(errSc);
-        
-        outThread.setDaemon(true);
-        errThread.setDaemon(true);
-        outThread.start();
-        errThread.start();
+
+        String errorLine = null;
+        try (BufferedReader br = new BufferedReader(
+                 new InputStreamReader(grindProcess.getInputStream()))) {
+            for (String line; (line = br.readLine()) != null; ) {
+                if (line.contains("no database generated")
+                        || line.contains("sanity error")) {
+                    errorLine = line;
+                }
+                if (!line.contains("Duplicate pointer"))
+                    System.out.println(line);
+            }
+        }
         
         try {
             grindProcess.waitFor();
-
-            // This is an unfortunate sleep to avoid some race condition with
-            // the StreamConsumer where it's add lines to the output lists as we
-            // try to read them.
-            Thread.sleep(1000);
-            
         } catch (InterruptedException ie) {
             throw new IllegalStateException(ie);
         }
         
-        String errorLine = null;
-        for (String line : outSc.lines) {
-            if (line.contains("no database generated")
-                    || line.contains("sanity error")) {
-                errorLine = line;
-            }
-            if (!line.contains("Duplicate pointer"))
-                System.out.println(line);
-        }
-        for (String line : errSc.lines) {
-            if (line.contains("no database generated")
-                    || line.contains("sanity error")) {
-                errorLine = line;
-            }
-            if (!line.contains("Duplicate pointer"))                
-                System.out.println(line);
-        }
-        
         // Check that grind didn't break on the input; otherwise it won't
         // generate the db files and any subsequent processing will
         // eventually break too.
         if (errorLine != null)
             throw new IllegalStateException("Grind errors; aborting: " + errorLine);
-        
-        // Copy grind's output to the directory that will contain the
-        // data used by CROWN (a paralle of WN's dict/ directory)
+    }
+
+    /**
+     * Returns the hash of every file in the directory that grind reads: the
+     * lexicographer files and the supporting files, such as the sense counts.
+     */
+    static Map<String,String> hashInputs(File lexFileDir) throws IOException {
+        Map<String,String> hashes = new TreeMap<String,String>();
         for (File f : lexFileDir.listFiles()) {
-            String name = f.getName();
-            if (name.startsWith("data.") || name.startsWith("index."))
-                Files.copy(f, new File(newDictDir, name));                
+            if (f.isFile() && !isDatabaseFile(f.getName()))
+                hashes.put(f.getName(), hash(f));
         }
+        return hashes;
+    }
 
-        // Create the new lexnames file, which is a mapping between file offset
-        // and the lexicography file name.
-        createLexnames(curDictDir, newDictDir, lexFileDir);
-        
-        // Copy over the verb sentence indices.  We don't actually modify
-        // these (though we could) and for verb frames, list a default
-        // frame, which is likely incorrect for a minority of verbs.
-        Files.copy(new File(curDictDir, "sents.vrb"),
-                   new File(newDictDir, "sents.vrb"));
-        Files.copy(new File(curDictDir, "sentidx.vrb"),
-                   new File(newDictDir, "sentidx.vrb"));
+    private static String hash(File f) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+        try (InputStream in = new FileInputStream(f)) {
+            byte[] buf = new byte[1 << 16];
+            for (int n; (n = in.read(buf)) > 0; )
+                digest.update(buf, 0, n);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest())
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * Returns the hashes of the inputs the dictionary's database was generated
+     * from, or {@code null} if they were not recorded, e.g., for WordNet
+     * itself.
+     */
+    static Map<String,String> loadInputHashes(File dictDir) {
+        File hashesFile = new File(dictDir, INPUT_HASHES_FILE);
+        if (!hashesFile.exists())
+            return null;
+        Map<String,String> hashes = new TreeMap<String,String>();
+        for (String line : new LineReader(hashesFile)) {
+            String[] arr = line.split("\t");
+            hashes.put(arr[0], arr[1]);
+        }
+        return hashes;
+    }
+
+    private static void saveInputHashes(File dictDir,
+                                        Map<String,String> hashes)
+            throws IOException {
+        try (PrintWriter pw =
+                 new PrintWriter(new File(dictDir, INPUT_HASHES_FILE))) {
+            for (Map.Entry<String,String> e : hashes.entrySet())
+                pw.println(e.getKey() + "\t" + e.getValue());
+        }
+    }
+
+    /**
+     * Copies the file, replacing rather than overwriting any existing file so
+     * that a file linked from another dictionary is never modified.
+     */
+    private static void copy(File from, File to) throws IOException {
+        Files.copy(from.toPath(), to.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Hard-links the file, or copies it if the file system does not support
+     * links between the two locations.
+     */
+    private static void link(File from, File to) throws IOException {
+        Files.deleteIfExists(to.toPath());
+        try {
+            Files.createLink(to.toPath(), from.toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            copy(from, to);
+        }
     }
 
     /**
@@ -175,39 +320,4 @@ public class Grind {
 
         lexnamesPw.close();
     }
-    
-    /**
-     * A utility class for consuming the output of an input stream and recording
-     * it in a buffer.
-     */
-    static class StreamConsumer implements Runnable {
-
-        public final List<String> lines;
-
-        public final BufferedReader br;
-
-        public Throwable t;
-
-        public StreamConsumer(InputStream is) {
-            lines = new ArrayList<String>();
-            br = new BufferedReader(new InputStreamReader(is));
-        }
-
-        public void run() {
-            while (true) {
-                try {
-                    String line = br.readLine();
-                    if (line  == null)
-                        break;
-                    lines.add(line);
-                } catch(Throwable t) {
-                    this.t = t;
-                    break;
-                }
-            }
-            try {
-                br.close();
-            } catch(Throwable t) { this.t = t; }
-        }
-    }    
 }
@@ -0,0 +1,182 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.function.Consumer;
+
+import ca.mcgill.cs.crown.util.CrownLogger;
+
+
+/**
+ * A dedicated work-stealing thread pool for applying a {@link BuildPipeline}
+ * to many entries.  The cost of integrating an entry varies by orders of
+ * magnitude (a parse versus a failed regular expression match), so the
+ * entries are split into small chunks that idle threads steal from busy ones.
+ *
+ * <p> The same threads are reused for every call to {@link #forEach}, so that
+ * thread-local state, such as each thread's CoreNLP pipeline, is only built
+ * once per build rather than once per iteration.
+ */
+public class IntegrationExecutor {
+
+    /**
+     * The largest number of entries a thread processes before checking
+     * whether there is other work to be stolen
+     */
+    private static final int CHUNK_SIZE = 16;
+
+    /**
+     * How often progress is reported while processing
+     */
+    private static final long PROGRESS_INTERVAL_SECONDS = 30;
+
+    private final ForkJoinPool pool;
+
+    public IntegrationExecutor(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one thread: " + numThreads);
+        pool = new ForkJoinPool(numThreads, p -> {
+                ForkJoinWorkerThread t = ForkJoinPool
+                    .defaultForkJoinWorkerThreadFactory.newThread(p);
+                t.setName("crown-integrate-" + t.getPoolIndex());
+                return t;
+            }, null, false);
+    }
+
+    public int getNumThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Applies the action to every item using all of the pool's threads and
+     * returns once all items have been processed.  Every {@link
+     * #PROGRESS_INTERVAL_SECONDS} seconds, the number of items processed so
+     * far, overall and by each thread, is logged and {@code reportProgress}
+     * is run so that the caller can report its own counters.
+     *
+     * @param reportProgress reports any additional progress, or {@code null}
+     */
+    public <T> void forEach(Collection<T> items, Consumer<? super T> action,
+                            Runnable reportProgress) {
+        List<T> list = (items instanceof RandomAccess && items instanceof List)
+            ? (List<T>)items : new ArrayList<T>(items);
+        LongAdder processed = new LongAdder();
+        Map<String,LongAdder> processedByThread =
+            new ConcurrentHashMap<String,LongAdder>();
+
+        long startTime = System.nanoTime();
+        ScheduledExecutorService reporter =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "crown-integrate-progress");
+                    t.setDaemon(true);
+                    return t;
+                });
+        reporter.scheduleAtFixedRate(() -> {
+                logProgress(processed.sum(), list.size(), processedByThread,
+                            startTime);
+                if (reportProgress != null)
+                    reportProgress.run();
+            }, PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS,
+            TimeUnit.SECONDS);
+        try {
+            pool.invoke(new Chunk<T>(list, 0, list.size(), action,
+                                     processed, processedByThread));
+        } finally {
+            reporter.shutdownNow();
+        }
+    }
+
+    /**
+     * Shuts down the pool's threads once any work in progress is finished.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static void logProgress(long processed, int total,
+                                    Map<String,LongAdder> processedByThread,
+                                    long startTime) {
+        double elapsedSec = (System.nanoTime() - startTime) / 1e9;
+        CrownLogger.verbose("Processed %d of %d entries (%.1f entries/sec)",
+                            processed, total,
+                            processed / Math.max(elapsedSec, 1e-9));
+        Map<String,Long> snapshot = new TreeMap<String,Long>();
+        for (Map.Entry<String,LongAdder> e : processedByThread.entrySet())
+            snapshot.put(e.getKey(), e.getValue().sum());
+        CrownLogger.verbose("Entries processed by thread: %s", snapshot);
+    }
+
+    /**
+     * A contiguous range of the items, which is split in half until it is
+     * small enough to process directly.
+     */
+    private static class Chunk<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+
+        private final int from;
+
+        private final int to;
+
+        private final Consumer<? super T> action;
+
+        private final LongAdder processed;
+
+        private final Map<String,LongAdder> processedByThread;
+
+        Chunk(List<T> items, int from, int to, Consumer<? super T> action,
+              LongAdder processed, Map<String,LongAdder> processedByThread) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+            this.processed = processed;
+            this.processedByThread = processedByThread;
+        }
+
+        @Override protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Chunk<T>(items, from, mid, action,
+                                       processed, processedByThread),
+                          new Chunk<T>(items, mid, to, action,
+                                       processed, processedByThread));
+                return;
+            }
+            for (int i = from; i < to; ++i)
+                action.accept(items.get(i));
+
+            // Count once per chunk, rather than once per item, to keep the
+            // counters out of the per-item path
+            int n = to - from;
+            processed.add(n);
+            processedByThread.computeIfAbsent(
+                Thread.currentThread().getName(), k -> new LongAdder()).add(n);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.logging.Level;
+
+import ca.mcgill.cs.crown.util.CrownLogger;
+import ca.mcgill.cs.crown.util.GlossAnnotationCache;
+
+
+/**
+ * The worker half of a sharded {@link CrownCreator} build, which integrates one
+ * shard of the entries in its own JVM.  The coordinating build writes each
+ * shard's entries to a shard directory, starts one worker per shard, and once
+ * they have all exited, merges the {@link BuildCheckpoint} each worker left in
+ * its shard directory.
+ *
+ * <p> A worker needs only the dictionary of the current iteration and its
+ * shard directory, so workers on other machines can be run by hand when
+ * these are on a shared file system:
+ *
+ * <pre>
+ * java ca.mcgill.cs.crown.IntegrationWorker dict-dir shard-dir iteration threads log-level
+ * </pre>
+ *
+ * If the {@value CrownCreator#GLOSS_ANNOTATIONS_PROPERTY} property is set,
+ * the worker reads the gloss annotations already in that file but does not add
+ * to it, since the coordinator and the other workers share it.
+ *
+ * <p> Workers started by the coordinator do not inherit its heap settings,
+ * since several of them run alongside it on the same machine.  Instead, each
+ * is given the options in the {@value
+ * CrownCreator#WORKER_JVM_OPTIONS_PROPERTY} property or, if it is unset, an
+ * equal share of the coordinator's maximum heap.
+ */
+public class IntegrationWorker {
+
+    /**
+     * Returns the file in the shard directory containing the shard's entries.
+     */
+    static File entriesFile(File shardDir) {
+        return new File(shardDir, "entries.bin");
+    }
+
+    /**
+     * Starts a worker for the shard in a new JVM that has the same class path
+     * and JVM arguments (including system properties) as this one, other than
+     * its heap settings, and whose output is that of this one.
+     *
+     * @param numWorkers the number of workers started alongside this one,
+     *        among which the heap is split
+     */
+    static Process start(File dictDir, File shardDir, int iterNum,
+                         int numThreads, int numWorkers) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"),
+                             "java").getPath());
+        for (String arg
+                 : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // A debugger agent would try to listen on the same port as ours
+            if (!arg.contains("jdwp") && !isHeapOption(arg))
+                command.add(arg);
+        }
+        String jvmOptions =
+            System.getProperty(CrownCreator.WORKER_JVM_OPTIONS_PROPERTY);
+        if (jvmOptions != null) {
+            for (String opt : jvmOptions.trim().split("\\s+")) {
+                if (!opt.isEmpty())
+                    command.add(opt);
+            }
+        }
+        else {
+            long maxHeapMb = Runtime.getRuntime().maxMemory() / (1024 * 1024);
+            command.add("-Xmx" + Math.max(1, maxHeapMb / numWorkers) + "m");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(IntegrationWorker.class.getName());
+        command.add(dictDir.getPath());
+        command.add(shardDir.getPath());
+        command.add(String.valueOf(iterNum));
+        command.add(String.valueOf(numThreads));
+        command.add(CrownLogger.isLoggable(Level.FINER) ? Level.FINER.getName()
+                    : CrownLogger.isLoggable(Level.FINE) ? Level.FINE.getName()
+                    : Level.INFO.getName());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Returns {@code true} if the JVM argument sets the size of the heap.
+     */
+    private static boolean isHeapOption(String arg) {
+        return arg.startsWith("-Xmx") || arg.startsWith("-Xms")
+            || arg.startsWith("-XX:MaxHeapSize=")
+            || arg.startsWith("-XX:InitialHeapSize=")
+            || arg.startsWith("-XX:MaxRAMPercentage=")
+            || arg.startsWith("-XX:InitialRAMPercentage=");
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 5) {
+            System.out.println("usage: java IntegrationWorker dict-dir " +
+                               "shard-dir iteration threads log-level");
+            System.exit(1);
+        }
+        try {
+            File dictDir = new File(args[0]);
+            File shardDir = new File(args[1]);
+            int iterNum = Integer.parseInt(args[2]);
+            int numThreads = Integer.parseInt(args[3]);
+            CrownLogger.setLevel(Level.parse(args[4]));
+
+            String glossAnnotationsFile = System.getProperty(
+                CrownCreator.GLOSS_ANNOTATIONS_PROPERTY);
+            if (glossAnnotationsFile != null) {
+                GlossAnnotationCache.openReadOnly(
+                    new File(glossAnnotationsFile));
+            }
+
+            CrownCreator crownCreator = new CrownCreator(dictDir, null);
+            crownCreator.setNumThreads(numThreads);
+            crownCreator.integrateShard(dictDir, shardDir, iterNum);
+        }
+        catch (Throwable t) {
+            t.printStackTrace();
+            // Let the coordinator know this shard has no result
+            System.exit(1);
+        }
+    }
+}
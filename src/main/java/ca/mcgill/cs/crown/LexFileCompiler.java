@@ -0,0 +1,955 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ca.mcgill.cs.crown.util.CrownLogger;
+
+
+/**
+ * An in-process replacement for the WordNet {@code grind} program, which
+ * compiles the lexicographer files into the {@code data.*} and {@code index.*}
+ * database files, including {@code index.sense}, as grind does when run by
+ * {@link Grind}.  Each lexicographer file is parsed concurrently; the
+ * pointers are then resolved, grind's reciprocal pointers added, and the
+ * files written with their byte offsets.  Senses are ordered by their counts
+ * in the {@code cntlist} file, if there is one.
+ *
+ * <p> The output is meant to match grind's byte for byte, but this has only
+ * been checked against the format documented for the database files, not
+ * against grind itself.  {@code GrindComparison}, in the tests, compares the
+ * two on a directory of lexicographer files, such as those of WordNet 3.0.
+ * Until that comparison passes, grind remains the default; see {@link
+ * CrownCreator#IN_PROCESS_GRIND_PROPERTY}.
+ *
+ * <p> Files are read and written as ISO-8859-1, so that each character is one
+ * byte and any non-ASCII bytes are copied through unchanged, as grind does.
+ */
+class LexFileCompiler {
+
+    /**
+     * The pointer symbols in the order grind numbers the pointer types, which
+     * is the order in which each lemma's pointer symbols are listed in the
+     * index files
+     */
+    private static final List<String> POINTER_SYMBOLS = Arrays.asList(
+        "!", "@", "~", "*", "&", "#m", "#s", "#p", "%m", "%s", "%p", "%", "#",
+        ">", "<", "^", "\\", "=", "$", "+", ";", "-", ";c", ";u", ";r", "-c",
+        "-u", "-r", "@i", "~i");
+
+    /**
+     * The pointer grind adds in the reverse direction for each pointer type
+     * that has one
+     */
+    private static final Map<String,String> REFLEXIVE_POINTERS =
+        new HashMap<String,String>();
+    static {
+        String[] pairs = { "!", "!", "@", "~", "@i", "~i", "&", "&",
+                           "#m", "%m", "#s", "%s", "#p", "%p", "#", "%",
+                           "=", "=", "$", "$", "+", "+", ";", "-",
+                           ";c", "-c", ";u", "-u", ";r", "-r" };
+        for (int i = 0; i < pairs.length; i += 2) {
+            REFLEXIVE_POINTERS.put(pairs[i], pairs[i + 1]);
+            REFLEXIVE_POINTERS.put(pairs[i + 1], pairs[i]);
+        }
+    }
+
+    /**
+     * The database file suffix of each synset type
+     */
+    private static final String[] DATABASE_SUFFIXES =
+        { "noun", "verb", "adj", "adv" };
+
+    /**
+     * A word of a synset, as it is written in the lexicographer file
+     */
+    private static final class Word {
+        final Synset synset;
+        /** The number of the word in its synset, starting from 1 */
+        final int num;
+        final String lemma;
+        /** The adjective marker, e.g., {@code (p)}, or the empty string */
+        final String marker;
+        final int lexId;
+        final BitSet frames = new BitSet();
+
+        Word(Synset synset, int num, String lemma, String marker, int lexId) {
+            this.synset = synset;
+            this.num = num;
+            this.lemma = lemma;
+            this.marker = marker;
+            this.lexId = lexId;
+        }
+
+        /**
+         * Returns the lemma as it appears in the index files and sense keys
+         */
+        String indexLemma() {
+            return toLowerCase(lemma);
+        }
+
+        String senseKey() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(indexLemma()).append('%').append(synset.typeNum())
+                .append(':');
+            pad(sb, synset.lexFileNum, 2, 10);
+            sb.append(':');
+            pad(sb, lexId, 2, 10);
+            sb.append(':');
+            if (synset.head != null) {
+                Word head = synset.head.words.get(0);
+                sb.append(head.indexLemma()).append(':');
+                pad(sb, head.lexId, 2, 10);
+            }
+            else
+                sb.append(':');
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A pointer as it is written in the lexicographer file, before the word
+     * it refers to is resolved to a synset
+     */
+    private static final class PointerRef {
+        final String symbol;
+        final String targetFile;
+        final String targetKey;
+        /** The word the pointer is from, or {@code null} for the synset */
+        final Word source;
+        final int line;
+
+        PointerRef(String symbol, String targetFile, String targetKey,
+                   Word source, int line) {
+            this.symbol = symbol;
+            this.targetFile = targetFile;
+            this.targetKey = targetKey;
+            this.source = source;
+            this.line = line;
+        }
+    }
+
+    private static final class Pointer {
+        final String symbol;
+        final Synset target;
+        /** The word numbers of a lexical pointer, or 0 for a semantic one */
+        final int source;
+        final int targetWord;
+
+        Pointer(String symbol, Synset target, int source, int targetWord) {
+            this.symbol = symbol;
+            this.target = target;
+            this.source = source;
+            this.targetWord = targetWord;
+        }
+
+        boolean sameAs(Pointer p) {
+            return symbol.equals(p.symbol) && target == p.target
+                && source == p.source && targetWord == p.targetWord;
+        }
+    }
+
+    private static final class Synset {
+        final String lexFile;
+        final int lexFileNum;
+        /** One of {@code n}, {@code v}, {@code a}, {@code s} or {@code r} */
+        final char type;
+        /** The head of the cluster if this is an adjective satellite */
+        final Synset head;
+        final List<Word> words = new ArrayList<Word>();
+        final List<PointerRef> pointerRefs = new ArrayList<PointerRef>();
+        final List<Pointer> pointers = new ArrayList<Pointer>();
+        final BitSet frames = new BitSet();
+        String gloss = "";
+        long offset;
+
+        Synset(String lexFile, int lexFileNum, char type, Synset head) {
+            this.lexFile = lexFile;
+            this.lexFileNum = lexFileNum;
+            this.type = type;
+            this.head = head;
+        }
+
+        /**
+         * Returns the index of the database files that contain the synset
+         */
+        int database() {
+            switch (type) {
+            case 'n': return 0;
+            case 'v': return 1;
+            case 'a': case 's': return 2;
+            default: return 3;
+            }
+        }
+
+        /**
+         * Returns the synset type's number in sense keys
+         */
+        int typeNum() {
+            return "nvars".indexOf(type) + 1;
+        }
+
+        /**
+         * Adds the pointer, unless the synset already has the same one
+         */
+        boolean addPointer(Pointer p) {
+            for (Pointer q : pointers) {
+                if (q.sameAs(p))
+                    return false;
+            }
+            pointers.add(p);
+            return true;
+        }
+    }
+
+    /**
+     * The synsets parsed from one lexicographer file and the words by which
+     * other synsets may refer to them
+     */
+    private static final class ParsedFile {
+        final List<Synset> synsets = new ArrayList<Synset>();
+        final Map<String,Word> keyToWord = new HashMap<String,Word>();
+    }
+
+    private final int numThreads;
+
+    public LexFileCompiler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public LexFileCompiler(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one thread: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Compiles the lexicographer files into database files in the output
+     * directory.
+     *
+     * @param lexFileDir the directory containing the lexicographer files and
+     *        the {@code cntlist} file, if any
+     * @param lexFiles the names of the lexicographer files, in the order in
+     *        which grind is given them, which is the order of the synsets in
+     *        the data files
+     * @param lexFileNums the number of each lexicographer file, as in the
+     *        {@code lexnames} file
+     * @param headerDir the directory of an existing database, whose files'
+     *        license headers are copied to the new ones
+     * @param outDir the directory in which to write the database
+     */
+    public void compile(File lexFileDir, List<String> lexFiles,
+                        Map<String,Integer> lexFileNums, File headerDir,
+                        File outDir) throws IOException {
+
+        long startTime = System.nanoTime();
+        List<ParsedFile> parsed = parseAll(lexFileDir, lexFiles, lexFileNums);
+        Map<String,ParsedFile> nameToFile = new HashMap<String,ParsedFile>();
+        List<Synset> synsets = new ArrayList<Synset>();
+        for (int i = 0; i < lexFiles.size(); ++i) {
+            nameToFile.put(lexFiles.get(i), parsed.get(i));
+            synsets.addAll(parsed.get(i).synsets);
+        }
+        long parseTime = System.nanoTime() - startTime;
+
+        resolvePointers(synsets, nameToFile);
+        addReflexivePointers(synsets);
+
+        List<List<Synset>> databases = new ArrayList<List<Synset>>();
+        for (int i = 0; i < DATABASE_SUFFIXES.length; ++i)
+            databases.add(new ArrayList<Synset>());
+        for (Synset s : synsets)
+            databases.get(s.database()).add(s);
+
+        // Every offset is written with the same number of digits, so the
+        // length of each line is known before the offsets are assigned
+        for (int i = 0; i < DATABASE_SUFFIXES.length; ++i) {
+            String name = "data." + DATABASE_SUFFIXES[i];
+            long offset = readHeader(new File(headerDir, name)).length();
+            for (Synset s : databases.get(i)) {
+                s.offset = offset;
+                offset += dataLine(s).length();
+            }
+        }
+
+        Map<String,Integer> tagCounts =
+            loadTagCounts(new File(lexFileDir, "cntlist"));
+        TreeMap<String,String> senseIndex = new TreeMap<String,String>();
+        for (int i = 0; i < DATABASE_SUFFIXES.length; ++i) {
+            // The headers are read first, in case the database is replaced
+            String dataName = "data." + DATABASE_SUFFIXES[i];
+            String header = readHeader(new File(headerDir, dataName));
+            try (Writer w = writer(new File(outDir, dataName))) {
+                w.write(header);
+                for (Synset s : databases.get(i))
+                    w.write(dataLine(s));
+            }
+            String indexName = "index." + DATABASE_SUFFIXES[i];
+            header = readHeader(new File(headerDir, indexName));
+            try (Writer w = writer(new File(outDir, indexName))) {
+                w.write(header);
+                writeIndex(w, databases.get(i), "nvar".charAt(i),
+                           tagCounts, senseIndex);
+            }
+        }
+        try (Writer w = writer(new File(outDir, "index.sense"))) {
+            for (String line : senseIndex.values())
+                w.write(line);
+        }
+
+        CrownLogger.verbose("Compiled %d synsets from %d lexicographer " +
+                            "files in %d ms (%d ms parsing using %d " +
+                            "threads)", synsets.size(), lexFiles.size(),
+                            (System.nanoTime() - startTime) / 1_000_000,
+                            parseTime / 1_000_000,
+                            Math.min(numThreads, lexFiles.size()));
+    }
+
+    /**
+     * Parses every lexicographer file, concurrently, and returns the results
+     * in the order of the files.
+     */
+    private List<ParsedFile> parseAll(File lexFileDir, List<String> lexFiles,
+                                      Map<String,Integer> lexFileNums)
+            throws IOException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(numThreads, lexFiles.size())));
+        List<Future<ParsedFile>> parses = new ArrayList<Future<ParsedFile>>();
+        for (String name : lexFiles) {
+            Integer lexFileNum = lexFileNums.get(name);
+            if (lexFileNum == null) {
+                executor.shutdownNow();
+                throw new IllegalStateException(
+                    "No number for lexicographer file " + name);
+            }
+            File lexFile = new File(lexFileDir, name);
+            parses.add(executor.submit(() -> parse(lexFile, lexFileNum)));
+        }
+        executor.shutdown();
+
+        List<ParsedFile> parsed = new ArrayList<ParsedFile>();
+        try {
+            for (Future<ParsedFile> parse : parses)
+                parsed.add(parse.get());
+        } catch (InterruptedException ie) {
+            executor.shutdownNow();
+            throw new IllegalStateException(ie);
+        } catch (ExecutionException ee) {
+            executor.shutdownNow();
+            if (ee.getCause() instanceof IOException)
+                throw (IOException)ee.getCause();
+            if (ee.getCause() instanceof RuntimeException)
+                throw (RuntimeException)ee.getCause();
+            throw new IllegalStateException(ee.getCause());
+        }
+        return parsed;
+    }
+
+    /**
+     * Splits a lexicographer file into its tokens: braces and brackets, each
+     * parenthesized text (a gloss or comment), and the whitespace-separated
+     * words and pointers between them.
+     */
+    private static final class Tokenizer {
+        private final String text;
+        private int pos;
+        private int line = 1;
+        private String pushedBack;
+
+        Tokenizer(String text) {
+            this.text = text;
+        }
+
+        String next() {
+            if (pushedBack != null) {
+                String tok = pushedBack;
+                pushedBack = null;
+                return tok;
+            }
+            int n = text.length();
+            while (pos < n && Character.isWhitespace(text.charAt(pos))) {
+                if (text.charAt(pos) == '\n')
+                    line++;
+                pos++;
+            }
+            if (pos >= n)
+                return null;
+
+            int start = pos;
+            char c = text.charAt(pos);
+            if (c == '{' || c == '}' || c == '[' || c == ']') {
+                pos++;
+            }
+            else if (c == '(') {
+                int depth = 0;
+                int startLine = line;
+                do {
+                    if (pos >= n) {
+                        throw new IllegalStateException(
+                            "unbalanced parenthesis at line " + startLine);
+                    }
+                    c = text.charAt(pos++);
+                    if (c == '(')
+                        depth++;
+                    else if (c == ')')
+                        depth--;
+                    else if (c == '\n')
+                        line++;
+                } while (depth > 0);
+            }
+            else {
+                while (pos < n) {
+                    c = text.charAt(pos);
+                    if (Character.isWhitespace(c) || c == '{' || c == '}'
+                            || c == '[' || c == ']')
+                        break;
+                    pos++;
+                }
+            }
+            return text.substring(start, pos);
+        }
+
+        void pushBack(String tok) {
+            pushedBack = tok;
+        }
+
+        int line() {
+            return line;
+        }
+    }
+
+    /**
+     * Parses the synsets of the lexicographer file.
+     */
+    private static ParsedFile parse(File lexFile, int lexFileNum)
+            throws IOException {
+
+        String name = lexFile.getName();
+        char fileType = name.startsWith("noun") ? 'n'
+            : name.startsWith("verb") ? 'v'
+            : name.startsWith("adj") ? 'a' : 'r';
+        Tokenizer tokens = new Tokenizer(new String(
+            Files.readAllBytes(lexFile.toPath()), StandardCharsets.ISO_8859_1));
+        ParsedFile parsed = new ParsedFile();
+
+        try {
+            // Adjective clusters are enclosed in brackets, where the first
+            // synset and each one following a line of dashes is a head, and
+            // the others are its satellites
+            boolean inCluster = false;
+            Synset head = null;
+            for (String tok; (tok = tokens.next()) != null; ) {
+                if (tok.equals("{")) {
+                    Synset s;
+                    if (!inCluster)
+                        s = new Synset(name, lexFileNum, fileType, null);
+                    else if (head == null)
+                        s = new Synset(name, lexFileNum, 'a', null);
+                    else
+                        s = new Synset(name, lexFileNum, 's', head);
+                    parseSynset(s, tokens, inCluster && head == null);
+                    if (inCluster && head == null)
+                        head = s;
+                    parsed.synsets.add(s);
+                    register(parsed, s);
+                }
+                else if (tok.equals("[") && fileType == 'a' && !inCluster) {
+                    inCluster = true;
+                    head = null;
+                }
+                else if (tok.equals("]") && inCluster)
+                    inCluster = false;
+                else if (tok.startsWith("--") && inCluster)
+                    head = null;
+                else if (!tok.startsWith("("))
+                    throw new IllegalStateException("unexpected " + tok);
+            }
+            if (inCluster)
+                throw new IllegalStateException("unterminated cluster");
+        } catch (IllegalStateException ise) {
+            throw new IllegalStateException(
+                name + ", line " + tokens.line() + ": " + ise.getMessage(),
+                ise);
+        }
+        return parsed;
+    }
+
+    /**
+     * Parses the words, pointers, frames and gloss of a synset, up to its
+     * closing brace.
+     *
+     * @param isHead whether the synset is the head of an adjective cluster,
+     *        whose words may be written in upper case
+     */
+    private static void parseSynset(Synset s, Tokenizer tokens,
+                                    boolean isHead) {
+        for (String tok; !"}".equals(tok = tokens.next()); ) {
+            if (tok == null)
+                throw new IllegalStateException("unterminated synset");
+            if (tok.equals("[")) {
+                // A word with its own pointers and frames
+                Word w = addWord(s, tokens.next(), isHead);
+                for (String t; !"]".equals(t = tokens.next()); ) {
+                    if (t == null || t.equals("}"))
+                        throw new IllegalStateException("unterminated word");
+                    if (t.startsWith("frames:"))
+                        parseFrames(t, tokens, w.frames);
+                    else
+                        s.pointerRefs.add(pointerRef(t, s, w, tokens.line()));
+                }
+            }
+            else if (tok.startsWith("(")) {
+                // Lines such as (== ...) are comments, not the gloss
+                if (tok.startsWith("(==") || tok.startsWith("(++"))
+                    continue;
+                if (s.gloss.isEmpty())
+                    s.gloss = tok.substring(1, tok.length() - 1);
+            }
+            else if (tok.startsWith("frames:"))
+                parseFrames(tok, tokens, s.frames);
+            else if (tok.indexOf(',') >= 0
+                     && tok.indexOf(',') < tok.length() - 1)
+                s.pointerRefs.add(pointerRef(tok, s, null, tokens.line()));
+            else if (tok.endsWith(","))
+                addWord(s, tok, isHead);
+            else
+                throw new IllegalStateException("unexpected " + tok);
+        }
+        if (s.words.isEmpty())
+            throw new IllegalStateException("synset has no words");
+    }
+
+    private static void parseFrames(String tok, Tokenizer tokens,
+                                    BitSet frames) {
+        String nums = tok.substring("frames:".length());
+        do {
+            for (String num : nums.split(",")) {
+                if (!num.isEmpty())
+                    frames.set(Integer.parseInt(num));
+            }
+            nums = tokens.next();
+        } while (nums != null && nums.matches("[0-9,]+"));
+        tokens.pushBack(nums);
+    }
+
+    private static Word addWord(Synset s, String tok, boolean isHead) {
+        if (tok == null || !tok.endsWith(","))
+            throw new IllegalStateException("expected a word: " + tok);
+        String[] word = parseWord(tok.substring(0, tok.length() - 1));
+        String lemma = word[0];
+        // Head words in adjective clusters are marked by being written in
+        // upper case, but are otherwise the same as any other word
+        if (isHead && lemma.equals(toUpperCase(lemma)))
+            lemma = toLowerCase(lemma);
+        if (!word[1].isEmpty() && s.type != 'a' && s.type != 's') {
+            throw new IllegalStateException(
+                "adjective marker on a non-adjective: " + tok);
+        }
+        int lexId = Integer.parseInt(word[2]);
+        if (lexId > 15)
+            throw new IllegalStateException("lexical ID above 15: " + tok);
+        Word w = new Word(s, s.words.size() + 1, lemma, word[1], lexId);
+        s.words.add(w);
+        return w;
+    }
+
+    /**
+     * Splits a word as it is written in a lexicographer file into its lemma,
+     * adjective marker (or the empty string) and lexical ID.  A lemma that
+     * ends in a digit is separated from its lexical ID by a double quote.
+     */
+    private static String[] parseWord(String word) {
+        String marker = "";
+        for (String m : new String[] { "(a)", "(p)", "(ip)" }) {
+            int i = word.indexOf(m);
+            if (i > 0) {
+                marker = m;
+                word = word.substring(0, i) + word.substring(i + m.length());
+                break;
+            }
+        }
+        int end = word.lastIndexOf('"');
+        int idStart = end + 1;
+        if (end < 0) {
+            end = word.length();
+            while (end > 1 && Character.isDigit(word.charAt(end - 1)))
+                end--;
+            idStart = end;
+        }
+        String lexId = word.substring(idStart);
+        if (!lexId.matches("[0-9]*"))
+            throw new IllegalStateException("bad lexical ID: " + word);
+        return new String[] { word.substring(0, end), marker,
+                              lexId.isEmpty() ? "0" : lexId };
+    }
+
+    /**
+     * Returns the key by which pointers refer to a word: its lemma, in lower
+     * case, and its lexical ID.
+     */
+    private static String key(String word) {
+        String[] parsed = parseWord(word);
+        return toLowerCase(parsed[0]) + "#" + Integer.parseInt(parsed[2]);
+    }
+
+    private static String key(Word w) {
+        return toLowerCase(w.lemma) + "#" + w.lexId;
+    }
+
+    /**
+     * Parses a pointer written as {@code [lexfile:]word,symbol}, where the
+     * word of an adjective satellite is preceded by that of its head and a
+     * {@code ^}.
+     */
+    private static PointerRef pointerRef(String tok, Synset s, Word source,
+                                         int line) {
+        int i = tok.lastIndexOf(',');
+        String symbol = tok.substring(i + 1);
+        if (!POINTER_SYMBOLS.contains(symbol))
+            throw new IllegalStateException("unknown pointer: " + tok);
+        String target = tok.substring(0, i);
+        String targetFile = s.lexFile;
+        int j = target.indexOf(':');
+        if (j > 0) {
+            targetFile = target.substring(0, j);
+            target = target.substring(j + 1);
+        }
+        int k = target.indexOf('^');
+        String targetKey = (k > 0)
+            ? key(target.substring(0, k)) + "^" + key(target.substring(k + 1))
+            : key(target);
+        return new PointerRef(symbol, targetFile, targetKey, source, line);
+    }
+
+    /**
+     * Records the keys by which pointers may refer to the words of the
+     * synset.  Satellites are referred to through their head, but may also
+     * be referred to alone if no other word has the same key.
+     */
+    private static void register(ParsedFile parsed, Synset s) {
+        for (Word w : s.words) {
+            String key = key(w);
+            if (s.head != null) {
+                parsed.keyToWord.put(key(s.head.words.get(0)) + "^" + key, w);
+                if (!parsed.keyToWord.containsKey(key))
+                    parsed.keyToWord.put(key, w);
+                continue;
+            }
+            Word prior = parsed.keyToWord.put(key, w);
+            if (prior != null && prior.synset.head == null) {
+                throw new IllegalStateException(
+                    "duplicate word " + w.lemma + " with lexical ID "
+                    + w.lexId);
+            }
+        }
+    }
+
+    /**
+     * Resolves the pointers of every synset to the synsets they refer to.
+     */
+    private static void resolvePointers(List<Synset> synsets,
+                                        Map<String,ParsedFile> nameToFile) {
+        for (Synset s : synsets) {
+            // A satellite's first pointer is to its head
+            if (s.head != null)
+                s.addPointer(new Pointer("&", s.head, 0, 0));
+            for (PointerRef ref : s.pointerRefs) {
+                ParsedFile targetFile = nameToFile.get(ref.targetFile);
+                Word target = (targetFile == null)
+                    ? null : targetFile.keyToWord.get(ref.targetKey);
+                if (target == null) {
+                    throw new IllegalStateException(String.format(
+                        "%s, line %d: pointer to unknown word %s:%s",
+                        s.lexFile, ref.line, ref.targetFile, ref.targetKey));
+                }
+                s.addPointer((ref.source == null)
+                    ? new Pointer(ref.symbol, target.synset, 0, 0)
+                    : new Pointer(ref.symbol, target.synset,
+                                  ref.source.num, target.num));
+            }
+        }
+    }
+
+    /**
+     * Adds the reverse of every pointer that has one, unless the target
+     * already has it, in the order of the synsets and their pointers.
+     */
+    private static void addReflexivePointers(List<Synset> synsets) {
+        for (Synset s : synsets) {
+            for (Pointer p : new ArrayList<Pointer>(s.pointers)) {
+                String reverse = REFLEXIVE_POINTERS.get(p.symbol);
+                if (reverse != null) {
+                    p.target.addPointer(
+                        new Pointer(reverse, s, p.targetWord, p.source));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the synset's line in its data file.
+     */
+    private static String dataLine(Synset s) {
+        StringBuilder sb = new StringBuilder(256);
+        pad(sb, s.offset, 8, 10).append(' ');
+        pad(sb, s.lexFileNum, 2, 10).append(' ').append(s.type).append(' ');
+        pad(sb, s.words.size(), 2, 16).append(' ');
+        for (Word w : s.words) {
+            sb.append(w.lemma).append(w.marker).append(' ')
+                .append(Integer.toHexString(w.lexId)).append(' ');
+        }
+        pad(sb, s.pointers.size(), 3, 10).append(' ');
+        for (Pointer p : s.pointers) {
+            sb.append(p.symbol).append(' ');
+            pad(sb, p.target.offset, 8, 10).append(' ')
+                .append(p.target.type).append(' ');
+            pad(sb, p.source, 2, 16);
+            pad(sb, p.targetWord, 2, 16).append(' ');
+        }
+        if (s.type == 'v') {
+            // A frame shared by every word is listed once, for word 0
+            StringBuilder frames = new StringBuilder();
+            int numFrames = 0;
+            BitSet all = new BitSet();
+            for (Word w : s.words)
+                all.or(w.frames);
+            all.or(s.frames);
+            for (int f = all.nextSetBit(0); f >= 0; f = all.nextSetBit(f + 1)) {
+                boolean shared = s.frames.get(f);
+                if (!shared) {
+                    shared = true;
+                    for (Word w : s.words)
+                        shared &= w.frames.get(f);
+                }
+                for (Word w : s.words) {
+                    if (!shared && !w.frames.get(f))
+                        continue;
+                    frames.append("+ ");
+                    pad(frames, f, 2, 10).append(' ');
+                    pad(frames, shared ? 0 : w.num, 2, 16).append(' ');
+                    numFrames++;
+                    if (shared)
+                        break;
+                }
+            }
+            pad(sb, numFrames, 2, 10).append(' ').append(frames);
+        }
+        sb.append("| ").append(s.gloss).append("  \n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the index file of the synsets, with each lemma's senses ordered
+     * by their tag counts, and adds their senses to the sense index.
+     */
+    private static void writeIndex(Writer w, List<Synset> synsets, char pos,
+                                   Map<String,Integer> tagCounts,
+                                   Map<String,String> senseIndex)
+            throws IOException {
+
+        TreeMap<String,List<Word>> lemmaToSenses =
+            new TreeMap<String,List<Word>>();
+        for (Synset s : synsets) {
+            next_word:
+            for (Word word : s.words) {
+                String lemma = word.indexLemma();
+                List<Word> senses = lemmaToSenses.get(lemma);
+                if (senses == null) {
+                    senses = new ArrayList<Word>();
+                    lemmaToSenses.put(lemma, senses);
+                }
+                for (Word sense : senses) {
+                    if (sense.synset == s)
+                        continue next_word;
+                }
+                senses.add(word);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,List<Word>> e : lemmaToSenses.entrySet()) {
+            List<Word> senses = e.getValue();
+            // The sort is stable, so untagged senses stay in file order
+            Collections.sort(senses, (w1, w2) -> Integer.compare(
+                tagCount(w2, tagCounts), tagCount(w1, tagCounts)));
+
+            boolean[] hasPointer = new boolean[POINTER_SYMBOLS.size()];
+            int numTagged = 0;
+            for (Word sense : senses) {
+                for (Pointer p : sense.synset.pointers) {
+                    if (p.source == 0 || p.source == sense.num)
+                        hasPointer[POINTER_SYMBOLS.indexOf(p.symbol)] = true;
+                }
+                if (tagCount(sense, tagCounts) > 0)
+                    numTagged++;
+            }
+
+            sb.setLength(0);
+            sb.append(e.getKey()).append(' ').append(pos).append(' ')
+                .append(senses.size()).append(' ');
+            int numPointers = 0;
+            for (boolean b : hasPointer)
+                numPointers += b ? 1 : 0;
+            sb.append(numPointers).append(' ');
+            for (int i = 0; i < hasPointer.length; ++i) {
+                if (hasPointer[i])
+                    sb.append(POINTER_SYMBOLS.get(i)).append(' ');
+            }
+            sb.append(senses.size()).append(' ').append(numTagged).append(' ');
+            for (Word sense : senses)
+                pad(sb, sense.synset.offset, 8, 10).append(' ');
+            sb.append(" \n");
+            w.write(sb.toString());
+
+            for (int i = 0; i < senses.size(); ++i) {
+                Synset s = senses.get(i).synset;
+                for (Word word : s.words) {
+                    if (!word.indexLemma().equals(e.getKey()))
+                        continue;
+                    String senseKey = word.senseKey();
+                    StringBuilder line = new StringBuilder(senseKey);
+                    line.append(' ');
+                    pad(line, s.offset, 8, 10).append(' ').append(i + 1)
+                        .append(' ').append(tagCount(word, tagCounts))
+                        .append('\n');
+                    senseIndex.put(senseKey, line.toString());
+                }
+            }
+        }
+    }
+
+    private static int tagCount(Word w, Map<String,Integer> tagCounts) {
+        Integer count = tagCounts.get(w.senseKey());
+        return (count == null) ? 0 : count;
+    }
+
+    /**
+     * Loads the tag count of each sense key from a {@code cntlist} file, each
+     * line of which has a count, a sense key and a sense number.
+     */
+    static Map<String,Integer> loadTagCounts(File cntlist) throws IOException {
+        Map<String,Integer> counts = new HashMap<String,Integer>();
+        if (!cntlist.exists())
+            return counts;
+        try (BufferedReader br = reader(cntlist)) {
+            for (String line; (line = br.readLine()) != null; ) {
+                String[] arr = line.trim().split("\\s+");
+                if (arr.length < 2)
+                    continue;
+                Integer prior = counts.get(arr[1]);
+                counts.put(arr[1], Integer.parseInt(arr[0])
+                           + ((prior == null) ? 0 : prior));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Loads the number of each lexicographer file from a {@code lexnames}
+     * file.
+     */
+    static Map<String,Integer> loadLexnames(File lexnames) throws IOException {
+        Map<String,Integer> nums = new HashMap<String,Integer>();
+        try (BufferedReader br = reader(lexnames)) {
+            for (String line; (line = br.readLine()) != null; ) {
+                String[] arr = line.split("\t");
+                if (arr.length >= 2)
+                    nums.put(arr[1], Integer.parseInt(arr[0]));
+            }
+        }
+        return nums;
+    }
+
+    /**
+     * Returns the license lines at the start of a database file, each of
+     * which starts with a space, or the empty string if there is no file.
+     */
+    private static String readHeader(File dbFile) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        if (!dbFile.exists())
+            return "";
+        try (BufferedReader br = reader(dbFile)) {
+            for (String line; (line = br.readLine()) != null
+                     && line.startsWith(" "); )
+                sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static BufferedReader reader(File f) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+            new FileInputStream(f), StandardCharsets.ISO_8859_1));
+    }
+
+    private static Writer writer(File f) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(f), StandardCharsets.ISO_8859_1), 1 << 16);
+    }
+
+    /**
+     * Appends the number, zero-padded to the width, in the radix.
+     */
+    private static StringBuilder pad(StringBuilder sb, long value, int width,
+                                     int radix) {
+        String s = Long.toString(value, radix);
+        for (int i = s.length(); i < width; ++i)
+            sb.append('0');
+        return sb.append(s);
+    }
+
+    /**
+     * Lower-cases only the ASCII letters, as grind does, so that other bytes
+     * are left as they are.
+     */
+    private static String toLowerCase(String s) {
+        char[] cs = s.toCharArray();
+        for (int i = 0; i < cs.length; ++i) {
+            if (cs[i] >= 'A' && cs[i] <= 'Z')
+                cs[i] += 'a' - 'A';
+        }
+        return new String(cs);
+    }
+
+    private static String toUpperCase(String s) {
+        char[] cs = s.toCharArray();
+        for (int i = 0; i < cs.length; ++i) {
+            if (cs[i] >= 'a' && cs[i] <= 'z')
+                cs[i] -= 'a' - 'A';
+        }
+        return new String(cs);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.Pointer;
+
+import edu.ucla.sspace.util.LineReader;
+
+
+/**
+ * A persistent index between the identifiers that denote synsets in the
+ * lexicographer files (e.g., {@code noun.group:kingdom2}) and the synsets of a
+ * dictionary generated from those files.
+ *
+ * <p> Synset offsets change every time grind generates a new dictionary, so
+ * the index instead identifies each synset by a key that later dictionaries
+ * preserve: the lexicographer file number, lemma and lexical ID of its first
+ * word (and, for adjective satellites, of its head's first word).  New lemmas
+ * are always merged into a synset after its first word, so a key found in
+ * one iteration's dictionary denotes the same synset in every later one.
+ * Synsets whose key is shared with another synset are left out of the index.
+ */
+public class LexFileIdIndex {
+
+    /**
+     * The file in a dictionary directory that contains the index
+     */
+    static final String INDEX_FILE = "lexfile-ids.tsv";
+
+    private static final POS[] PARTS_OF_SPEECH =
+        { POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
+
+    private final Map<String,String> keyToLexFileId;
+
+    private LexFileIdIndex(Map<String,String> keyToLexFileId) {
+        this.keyToLexFileId = keyToLexFileId;
+    }
+
+    /**
+     * Loads the index saved in the dictionary directory, which is empty if no
+     * index was saved there.
+     */
+    public static LexFileIdIndex load(File dictDir) {
+        Map<String,String> keyToLexFileId = new HashMap<String,String>();
+        File indexFile = new File(dictDir, INDEX_FILE);
+        if (indexFile.exists()) {
+            for (String line : new LineReader(indexFile)) {
+                int i = line.indexOf('\t');
+                keyToLexFileId.put(line.substring(0, i),
+                                   line.substring(i + 1));
+            }
+        }
+        return new LexFileIdIndex(keyToLexFileId);
+    }
+
+    /**
+     * Saves an index of the provided lexicographer file identifiers of the
+     * dictionary's synsets to the directory.
+     */
+    public static void save(File dictDir, IDictionary dict,
+                            Map<ISynset,String> synsetToLexFileId)
+            throws IOException {
+        Set<String> ambiguous = new HashSet<String>();
+        Map<ISynset,String> synsetToKey = keySynsets(dict, ambiguous);
+        try (PrintWriter pw = new PrintWriter(new File(dictDir, INDEX_FILE))) {
+            for (Map.Entry<ISynset,String> e : synsetToKey.entrySet()) {
+                String lexFileId = synsetToLexFileId.get(e.getKey());
+                if (lexFileId != null && !ambiguous.contains(e.getValue()))
+                    pw.println(e.getValue() + "\t" + lexFileId);
+            }
+        }
+    }
+
+    public int size() {
+        return keyToLexFileId.size();
+    }
+
+    /**
+     * Returns the lexicographer file identifier of each synset in the
+     * dictionary that is in this index, adding those that are not to {@code
+     * unresolved}.
+     */
+    public Map<ISynset,String> resolve(IDictionary dict,
+                                       Collection<ISynset> unresolved) {
+        Set<String> ambiguous = new HashSet<String>();
+        Map<ISynset,String> synsetToKey = keySynsets(dict, ambiguous);
+        Map<ISynset,String> synsetToLexFileId =
+            new HashMap<ISynset,String>(synsetToKey.size() * 2);
+        for (Map.Entry<ISynset,String> e : synsetToKey.entrySet()) {
+            String lexFileId = keyToLexFileId.get(e.getValue());
+            if (lexFileId == null || ambiguous.contains(e.getValue()))
+                unresolved.add(e.getKey());
+            else
+                synsetToLexFileId.put(e.getKey(), lexFileId);
+        }
+        return synsetToLexFileId;
+    }
+
+    /**
+     * Returns the key of every synset in the dictionary, adding any key shared
+     * by several synsets to {@code ambiguous}.
+     */
+    private static Map<ISynset,String> keySynsets(IDictionary dict,
+                                                  Set<String> ambiguous) {
+        Map<ISynset,String> synsetToKey = new HashMap<ISynset,String>();
+        Set<String> seen = new HashSet<String>();
+        for (POS pos : PARTS_OF_SPEECH) {
+            Iterator<ISynset> iter = dict.getSynsetIterator(pos);
+            while (iter.hasNext()) {
+                ISynset syn = iter.next();
+                String key = key(syn, dict);
+                synsetToKey.put(syn, key);
+                if (!seen.add(key))
+                    ambiguous.add(key);
+            }
+        }
+        return synsetToKey;
+    }
+
+    /**
+     * Returns the key that identifies the synset in this and later
+     * dictionaries.
+     */
+    static String key(ISynset syn, IDictionary dict) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(syn.getLexicalFile().getNumber()).append(':');
+        appendWord(sb, syn.getWords().get(0));
+        // Satellites are only distinguished by the cluster they belong to
+        if (syn.isAdjectiveSatellite()) {
+            List<ISynsetID> heads = syn.getRelatedSynsets(Pointer.SIMILAR_TO);
+            if (!heads.isEmpty()) {
+                sb.append('^');
+                appendWord(sb, dict.getSynset(heads.get(0)).getWords().get(0));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendWord(StringBuilder sb, IWord word) {
+        sb.append(word.getLemma().toLowerCase()).append(':')
+            .append(word.getLexicalID());
+    }
+}
@@ -7,6 +7,7 @@
 
 package ca.mcgill.cs.crown;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -39,7 +40,39 @@ public interface LexicalEntry {
     POS getPos();
 
     /**
-     * Returns the heterogeneous map of annotations on top of this entry
+     * Returns the glosses of this entry joined into a single string.
+     */
+    default String getGloss() {
+        return getAnnotations().get(CrownAnnotations.Gloss.class);
+    }
+
+    /**
+     * Returns the cleaned glosses of this entry, in the order they appear.
+     */
+    default Set<String> getGlosses() {
+        return getAnnotations().get(CrownAnnotations.Glosses.class);
+    }
+
+    /**
+     * Returns the mapping from each raw gloss of this entry, with its wiki
+     * markup, to its cleaned form, in the order they appear.
+     */
+    default Map<String,String> getRawGlosses() {
+        return getAnnotations().get(CrownAnnotations.RawGlosses.class);
+    }
+
+    /**
+     * Returns the relations listed for this entry.
+     */
+    default List<Relation> getRelations() {
+        return getAnnotations().get(CrownAnnotations.Relations.class);
+    }
+
+    /**
+     * Returns the heterogeneous map of annotations on top of this entry.  This
+     * is kept for backward compatibility; the typed accessors above are
+     * cheaper, and implementations need not reflect changes made to the
+     * returned map.
      *
      * @return the annotations for the entry
      */
@@ -23,12 +23,21 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import java.util.function.Predicate;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import edu.mit.jwi.IDictionary;
 
+import edu.mit.jwi.item.IIndexWord;
 import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
 import edu.mit.jwi.item.IWord;
 import edu.mit.jwi.item.IWordID;
 import edu.mit.jwi.item.POS;
@@ -45,6 +54,11 @@ import ca.mcgill.cs.crown.util.WordNetUtils;
 
 import com.google.common.io.Files;
 
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 import edu.stanford.nlp.ling.CoreAnnotation;
 
 import edu.stanford.nlp.util.CoreMap;
@@ -124,22 +138,136 @@ public class LexicographerFileCreator {
      * The count of how many pointers currently exist for each synset in the
      * present CROWN build.  This global counter is necessary to avoid going over
      * WordNet's internal limits, which 999 but in practice seems a bit less.
+     * Synsets are counted by their {@link #key(ISynset) key}.  Each synset's
+     * count starts from its pointers in the dictionary, which are only
+     * counted once the synset is first looked up.
      */
-    private final Counter<ISynset> pointerCounts;
+    private final TLongIntMap pointerCounts;
 
     /**
      * The count for the number of senses for each word <strike>and POS
      * pair</strike> -- apparently sense counts are per lemma only.  We need to
      * keep track of this to avoid going over the maximum number of senses per
-     * lemma.
+     * lemma.  As with {@link #pointerCounts}, each lemma's count starts from
+     * its senses in the dictionary, which are counted when first looked up.
      */
     //private final Counter<Duple<String,POS>> senseCounts;
-    private final Counter<String> senseCounts;
+    private final TObjectIntMap<String> senseCounts;
+
+    /**
+     * The number of lexicographer files into which new lemmas are merged at
+     * once
+     */
+    private int numThreads;
 
     public LexicographerFileCreator(IDictionary dict) {
         this.dict = dict;
-        pointerCounts = new ObjectCounter<ISynset>(250_000);
-        senseCounts = new ObjectCounter<String>(250_000);
+        pointerCounts = new TLongIntHashMap();
+        senseCounts = new TObjectIntHashMap<String>();
+        numThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Sets the number of lexicographer files into which new lemmas are merged
+     * at once.
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException(
+                "Must have at least one thread: " + numThreads);
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Returns the key by which the synset's pointers are counted, which packs
+     * its part of speech and offset into a single {@code long} so that
+     * counting does not need to hash the synset itself.
+     */
+    private static long key(ISynset syn) {
+        ISynsetID id = syn.getID();
+        return ((long)id.getPOS().ordinal() << 32) | id.getOffset();
+    }
+
+    /**
+     * Returns the number of pointers counted for the synset.
+     */
+    private int getPointerCount(ISynset syn) {
+        long key = key(syn);
+        if (!pointerCounts.containsKey(key)) {
+            int count = getDictionaryPointerCount(syn);
+            pointerCounts.put(key, count);
+            return count;
+        }
+        return pointerCounts.get(key);
+    }
+
+    /**
+     * Adds {@code count} pointers to those counted for the synset.
+     */
+    private void countPointers(ISynset syn, int count) {
+        pointerCounts.put(key(syn), getPointerCount(syn) + count);
+    }
+
+    /**
+     * Returns the number of senses counted for the lemma.
+     */
+    private int getSenseCount(String lemma) {
+        if (!senseCounts.containsKey(lemma)) {
+            int count = getDictionarySenseCount(dict, lemma);
+            senseCounts.put(lemma, count);
+            return count;
+        }
+        return senseCounts.get(lemma);
+    }
+
+    /**
+     * Counts one more sense of the lemma.
+     */
+    private void countSense(String lemma) {
+        senseCounts.put(lemma, getSenseCount(lemma) + 1);
+    }
+
+    /**
+     * Returns the number of pointers the synset has in its dictionary: one
+     * for each type of pointer from the synset, plus each of the pointers from
+     * its words.
+     */
+    static int getDictionaryPointerCount(ISynset syn) {
+        int count = syn.getRelatedMap().size();
+        for (IWord iw : syn.getWords()) {
+            // NOTE: I think these somehow count against the maximum number of
+            // allowed synset pointers (or at least somehow factor into the
+            // dataset size) so we include them in the pointer counts to be
+            // conservative just so Crown builds -dj
+            for (List<IWordID> related : iw.getRelatedMap().values())
+                count += related.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of words in the dictionary, in any part of speech,
+     * whose lemma is exactly {@code lemma}.  Every such word is in a synset
+     * listed by the index entry of the lowercased lemma, so only those
+     * synsets are searched.
+     */
+    static int getDictionarySenseCount(IDictionary dict, String lemma) {
+        // The dictionary cannot look up a blank lemma, which no word has
+        if (lemma.trim().isEmpty())
+            return 0;
+        int count = 0;
+        for (POS pos : PARTS_OF_SPEECH) {
+            IIndexWord idx = dict.getIndexWord(lemma, pos);
+            if (idx == null)
+                continue;
+            for (IWordID wid : idx.getWordIDs()) {
+                for (IWord iw : dict.getSynset(wid.getSynsetID()).getWords()) {
+                    if (iw.getLemma().equals(lemma))
+                        count++;
+                }
+            }
+        }
+        return count;
     }
 
     public List<AnnotatedLexicalEntry> integrate(
@@ -151,35 +279,10 @@ public class LexicographerFileCreator {
         // Get the mapping from a synset to the string denoting it in the
         // lexicographer files (e.g., "noun.group:kingdom2")
         Map<ISynset,String> synsetToLexFileId 
-            = mapSynsetsToLexFileIds(oldLexFileDir);
+            = mapSynsetsToLexFileIds(oldLexFileDir, oldDictDir);
         MultiMap<String,ISynset> glossToSynset
             = getGlossSynsetMapping();
         
-        pointerCounts.reset();
-        for (POS pos : PARTS_OF_SPEECH) {
-            Iterator<ISynset> iter = dict.getSynsetIterator(pos);
-            while (iter.hasNext()) {
-                ISynset syn = iter.next();
-                int count = syn.getRelatedMap().size();
-                if (count > 0)
-                    pointerCounts.count(syn, count);
-
-                for (IWord iw : syn.getWords()) {
-                    senseCounts.count(iw.getLemma());
-
-                    // NOTE: I think these somehow count against the maximum
-                    // number of allowed synset pointers (or at least somehow
-                    // factor into the dataset size) so we include them in the
-                    // pointer counts to be conservative just so Crown builds
-                    // -dj
-                    for (List<IWordID> related : iw.getRelatedMap().values()) {
-                        if (!related.isEmpty())
-                            pointerCounts.count(syn, related.size());
-                    }
-                }                                                    
-            }
-        }
-
         List<AnnotatedLexicalEntry> integrated =
             new ArrayList<AnnotatedLexicalEntry>();
 
@@ -214,7 +317,7 @@ public class LexicographerFileCreator {
 
             // Check that we haven't exceeded the maximum number of senses for
             // this lemma
-            if (senseCounts.getCount(ale.getLemma()) > MAX_SENSES) {
+            if (getSenseCount(ale.getLemma()) > MAX_SENSES) {
                 // System.out.println("TOO MANY SENSES FOR " + ale.getLemma());
                 continue;
             }           
@@ -308,20 +411,27 @@ public class LexicographerFileCreator {
         integrated.addAll(
             createExceptionFiles(exceptionOps, oldDictDir, newDictDir));
 
+        CrownLogger.verbose("Counted the pointers of %d synsets and the " +
+                            "senses of %d lemmas", pointerCounts.size(),
+                            senseCounts.size());
+
+        // Every synset identified here keeps its identifier in the new files,
+        // so the next iteration only needs to look for the synsets added here
+        LexFileIdIndex.save(newDictDir, dict, synsetToLexFileId);
+
         // Helpful debugging code for trying to determing why exactly grind is
         // crashing (which is often :( )
         /*
           
         PrintWriter tmp = new PrintWriter("sense-counts.tsv");
-        for (Map.Entry<String,Integer> e9 : senseCounts) {
-            //Duple<String,POS> d = e9.getKey();
-            tmp.println(e9.getKey() + "\t" + e9.getValue());
+        for (String lemma : senseCounts.keySet()) {
+            tmp.println(lemma + "\t" + senseCounts.get(lemma));
         }
         tmp.close();
 
         tmp = new PrintWriter("pointer-counts.tsv");
-        for (Map.Entry<ISynset,Integer> e9 : pointerCounts) {
-            tmp.println(e9.getKey() + "\t" + e9.getValue());
+        for (long key : pointerCounts.keys()) {
+            tmp.println(key + "\t" + pointerCounts.get(key));
         }
         tmp.close();
         */
@@ -331,7 +441,8 @@ public class LexicographerFileCreator {
 
     /**
      * Copies over the non-lexicographer files used by grind, such as the sense
-     * counts.
+     * counts.  The database files grind generated from the old files are not
+     * copied, since grind regenerates them from the new ones.
      */
     private void copyMiscFiles(File oldLexFileDir, File newLexFileDir)
             throws IOException {
@@ -344,6 +455,8 @@ public class LexicographerFileCreator {
                   || name.startsWith("adv") || name.startsWith("verb")) {
                 continue;
             }
+            if (Grind.isDatabaseFile(name))
+                continue;
 
             // Copy everything else
             Files.copy(lexFile, new File(newLexFileDir, name));
@@ -401,7 +514,7 @@ public class LexicographerFileCreator {
             // First check that we haven't already exceeded the maximum number
             // of pointers for this synset.  If so, we are forced to skip what
             // might be a valid operation. :(
-            int parentPointerCount = pointerCounts.getCount(hypernym);
+            int parentPointerCount = getPointerCount(hypernym);
             if (parentPointerCount >= MAX_POINTERS)
                 continue;
             
@@ -410,7 +523,7 @@ public class LexicographerFileCreator {
 
             // Check that we haven't exceeded the maximum number of senses for
             // this lemma
-            if (senseCounts.getCount(lemma) > MAX_SENSES) {
+            if (getSenseCount(lemma) > MAX_SENSES) {
                 continue;
             }
             
@@ -428,8 +541,7 @@ public class LexicographerFileCreator {
 
             // Clean up the gloss to ensure that it has matching parentheses,
             // which grind requires to properly parse.
-            String gloss = toAttach.getAnnotations()
-                .get(CrownAnnotations.Gloss.class);
+            String gloss = toAttach.getGloss();
             gloss = cleanGloss(gloss);
 
             // For all the other relations present in this entry, create a
@@ -458,20 +570,20 @@ public class LexicographerFileCreator {
                 while (iter.hasNext()) {
                     Duple<Reason,ISynset> dup = iter.next();
                     ISynset related = dup.y;
-                    int curPointerCount = pointerCounts.getCount(related);
+                    int curPointerCount = getPointerCount(related);
                     if (curPointerCount >= MAX_POINTERS) {
                         iter.remove();
                         continue;
                     }
                     for (IWord iw : related.getWords()) {
-                        if (senseCounts.getCount(iw.getLemma()) > MAX_SENSES) {
+                        if (getSenseCount(iw.getLemma()) > MAX_SENSES) {
                             iter.remove();
                             continue next_relation;
                         }
                     }
 
 
-                    pointerCounts.count(related);
+                    countPointers(related, 1);
                     String relatedLexId = synsetToLexFileId.get(related);
                     assert relatedLexId != null
                         : "Unmapped synset in the lex files: " + related;
@@ -494,21 +606,21 @@ public class LexicographerFileCreator {
                     continue;
 
                 ISynset related = dup.y;
-                int curPointerCount = pointerCounts.getCount(related);
+                int curPointerCount = getPointerCount(related);
                 if (curPointerCount >= MAX_POINTERS) {
                     operations.remove(op);
                     continue;
                 }
 
                 for (IWord iw : related.getWords()) {
-                    if (senseCounts.getCount(iw.getLemma()) > MAX_SENSES) {
+                    if (getSenseCount(iw.getLemma()) > MAX_SENSES) {
                         operations.remove(op);
                         continue next_single_arg_relation;
                     }
                 }
 
 
-                pointerCounts.count(related);
+                countPointers(related, 1);
                 String relatedLexId = synsetToLexFileId.get(related);
                 assert relatedLexId != null
                     : "Unmapped synset in the lex files: " + related;
@@ -549,9 +661,9 @@ public class LexicographerFileCreator {
                 throw new IllegalStateException("Unhandled POS: " + pos);
             }
 
-            pointerCounts.count(hypernym);
+            countPointers(hypernym, 1);
             incorporated.add(toAttach);
-            senseCounts.count(lemma);
+            countSense(lemma);
         }
 
         for (PrintWriter pw : posToLexFile.values())
@@ -619,8 +731,7 @@ public class LexicographerFileCreator {
 
             // Clean up the gloss to ensure that it has matching parentheses,
             // which grind requires to properly parse.
-            String gloss = ent.getAnnotations()
-                .get(CrownAnnotations.Gloss.class);
+            String gloss = ent.getGloss();
             gloss = cleanGloss(gloss);
 
             // For all the other relations present in this entry, create a
@@ -649,14 +760,14 @@ public class LexicographerFileCreator {
                 while (iter.hasNext()) {
                     Duple<Reason,ISynset> dup = iter.next();
                     ISynset related = dup.y;
-                    int curPointerCount = pointerCounts.getCount(related);
+                    int curPointerCount = getPointerCount(related);
                     if (curPointerCount >= MAX_POINTERS) {
                         iter.remove();
                         continue;
                     }
                     
                     for (IWord iw : related.getWords()) {
-                        if (senseCounts.getCount(iw.getLemma()) > MAX_SENSES) {
+                        if (getSenseCount(iw.getLemma()) > MAX_SENSES) {
                         iter.remove();
                         continue next_set_arg_operation;
                         }
@@ -664,7 +775,7 @@ public class LexicographerFileCreator {
 
 
 
-                    pointerCounts.count(related);
+                    countPointers(related, 1);
                     String relatedLexId = synsetToLexFileId.get(related);
                     assert relatedLexId != null
                         : "Unmapped synset in the lex files: " + related;
@@ -687,19 +798,19 @@ public class LexicographerFileCreator {
                     continue;
 
                 ISynset related = dup.y;
-                int curPointerCount = pointerCounts.getCount(related);
+                int curPointerCount = getPointerCount(related);
                 if (curPointerCount >= MAX_POINTERS) {
                     operations.remove(op);
                     continue;
                 }
                 for (IWord iw : related.getWords()) {
-                    if (senseCounts.getCount(iw.getLemma()) > MAX_SENSES) {
+                    if (getSenseCount(iw.getLemma()) > MAX_SENSES) {
                         continue next_sao;
                     }
                 }
 
 
-                pointerCounts.count(related);
+                countPointers(related, 1);
                 String relatedLexId = synsetToLexFileId.get(related);
                 assert relatedLexId != null
                     : "Unmapped synset in the lex files: " + related;
@@ -728,7 +839,7 @@ public class LexicographerFileCreator {
             }
             
             incorporated.add(ent);
-            senseCounts.count(lemma);            
+            countSense(lemma);            
         }
 
         for (PrintWriter pw : posToLexFile.values())
@@ -758,7 +869,7 @@ public class LexicographerFileCreator {
         if (ale.getOperations().get(CrownOperations.Lexicalization.class) == null
                 && ale.getOperations().get(CrownOperations.Synonym.class) == null) {
 
-            String gloss = ale.getAnnotations().get(CrownAnnotations.Gloss.class);
+            String gloss = ale.getGloss();
             
             // Sanity checks that the gloss is of sufficient length and is not
             // going to break something in grind.
@@ -849,26 +960,60 @@ public class LexicographerFileCreator {
         List<AnnotatedLexicalEntry> incorporated =
             new ArrayList<AnnotatedLexicalEntry>(synsetToMergeOps.range());
 
-        for (File lexFile : oldLexFileDir.listFiles()) {
+        // Each lexicographer file is merged independently of the others, so
+        // they are merged concurrently
+        long startTime = System.nanoTime();
+        File[] lexFiles = oldLexFileDir.listFiles();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(numThreads, lexFiles.length)));
+        List<Future<List<AnnotatedLexicalEntry>>> merges =
+            new ArrayList<Future<List<AnnotatedLexicalEntry>>>();
+        for (File lexFile : lexFiles) {
             String name = lexFile.getName();
 
             // Adjective lex files have a different format to deal with
             // sattelite adjectives, so we process them separately
             if (name.startsWith("adj")) {
-                incorporated.addAll(
+                merges.add(executor.submit(() ->
                      mergeLemmasIntoAdjLexFile(newLexFileDir, lexFile,
-                                              synsetToMergeOps, glossToSynset));
+                                              synsetToMergeOps, glossToSynset)));
             }
             // Process the lexicographer files
             else if (name.startsWith("noun") || name.startsWith("adv")
                      || name.startsWith("verb")) {
 
-                incorporated.addAll(
+                merges.add(executor.submit(() ->
                    mergeLemmasIntoRegularLexFile(
-                     newLexFileDir, lexFile, synsetToMergeOps, glossToSynset));
+                     newLexFileDir, lexFile, synsetToMergeOps, glossToSynset)));
             }
         }
-        
+        executor.shutdown();
+
+        // Collect the results in file order, so the order of the entries is
+        // the same no matter how the merges were scheduled
+        try {
+            for (Future<List<AnnotatedLexicalEntry>> merge : merges)
+                incorporated.addAll(merge.get());
+        } catch (InterruptedException ie) {
+            executor.shutdownNow();
+            throw new IllegalStateException(ie);
+        } catch (ExecutionException ee) {
+            executor.shutdownNow();
+            if (ee.getCause() instanceof IOException)
+                throw (IOException)ee.getCause();
+            throw new IllegalStateException(ee.getCause());
+        }
+
+        // The merges only record which entries they incorporated, so that
+        // they share no counts, and the new senses are counted here
+        for (AnnotatedLexicalEntry ale : incorporated)
+            countSense(ale.getLemma());
+
+        CrownLogger.verbose("Merged %d new lemmas into %d lexicographer " +
+                            "files in %d ms using %d threads",
+                            incorporated.size(), merges.size(),
+                            (System.nanoTime() - startTime) / 1_000_000,
+                            Math.min(numThreads, merges.size()));
         return incorporated;
     }
 
@@ -886,10 +1031,9 @@ public class LexicographerFileCreator {
         File mergedLexFile = new File(newLexFileDir, lexFile.getName());
         PrintWriter mergedLexPw = new PrintWriter(mergedLexFile);
 
-        Counter<String> caseInsensitiveLemmaCounts
-            = getLemmaCounts(lexFile);
-        Set<String> alreadyUsedLemmaIds
-            = getLemmaIds(lexFile);
+        ScannedLexFile scanned = ScannedLexFile.scan(lexFile);
+        Counter<String> caseInsensitiveLemmaCounts = scanned.lemmaCounts;
+        Set<String> alreadyUsedLemmaIds = scanned.lemmaIds;
 
         List<AnnotatedLexicalEntry> incorporated
             = new ArrayList<AnnotatedLexicalEntry>(1000);
@@ -898,7 +1042,7 @@ public class LexicographerFileCreator {
         // For each of the synsets in the lex file, test whether it has a
         // merge operation to perform.  If not, just write it directly
         int lineNo = 0;
-        for (String line : new LineReader(lexFile)) {
+        for (String line : scanned.lines) {
 
             // boolean debug = false;
             // if (line.contains("a genus of Psittacidae")) {
@@ -1013,7 +1157,6 @@ public class LexicographerFileCreator {
                         }
                         
                         incorporated.add(ale);
-                        senseCounts.count(lemma);
                         sb.append(lemmaId).append(", ");
                     }
                     sb.append(line.substring(firstSpaceIndex+2));
@@ -1049,7 +1192,6 @@ public class LexicographerFileCreator {
                         }
                         
                         incorporated.add(ale);
-                        senseCounts.count(lemma);
                         sb.append(lemmaId).append(", ");
                     }
                     sb.append(line.substring(bracketEnd+2));
@@ -1080,24 +1222,22 @@ public class LexicographerFileCreator {
         File mergedLexFile = new File(newLexFileDir, lexFile.getName());
         PrintWriter mergedLexPw = new PrintWriter(mergedLexFile);
 
-        Counter<String> caseInsensitiveLemmaCounts
-            = getLemmaCounts(lexFile);
-        Set<String> alreadyUsedLemmaIds
-            = getLemmaIds(lexFile);
+        ScannedLexFile scanned = ScannedLexFile.scan(lexFile);
+        Counter<String> caseInsensitiveLemmaCounts = scanned.lemmaCounts;
+        Set<String> alreadyUsedLemmaIds = scanned.lemmaIds;
 
         List<AnnotatedLexicalEntry> incorporated
             = new ArrayList<AnnotatedLexicalEntry>(1000);
 
         // The adjective lex files are messy and a single sense cluster can span
-        // multiple lines, so read all the content into a single string and then
-        // we'll modify it and write it back out.
+        // multiple lines, so join all the content into a single string and
+        // then we'll modify it and write it back out.
         StringBuilder sb = new StringBuilder();
-        for (String line : new LineReader(lexFile)) {
+        for (String line : scanned.lines)
             sb.append(line).append('\n');
-        }
 
         String contents = sb.toString();
-        String[] lines = contents.split("\n");
+        List<String> lines = scanned.lines;
 
         // Print out the header
         for (String line : lines) {
@@ -1226,50 +1366,6 @@ public class LexicographerFileCreator {
         return incorporated;
     }
         
-    /**
-     * Counts how many times a lemma is used within a synset in this
-     * lexicographer file.  These counts are necessary to distinguish uses of
-     * the lemma between different synsets when creating pointers (linking)
-     * between synsets.
-     */
-    private Counter<String> getLemmaCounts(File lexFile) {
-        Counter<String> lemmaCounts = new ObjectCounter<String>();
-        boolean isAdjFile = lexFile.getName().startsWith("adj");
-        for (String line : new LineReader(lexFile)) {
-            if (!(line.startsWith("{") || line.startsWith("[")))
-                continue;
-            // Strip out adjective positional markup, which interferes with
-            // gloss identification
-            if (isAdjFile) {
-                line = line.replace("(a)", "").replace("(p)", "")
-                    .replace("(ip)", "");
-            }
-
-            String[] arr = line.split("[\\s]+");
-            for (String s : arr) {
-                // Stop once we see the gloss start
-                if (s.indexOf('(') >= 0)
-                    break;
-
-                // Only lemmas in the synset do this
-                if (s.endsWith(",")) {
-                    // Strip off the lemma number (if it exists) and
-                    String lemma = s.replaceAll("[0-9]*,$", "");
-
-                    // Guard against lemmas that end in numbers (which aren't a
-                    // part of their counts
-                    if (lemma.endsWith("\""))
-                        lemma = lemma.substring(0, lemma.length() - 1);
-                    // Lower case
-                    lemma = lemma.toLowerCase();
-                    
-                    lemmaCounts.count(lemma);
-                }
-            }    
-        }
-        return lemmaCounts;
-    }
-
     /**
      * Returns the set of lemmas defined within a synset of this line in this
      * lexicographer file.  
@@ -1303,44 +1399,6 @@ public class LexicographerFileCreator {
         return lemmas;
     }
 
-    
-    /**
-     * Returns the set of lemma identifiers used within the synsets in this
-     * file.  This set is necessary to guard against cases where the lemma
-     * identifiers are not contiguously ordered within a synset (which happens),
-     * so merging a new synset based on count may actually clash with an
-     * existing synset.
-     */
-    private Set<String> getLemmaIds(File lexFile) {
-        Set<String> lemmaIds = new HashSet<String>();
-        boolean isAdjFile = lexFile.getName().startsWith("adj");
-
-        for (String line : new LineReader(lexFile)) {
-            if (!(line.startsWith("{") || line.startsWith("[")))
-                continue;
-            // Strip out adjective positional markup, which interferes with
-            // gloss identification
-            if (isAdjFile) {
-                line = line.replace("(a)", "").replace("(p)", "")
-                    .replace("(ip)", "");
-            }
-
-            String[] arr = line.split("[\\s]+");
-            for (String s : arr) {
-                // Stop once we see the gloss start
-                if (s.indexOf('(') >= 0)
-                    break;
-
-                // Only lemmas in the synset do this
-                if (s.endsWith(",")) 
-                    s = s.substring(0, s.length() - 1);
-                while (s.startsWith("["))
-                    s = s.substring(1);
-                lemmaIds.add(s);
-            }    
-        }
-        return lemmaIds;
-    }
 
     /**
      * Returns the gloss of this synset, as specified in this entry in a
@@ -1442,7 +1500,6 @@ public class LexicographerFileCreator {
                     continue;
 
                 incorporated.add(ale);
-                senseCounts.count(lemma);
                 sb.append(lemmaId).append(", ");
             }
             sb.append(entry.substring(firstSpaceIndex+2));
@@ -1483,7 +1540,6 @@ public class LexicographerFileCreator {
                     continue;
 
                 incorporated.add(ale);
-                senseCounts.count(lemma);
                 sb.append(lemmaId).append(", ");
             }
             sb.append(entry.substring(bracketEnd+2));
@@ -1649,16 +1705,72 @@ public class LexicographerFileCreator {
      * WordNet synset IDs and sense keys are generated by grind itsef, so this
      * method provides a backward-mapping from the synset identifiers to their
      * corresponding identifiers in the files.
+     *
+     * <p> Most synsets are found in the {@link LexFileIdIndex} saved with the
+     * dictionary by the previous iteration.  The rest, which that iteration
+     * added, are found by matching their glosses in CROWN's own lexicographer
+     * files, and only if some are still missing are all the files scanned.
      */
-    private Map<ISynset,String> mapSynsetsToLexFileIds(File lexFileDir)
+    private Map<ISynset,String> mapSynsetsToLexFileIds(File lexFileDir,
+                                                       File dictDir)
             throws IOException {
 
+        LexFileIdIndex index = LexFileIdIndex.load(dictDir);
+        List<ISynset> unresolved = new ArrayList<ISynset>();
+        Map<ISynset,String> synsetToLexFileId =
+            index.resolve(dict, unresolved);
+        CrownLogger.verbose("Found %d of %d synsets in the lexicographer " +
+                            "file ID index", synsetToLexFileId.size(),
+                            synsetToLexFileId.size() + unresolved.size());
+
+        if (!unresolved.isEmpty() && index.size() > 0) {
+            unresolved = mapSynsetsByGloss(
+                mapGlossesToLexFileIds(lexFileDir,
+                                       name -> name.endsWith(".crown")),
+                unresolved, synsetToLexFileId);
+        }
+        if (!unresolved.isEmpty()) {
+            unresolved = mapSynsetsByGloss(
+                mapGlossesToLexFileIds(lexFileDir, name -> true),
+                unresolved, synsetToLexFileId);
+        }
+        if (!unresolved.isEmpty()) {
+            ISynset syn = unresolved.get(0);
+            throw new IllegalStateException(
+                "No lexfileId for " + syn.getWords() + " " + syn.getGloss());
+        }
+        return synsetToLexFileId;
+    }
+
+    /**
+     * Adds the lexicographer file identifiers of the synsets whose glosses
+     * have one to {@code synsetToLexFileId}, returning those synsets whose
+     * glosses do not.
+     */
+    private static List<ISynset> mapSynsetsByGloss(
+            Map<String,String> glossToLexfileId, List<ISynset> synsets,
+            Map<ISynset,String> synsetToLexFileId) {
+        List<ISynset> unmapped = new ArrayList<ISynset>();
+        for (ISynset syn : synsets) {
+            String lexfileId = glossToLexfileId.get(syn.getGloss());
+            if (lexfileId == null)
+                unmapped.add(syn);
+            else
+                synsetToLexFileId.put(syn, lexfileId);
+        }
+        return unmapped;
+    }
+
+    /**
+     * Returns a mapping from each synset gloss in the accepted lexicographer
+     * files to the string that denotes that synset within the files.
+     */
+    private Map<String,String> mapGlossesToLexFileIds(
+            File lexFileDir, Predicate<String> acceptFile) throws IOException {
+
         Map<String,String> glossToLexfileId =
             new HashMap<String,String>();
 
-        Map<ISynset,String> synsetToLexFileId =
-            new HashMap<ISynset,String>();
-
         for (File f : lexFileDir.listFiles()) {
             String lexFile = f.getName();
             // Skip non-lexicographer files
@@ -1667,6 +1779,8 @@ public class LexicographerFileCreator {
                    || lexFile.startsWith("adj")
                    || lexFile.startsWith("adv"))))
                 continue;
+            if (!acceptFile.test(lexFile))
+                continue;
 
 
             // Special handling of adjectives to deal with the head/satellite
@@ -1788,25 +1902,7 @@ public class LexicographerFileCreator {
                 }
             }
         }
-
-
-        // Map each gloss to its synset-id
-        for (POS pos : PARTS_OF_SPEECH) {
-            Iterator<ISynset> iter = dict.getSynsetIterator(pos);
-            while (iter.hasNext()) {
-                ISynset syn = iter.next();
-                String gloss = syn.getGloss();
-                String lexfileId = glossToLexfileId.get(gloss);
-
-                synsetToLexFileId.put(syn, lexfileId);
-                if (lexfileId == null) {
-                    throw new IllegalStateException(
-                        "No lexfileId for " + syn.getWords() + " " + gloss);
-                }
-            }
-        }
-
-        return synsetToLexFileId;
+        return glossToLexfileId;
     }
 
     private void parseAdjFile(File f, Map<String,String> glossToLexfileId) {
@@ -1988,4 +2084,86 @@ public class LexicographerFileCreator {
         
         return gloss;
     }
+
+    /**
+     * The contents of a lexicographer file along with the lemma bookkeeping
+     * needed to merge new lemmas into it, all gathered in a single pass over
+     * the file.
+     */
+    private static class ScannedLexFile {
+
+        /**
+         * The lines of the file
+         */
+        final List<String> lines;
+
+        /**
+         * How many times each lower-cased lemma is used within a synset in the
+         * file.  These counts are necessary to distinguish uses of the lemma
+         * between different synsets when creating pointers (linking) between
+         * synsets.
+         */
+        final Counter<String> lemmaCounts;
+
+        /**
+         * The lemma identifiers used within the synsets in the file.  This set
+         * is necessary to guard against cases where the lemma identifiers are
+         * not contiguously ordered within a synset (which happens), so merging
+         * a new synset based on count may actually clash with an existing
+         * synset.
+         */
+        final Set<String> lemmaIds;
+
+        private ScannedLexFile(List<String> lines, Counter<String> lemmaCounts,
+                               Set<String> lemmaIds) {
+            this.lines = lines;
+            this.lemmaCounts = lemmaCounts;
+            this.lemmaIds = lemmaIds;
+        }
+
+        static ScannedLexFile scan(File lexFile) {
+            List<String> lines = new ArrayList<String>();
+            Counter<String> lemmaCounts = new ObjectCounter<String>();
+            Set<String> lemmaIds = new HashSet<String>();
+            boolean isAdjFile = lexFile.getName().startsWith("adj");
+
+            for (String line : new LineReader(lexFile)) {
+                lines.add(line);
+                if (!(line.startsWith("{") || line.startsWith("[")))
+                    continue;
+                // Strip out adjective positional markup, which interferes with
+                // gloss identification
+                if (isAdjFile) {
+                    line = line.replace("(a)", "").replace("(p)", "")
+                        .replace("(ip)", "");
+                }
+
+                String[] arr = line.split("[\\s]+");
+                for (String s : arr) {
+                    // Stop once we see the gloss start
+                    if (s.indexOf('(') >= 0)
+                        break;
+
+                    // Only lemmas in the synset do this
+                    if (s.endsWith(",")) {
+                        // Strip off the lemma number (if it exists) and
+                        String lemma = s.replaceAll("[0-9]*,$", "");
+
+                        // Guard against lemmas that end in numbers (which
+                        // aren't a part of their counts
+                        if (lemma.endsWith("\""))
+                            lemma = lemma.substring(0, lemma.length() - 1);
+                        // Lower case
+                        lemmaCounts.count(lemma.toLowerCase());
+
+                        s = s.substring(0, s.length() - 1);
+                    }
+                    while (s.startsWith("["))
+                        s = s.substring(1);
+                    lemmaIds.add(s);
+                }
+            }
+            return new ScannedLexFile(lines, lemmaCounts, lemmaIds);
+        }
+    }
 }
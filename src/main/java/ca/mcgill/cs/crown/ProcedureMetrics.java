@@ -0,0 +1,215 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.util.List;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+
+/**
+ * Counts how often a procedure in a {@link BuildPipeline} is invoked, how often
+ * it succeeds, and how long its invocations take.  All counters are striped
+ * ({@link LongAdder}), so that recording from many threads at once does not
+ * contend on a lock or a single memory location.
+ *
+ * <p> Latencies are kept in a histogram whose buckets split each power of two
+ * into four, so reported percentiles are the upper bound of the bucket
+ * containing the percentile and are within 25% of the true value.
+ */
+public class ProcedureMetrics {
+
+    /**
+     * The number of buckets each power of two is split into, as a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 2;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+
+    private final String name;
+
+    private final LongAdder invocations;
+
+    private final LongAdder successes;
+
+    private final LongAdder totalNanos;
+
+    private final LongAccumulator maxNanos;
+
+    private final LongAdder[] histogram;
+
+    public ProcedureMetrics(String name) {
+        this.name = name;
+        invocations = new LongAdder();
+        successes = new LongAdder();
+        totalNanos = new LongAdder();
+        maxNanos = new LongAccumulator(Long::max, 0);
+        histogram = new LongAdder[NUM_BUCKETS];
+        for (int i = 0; i < histogram.length; ++i)
+            histogram[i] = new LongAdder();
+    }
+
+    /**
+     * Records one invocation of the procedure.
+     *
+     * @param nanos how long the invocation took
+     * @param success whether the procedure produced a result
+     */
+    public void record(long nanos, boolean success) {
+        if (nanos < 0)
+            nanos = 0;
+        invocations.increment();
+        if (success)
+            successes.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram[bucket(nanos)].increment();
+    }
+
+    /**
+     * Returns the histogram bucket for a value.  Values below {@link
+     * #SUB_BUCKETS} get a bucket each; larger values are bucketed by their
+     * highest set bit and the {@link #SUB_BUCKET_BITS} bits below it.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int)(value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the largest value that falls in the bucket.
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exp = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + sub) << (exp - SUB_BUCKET_BITS);
+        return lower + (1L << (exp - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long invocations() {
+        return invocations.sum();
+    }
+
+    public long successes() {
+        return successes.sum();
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long maxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Returns the latency in nanoseconds below which the fraction {@code q} of
+     * invocations fell, or {@code 0} if there have been no invocations.
+     */
+    public long percentileNanos(double q) {
+        long[] counts = new long[NUM_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = histogram[i].sum();
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long)Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(bucketUpperBound(i), maxNanos());
+        }
+        return maxNanos();
+    }
+
+    /**
+     * Resets all the counts to zero.  Invocations recorded concurrently with
+     * a reset may be partially counted.
+     */
+    public void reset() {
+        invocations.reset();
+        successes.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        for (LongAdder a : histogram)
+            a.reset();
+    }
+
+    public JSONObject toJson() {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("procedure", name);
+            json.put("invocations", invocations());
+            json.put("successes", successes());
+            json.put("totalNanos", totalNanos());
+            json.put("p50Nanos", percentileNanos(0.5));
+            json.put("p99Nanos", percentileNanos(0.99));
+            json.put("maxNanos", maxNanos());
+            return json;
+        } catch (JSONException je) {
+            throw new IllegalStateException(je);
+        }
+    }
+
+    /**
+     * Returns the metrics as a JSON array, in the order provided.
+     */
+    public static JSONArray toJson(List<ProcedureMetrics> metrics) {
+        JSONArray arr = new JSONArray();
+        for (ProcedureMetrics m : metrics)
+            arr.put(m.toJson());
+        return arr;
+    }
+
+    /**
+     * Returns a human-readable table of the metrics, in the order provided,
+     * with latencies in microseconds.
+     */
+    public static String toTable(List<ProcedureMetrics> metrics) {
+        long allNanos = 0;
+        for (ProcedureMetrics m : metrics)
+            allNanos += m.totalNanos();
+
+        StringBuilder sb = new StringBuilder(String.format(
+            "%-36s %10s %10s %7s %10s %7s %10s %10s %10s",
+            "procedure", "calls", "successes", "rate", "total s", "time",
+            "p50 us", "p99 us", "max us"));
+        for (ProcedureMetrics m : metrics) {
+            long calls = m.invocations();
+            long total = m.totalNanos();
+            sb.append(String.format(
+                "%n%-36s %10d %10d %6.1f%% %10.1f %6.1f%% %10.1f %10.1f %10.1f",
+                m.getName(), calls, m.successes(),
+                (calls == 0) ? 0d : 100d * m.successes() / calls,
+                total / 1e9,
+                (allNanos == 0) ? 0d : 100d * total / allNanos,
+                m.percentileNanos(0.5) / 1e3, m.percentileNanos(0.99) / 1e3,
+                m.maxNanos() / 1e3));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.data;
+
+import java.io.File;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.util.CoreMap;
+
+import ca.mcgill.cs.crown.LexicalEntry;
+
+
+/**
+ * A benchmark that reports how much heap the Wiktionary entries take once
+ * loaded, and how much more they would take if each entry also kept its
+ * annotations in a {@link CoreMap}, as entries used to.
+ *
+ * <pre>
+ * java ca.mcgill.cs.crown.data.EntryFootprint entries-file
+ * </pre>
+ *
+ * The entries file is either one written by {@link
+ * WiktionaryReader#saveAsBinary} (ending in {@code .bin}) or preprocessed
+ * JSON.  Run with a fixed heap size (equal {@code -Xms} and {@code -Xmx}) for
+ * stable numbers.
+ */
+public class EntryFootprint {
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("usage: java EntryFootprint entries-file");
+            System.exit(1);
+        }
+        File entriesFile = new File(args[0]);
+        WiktionaryReader reader = new WiktionaryReader();
+
+        long baseline = usedHeap();
+        long startTime = System.nanoTime();
+        List<LexicalEntry> entries = (entriesFile.getName().endsWith(".bin"))
+            ? reader.loadFromBinary(entriesFile)
+            : reader.loadFromPreprocessed(entriesFile);
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        long loaded = usedHeap();
+        report("Entries", loaded - baseline, entries.size());
+        System.out.printf("Loaded %d entries in %d ms%n",
+                          entries.size(), elapsedMs);
+
+        // The maps share the entries' glosses and relations, so the increase
+        // is the overhead of the CoreMap representation alone
+        List<CoreMap> annotations = new ArrayList<CoreMap>(entries.size());
+        for (LexicalEntry e : entries)
+            annotations.add(e.getAnnotations());
+        long withMaps = usedHeap();
+        report("CoreMap annotations", withMaps - loaded, entries.size());
+
+        // Keep both reachable until they have been measured
+        if (annotations.size() != entries.size())
+            throw new IllegalStateException();
+    }
+
+    private static void report(String what, long bytes, int numEntries) {
+        System.out.printf("%s: %.1f MB (%.0f bytes/entry)%n", what,
+                          bytes / (1024d * 1024d),
+                          (numEntries == 0) ? 0d : (double)bytes / numEntries);
+    }
+
+    /**
+     * Returns the heap in use after collecting as much garbage as the JVM
+     * will.
+     */
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // A single System.gc() is only a hint, so repeat until nothing more
+        // is freed
+        for (int i = 0; i < 10; ++i) {
+            System.gc();
+            long now = rt.totalMemory() - rt.freeMemory();
+            if (now >= used)
+                break;
+            used = now;
+        }
+        return used;
+    }
+}
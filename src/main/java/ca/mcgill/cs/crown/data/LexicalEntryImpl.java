@@ -1,4 +1,4 @@
-/* 
+/*
  * This source code is subject to the terms of the Creative Commons
  * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
  * 4.0 License was not distributed with this file, You can obtain one at
@@ -7,6 +7,8 @@
 
 package ca.mcgill.cs.crown;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -17,7 +19,10 @@ import edu.stanford.nlp.util.CoreMap;
 
 
 /**
- *
+ * An immutable {@link LexicalEntry} that keeps its glosses and relations in
+ * fields, rather than in a {@link CoreMap}, since the full Wiktionary has
+ * hundreds of thousands of entries.  Two entries are equal if they have the
+ * same part of speech and identifier.
  */
 public class LexicalEntryImpl implements LexicalEntry {
 
@@ -27,26 +32,46 @@ public class LexicalEntryImpl implements LexicalEntry {
 
     private final POS pos;
 
-    private final CoreMap annotations;
+    private final String gloss;
 
-    public LexicalEntryImpl(String lemma, String id, POS pos) {
-        this.lemma = lemma;
+    private final Set<String> glosses;
+
+    private final Map<String,String> rawGlosses;
+
+    private final List<Relation> relations;
+
+    /**
+     * Creates an entry with the provided glosses and relations, which are not
+     * copied and so should not be modified afterwards.
+     *
+     * @param gloss the glosses joined into a single string
+     * @param glosses the cleaned glosses
+     * @param rawGlosses a mapping from each raw gloss to its cleaned form
+     */
+    public LexicalEntryImpl(String lemma, String id, POS pos, String gloss,
+                            Set<String> glosses, Map<String,String> rawGlosses,
+                            List<Relation> relations) {
+        // Many entries share a lemma (one per sense), so keep one copy of each
+        this.lemma = lemma.intern();
         this.id = id;
         this.pos = pos;
-        this.annotations = new ArrayCoreMap();
+        // Most entries have a single gloss, which need not be stored twice
+        this.gloss = (glosses.size() == 1 && glosses.contains(gloss))
+            ? glosses.iterator().next() : gloss;
+        this.glosses = glosses;
+        this.rawGlosses = rawGlosses;
+        this.relations = (relations.isEmpty())
+            ? Collections.<Relation>emptyList() : relations;
     }
 
     public boolean equals(Object o) {
         if (o instanceof LexicalEntry) {
             LexicalEntry e = (LexicalEntry)o;
-            return pos.equals(e.getPos())
-                && lemma.equals(e.getLemma())
-                && id.equals(e.getId())
-                && annotations.equals(e.getAnnotations());
+            return id.equals(e.getId()) && pos.equals(e.getPos());
         }
         return false;
     }
-    
+
     /**
      * {@inheritDoc}
      */
@@ -71,16 +96,49 @@ public class LexicalEntryImpl implements LexicalEntry {
     /**
      * {@inheritDoc}
      */
+    @Override public String getGloss() {
+        return gloss;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<String> getGlosses() {
+        return glosses;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Map<String,String> getRawGlosses() {
+        return rawGlosses;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public List<Relation> getRelations() {
+        return relations;
+    }
+
+    /**
+     * Returns a new map containing this entry's {@link CrownAnnotations}.
+     * Changes to the map are not reflected in this entry.
+     */
     @Override public CoreMap getAnnotations() {
+        CoreMap annotations = new ArrayCoreMap(4);
+        annotations.set(CrownAnnotations.Gloss.class, gloss);
+        annotations.set(CrownAnnotations.Glosses.class, glosses);
+        annotations.set(CrownAnnotations.RawGlosses.class, rawGlosses);
+        annotations.set(CrownAnnotations.Relations.class, relations);
         return annotations;
     }
 
     public int hashCode() {
         return id.hashCode();
     }
-    
+
     public String toString() {
-        return String.format("%s (%s): %s", lemma, pos,
-                             annotations.get(CrownAnnotations.Gloss.class));
+        return String.format("%s (%s): %s", lemma, pos, gloss);
     }
 }
@@ -21,35 +21,48 @@ import de.tudarmstadt.ukp.jwktl.api.filter.WiktionaryEntryFilter;
 
 import de.tudarmstadt.ukp.jwktl.api.util.Language;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOError;
 import java.io.IOException;
 import java.io.PrintWriter;
 
+import java.nio.charset.StandardCharsets;
+
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import java.util.function.Consumer;
+
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import edu.ucla.sspace.util.LineReader;
 
-import edu.stanford.nlp.util.CoreMap;
-
 import ca.mcgill.cs.crown.LexicalEntry;
 import ca.mcgill.cs.crown.LexicalEntryImpl;
 import ca.mcgill.cs.crown.Relation;
 import ca.mcgill.cs.crown.RelationImpl;
-import ca.mcgill.cs.crown.CrownAnnotations;
 
 import ca.mcgill.cs.crown.util.CrownLogger;
 import ca.mcgill.cs.crown.util.WiktionaryUtils;
@@ -63,6 +76,15 @@ import edu.mit.jwi.item.POS;
  */
 public class WiktionaryReader {
 
+    private static final int BINARY_MAGIC = 0x43525758;
+
+    /**
+     * The version of the binary format, which must be incremented whenever the
+     * format or the gloss cleaning in {@link WiktionaryUtils} changes, since
+     * glosses are stored already cleaned.
+     */
+    private static final int BINARY_VERSION = 1;
+
     public List<LexicalEntry> loadFromDump(File wiktionaryXmlDump,
                                            File owd,
                                            File outputPreprocessedFile)
@@ -79,9 +101,7 @@ public class WiktionaryReader {
                 IWiktionaryEdition wikt = JWKTL.openEdition(outputWiktionaryDir);
                 CrownLogger.info("Loading Wiktionary data from " +
                                "already-parsed result");
-                List<JSONObject> rawEntries =
-                    extract(wikt, outputPreprocessedFile);
-                return convertToEntries(rawEntries);
+                return collect(stream(wikt, outputPreprocessedFile));
 
             } catch (Throwable t) {
                 // Ignore because we'll process the dump file to get the data
@@ -95,203 +115,443 @@ public class WiktionaryReader {
 
     public List<LexicalEntry> loadFromDir(File wiktionaryDir,
                                           File preprocessedOutputFile) {
-        IWiktionaryEdition wikt = JWKTL.openEdition(wiktionaryDir);
-        List<JSONObject> rawEntries = extract(wikt, preprocessedOutputFile);
-        return convertToEntries(rawEntries);
+        return collect(streamFromDir(wiktionaryDir, preprocessedOutputFile));
     }
 
     public List<LexicalEntry> loadFromPreprocessed(File preprocessedFile) {
-        List<JSONObject> rawEntries = new ArrayList<JSONObject>(500_000);
-        for (String line : new LineReader(preprocessedFile)) {
-            try {
-                JSONObject rawEntry = new JSONObject(line);
-                rawEntries.add(rawEntry);
-            } catch (JSONException je) {
-                throw new IOError(je);
-            }
-        }
-        return convertToEntries(rawEntries);
+        return collect(streamFromPreprocessed(preprocessedFile));
     }
 
-    private static List<LexicalEntry>
-        convertToEntries(List<JSONObject> rawEntries) {
-
-        // Avoid the potential for duplicates in the entries
-        Set<String> alreadyIncluded = new HashSet<String>();
-        int excluded = 0;
-        
-        List<LexicalEntry> entries = new ArrayList<LexicalEntry>();
-        for (JSONObject jo : rawEntries) {
-            try {
-                String posStr = jo.getString("pos").toUpperCase();
-                String lemma = jo.getString("lemma").replace(" ", "_");
-                String id = jo.getString("id");
-                // Check for duplicates
-                if (alreadyIncluded.contains(lemma + "." + posStr + ":" + id)) {
-                    excluded++;
-                    continue;
-                }
-                alreadyIncluded.add(lemma + ":" + id);
-                LexicalEntry e =
-                    new LexicalEntryImpl(lemma, id, POS.valueOf(posStr));
+    /**
+     * Loads the entries from a file written by {@link #saveAsBinary}, in a
+     * single sequential pass.  Lemmas are shared between entries and glosses
+     * are stored already cleaned, so no JSON parsing or gloss cleaning is
+     * needed.
+     */
+    public List<LexicalEntry> loadFromBinary(File binaryFile) {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(new FileInputStream(binaryFile),
+                                         1 << 20))) {
+            if (in.readInt() != BINARY_MAGIC)
+                throw new IOException(binaryFile + " is not a binary " +
+                                      "Wiktionary file");
+            int version = in.readInt();
+            if (version != BINARY_VERSION)
+                throw new IOException("Unsupported binary Wiktionary " +
+                                      "version: " + version);
+
+            // The relation types are written by name so that their ordinals
+            // in the file do not depend on the current order of the enum
+            Relation.RelationType[] relTypes =
+                new Relation.RelationType[in.readInt()];
+            for (int i = 0; i < relTypes.length; ++i)
+                relTypes[i] = Relation.RelationType.valueOf(in.readUTF());
+
+            String[] lemmas = new String[in.readInt()];
+            for (int i = 0; i < lemmas.length; ++i)
+                lemmas[i] = readString(in);
+
+            POS[] posValues = POS.values();
+            int numEntries = in.readInt();
+            List<LexicalEntry> entries = new ArrayList<LexicalEntry>(numEntries);
+            for (int n = 0; n < numEntries; ++n) {
+                String lemma = lemmas[in.readInt()];
+                String id = readString(in);
+                POS pos = posValues[in.readByte()];
+                int numGlosses = in.readInt();
                 Set<String> glosses = new LinkedHashSet<String>();
                 Map<String,String> rawGlossToCleaned =
                     new LinkedHashMap<String,String>();
-                
-                JSONArray glossArr = jo.getJSONArray("glosses");
-                for (int i = 0; i < glossArr.length(); ++i) {
-                    String rawGloss = glossArr.getString(i);
-                    String cleaned = WiktionaryUtils.cleanGloss(rawGloss);
+                for (int i = 0; i < numGlosses; ++i) {
+                    String rawGloss = readString(in);
+                    String cleaned = readString(in);
                     glosses.add(cleaned);
                     rawGlossToCleaned.put(rawGloss, cleaned);
                 }
-                
-                String combinedGloss = String.join(" ", glosses);
-                
-                List<Relation> relations = new ArrayList<Relation>();
-                JSONArray relationsArr = jo.getJSONArray("relations");
-                for (int i = 0; i < relationsArr.length(); ++i) {
-                    JSONObject relObj = relationsArr.getJSONObject(i);
-                    Relation rel = new RelationImpl(
-                        relObj.getString("targetLemma"),
-                        relObj.optString("targetSense"),
-                        Relation.RelationType.valueOf(
-                            relObj.getString("type")));
-                    relations.add(rel);
+
+                int numRelations = in.readInt();
+                List<Relation> relations =
+                    new ArrayList<Relation>(numRelations);
+                for (int i = 0; i < numRelations; ++i) {
+                    String target = lemmas[in.readInt()];
+                    String sense = (in.readBoolean()) ? readString(in) : null;
+                    relations.add(new RelationImpl(
+                        target, sense, relTypes[in.readByte()]));
                 }
-            
-                CoreMap m = e.getAnnotations();
-                m.set(CrownAnnotations.Gloss.class, combinedGloss);
-                m.set(CrownAnnotations.Glosses.class, glosses);
-                m.set(CrownAnnotations.RawGlosses.class, rawGlossToCleaned);
-                m.set(CrownAnnotations.Relations.class, relations);
 
-                entries.add(e);
+                entries.add(new LexicalEntryImpl(
+                    lemma, id, pos, String.join(" ", glosses), glosses,
+                    rawGlossToCleaned, relations));
             }
-            catch (JSONException je) {
-                throw new IOError(je);
+            return entries;
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Writes the entries to a versioned binary file that can be loaded with
+     * {@link #loadFromBinary} much faster than re-reading the preprocessed
+     * JSON.
+     */
+    public void saveAsBinary(Collection<LexicalEntry> entries,
+                             File binaryFile) {
+        // Number all of the entry and relation-target lemmas so each is
+        // written only once
+        Map<String,Integer> lemmaIndices = new LinkedHashMap<String,Integer>();
+        for (LexicalEntry e : entries) {
+            lemmaIndices.putIfAbsent(e.getLemma(), lemmaIndices.size());
+            for (Relation r : e.getRelations())
+                lemmaIndices.putIfAbsent(r.getTargetLemma(),
+                                         lemmaIndices.size());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(binaryFile),
+                                          1 << 20))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+
+            Relation.RelationType[] relTypes = Relation.RelationType.values();
+            out.writeInt(relTypes.length);
+            for (Relation.RelationType rt : relTypes)
+                out.writeUTF(rt.name());
+
+            out.writeInt(lemmaIndices.size());
+            for (String lemma : lemmaIndices.keySet())
+                writeString(out, lemma);
+
+            out.writeInt(entries.size());
+            for (LexicalEntry e : entries) {
+                out.writeInt(lemmaIndices.get(e.getLemma()));
+                writeString(out, e.getId());
+                out.writeByte(e.getPos().ordinal());
+
+                Map<String,String> rawGlossToCleaned = e.getRawGlosses();
+                out.writeInt(rawGlossToCleaned.size());
+                for (Map.Entry<String,String> g : rawGlossToCleaned.entrySet()) {
+                    writeString(out, g.getKey());
+                    writeString(out, g.getValue());
+                }
+
+                List<Relation> relations = e.getRelations();
+                out.writeInt(relations.size());
+                for (Relation r : relations) {
+                    out.writeInt(lemmaIndices.get(r.getTargetLemma()));
+                    out.writeBoolean(r.getTargetSense() != null);
+                    if (r.getTargetSense() != null)
+                        writeString(out, r.getTargetSense());
+                    out.writeByte(r.getType().ordinal());
+                }
             }
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
         }
+    }
 
-        CrownLogger.verbose("Excluded %d duplicate entries", excluded);
-        
-        return entries;
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Returns a stream of the entries in the JWKTL-parsed Wiktionary edition
+     * in the provided directory, writing each entry's preprocessed form to
+     * {@code preprocessedOutputFile} as it is read, if the file is not {@code
+     * null}.  The edition is read sequentially, so this stream should not be
+     * made parallel.  The stream must be closed to close the edition.
+     */
+    public Stream<LexicalEntry> streamFromDir(File wiktionaryDir,
+                                              File preprocessedOutputFile) {
+        return stream(JWKTL.openEdition(wiktionaryDir), preprocessedOutputFile);
+    }
+
+    /**
+     * Returns a parallel stream of the entries in a preprocessed Wiktionary
+     * file.  The stream is ordered in the same order as the file and may
+     * contain duplicate entries.  Lines are read in batches and the lines of
+     * each batch are parsed in parallel when the stream is consumed with a
+     * terminal operation such as {@code forEachOrdered} or {@code collect};
+     * consuming it through its {@code iterator()} parses every line on the
+     * calling thread.  The stream must be closed to close the file.
+     */
+    public Stream<LexicalEntry> streamFromPreprocessed(File preprocessedFile) {
+        try {
+            BufferedReader br =
+                new BufferedReader(new FileReader(preprocessedFile));
+            return br.lines()
+                .parallel()
+                .map(WiktionaryReader::parseLine)
+                .map(WiktionaryReader::toEntry)
+                .onClose(() -> close(br));
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    private static JSONObject parseLine(String line) {
+        try {
+            return new JSONObject(line);
+        } catch (JSONException je) {
+            throw new IOError(je);
+        }
     }
 
-    private List<JSONObject> extract(IWiktionaryEdition wikt,
-                                     File outputFile) {
+    private static void close(Closeable c) {
         try {
-            return extract_(wikt, outputFile);
+            c.close();
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Collects the entries in the stream, in order, omitting any that have the
+     * same lemma, part of speech, and id as an earlier entry, and then closes
+     * the stream.
+     */
+    private static List<LexicalEntry> collect(Stream<LexicalEntry> stream) {
+        DuplicateFilter filter = new DuplicateFilter();
+        // forEachOrdered, unlike iterating, lets a parallel stream parse its
+        // entries concurrently while still passing them to the filter one at
+        // a time and in order
+        try (Stream<LexicalEntry> s = stream) {
+            s.forEachOrdered(filter);
+        }
+        CrownLogger.verbose("Excluded %d duplicate entries",
+                            filter.numDuplicates);
+        return filter.entries;
+    }
+
+    private static LexicalEntry toEntry(JSONObject jo) {
+        try {
+            String posStr = jo.getString("pos").toUpperCase();
+            String lemma = jo.getString("lemma").replace(" ", "_");
+            String id = jo.getString("id");
+            Set<String> glosses = new LinkedHashSet<String>();
+            Map<String,String> rawGlossToCleaned =
+                new LinkedHashMap<String,String>();
+                
+            JSONArray glossArr = jo.getJSONArray("glosses");
+            for (int i = 0; i < glossArr.length(); ++i) {
+                String rawGloss = glossArr.getString(i);
+                String cleaned = WiktionaryUtils.cleanGloss(rawGloss);
+                glosses.add(cleaned);
+                rawGlossToCleaned.put(rawGloss, cleaned);
+            }
+                
+            String combinedGloss = String.join(" ", glosses);
+                
+            List<Relation> relations = new ArrayList<Relation>();
+            JSONArray relationsArr = jo.getJSONArray("relations");
+            for (int i = 0; i < relationsArr.length(); ++i) {
+                JSONObject relObj = relationsArr.getJSONObject(i);
+                Relation rel = new RelationImpl(
+                    relObj.getString("targetLemma"),
+                    relObj.optString("targetSense"),
+                    Relation.RelationType.valueOf(
+                        relObj.getString("type")));
+                relations.add(rel);
+            }
+
+            return new LexicalEntryImpl(lemma, id, POS.valueOf(posStr),
+                                        combinedGloss, glosses,
+                                        rawGlossToCleaned, relations);
+        }
+        catch (JSONException je) {
+            throw new IOError(je);
+        }
+    }
+
+    /**
+     * Returns a sequential stream of the entries in the edition, closing the
+     * edition and the preprocessed output (if any) when the stream is closed.
+     */
+    private Stream<LexicalEntry> stream(IWiktionaryEdition wikt,
+                                        File outputFile) {
+        try {
+            PrintWriter pw = (outputFile != null)
+                ? new PrintWriter(outputFile) : null;
+            WiktionaryEntryFilter filter = new WiktionaryEntryFilter();
+            filter.setAllowedWordLanguages(Language.ENGLISH);
+            int[] numProcessed = new int[1];
+            Stream<IWiktionaryEntry> wiktEntries = StreamSupport.stream(
+                wikt.getAllEntries(filter).spliterator(), false);
+            return wiktEntries
+                .flatMap(entry -> {
+                        List<JSONObject> rawEntries = extract(entry, pw);
+                        if (++numProcessed[0] % 10_000 == 0)
+                            CrownLogger.info("Processed %d entries",
+                                             numProcessed[0]);
+                        return rawEntries.stream();
+                    })
+                .map(WiktionaryReader::toEntry)
+                .onClose(() -> {
+                        wikt.close();
+                        if (pw != null)
+                            pw.close();
+                    });
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Returns the preprocessed form of each of the entry's senses, writing them
+     * to {@code pw} if it is not {@code null}.  Entries whose part of speech
+     * is not in WordNet have no senses returned.
+     */
+    private static List<JSONObject> extract(IWiktionaryEntry entry,
+                                            PrintWriter pw) {
+        try {
+            return extract_(entry, pw);
         } catch (Exception e) {
             // Ugh... lazy
             throw new IOError(e);
         }
     }
     
-    private List<JSONObject> extract_(IWiktionaryEdition wikt,
-                                     File outputFile)
+    private static List<JSONObject> extract_(IWiktionaryEntry entry,
+                                             PrintWriter pw)
             throws IOException, JSONException {
         
-        List<JSONObject> rawEntries = new ArrayList<JSONObject>(500_000);
-        WiktionaryEntryFilter filter = new WiktionaryEntryFilter();
-        filter.setAllowedWordLanguages(Language.ENGLISH);
-
-        PrintWriter pw = null;
-        if (outputFile != null)
-            pw = new PrintWriter(outputFile);
-
-        int i = 0;
-        for (IWiktionaryEntry entry : wikt.getAllEntries(filter)) {
-            PartOfSpeech pos = entry.getPartOfSpeech();
-            POS pos_ = null;
-            if (pos == null) {
-                if (++i % 10_000 == 0)
-                    CrownLogger.info("Processed %d entries", i);
-                continue;
-            }
-            String lemma = entry.getWord();
-            char posChar = 'n';
-            switch (pos) {
-                case NOUN:
-                case PROPER_NOUN:
-                case MEASURE_WORD:
-                    posChar = 'n';
-                    pos_ = POS.NOUN;
-                    break;
-            case VERB:
-                posChar = 'v';
-                pos_ = POS.VERB;
-                break;
-            case ADJECTIVE:
-                posChar = 'a';
-                pos_ = POS.ADJECTIVE;
+        List<JSONObject> rawEntries = new ArrayList<JSONObject>();
+        PartOfSpeech pos = entry.getPartOfSpeech();
+        POS pos_ = null;
+        if (pos == null)
+            return rawEntries;
+        String lemma = entry.getWord();
+        char posChar = 'n';
+        switch (pos) {
+            case NOUN:
+            case PROPER_NOUN:
+            case MEASURE_WORD:
+                posChar = 'n';
+                pos_ = POS.NOUN;
                 break;
-            case ADVERB:
-                posChar = 'r';
-                pos_ = POS.ADVERB;
-                break;
-                // We don't want to deal with other POS tags
-            default:
-                // System.out.printf("Skipping %s %s%n", lemma, pos);
-                if (++i % 10_000 == 0)
-                    CrownLogger.info("Processed %d entries", i);
-                continue;
-            }
+        case VERB:
+            posChar = 'v';
+            pos_ = POS.VERB;
+            break;
+        case ADJECTIVE:
+            posChar = 'a';
+            pos_ = POS.ADJECTIVE;
+            break;
+        case ADVERB:
+            posChar = 'r';
+            pos_ = POS.ADVERB;
+            break;
+            // We don't want to deal with other POS tags
+        default:
+            // System.out.printf("Skipping %s %s%n", lemma, pos);
+            return rawEntries;
+        }
 
 
-            for (IWiktionarySense sense : entry.getSenses()) {
-                IWikiString gloss = sense.getGloss();
-                List<IWikiString> examples = sense.getExamples();
-                if (examples == null)
-                    examples = Collections.<IWikiString>emptyList();
-                int senseNum = sense.getIndex();
-                List<String> rawGlosses =
-                    Arrays.asList(gloss.getText().split("\n"));
-
-                JSONObject rawEntry = new JSONObject();
-                rawEntry.put("sense", lemma + "." + posChar + "." + senseNum);
-                rawEntry.put("id", lemma + ":" + sense.getId());
-                rawEntry.put("lemma", lemma);
-                rawEntry.put("pos", pos_.toString());
-                
-                JSONArray glossArr = new JSONArray();
-                for (String rawGloss : rawGlosses)
-                    glossArr.put(rawGloss);
-                rawEntry.put("glosses", glossArr);
-
-                JSONArray examplesArr = new JSONArray();
-                for (IWikiString example : examples)
-                    examplesArr.put(example.getText());
-                rawEntry.put("examples", examplesArr);
-
-                JSONArray relArr = new JSONArray();
-                List<IWiktionaryRelation> relations = sense.getRelations();
-                if (relations == null)
-                    relations = Collections.<IWiktionaryRelation>emptyList();
-                for (IWiktionaryRelation rel : relations) {
-                    JSONObject relObj = new JSONObject();
-                    relObj.put("targetLemma", rel.getTarget());
-                    relObj.put("targetSense", rel.getTargetSense());
-                    relObj.put("type", rel.getRelationType().toString());
-                    relArr.put(relObj);
-                }
-                rawEntry.put("relations", relArr);
-                
-                if (pw != null)
-                    pw.println(rawEntry.toString());
-
-                rawEntries.add(rawEntry);
-                //System.out.printf("%s.%s.%d: %s %s%n", lemma, pos, senseNum, rawGlosses, examples);
-            }
+        for (IWiktionarySense sense : entry.getSenses()) {
+            IWikiString gloss = sense.getGloss();
+            List<IWikiString> examples = sense.getExamples();
+            if (examples == null)
+                examples = Collections.<IWikiString>emptyList();
+            int senseNum = sense.getIndex();
+            List<String> rawGlosses =
+                Arrays.asList(gloss.getText().split("\n"));
+
+            JSONObject rawEntry = new JSONObject();
+            rawEntry.put("sense", lemma + "." + posChar + "." + senseNum);
+            rawEntry.put("id", lemma + ":" + sense.getId());
+            rawEntry.put("lemma", lemma);
+            rawEntry.put("pos", pos_.toString());
             
-            if (++i % 10_000 == 0) {
-                CrownLogger.info("Processed %d entries", i);
+            JSONArray glossArr = new JSONArray();
+            for (String rawGloss : rawGlosses)
+                glossArr.put(rawGloss);
+            rawEntry.put("glosses", glossArr);
+
+            JSONArray examplesArr = new JSONArray();
+            for (IWikiString example : examples)
+                examplesArr.put(example.getText());
+            rawEntry.put("examples", examplesArr);
+
+            JSONArray relArr = new JSONArray();
+            List<IWiktionaryRelation> relations = sense.getRelations();
+            if (relations == null)
+                relations = Collections.<IWiktionaryRelation>emptyList();
+            for (IWiktionaryRelation rel : relations) {
+                JSONObject relObj = new JSONObject();
+                relObj.put("targetLemma", rel.getTarget());
+                relObj.put("targetSense", rel.getTargetSense());
+                relObj.put("type", rel.getRelationType().toString());
+                relArr.put(relObj);
             }
+            rawEntry.put("relations", relArr);
+            
+            if (pw != null)
+                pw.println(rawEntry.toString());
+
+            rawEntries.add(rawEntry);
+            //System.out.printf("%s.%s.%d: %s %s%n", lemma, pos, senseNum, rawGlosses, examples);
         }
-        wikt.close();
-        if (pw != null)
-            pw.close();
+
         return rawEntries;
     }
 
+    /**
+     * Keeps the entries it is passed, in order, except for those with the same
+     * {@link EntryKey} as an earlier entry.
+     */
+    private static final class DuplicateFilter
+            implements Consumer<LexicalEntry> {
+
+        private final Set<EntryKey> alreadyIncluded = new HashSet<EntryKey>();
+
+        private final List<LexicalEntry> entries =
+            new ArrayList<LexicalEntry>();
+
+        private int numDuplicates;
+
+        @Override public void accept(LexicalEntry e) {
+            if (alreadyIncluded.add(new EntryKey(e)))
+                entries.add(e);
+            else
+                numDuplicates++;
+        }
+    }
+
+    /**
+     * The identity of an entry for the purposes of removing duplicates.
+     */
+    private static final class EntryKey {
+
+        private final String lemma;
+
+        private final POS pos;
+
+        private final String id;
+
+        EntryKey(LexicalEntry e) {
+            this.lemma = e.getLemma();
+            this.pos = e.getPos();
+            this.id = e.getId();
+        }
+
+        @Override public boolean equals(Object o) {
+            if (!(o instanceof EntryKey))
+                return false;
+            EntryKey k = (EntryKey)o;
+            return pos == k.pos && id.equals(k.id) && lemma.equals(k.lemma);
+        }
+
+        @Override public int hashCode() {
+            return id.hashCode() * 31 + pos.hashCode();
+        }
+    }
 }
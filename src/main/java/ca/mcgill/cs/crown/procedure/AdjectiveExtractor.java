@@ -22,7 +22,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -68,8 +67,7 @@ public class AdjectiveExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.ADJECTIVE))
             return null;        
 
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Set<String> glosses = e.getGlosses();
 
         // Try to find an adjective from which this adverb derives
         for (String gloss : glosses) {
@@ -104,7 +102,7 @@ public class AdjectiveExtractor implements EnrichmentProcedure {
             //     ISynset best = null;
                 
             //     String combGloss =
-            //         e.getAnnotations().get(CrownAnnotations.Gloss.class);
+            //         e.getGloss();
 
 
             //     for (IWordID wordId : iw.getWordIDs()) {                   
@@ -143,6 +141,13 @@ public class AdjectiveExtractor implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.ADJECTIVE);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -25,7 +25,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -89,8 +88,7 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), pos))
             return null;
 
-        for (String gloss :
-                 e.getAnnotations().get(CrownAnnotations.Glosses.class)) {
+        for (String gloss : e.getGlosses()) {
 
             gloss = gloss.toLowerCase();
             AnnotatedLexicalEntry ale = findParataxis(gloss, e, pos);
@@ -177,21 +175,14 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
             
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
-            for (ISynset candidate : candidatePertainymSynsets) {
-                String wnExtendedGloss =
-                    //WordNetUtils.getExtendedGloss(candidate);
-                    //candidate.getGloss();
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(gloss, wnExtendedGloss);
-
-                // System.out.printf("ITEM1: %s\nITEM2: %s\nscore: %f%n",
-                //                   cleanedGloss, wnExtendedGloss, score);
-                
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> nounSenses =
+                new ArrayList<ISynset>(candidatePertainymSynsets);
+            double[] nounScores = simFunc.scoreAll(
+                gloss, WordNetUtils.getGlossesWithoutExamples(nounSenses));
+            for (int i = 0; i < nounScores.length; ++i) {
+                if (maxScore < nounScores[i]) {
+                    maxScore = nounScores[i];
+                    best = nounSenses.get(i);
                 }
             }
 
@@ -220,18 +211,15 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
                 double adjMaxScore = 0;
                 ISynset bestAdj = null;
 
-                for (ISynsetID sid : adjsForNoun) {
-                    ISynset adj = dict.getSynset(sid);
-                    String adjGloss =
-                        WordNetUtils.getGlossWithoutExamples(adj);
-                    double score = simFunc.compare(gloss, adjGloss);
-
-                    // System.out.printf("ITEM1: %s\nITEM2: %s\nscore: %f%n",
-                    //                   cleanedGloss, wnExtendedGloss, score);
-
-                    if (maxScore < score) {
-                        adjMaxScore = score;
-                        bestAdj = adj;
+                List<ISynset> adjs = new ArrayList<ISynset>();
+                for (ISynsetID sid : adjsForNoun)
+                    adjs.add(dict.getSynset(sid));
+                double[] scores = simFunc.scoreAll(
+                    gloss, WordNetUtils.getGlossesWithoutExamples(adjs));
+                for (int i = 0; i < scores.length; ++i) {
+                    if (maxScore < scores[i]) {
+                        adjMaxScore = scores[i];
+                        bestAdj = adjs.get(i);
                     }
                 }
 
@@ -289,17 +277,16 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
         if (lemmasInWn.size() == 1) {
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
             Set<ISynset> candidateSynonymSynsets =
                 WordNetUtils.getSynsets(dict, lemmasInWn.get(0), pos);
-            for (ISynset candidate : candidateSynonymSynsets) {
-                String wnExtendedGloss =
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(gloss, wnExtendedGloss);
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates =
+                new ArrayList<ISynset>(candidateSynonymSynsets);
+            double[] scores = simFunc.scoreAll(
+                gloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
             if (best == null)
@@ -340,15 +327,12 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
 
                 double maxScore = 0;
                 ISynset best = null;
-                String bestGloss = null;
-                for (ISynset candidate : ties) {
-                    String wnExtendedGloss =
-                        WordNetUtils.getGlossWithoutExamples(candidate);
-                    double score = simFunc.compare(gloss, wnExtendedGloss);
-                    if (maxScore < score) {
-                        maxScore = score;
-                        best = candidate;
-                        bestGloss = wnExtendedGloss;
+                double[] scores = simFunc.scoreAll(
+                    gloss, WordNetUtils.getGlossesWithoutExamples(ties));
+                for (int i = 0; i < scores.length; ++i) {
+                    if (maxScore < scores[i]) {
+                        maxScore = scores[i];
+                        best = ties.get(i);
                     }
                 }
                 if (best == null)
@@ -442,6 +426,13 @@ public class AdjectivePatternExtractor implements EnrichmentProcedure {
         return candidates;
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.ADJECTIVE);
+    }
+
     /**
      * {@inheritDoc}
      */ 
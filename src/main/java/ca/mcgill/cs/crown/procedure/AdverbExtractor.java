@@ -22,7 +22,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -67,8 +66,7 @@ public class AdverbExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.ADVERB))
             return null;        
 
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Set<String> glosses = e.getGlosses();
 
         // Try to find an adjective from which this adverb derives
         for (String gloss : glosses) {
@@ -102,18 +100,18 @@ public class AdverbExtractor implements EnrichmentProcedure {
                 double maxSim = 0;
                 ISynset best = null;
                 
-                String combGloss =
-                    e.getAnnotations().get(CrownAnnotations.Gloss.class);
-
-
-                for (IWordID wordId : iw.getWordIDs()) {                   
-                    ISynset synset = dict.getSynset(wordId.getSynsetID());
-                    String wnExtendedGloss =
-                        WordNetUtils.getExtendedGloss(synset);
-                    double sim = simFunc.compare(combGloss, wnExtendedGloss);
-                    if (maxSim < sim) {
-                        maxSim = sim;
-                        best = synset;
+                String combGloss = e.getGloss();
+
+
+                List<ISynset> senses = new ArrayList<ISynset>();
+                for (IWordID wordId : iw.getWordIDs())
+                    senses.add(dict.getSynset(wordId.getSynsetID()));
+                double[] sims = simFunc.scoreAll(
+                    combGloss, WordNetUtils.getExtendedGlosses(senses));
+                for (int i = 0; i < sims.length; ++i) {
+                    if (maxSim < sims[i]) {
+                        maxSim = sims[i];
+                        best = senses.get(i);
                     }
                 }
 
@@ -145,6 +143,13 @@ public class AdverbExtractor implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.ADVERB);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -22,7 +22,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -118,19 +117,16 @@ public class AntonymExtractor implements EnrichmentProcedure {
         // Otherwise, use the similarity function to try to pick which sense
         // we're antonyms with.
         else {
-            String combinedGloss =
-                e.getAnnotations().get(CrownAnnotations.Gloss.class);
+            String combinedGloss = e.getGloss();
            
-            for (ISynset synset
-                     : WordNetUtils.getSynsets(dict, antonym, e.getPos())) {
-
-                 String extGloss = WordNetUtils.getExtendedGloss(synset);
-                
-                 double sim = simFunc.compare(combinedGloss, extGloss);
-                 
-                 if (sim > highestSim) {
-                     highestSim = sim;
-                     bestMatch = synset;
+            List<ISynset> senses = new ArrayList<ISynset>(
+                WordNetUtils.getSynsets(dict, antonym, e.getPos()));
+            double[] sims = simFunc.scoreAll(
+                combinedGloss, WordNetUtils.getExtendedGlosses(senses));
+            for (int i = 0; i < sims.length; ++i) {
+                if (sims[i] > highestSim) {
+                    highestSim = sims[i];
+                    bestMatch = senses.get(i);
                 }
             }
             
@@ -282,8 +278,7 @@ public class AntonymExtractor implements EnrichmentProcedure {
             return null;       
 
         for (Pattern p : patterns) {
-            for (String subdef : e.getAnnotations()
-                     .get(CrownAnnotations.Glosses.class)) {
+            for (String subdef : e.getGlosses()) {
                 for (String superSubdef : subdef.split(",")) {
                     superSubdef = TRAILING_PUNCT.matcher(superSubdef).replaceAll("");
 
@@ -310,8 +305,7 @@ public class AntonymExtractor implements EnrichmentProcedure {
      * content word (e.g., "not a [x]")
      */
     static boolean isSingleWordDef(LexicalEntry e) {
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Set<String> glosses = e.getGlosses();
         return glosses.size() == 1
             && glosses.iterator().next().indexOf(',') < 0;
         // String[] subdefs = gloss.split(";");
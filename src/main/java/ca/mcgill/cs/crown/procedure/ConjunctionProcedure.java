@@ -19,6 +19,7 @@ import edu.mit.jwi.item.*;
 import edu.mit.jwi.item.POS;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
 
@@ -61,6 +62,14 @@ public class ConjunctionProcedure implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Not yet implemented
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
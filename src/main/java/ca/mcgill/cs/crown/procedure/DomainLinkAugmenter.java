@@ -23,7 +23,6 @@ import edu.stanford.nlp.util.ErasureUtils;
 
 import ca.mcgill.cs.crown.AugmentationProcedure;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
@@ -83,8 +82,7 @@ public class DomainLinkAugmenter implements AugmentationProcedure {
      * TODO
      */
     @Override public void augment(AnnotatedLexicalEntry ale) {
-        Map<String,String> rawGlosses =
-            ale.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+        Map<String,String> rawGlosses = ale.getRawGlosses();
         for (Map.Entry<String,String> e : rawGlosses.entrySet()) {
             String rawGloss = e.getKey();
             String cleanGloss = e.getValue();
@@ -134,14 +132,15 @@ public class DomainLinkAugmenter implements AugmentationProcedure {
                         else {
                             ISynset best = null;
                             double highestSim = -1;
-                            for (ISynset synset : domainSyns) {
-                                String wnGloss = WordNetUtils
-                                    .getExtendedGloss(synset);
-                                double sim = simFunc
-                                    .compare(cleanGloss, wnGloss);
-                                if (sim > highestSim) {
-                                    highestSim = sim;
-                                    best = synset;
+                            List<ISynset> senses =
+                                new ArrayList<ISynset>(domainSyns);
+                            double[] sims = simFunc.scoreAll(
+                                cleanGloss,
+                                WordNetUtils.getExtendedGlosses(senses));
+                            for (int j = 0; j < sims.length; ++j) {
+                                if (sims[j] > highestSim) {
+                                    highestSim = sims[j];
+                                    best = senses.get(j);
                                 }
                             }
                             if (best == null)
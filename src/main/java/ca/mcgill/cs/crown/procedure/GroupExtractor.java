@@ -25,13 +25,13 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
 
 import ca.mcgill.cs.crown.util.GlossUtils;
 import ca.mcgill.cs.crown.util.CrownLogger;
+import ca.mcgill.cs.crown.util.DependencyTrackingDictionary;
 import ca.mcgill.cs.crown.util.WordNetUtils;
 
 
@@ -81,8 +81,7 @@ public class GroupExtractor implements EnrichmentProcedure {
         if (!e.getPos().equals(POS.NOUN))
             return null;
 
-        for (String gloss :
-                 e.getAnnotations().get(CrownAnnotations.Glosses.class)) {
+        for (String gloss : e.getGlosses()) {
             Matcher m = A_GROUP_OF_NOUN.matcher(gloss);
             if (!m.find())
                 continue;
@@ -90,6 +89,7 @@ public class GroupExtractor implements EnrichmentProcedure {
             String groupType = m.group(1);
             String meronym = m.group(2);
 
+            DependencyTrackingDictionary.dependOn(groupType, POS.NOUN);
             ISynset hypernym = groupTypeToSynset.get(groupType);
             if (hypernym == null) {
                 //CrownLogger.info(this + ": Unrecognized group type: " + groupType);
@@ -157,12 +157,13 @@ public class GroupExtractor implements EnrichmentProcedure {
                                                  String gloss) {
         ISynset best = null;
         double highestSim = 0;
-        for (ISynset synset : syns) {
-            String wnGloss = WordNetUtils.getGlossWithoutExamples(synset);
-            double sim = simFunc.compare(gloss, wnGloss);
-            if (sim > highestSim) {
-                highestSim = sim;
-                best = synset;
+        List<ISynset> senses = new ArrayList<ISynset>(syns);
+        double[] sims = simFunc.scoreAll(
+            gloss, WordNetUtils.getGlossesWithoutExamples(senses));
+        for (int i = 0; i < sims.length; ++i) {
+            if (sims[i] > highestSim) {
+                highestSim = sims[i];
+                best = senses.get(i);
             }
         }        
         
@@ -242,6 +243,13 @@ public class GroupExtractor implements EnrichmentProcedure {
         }       
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.NOUN);
+    }
+
     /**
      * {@inheritDoc}
      */ 
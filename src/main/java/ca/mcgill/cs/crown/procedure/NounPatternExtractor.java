@@ -25,7 +25,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -81,8 +80,7 @@ public class NounPatternExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.NOUN))
             return null;
 
-        for (String gloss :
-                 e.getAnnotations().get(CrownAnnotations.Glosses.class)) {
+        for (String gloss : e.getGlosses()) {
 
             for (Map.Entry<Pattern,String> me : PATTERN_TO_NAME.entrySet()) {
                 Matcher m = me.getKey().matcher(gloss);
@@ -177,21 +175,14 @@ public class NounPatternExtractor implements EnrichmentProcedure {
 
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
-            for (ISynset candidate : candidateHypernymSynsets) {
-                String wnExtendedGloss =
-                    //WordNetUtils.getExtendedGloss(candidate);
-                    //candidate.getGloss();
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(cleanedGloss, wnExtendedGloss);
-
-                // System.out.printf("ITEM1: %s\nITEM2: %s\nscore: %f%n",
-                //                   cleanedGloss, wnExtendedGloss, score);
-                
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates =
+                new ArrayList<ISynset>(candidateHypernymSynsets);
+            double[] scores = simFunc.scoreAll(
+                cleanedGloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
 
@@ -217,6 +208,13 @@ public class NounPatternExtractor implements EnrichmentProcedure {
         return null;
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.NOUN);
+    }
+
     /**
      * {@inheritDoc}
      */ 
@@ -20,8 +20,8 @@ import edu.mit.jwi.item.POS;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
 
@@ -29,7 +29,8 @@ import ca.mcgill.cs.crown.similarity.SimilarityFunction;
 
 
 import ca.mcgill.cs.crown.util.CrownLogger;
-import ca.mcgill.cs.crown.util.CoreNlpUtils;
+import ca.mcgill.cs.crown.util.GlossAnnotation;
+import ca.mcgill.cs.crown.util.GlossAnnotationCache;
 import ca.mcgill.cs.crown.util.Stopwords;
 import ca.mcgill.cs.crown.util.WiktionaryUtils;
 import ca.mcgill.cs.crown.util.WordNetUtils;
@@ -95,11 +96,10 @@ public class ParseExtractor implements EnrichmentProcedure {
             return null;
 
         POS pos = e.getPos();
-        String entGloss = e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String entGloss = e.getGloss();
 
         double maxScore = 0;
         ISynset best = null;
-        String bestGloss = null;
         Set<String> bestHeuristics = null;
         int numSynsets = 0;
         
@@ -130,22 +130,22 @@ public class ParseExtractor implements EnrichmentProcedure {
             //                   e.getLemma(), e.getPos(),
             //                   candidateHypernymSynsets.size(), relatedLemma);
             
+            List<ISynset> candidates = new ArrayList<ISynset>();
             for (ISynset candidate : candidateHypernymSynsets) {
 
                 // Check that this sense isn't already in WN near where we're
                 // trying to put it
-                if (WordNetUtils.isAlreadyInWordNet(dict, e.getLemma(),
-                                                    pos, candidate))
-                    continue;
-                
-                String wnExtendedGloss =
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(entGloss, wnExtendedGloss);
-
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+                if (!WordNetUtils.isAlreadyInWordNet(dict, e.getLemma(),
+                                                     pos, candidate))
+                    candidates.add(candidate);
+            }
+
+            double[] scores = simFunc.scoreAll(
+                entGloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                     bestHeuristics = generatingHeuristics;
                 }
             }            
@@ -177,7 +177,7 @@ public class ParseExtractor implements EnrichmentProcedure {
     private boolean isTooSimilarToExistingDefinitions(LexicalEntry e) {
         POS pos = e.getPos();
         String lemma = e.getLemma();
-        String entGloss = e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String entGloss = e.getGloss();
         
         for (ISynset syn : WordNetUtils.getSynsets(dict, lemma, pos)) {
             String wnGloss =
@@ -198,8 +198,7 @@ public class ParseExtractor implements EnrichmentProcedure {
         MultiMap<String,String> candidates =
             new HashMultiMap<String,String>();
         
-        Map<String,String> rawGlosses =
-            e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+        Map<String,String> rawGlosses = e.getRawGlosses();
 
         StringBuilder sb = new StringBuilder();
         
@@ -216,24 +215,18 @@ public class ParseExtractor implements EnrichmentProcedure {
             
             String cleanedGloss = g.getValue();
             
-            // Parse the subdefintion
-            Annotation document = new Annotation(cleanedGloss);
-            CoreNlpUtils.get().annotate(document);
-            List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+            // Parse the subdefintion, or reuse its parse if any component has
+            // already seen it
+            GlossAnnotation parsed =
+                GlossAnnotationCache.get().annotate(cleanedGloss);
             
             // In some rare cases, a subdefinition could had multiple sentences.
             // We use them all, though this should probably be analyzed
-            for(CoreMap sentence: sentences) {
+            for (int s = 0; s < parsed.numSentences(); ++s) {
 
-                // for (CoreLabel token: sentence.get(TokensAnnotation.class)) {
-                //     String word = token.get(TextAnnotation.class);
-                //     String pos = token.get(PartOfSpeechAnnotation.class);
-                // }
-                
                 // Get the dependency parsed tree
-                Tree tree = sentence.get(TreeAnnotation.class);
-                SemanticGraph dependencies = sentence.get(
-                    CollapsedCCProcessedDependenciesAnnotation.class);
+                SemanticGraph dependencies =
+                    parsed.getSentence(s).getDependencies();
 
 
                 MultiMap<String,String> cands =
@@ -723,6 +716,14 @@ public class ParseExtractor implements EnrichmentProcedure {
     }
 
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Candidates are only found in the raw glosses
+        return features.hasRawGlosses();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -22,12 +22,12 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
 
 import ca.mcgill.cs.crown.util.CrownLogger;
+import ca.mcgill.cs.crown.util.DependencyTrackingDictionary;
 import ca.mcgill.cs.crown.util.WordNetUtils;
 
 
@@ -55,6 +55,17 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
 
     private Map<ISynset,String> personSynsetToGloss;
 
+    /**
+     * The synsets in {@link #personSynsetToGloss}, in its iteration order.
+     */
+    private final List<ISynset> personSynsets;
+
+    /**
+     * The glosses in {@link #personSynsetToGloss}, in the same order as {@link
+     * #personSynsets}, so they can be scored together in one call.
+     */
+    private final List<String> personGlosses;
+
     private ISynsetID personSynsetID;
 
 
@@ -71,9 +82,18 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
         this.simFunc = simFunc;
         personLemmas = new HashSet<String>();
         personSynsetToGloss = new HashMap<ISynset,String>();
+        personSynsets = new ArrayList<ISynset>();
+        personGlosses = new ArrayList<String>();
         loadPersonData();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.NOUN);
+    }
+
     /**
      * {@inheritDoc}
      */ 
@@ -83,6 +103,8 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
         this.dict = dictionary;
         personLemmas.clear();
         personSynsetToGloss.clear();
+        personSynsets.clear();
+        personGlosses.clear();
         loadPersonData();
     }
 
@@ -107,8 +129,7 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
                 return null;            
         }
 
-        String combinedGloss =
-            e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String combinedGloss = e.getGloss();
 
 
         // Next see if the gloss indicated the type of person
@@ -140,16 +161,16 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
         }
 
         // Otherwise, we need to brute force the search over possible attachment
-        // points
+        // points.  Since these were gathered from the whole dictionary, the
+        // result may change whenever the dictionary does.
+        DependencyTrackingDictionary.dependOnAll();
         ISynset best = null;
         double highestSim = 0;
-        for (Map.Entry<ISynset,String> ent : personSynsetToGloss.entrySet()) {
-            ISynset synset = ent.getKey();
-            String wnGloss = ent.getValue();
-            double sim = simFunc.compare(combinedGloss, wnGloss);
-            if (sim > highestSim) {
-                highestSim = sim;
-                best = synset;
+        double[] sims = simFunc.scoreAll(combinedGloss, personGlosses);
+        for (int i = 0; i < sims.length; ++i) {
+            if (sims[i] > highestSim) {
+                highestSim = sims[i];
+                best = personSynsets.get(i);
             }
         }
 
@@ -170,8 +191,7 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
      * child of the person synset.
      */
     boolean isPerson(LexicalEntry e) {
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Set<String> glosses = e.getGlosses();
         
         next_subdef:
         for (String subdef : glosses) {
@@ -186,6 +206,8 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
                     if (m.groupCount() > 0) {
                         String possiblePerson = m.group(1)
                             .replaceAll("[\\p{Punct}]+$", "");
+                        DependencyTrackingDictionary.dependOn(
+                            possiblePerson, POS.NOUN);
                         if (!personLemmas.contains(possiblePerson))
                             continue next_subdef;
                     }
@@ -267,6 +289,11 @@ public class PersonPatternExtractor implements EnrichmentProcedure {
         // CrownLogger.verbose("Saw %d lemmas for %d person synsets",
         //                   personLemmas.size(), personSynsetToGloss.size());
         this.personSynsetID = rootID;
+
+        for (Map.Entry<ISynset,String> ent : personSynsetToGloss.entrySet()) {
+            personSynsets.add(ent.getKey());
+            personGlosses.add(ent.getValue());
+        }
     }
     
 }
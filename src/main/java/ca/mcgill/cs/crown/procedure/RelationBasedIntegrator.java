@@ -23,10 +23,10 @@ import edu.stanford.nlp.util.ErasureUtils;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
 import ca.mcgill.cs.crown.Relation;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -65,11 +65,10 @@ public class RelationBasedIntegrator implements EnrichmentProcedure {
      */
     public AnnotatedLexicalEntry integrate(LexicalEntry e) {
         
-        String gloss = e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String gloss = e.getGloss();
         POS pos = e.getPos();
 
-        List<Relation> relations =
-            e.getAnnotations().get(CrownAnnotations.Relations.class);
+        List<Relation> relations = e.getRelations();
       
         // Try getting a synonym operation first
         Set<String> synonyms = new HashSet<String>();
@@ -148,18 +147,14 @@ public class RelationBasedIntegrator implements EnrichmentProcedure {
         if (lemmasInWn.size() == 1) {
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
-            Set<ISynset> candidateSynonymSynsets =
-                WordNetUtils.getSynsets(dict, lemmasInWn.get(0), pos);
-            for (ISynset candidate : candidateSynonymSynsets) {
-                
-                String wnExtendedGloss =
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(gloss, wnExtendedGloss);
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates = new ArrayList<ISynset>(
+                WordNetUtils.getSynsets(dict, lemmasInWn.get(0), pos));
+            double[] scores = simFunc.scoreAll(
+                gloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
             
@@ -199,15 +194,12 @@ public class RelationBasedIntegrator implements EnrichmentProcedure {
 
                 double maxScore = 0;
                 ISynset best = null;
-                String bestGloss = null;
-                for (ISynset candidate : ties) {
-                    String wnExtendedGloss =
-                        WordNetUtils.getGlossWithoutExamples(candidate);
-                    double score = simFunc.compare(gloss, wnExtendedGloss);
-                    if (maxScore < score) {
-                        maxScore = score;
-                        best = candidate;
-                        bestGloss = wnExtendedGloss;
+                double[] scores = simFunc.scoreAll(
+                    gloss, WordNetUtils.getGlossesWithoutExamples(ties));
+                for (int i = 0; i < scores.length; ++i) {
+                    if (maxScore < scores[i]) {
+                        maxScore = scores[i];
+                        best = ties.get(i);
                     }
                 }
                 
@@ -222,6 +214,14 @@ public class RelationBasedIntegrator implements EnrichmentProcedure {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Only synonym relations are used
+        return features.getRelationCount(Relation.RelationType.SYNONYM) > 0;
+    }
+
     /**
      * {@inheritDoc}
      */ 
@@ -20,9 +20,9 @@ import edu.mit.jwi.item.POS;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -67,8 +67,7 @@ public class SynonymExtractor implements EnrichmentProcedure {
         // word, indicating that this entry's word is synonymous with that word.
         List<String> synonyms = new ArrayList<String>();
         int numTokens = 0;
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Set<String> glosses = e.getGlosses();
                 
         for (String gloss : glosses) {
             String[] cols = gloss.split(";");
@@ -160,23 +159,20 @@ public class SynonymExtractor implements EnrichmentProcedure {
             return null;
         }
 
-        String combinedGloss =
-            e.getAnnotations().get(CrownAnnotations.Gloss.class);
+        String combinedGloss = e.getGloss();
         
         // ISynset attachmentPoint =
         //     findAttachment(candidateAttachments, combinedGloss);
 
         double maxScore = 0;
         ISynset best = null;
-        String bestGloss = null;
-        for (ISynset candidate : candidateAttachments) {
-            String wnExtendedGloss = WordNetUtils.getExtendedGloss(candidate);
-            double score = simFunc.compare(combinedGloss, wnExtendedGloss);
-            // System.out.printf("\t%f\t%s\n", score, wnExtendedGloss);
-            if (maxScore < score) {
-                maxScore = score;
-                best = candidate;
-                bestGloss = wnExtendedGloss;
+        List<ISynset> candidates = new ArrayList<ISynset>(candidateAttachments);
+        double[] scores = simFunc.scoreAll(
+            combinedGloss, WordNetUtils.getExtendedGlosses(candidates));
+        for (int i = 0; i < scores.length; ++i) {
+            if (maxScore < scores[i]) {
+                maxScore = scores[i];
+                best = candidates.get(i);
             }
         }
 
@@ -199,20 +195,18 @@ public class SynonymExtractor implements EnrichmentProcedure {
                            String combinedGloss) {
         
         // System.out.printf("Similarity of %s, gloss: %s\n", sense, combinedGloss);
-        double maxScore = -1;
-        ISynset best = null;
-        String bestGloss = null;
-        for (ISynset candidate : candidateAttachments) {
-            String wnExtendedGloss = WordNetUtils.getExtendedGloss(candidate);
-            double score = simFunc.compare(combinedGloss, wnExtendedGloss);
-            // System.out.printf("\t%f\t%s\n", score, wnExtendedGloss);
-            if (maxScore < score) {
-                maxScore = score;
-                best = candidate;
-                bestGloss = wnExtendedGloss;
-            }
-        }
-        return (maxScore > 0) ? best : null;
+        List<ISynset> candidates = new ArrayList<ISynset>(candidateAttachments);
+        int best = simFunc.argmax(
+            combinedGloss, WordNetUtils.getExtendedGlosses(candidates), 0);
+        return (best < 0) ? null : candidates.get(best);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Only subdefinitions of one or two tokens can name a synonym
+        return features.hasShortSubdefinition();
     }
 
     /**
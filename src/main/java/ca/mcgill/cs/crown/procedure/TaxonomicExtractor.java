@@ -22,7 +22,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -61,10 +60,8 @@ public class TaxonomicExtractor implements EnrichmentProcedure {
         if (!e.getPos().equals(POS.NOUN))
             return null;
 
-        Map<String,String> rawGlosses =
-            e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
-        Set<String> glosses =
-            e.getAnnotations().get(CrownAnnotations.Glosses.class);
+        Map<String,String> rawGlosses = e.getRawGlosses();
+        Set<String> glosses = e.getGlosses();
 
         // Check the raw gloss first
         for (Map.Entry<String,String> g : rawGlosses.entrySet()) {
@@ -192,6 +189,13 @@ public class TaxonomicExtractor implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.NOUN);
+    }
+
     /**
      * {@inheritDoc}
      */
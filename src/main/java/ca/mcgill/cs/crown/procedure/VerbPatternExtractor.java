@@ -25,7 +25,6 @@ import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -75,8 +74,7 @@ public class VerbPatternExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.VERB))
             return null;
 
-        for (String gloss :
-                 e.getAnnotations().get(CrownAnnotations.Glosses.class)) {
+        for (String gloss : e.getGlosses()) {
 
             Matcher m = TO_VERB.matcher(gloss);
             if (!m.find()) {
@@ -104,15 +102,14 @@ public class VerbPatternExtractor implements EnrichmentProcedure {
 
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
-            for (ISynset candidate : candidateHypernymSynsets) {
-                String wnExtendedGloss =
-                    WordNetUtils.getExtendedGloss(candidate);
-                double score = simFunc.compare(gloss, wnExtendedGloss);
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates =
+                new ArrayList<ISynset>(candidateHypernymSynsets);
+            double[] scores = simFunc.scoreAll(
+                gloss, WordNetUtils.getExtendedGlosses(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
 
@@ -137,6 +134,13 @@ public class VerbPatternExtractor implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.VERB);
+    }
+
     /**
      * {@inheritDoc}
      */ 
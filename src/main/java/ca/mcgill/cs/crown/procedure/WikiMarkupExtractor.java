@@ -23,9 +23,9 @@ import edu.stanford.nlp.util.ErasureUtils;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -115,8 +115,7 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.NOUN))
             return null;
 
-        Map<String,String> rawGlosses =
-            e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+        Map<String,String> rawGlosses = e.getRawGlosses();
 
                 
         for (Map.Entry<String,String> g : rawGlosses.entrySet()) {
@@ -211,16 +210,14 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
 
             double maxScore = 0;
             ISynset best = null;
-            String bestGloss = null;
-            for (ISynset candidate : candidateHypernymSynsets) {
-                String wnExtendedGloss =
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(cleanedGloss, wnExtendedGloss);
-
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates =
+                new ArrayList<ISynset>(candidateHypernymSynsets);
+            double[] scores = simFunc.scoreAll(
+                cleanedGloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
 
@@ -231,8 +228,7 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
             assert best != null : "no match made";
 
             if (best == null) {
-                Map<String,String> rawGlosses =
-                    e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+                Map<String,String> rawGlosses = e.getRawGlosses();
                 
                 
                 for (Map.Entry<String,String> g : rawGlosses.entrySet()) {
@@ -306,8 +302,7 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
         if (WordNetUtils.isInWn(dict, e.getLemma(), POS.VERB))
             return null;
 
-        Map<String,String> rawGlosses =
-            e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+        Map<String,String> rawGlosses = e.getRawGlosses();
         
 
         for (Map.Entry<String,String> g : rawGlosses.entrySet()) {
@@ -337,15 +332,14 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
 
             double maxScore = -1;
             ISynset best = null;
-            String bestGloss = null;
-            for (ISynset candidate : candidateHypernymSynsets) {
-                String wnExtendedGloss =
-                    WordNetUtils.getGlossWithoutExamples(candidate);
-                double score = simFunc.compare(cleanedGloss, wnExtendedGloss);
-                if (maxScore < score) {
-                    maxScore = score;
-                    best = candidate;
-                    bestGloss = wnExtendedGloss;
+            List<ISynset> candidates =
+                new ArrayList<ISynset>(candidateHypernymSynsets);
+            double[] scores = simFunc.scoreAll(
+                cleanedGloss, WordNetUtils.getGlossesWithoutExamples(candidates));
+            for (int i = 0; i < scores.length; ++i) {
+                if (maxScore < scores[i]) {
+                    maxScore = scores[i];
+                    best = candidates.get(i);
                 }
             }
 
@@ -385,6 +379,21 @@ public class WikiMarkupExtractor implements EnrichmentProcedure {
         return null;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Every pattern matches a [[linked]] word
+        return features.hasLinks();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Set<POS> getHandledPos() {
+        return EnumSet.of(POS.NOUN, POS.VERB);
+    }
+
     /**
      * {@inheritDoc}
      */ 
@@ -20,9 +20,9 @@ import edu.mit.jwi.item.POS;
 
 import ca.mcgill.cs.crown.AnnotatedLexicalEntry;
 import ca.mcgill.cs.crown.AnnotatedLexicalEntryImpl;
+import ca.mcgill.cs.crown.EntryFeatures;
 import ca.mcgill.cs.crown.EnrichmentProcedure;
 import ca.mcgill.cs.crown.LexicalEntry;
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.CrownOperations;
 
 import ca.mcgill.cs.crown.similarity.SimilarityFunction;
@@ -88,8 +88,7 @@ public class WiktionaryAnnotationBasedExtractor implements EnrichmentProcedure {
     public AnnotatedLexicalEntry integrate(LexicalEntry e) {
 
         List<String> annotations = new ArrayList<String>();
-        Map<String,String> rawGlosses =
-            e.getAnnotations().get(CrownAnnotations.RawGlosses.class);
+        Map<String,String> rawGlosses = e.getRawGlosses();
         
         boolean hasOneWordGloss = rawGlosses.size() == 1;
         for (Map.Entry<String,String> g : rawGlosses.entrySet()) {
@@ -208,22 +207,22 @@ public class WiktionaryAnnotationBasedExtractor implements EnrichmentProcedure {
     private ISynset findAttachment(Set<ISynset> candidateAttachments,
                                    LexicalEntry e) {
 
-        String combinedGloss =
-            e.getAnnotations().get(CrownAnnotations.Gloss.class);
-        double maxScore = 0;
-        ISynset best = null;
-        for (ISynset candidate : candidateAttachments) {
-            String wnExtendedGloss = WordNetUtils.getExtendedGloss(candidate);
-            double score = simFunc.compare(combinedGloss, wnExtendedGloss);
-            if (maxScore < score) {
-                maxScore = score;
-                best = candidate;
-            }
-        }
-        return best;
+        String combinedGloss = e.getGloss();
+        List<ISynset> candidates = new ArrayList<ISynset>(candidateAttachments);
+        int best = simFunc.argmax(
+            combinedGloss, WordNetUtils.getExtendedGlosses(candidates), 0);
+        return (best < 0) ? null : candidates.get(best);
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isApplicable(EntryFeatures features) {
+        // Only glosses that begin with a {{annotation}} yield any operations
+        return features.hasAnnotations();
+    }
+
     /**
      * {@inheritDoc}
      */ 
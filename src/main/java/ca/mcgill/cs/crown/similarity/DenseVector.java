@@ -0,0 +1,103 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+
+/**
+ * An immutable dense vector whose magnitude is computed once when it is
+ * created, along with the vector kernels used for comparing glosses.
+ *
+ * <p> The kernels are written as simple counted loops over primitive arrays
+ * with no branches or calls in the loop body, which is the shape HotSpot's
+ * superword optimization can vectorize.  The sums are accumulated in the same
+ * order as a naive loop, so results are bit-for-bit identical to computing the
+ * cosine directly.  (The JDK Vector API would allow reordering the sums, but it
+ * is not available for the Java 8 target this project builds for.)
+ */
+public final class DenseVector {
+
+    private final float[] values;
+
+    private final float magnitude;
+
+    /**
+     * Creates a vector backed by {@code values}, which must not be modified
+     * afterwards.
+     */
+    public DenseVector(float[] values) {
+        this.values = values;
+        this.magnitude = magnitude(values);
+    }
+
+    /**
+     * Returns the backing array, which must not be modified.
+     */
+    public float[] values() {
+        return values;
+    }
+
+    public int length() {
+        return values.length;
+    }
+
+    public float magnitude() {
+        return magnitude;
+    }
+
+    /**
+     * Returns the cosine similarity of the two vectors, or {@code 0} if either
+     * has no magnitude.
+     */
+    public double cosine(DenseVector other) {
+        if (magnitude == 0 || other.magnitude == 0)
+            return 0;
+        float dotProduct = dot(values, other.values);
+        return dotProduct / (magnitude * other.magnitude);
+    }
+
+    /**
+     * Computes the cosine similarity of {@code query} with each of the vectors
+     * in {@code candidates}, storing the results in {@code scores}.  {@code
+     * null} candidates are given a score of {@code 0}.
+     */
+    public static void cosines(DenseVector query, DenseVector[] candidates,
+                               double[] scores) {
+        for (int i = 0; i < candidates.length; ++i) {
+            DenseVector c = candidates[i];
+            scores[i] = (query == null || c == null) ? 0 : query.cosine(c);
+        }
+    }
+
+    /**
+     * Returns the dot product of two equal-length arrays.
+     */
+    public static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; ++i)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    /**
+     * Returns the Euclidean length of the array.
+     */
+    public static float magnitude(float[] a) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; ++i)
+            sum += a[i] * a[i];
+        return (float) Math.sqrt(sum);
+    }
+
+    /**
+     * Adds {@code src} to {@code dest} in place.
+     */
+    public static void addTo(float[] src, float[] dest) {
+        for (int i = 0; i < src.length; ++i)
+            dest[i] += src[i];
+    }
+}
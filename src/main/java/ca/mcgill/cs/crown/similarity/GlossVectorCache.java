@@ -0,0 +1,174 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import java.util.function.Function;
+
+
+/**
+ * A thread-safe, size-bounded cache from a gloss to its aggregated vector,
+ * whose magnitude is computed once when it is cached.  The cache is split into
+ * independently-locked stripes, each of which evicts its least-recently-used
+ * gloss once full.  Glosses can also be <i>pinned</i>,
+ * which keeps their vectors in a separate lock-free table that is never
+ * evicted; this is intended for the WordNet glosses that are compared against
+ * over and over.
+ *
+ * <p> Since many glosses have no vector (none of their words have vectors),
+ * {@code null} values are cached as well.
+ */
+public class GlossVectorCache {
+
+    /**
+     * The value stored in place of a {@code null} vector
+     */
+    private static final DenseVector NO_VECTOR = new DenseVector(new float[0]);
+
+    private static final int NUM_STRIPES = 64;
+
+    private final Stripe[] stripes;
+
+    private final Map<String,DenseVector> pinned;
+
+    private final LongAdder hits;
+
+    private final LongAdder misses;
+
+    private final LongAdder evictions;
+
+    /**
+     * Creates a cache that holds at most {@code maxSize} unpinned glosses.
+     */
+    public GlossVectorCache(int maxSize) {
+        if (maxSize < NUM_STRIPES)
+            throw new IllegalArgumentException(
+                "maxSize must be at least " + NUM_STRIPES);
+        stripes = new Stripe[NUM_STRIPES];
+        for (int i = 0; i < stripes.length; ++i)
+            stripes[i] = new Stripe(maxSize / NUM_STRIPES);
+        pinned = new ConcurrentHashMap<String,DenseVector>();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
+    }
+
+    /**
+     * Returns the vector for the gloss, computing and caching it with {@code
+     * vectorizer} if it is not already cached.  Concurrent calls for the same
+     * uncached gloss may each compute its vector.
+     */
+    public DenseVector get(String gloss,
+                           Function<String,DenseVector> vectorizer) {
+        DenseVector vec = pinned.get(gloss);
+        if (vec == null) {
+            Stripe stripe = stripeFor(gloss);
+            synchronized (stripe) {
+                vec = stripe.get(gloss);
+            }
+        }
+        if (vec != null) {
+            hits.increment();
+            return (vec == NO_VECTOR) ? null : vec;
+        }
+
+        misses.increment();
+        vec = vectorizer.apply(gloss);
+        Stripe stripe = stripeFor(gloss);
+        synchronized (stripe) {
+            stripe.put(gloss, (vec == null) ? NO_VECTOR : vec);
+        }
+        return vec;
+    }
+
+    /**
+     * Stores the vector for the gloss in the pinned table, where it will never
+     * be evicted.
+     */
+    public void pin(String gloss, DenseVector vec) {
+        pinned.put(gloss, (vec == null) ? NO_VECTOR : vec);
+    }
+
+    /**
+     * Removes all pinned glosses.
+     */
+    public void clearPinned() {
+        pinned.clear();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of glosses currently cached, including those that
+     * are pinned.
+     */
+    public int size() {
+        int size = pinned.size();
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeFor(String gloss) {
+        int h = gloss.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (NUM_STRIPES - 1)];
+    }
+
+    @Override public String toString() {
+        long h = hits(), m = misses();
+        return String.format("%d glosses (%d pinned), %d hits, %d misses " +
+                             "(%.1f%% hit rate), %d evictions",
+                             size(), pinned.size(), h, m,
+                             (h + m == 0) ? 0d : 100d * h / (h + m),
+                             evictions());
+    }
+
+    /**
+     * One stripe of the cache, which must be accessed while holding its lock.
+     */
+    private class Stripe extends LinkedHashMap<String,DenseVector> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override protected boolean removeEldestEntry(
+                Map.Entry<String,DenseVector> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -19,10 +19,8 @@
 package ca.mcgill.cs.crown.similarity;
 
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,9 +36,48 @@ import java.util.Map;
  * Normalization is done according to the strategy described here:
  * P. Clough, R. Gaizauskas, S.S.L. Piao, and Y. Wilks. 2002. In Proceedings of the
  * 40th Annual Meeting of the ACL, pages 152-159.
+ *
+ * This implementation works over arrays of precomputed lowercase character
+ * codes with bitset marks and reusable, per-thread primitive tile buffers, so a
+ * comparison allocates nothing once the buffers have grown to fit the inputs.
+ * Its scores are identical to those of the original string-based
+ * implementation, which compared single-character lowercased substrings.
  */
 public class GreedyStringTiling implements SimilarityFunction {
 
+    /**
+     * For each {@code char}, a code such that two characters have the same code
+     * if and only if their single-character strings are equal after {@link
+     * String#toLowerCase()}.  This is usually the lowercase character itself,
+     * but a few characters lowercase to multiple characters and are given codes
+     * above {@code Character.MAX_VALUE}.
+     */
+    private static final int[] LOWERCASE_CODES = new int[Character.MAX_VALUE + 1];
+
+    static {
+        Map<String,Integer> multiCharCodes = new HashMap<String,Integer>();
+        for (int c = 0; c <= Character.MAX_VALUE; ++c) {
+            String lower = String.valueOf((char)c).toLowerCase();
+            if (lower.length() == 1)
+                LOWERCASE_CODES[c] = lower.charAt(0);
+            else {
+                Integer code = multiCharCodes.get(lower);
+                if (code == null) {
+                    code = Character.MAX_VALUE + 1 + multiCharCodes.size();
+                    multiCharCodes.put(lower, code);
+                }
+                LOWERCASE_CODES[c] = code;
+            }
+        }
+    }
+
+    /**
+     * Per-thread scratch space, since the same instance is used concurrently
+     * from the parallel integration pass.
+     */
+    private static final ThreadLocal<Workspace> WORKSPACES =
+        ThreadLocal.withInitial(Workspace::new);
+
     int minMatchLength;
 	
     public GreedyStringTiling(int minMatchLength) {
@@ -52,290 +89,152 @@ public class GreedyStringTiling implements SimilarityFunction {
      */
     public double compare(String string1, String string2) {
 
-        MarkedString s1 = new MarkedString(string1);
-        MarkedString s2 = new MarkedString(string2);
-		
-        TileCollection finalTiles = new TileCollection(s1, s2);
+        Workspace w = WORKSPACES.get();
+        int len1 = string1.length();
+        int len2 = string2.length();
+        w.ensureCapacity(len1, len2);
+        int[] s1 = w.codes1;
+        int[] s2 = w.codes2;
+        long[] marks1 = w.marks1;
+        long[] marks2 = w.marks2;
+        for (int i = 0; i < len1; ++i)
+            s1[i] = LOWERCASE_CODES[string1.charAt(i)];
+        for (int j = 0; j < len2; ++j)
+            s2[j] = LOWERCASE_CODES[string2.charAt(j)];
+        Arrays.fill(marks1, 0, words(len1), 0L);
+        Arrays.fill(marks2, 0, words(len2), 0L);
 
         int maxmatch = Integer.MAX_VALUE;
         while (maxmatch > minMatchLength) {
 
             maxmatch = minMatchLength;
-            
-            TileCollection tiles = new TileCollection(s1, s2);
-            
-            for (int i = s1.getFirstUnmarkedIndex(); i < s1.length(); i++) {
-                
-                for (int j = s2.getFirstUnmarkedIndex(); j < s2.length(); j++) {
-
-                    if (i == -1 || j == -1)
-                        break;
-                    
-                    int k = 0;
-                    while ((i + k) < s1.length() && (j + k) < s2.length() &&
-                           s1.characterAtIndex(i + k).toLowerCase().equals(s2.characterAtIndex(j + k).toLowerCase()) && 
-                           s1.isUnmarked(i + k) && s2.isUnmarked(j + k)) {
-
-                        k++;
-                    }
-                    
-                    if (k >= maxmatch) {
-                        // We don't need to decide between k > maxmatch and
-                        // k == maxmatch, because TileCollection takes care of this.
-                        
-                        tiles.addTile(i, j, k);
-                        maxmatch = k;
+            w.numTiles = 0;
+
+            // Marks only change between passes, so the first unmarked
+            // positions are fixed for the whole pass.  If every character of
+            // string2 is marked, there are no tiles to find.
+            int first1 = firstUnmarked(marks1, len1);
+            int first2 = firstUnmarked(marks2, len2);
+            if (first2 >= 0) {
+                for (int i = Math.max(first1, 0); i < len1; i++) {
+                    for (int j = first2; j < len2; j++) {
+
+                        int k = 0;
+                        while ((i + k) < len1 && (j + k) < len2 &&
+                               s1[i + k] == s2[j + k] &&
+                               isUnmarked(marks1, i + k) &&
+                               isUnmarked(marks2, j + k)) {
+                            k++;
+                        }
+
+                        if (k >= maxmatch) {
+                            // Only the tiles of the maximal length are used, so
+                            // any shorter ones found so far can be dropped
+                            if (k > maxmatch)
+                                w.numTiles = 0;
+                            w.addTile(i, j);
+                            maxmatch = k;
+                        }
                     }
                 }
             }
-            
-            for (Tile t : tiles.getTiles(maxmatch)) {
-                
+
+            for (int t = 0; t < w.numTiles; ++t) {
+                int index1 = w.tileIndex1[t];
+                int index2 = w.tileIndex2[t];
+
                 // Check if occluded
                 boolean occluded = false;
                 for (int i = 0; i < maxmatch; i++) {
-                    if (s1.isMarked(t.getIndex1() + i) ||
-                        s2.isMarked(t.getIndex2() + i))
+                    if (!isUnmarked(marks1, index1 + i) ||
+                        !isUnmarked(marks2, index2 + i)) {
                         occluded = true;
-                    
+                        break;
+                    }
                 }
-                    
+
                 if (!occluded) {
                     for (int i = 0; i < maxmatch; i++) {
-                        
-                        s1.mark(t.getIndex1() + i);
-                        s2.mark(t.getIndex2() + i);
+                        mark(marks1, index1 + i);
+                        mark(marks2, index2 + i);
                     }
-                    finalTiles.addTile(t.getIndex1(), t.getIndex2(), t.getLength());
-                }				
+                }
             }
         }
-	
-        double numerator = s1.getNumberOfMarkedCharacters();
-        double denominator = s1.length(); 
+
+        int numMarked = 0;
+        for (int i = 0, n = words(len1); i < n; ++i)
+            numMarked += Long.bitCount(marks1[i]);
+
+        double numerator = numMarked;
+        double denominator = len1;
         double score = numerator / denominator;
-		
+
         return score;
-    }		
-	
-    private class MarkedString
-    {	
-        private String string;
-        private boolean[] marker;
-		
-        public MarkedString(String string)
-        {
-            this.string = string;
-            this.marker = new boolean[string.length()];
-			
-            for (int i = 0; i < marker.length; i++)
-                marker[i] = false;
-        }
-		
-        public void mark(int index)
-        {
-            marker[index] = true;
-        }
-		
-        public void unmark(int index)
-        {
-            marker[index] = false;
-        }
-		
-        public boolean isMarked(int index)
-        {
-            return marker[index] == true;
-        }		
-		
-        public boolean isUnmarked(int index)
-        {
-            return marker[index] == false;
-        }
-		
-        public boolean markAtIndex(int index)
-        {
-            return marker[index];
-        }
-		
-        public int getFirstUnmarkedIndex()
-        {
-            for (int i = 0; i < marker.length; i++)
-                {
-                    if (marker[i] == false)
-                        return i;
-                }
-            return -1;
-        }
-		
-        public String characterAtIndex(int index)
-        {
-            return string.substring(index, index + 1);
-        }
+    }
 
-        public String getString()
-        {
-            return string;
-        }
-		
-        public int length()
-        {
-            return string.length();
-        }
-		
-        public int getNumberOfMarkedCharacters()
-        {
-            int count = 0;
-            for (int i = 0; i < marker.length; i++)
-                {
-                    if (marker[i] == true)
-                        count++;
-                }
-            return count;
-        }
-		
-        public String toString(List<Integer> startIndexes)
-        {
-            StringBuilder sb = new StringBuilder();
-			
-            boolean markOpen = false;
-            for (int i = 0; i < string.length(); i++)
-                {
-                    if ((isMarked(i) && markOpen))
-                        {
-                            // This might be the end of token 1 and the start of token 2,
-                            // not a single contiguous token.
-					
-                            boolean startOfTile = false;
-                            for (Integer startIndex : startIndexes)
-                                {
-                                    if (startIndex.equals(i))
-                                        startOfTile = true;
-                                }
-					
-                            if (startOfTile)
-                                sb.append("][" + characterAtIndex(i));
-                            else
-                                sb.append(characterAtIndex(i));
-                        } else if (isMarked(i) && !markOpen)
-                        {
-                            sb.append("[" + characterAtIndex(i));
-                            markOpen = true;
-                        } else if (isUnmarked(i) && markOpen)
-                        {
-                            sb.append("]" + characterAtIndex(i));
-                            markOpen = false;
-                        } else if (isUnmarked(i) && !markOpen) {
-                        sb.append(characterAtIndex(i));
-                    }
-                }
-			
-            return sb.toString();
-        }
+    private static int words(int numBits) {
+        return (numBits + 63) >>> 6;
     }
-	
-    private class TileCollection
-    {
-        MarkedString string1;
-        MarkedString string2;
-		
-        Map<Integer,List<Tile>> tiles = new HashMap<Integer,List<Tile>>();
-		
-        public TileCollection(MarkedString string1, MarkedString string2)
-        {
-            this.string1 = string1;
-            this.string2 = string2;
-        }
-		
-        public void addTile(int index1, int index2, int length)
-        {
-            List<Tile> tilesOfGivenLength;
-            if (tiles.containsKey(length))
-                tilesOfGivenLength = tiles.get(length);
-            else
-                tilesOfGivenLength = new ArrayList<Tile>();
-			
-            tilesOfGivenLength.add(new Tile(index1, index2, length));
-			
-            tiles.put(length, tilesOfGivenLength);
-        }
-		
-        public List<Tile> getTiles()
-        {
-            List<Tile> allTiles = new ArrayList<Tile>();
-            for (Integer i : tiles.keySet())
-                {
-                    allTiles.addAll(tiles.get(i));
-                }
-            return allTiles;				
-        }
-		
-        public List<Tile> getTiles(int length)
-        {
-            if (!tiles.containsKey(length))
-                return new ArrayList<Tile>();
-			
-            return tiles.get(length);
-        }
 
-        public MarkedString getString1()
-        {
-            return string1;
-        }
+    private static boolean isUnmarked(long[] marks, int index) {
+        return (marks[index >>> 6] & (1L << index)) == 0;
+    }
 
-        public MarkedString getString2()
-        {
-            return string2;
-        }
-		
-        public String toString()
-        {
-            StringBuilder sb = new StringBuilder();
-			
-            for (Tile t : getTiles())
-                {
-                    sb.append(t.getIndex1() + " [");
-                    for (int i = 0; i < t.length; i++)
-                        sb.append(string1.characterAtIndex(t.getIndex1() + i));
-                    sb.append("] ** ");
-				
-                    sb.append(t.getIndex2() + " [");
-                    for (int i = 0; i < t.length; i++)
-                        sb.append(string2.characterAtIndex(t.getIndex2() + i));
-                    sb.append("]");
-				
-                    sb.append("\n");
-                }
-            sb.append("\n");
-			
-            return sb.toString();
-        }
+    private static void mark(long[] marks, int index) {
+        marks[index >>> 6] |= (1L << index);
     }
-	
-    private class Tile
-    {
-        int index1, index2;
-        int length;
-		
-        public Tile(int index1, int index2, int length)
-        {
-            this.index1 = index1;
-            this.index2 = index2;
-            this.length = length;
-        }
 
-        public int getIndex1()
-        {
-            return index1;
+    /**
+     * Returns the first unmarked index less than {@code length}, or {@code -1}
+     * if all are marked.
+     */
+    private static int firstUnmarked(long[] marks, int length) {
+        for (int w = 0, n = words(length); w < n; ++w) {
+            long unmarked = ~marks[w];
+            if (unmarked != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(unmarked);
+                return (index < length) ? index : -1;
+            }
         }
+        return -1;
+    }
 
-        public int getIndex2()
-        {
-            return index2;
+    /**
+     * The reusable buffers for one thread's comparisons.  The tile buffers
+     * hold the start positions of the tiles of the current maximal length, in
+     * the order they were found.
+     */
+    private static class Workspace {
+
+        int[] codes1 = new int[256];
+        int[] codes2 = new int[256];
+        long[] marks1 = new long[4];
+        long[] marks2 = new long[4];
+
+        int[] tileIndex1 = new int[64];
+        int[] tileIndex2 = new int[64];
+        int numTiles;
+
+        void ensureCapacity(int len1, int len2) {
+            if (codes1.length < len1) {
+                codes1 = new int[len1];
+                marks1 = new long[words(len1)];
+            }
+            if (codes2.length < len2) {
+                codes2 = new int[len2];
+                marks2 = new long[words(len2)];
+            }
         }
 
-        public int getLength()
-        {
-            return length;
+        void addTile(int index1, int index2) {
+            if (numTiles == tileIndex1.length) {
+                tileIndex1 = Arrays.copyOf(tileIndex1, numTiles * 2);
+                tileIndex2 = Arrays.copyOf(tileIndex2, numTiles * 2);
+            }
+            tileIndex1[numTiles] = index1;
+            tileIndex2[numTiles] = index2;
+            numTiles++;
         }
     }
 }
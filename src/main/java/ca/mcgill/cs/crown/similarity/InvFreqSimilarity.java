@@ -21,14 +21,13 @@ import java.util.Set;
 import gnu.trove.map.TObjectDoubleMap;
 import gnu.trove.map.hash.TObjectDoubleHashMap;
 
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.LexicalEntry;
 
 import ca.mcgill.cs.crown.util.CrownLogger;
+import ca.mcgill.cs.crown.util.GlossAnnotation;
+import ca.mcgill.cs.crown.util.GlossAnnotationCache;
 
 import edu.ucla.sspace.util.Counter;
-import edu.ucla.sspace.util.HashMultiMap;
-import edu.ucla.sspace.util.MultiMap;
 import edu.ucla.sspace.util.ObjectCounter;
 
 import edu.mit.jwi.IDictionary;
@@ -36,14 +35,6 @@ import edu.mit.jwi.IDictionary;
 import edu.mit.jwi.item.ISynset;
 import edu.mit.jwi.item.POS;
 
-import edu.stanford.nlp.ling.*;
-import edu.stanford.nlp.ling.CoreAnnotations.*;
-import edu.stanford.nlp.pipeline.*;
-import edu.stanford.nlp.util.CoreMap;
-import edu.stanford.nlp.trees.*;
-import edu.stanford.nlp.trees.TreeCoreAnnotations.*;
-import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation;
-
 
 /**
  * Compares two strings on the basis of their shared lemmas, where words are
@@ -71,52 +62,30 @@ public class InvFreqSimilarity implements SimilarityFunction {
      */
     private final TObjectDoubleMap<String> lemmaToWeight;
 
-    /**
-     * A cache from a string to the lemmas contained in the string
-     */
-    private final MultiMap<String,String> stringToLemmasCache;
-
-    /**
-     * The CoreNLP pipeline used to annotate data
-     */
-    private final StanfordCoreNLP pipeline;
     
 	
     public InvFreqSimilarity(Collection<LexicalEntry> entries,
                              IDictionary dict) {
 
         lemmaToWeight = new TObjectDoubleHashMap<String>(entries.size());
-        // NOTE: make this some kind of proper cache?
-        stringToLemmasCache = new HashMultiMap<String,String>();
-        java.util.Properties props = new java.util.Properties();
-        props.put("annotators", "tokenize, ssplit, pos, lemma");
-        pipeline = new StanfordCoreNLP(props);
-
         reset(dict, entries);
     }
 
     /**
-     * Extracts the content-word lemmas from a string, storing the mapping in a
-     * cache for fast lookup later.
+     * Extracts the content-word lemmas from a string, whose tags and lemmas
+     * are kept in the shared {@link GlossAnnotationCache}.
      */
     private Set<String> getLemmas(String gloss) {
-        synchronized(stringToLemmasCache) {
-            Set<String> lemmas = stringToLemmasCache.get(gloss);
-            if (!lemmas.isEmpty())
-                return lemmas;
-        }
-        
         Set<String> lemmas = new HashSet<String>();
-        Annotation document = new Annotation(gloss);
-        pipeline.annotate(document);
-        List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+        GlossAnnotation annotated = GlossAnnotationCache.get().tag(gloss);
 
         // In some rare cases, a subdefinitoin could had multiple sentences.  We
         // use them all, though this should probably be analyzed
-        for(CoreMap sentence: sentences) {
-            for (CoreLabel token: sentence.get(TokensAnnotation.class)) {
-                String lemma = token.get(LemmaAnnotation.class).toLowerCase();
-                String pos = token.get(PartOfSpeechAnnotation.class);
+        for (int s = 0; s < annotated.numSentences(); ++s) {
+            GlossAnnotation.Sentence sentence = annotated.getSentence(s);
+            for (int t = 0; t < sentence.size(); ++t) {
+                String lemma = sentence.getLemma(t).toLowerCase();
+                String pos = sentence.getTag(t);
                 char c = pos.substring(0,1).toLowerCase().charAt(0);
                 // Not sure if we need to pos tag... but at least avoid putting
                 // in everything but content
@@ -126,9 +95,6 @@ public class InvFreqSimilarity implements SimilarityFunction {
                     lemmas.add(lemma + "." + c);
             }
         }
-        synchronized(stringToLemmasCache) {
-            stringToLemmasCache.putMany(gloss, lemmas);
-        }
         return lemmas;
     }
     
@@ -140,6 +106,35 @@ public class InvFreqSimilarity implements SimilarityFunction {
         Set<String> s2lemmas = getLemmas(string2);
             
        
+        if (s1lemmas.isEmpty() || s2lemmas.isEmpty())
+            return 0;
+
+        double weightSum = weightedOverlap(s1lemmas, s2lemmas);
+
+        CrownLogger.veryVerbose("%s -> %s; %s -> %s :: %f", string1, s1lemmas,
+                                string2, s2lemmas, weightSum);
+        
+        return weightSum;
+    }
+
+    /**
+     * {@inheritDoc}  The lemmas of {@code query} are extracted only once.
+     */
+    @Override public double[] scoreAll(String query, List<String> candidates) {
+        double[] scores = new double[candidates.size()];
+        Set<String> queryLemmas = getLemmas(query);
+        if (queryLemmas.isEmpty())
+            return scores;
+        int i = 0;
+        for (String candidate : candidates)
+            scores[i++] = weightedOverlap(queryLemmas, getLemmas(candidate));
+        return scores;
+    }
+
+    /**
+     * Returns the sum of the weights of the lemmas the two sets have in common.
+     */
+    private double weightedOverlap(Set<String> s1lemmas, Set<String> s2lemmas) {
         if (s1lemmas.isEmpty() || s2lemmas.isEmpty())
             return 0;
 
@@ -149,10 +144,6 @@ public class InvFreqSimilarity implements SimilarityFunction {
             if (s2lemmas.contains(s))
                 weightSum += lemmaToWeight.get(s);
         }
-
-        System.out.printf("%n%s -> %s%n%s -> %s%n :: %f%n", string1, s1lemmas,
-                          string2, s2lemmas, weightSum);
-        
         return weightSum;
     }
 
@@ -162,8 +153,7 @@ public class InvFreqSimilarity implements SimilarityFunction {
         int numGlosses = 0;
 
         for (LexicalEntry e : entries) {
-            String gloss =
-                e.getAnnotations().get(CrownAnnotations.Gloss.class);
+            String gloss = e.getGloss();
             ++numGlosses;
             for (String lemma : getLemmas(gloss))
                 lemmaCounts.count(lemma);
@@ -0,0 +1,405 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+
+import java.nio.channels.FileChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.mcgill.cs.crown.util.CrownLogger;
+
+
+/**
+ * A read-only store of unit-length word vectors that is memory-mapped from a
+ * compact binary file, so that opening it takes no time and the vectors live
+ * off the Java heap.  The file is created once from the original word2vec
+ * binary format using {@link #convert(File,File)}, or from the command line
+ * with {@code MappedVectorStore <word2vec.bin> <output>}.
+ *
+ * <p> The file layout (all values little-endian) is a fixed-size header, one
+ * contiguous block of {@code numWords * dimensions} floats, and a vocabulary
+ * section made of the word offsets into a UTF-8 string pool, the pool itself,
+ * and an open-addressing hash table from each word to its row.  Lookups probe
+ * the mapped table directly without loading the vocabulary onto the heap.
+ *
+ * <p> Instances are safe to use from multiple threads.
+ */
+public class MappedVectorStore {
+
+    /**
+     * The magic number at the start of every file ("CRWV")
+     */
+    static final int MAGIC = 0x43525756;
+
+    static final int VERSION = 1;
+
+    /**
+     * The size of the header, which is padded so the float block is aligned
+     */
+    static final int HEADER_SIZE = 64;
+
+    private final int numWords;
+
+    private final int dimensions;
+
+    /**
+     * The mapped float block, split into segments since a single mapping is
+     * limited to 2GB.
+     */
+    private final FloatBuffer[] segments;
+
+    /**
+     * The number of vectors stored in each segment
+     */
+    private final int vectorsPerSegment;
+
+    /**
+     * The start offset of each word in the {@link #pool}, with one extra
+     * entry marking the end of the last word.
+     */
+    private final IntBufferView wordOffsets;
+
+    private final ByteBuffer pool;
+
+    private final IntBufferView table;
+
+    private final int tableMask;
+
+    private MappedVectorStore(File storeFile) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "r");
+             FileChannel fc = raf.getChannel()) {
+
+            ByteBuffer header = fc.map(FileChannel.MapMode.READ_ONLY,
+                                       0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC)
+                throw new IOException(storeFile + " is not a vector store");
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported vector store version: " +
+                                      header.getInt(4));
+            numWords = header.getInt(8);
+            dimensions = header.getInt(12);
+            int tableSize = header.getInt(16);
+            int poolSize = header.getInt(20);
+            long vocabStart = header.getLong(24);
+
+            vectorsPerSegment = Integer.MAX_VALUE / (dimensions * 4);
+            int numSegments = (numWords + vectorsPerSegment - 1)
+                / vectorsPerSegment;
+            segments = new FloatBuffer[numSegments];
+            for (int s = 0; s < numSegments; ++s) {
+                long start = HEADER_SIZE
+                    + (long) s * vectorsPerSegment * dimensions * 4;
+                int n = Math.min(vectorsPerSegment,
+                                 numWords - s * vectorsPerSegment);
+                segments[s] = fc.map(FileChannel.MapMode.READ_ONLY, start,
+                                     (long) n * dimensions * 4)
+                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            }
+
+            long offsetsBytes = 4L * (numWords + 1);
+            long tableStart = vocabStart + offsetsBytes + poolSize;
+            tableStart += (4 - (tableStart % 4)) % 4;
+            wordOffsets = new IntBufferView(
+                fc.map(FileChannel.MapMode.READ_ONLY, vocabStart,
+                       offsetsBytes));
+            pool = fc.map(FileChannel.MapMode.READ_ONLY,
+                          vocabStart + offsetsBytes, poolSize);
+            table = new IntBufferView(
+                fc.map(FileChannel.MapMode.READ_ONLY, tableStart,
+                       4L * tableSize));
+            tableMask = tableSize - 1;
+        }
+    }
+
+    /**
+     * Opens an existing vector store file.
+     */
+    public static MappedVectorStore open(File storeFile) {
+        try {
+            long start = System.currentTimeMillis();
+            MappedVectorStore store = new MappedVectorStore(storeFile);
+            CrownLogger.verbose("Mapped %d vectors from %s in %d ms",
+                                store.numWords, storeFile,
+                                System.currentTimeMillis() - start);
+            return store;
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the file starts with the header of a vector store
+     * file.
+     */
+    public static boolean isVectorStore(File file) {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+            return false;
+        try (DataInputStream dis =
+                 new DataInputStream(new FileInputStream(file))) {
+            return Integer.reverseBytes(dis.readInt()) == MAGIC;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of dimensions in each vector.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns the number of words in the store.
+     */
+    public int size() {
+        return numWords;
+    }
+
+    /**
+     * Returns the row of the word's vector, or {@code -1} if the word is not in
+     * the store.
+     */
+    public int indexOf(String word) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int slot = mix(word.hashCode()) & tableMask;
+        while (true) {
+            int row = table.get(slot) - 1;
+            if (row < 0)
+                return -1;
+            if (wordEquals(row, bytes))
+                return row;
+            slot = (slot + 1) & tableMask;
+        }
+    }
+
+    private boolean wordEquals(int row, byte[] bytes) {
+        int start = wordOffsets.get(row);
+        int end = wordOffsets.get(row + 1);
+        if (end - start != bytes.length)
+            return false;
+        for (int i = 0; i < bytes.length; ++i) {
+            if (pool.get(start + i) != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the vector in the specified row into {@code dest}.
+     */
+    public void get(int row, float[] dest) {
+        FloatBuffer seg = segments[row / vectorsPerSegment];
+        int base = (row % vectorsPerSegment) * dimensions;
+        for (int i = 0; i < dimensions; ++i)
+            dest[i] = seg.get(base + i);
+    }
+
+    /**
+     * Adds the vector in the specified row to {@code dest}.
+     */
+    public void addTo(int row, float[] dest) {
+        FloatBuffer seg = segments[row / vectorsPerSegment];
+        int base = (row % vectorsPerSegment) * dimensions;
+        for (int i = 0; i < dimensions; ++i)
+            dest[i] += seg.get(base + i);
+    }
+
+    /**
+     * Spreads the bits of a {@link String#hashCode()} so that linear probing
+     * does not cluster on similar words.
+     */
+    private static int mix(int h) {
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return h;
+    }
+
+    /**
+     * Converts a word2vec binary file (e.g., the GoogleNews vectors) into a
+     * vector store file, normalizing each vector to unit length.  The
+     * normalization is identical to the one done when the binary file is
+     * loaded directly by {@link Word2VecSimilarity}.
+     */
+    public static void convert(File word2vecFile, File storeFile)
+            throws IOException {
+
+        CrownLogger.info("Converting %s to vector store %s",
+                         word2vecFile, storeFile);
+        DataInputStream dis = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(word2vecFile),
+                                    1 << 20));
+
+        StringBuilder sb = new StringBuilder();
+        char ch = (char) dis.read();
+        while (ch != '\n') {
+            sb.append(ch);
+            ch = (char) dis.read();
+        }
+        String[] parts = sb.toString().split("\\s+");
+        int numWords = (int) Long.parseLong(parts[0]);
+        int vectorLength = (int) Long.parseLong(parts[1]);
+
+        List<String> words = new ArrayList<String>(numWords);
+        byte[] raw = new byte[vectorLength * 4];
+        ByteBuffer in = ByteBuffer.wrap(raw).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer out = ByteBuffer.allocate(vectorLength * 4)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        float[] m = new float[vectorLength];
+
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "rw");
+             FileChannel fc = raf.getChannel()) {
+            fc.truncate(0);
+            fc.position(HEADER_SIZE);
+
+            // Vocabularies of fewer than ten words would otherwise have no
+            // interval to log at
+            int logInterval = Math.max(1, numWords / 10);
+            for (int w = 0; w < numWords; w++) {
+                String st = Word2VecSimilarity.readString(dis);
+                words.add(st);
+                dis.readFully(raw);
+                in.clear();
+                for (int j = 0; j < vectorLength; j++)
+                    m[j] = in.getFloat();
+                Word2VecSimilarity.normalize(m);
+                out.clear();
+                for (int j = 0; j < vectorLength; j++)
+                    out.putFloat(m[j]);
+                out.flip();
+                while (out.hasRemaining())
+                    fc.write(out);
+
+                if (w % logInterval == 0) {
+                    CrownLogger.veryVerbose("Converted %d/%d vectors",
+                                            w, numWords);
+                }
+            }
+            dis.close();
+
+            long vocabStart = fc.position();
+            writeVocabulary(fc, words);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numWords);
+            header.putInt(vectorLength);
+            header.putInt(tableSize(numWords));
+            header.putInt(poolSize(words));
+            header.putLong(vocabStart);
+            header.position(0);
+            fc.write(header, 0);
+        }
+        CrownLogger.info("Wrote %d vectors to %s", numWords, storeFile);
+    }
+
+    private static int tableSize(int numWords) {
+        // Keep the load factor at or below 0.5
+        return Integer.highestOneBit(Math.max(numWords, 1) * 2 - 1) << 1;
+    }
+
+    private static int poolSize(List<String> words) {
+        long size = 0;
+        for (String w : words)
+            size += w.getBytes(StandardCharsets.UTF_8).length;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("Vocabulary is too large");
+        return (int) size;
+    }
+
+    private static void writeVocabulary(FileChannel fc, List<String> words)
+            throws IOException {
+        int numWords = words.size();
+
+        ByteBuffer offsets = ByteBuffer.allocate(4 * (numWords + 1))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+        for (String w : words) {
+            offsets.putInt(offset);
+            offset += w.getBytes(StandardCharsets.UTF_8).length;
+        }
+        offsets.putInt(offset);
+        offsets.flip();
+        while (offsets.hasRemaining())
+            fc.write(offsets);
+
+        for (String w : words) {
+            ByteBuffer bb = ByteBuffer.wrap(w.getBytes(StandardCharsets.UTF_8));
+            while (bb.hasRemaining())
+                fc.write(bb);
+        }
+
+        int padding = (int) ((4 - (fc.position() % 4)) % 4);
+        fc.write(ByteBuffer.allocate(padding));
+
+        // Later duplicates replace earlier ones, just like loading the words
+        // into a Map
+        int tableSize = tableSize(numWords);
+        int mask = tableSize - 1;
+        int[] table = new int[tableSize];
+        for (int row = 0; row < numWords; ++row) {
+            String word = words.get(row);
+            int slot = mix(word.hashCode()) & mask;
+            while (table[slot] != 0
+                   && !words.get(table[slot] - 1).equals(word))
+                slot = (slot + 1) & mask;
+            table[slot] = row + 1;
+        }
+        ByteBuffer tableBuf = ByteBuffer.allocate(4 * tableSize)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        tableBuf.asIntBuffer().put(table);
+        while (tableBuf.hasRemaining())
+            fc.write(tableBuf);
+    }
+
+    /**
+     * A view of a mapped region as little-endian ints, using absolute reads so
+     * that it may be shared between threads.
+     */
+    private static class IntBufferView {
+
+        private final ByteBuffer buf;
+
+        IntBufferView(MappedByteBuffer buf) {
+            this.buf = buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int get(int index) {
+            return buf.getInt(index * 4);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: java MappedVectorStore " +
+                               "word2vec.bin output.vec");
+            return;
+        }
+        convert(new File(args[0]), new File(args[1]));
+    }
+}
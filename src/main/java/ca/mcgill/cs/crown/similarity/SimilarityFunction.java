@@ -7,6 +7,7 @@
 
 package ca.mcgill.cs.crown.similarity;
 
+import java.util.List;
 
 /**
  * An interface representing the abstraction of a similarity function for
@@ -18,4 +19,36 @@ public interface SimilarityFunction {
      * Compares the two texts and returns their semantic similarity.
      */
     double compare(String text1, String text2);
+
+    /**
+     * Compares {@code query} with each of the candidate texts, returning the
+     * similarity scores in the same order as the candidates.  Implementations
+     * may override this to prepare the query only once.
+     */
+    default double[] scoreAll(String query, List<String> candidates) {
+        double[] scores = new double[candidates.size()];
+        int i = 0;
+        for (String candidate : candidates)
+            scores[i++] = compare(query, candidate);
+        return scores;
+    }
+
+    /**
+     * Returns the index of the candidate most similar to {@code query}, or
+     * {@code -1} if no candidate has a similarity greater than {@code
+     * minScore}.  Ties are broken in favor of the earliest candidate.
+     */
+    default int argmax(String query, List<String> candidates,
+                       double minScore) {
+        double[] scores = scoreAll(query, candidates);
+        int best = -1;
+        double maxScore = minScore;
+        for (int i = 0; i < scores.length; ++i) {
+            if (maxScore < scores[i]) {
+                maxScore = scores[i];
+                best = i;
+            }
+        }
+        return best;
+    }
 }
@@ -33,11 +33,11 @@ import java.util.regex.Pattern;
 import gnu.trove.map.TObjectDoubleMap;
 import gnu.trove.map.hash.TObjectDoubleHashMap;
 
-import ca.mcgill.cs.crown.CrownAnnotations;
 import ca.mcgill.cs.crown.LexicalEntry;
 
 import ca.mcgill.cs.crown.util.CrownLogger;
 import ca.mcgill.cs.crown.util.Stopwords;
+import ca.mcgill.cs.crown.util.WordNetUtils;
 
 import edu.ucla.sspace.util.Counter;
 import edu.ucla.sspace.util.HashMultiMap;
@@ -67,34 +67,116 @@ public class Word2VecSimilarity implements SimilarityFunction {
 
     private static final Pattern WORD = Pattern.compile("[\\p{Punct}]*([^\\p{Punct}]*)[\\p{Punct}]*");
     
+    /**
+     * The in-memory vectors for each word, when loaded from the original
+     * word2vec binary format, or {@code null} if {@link #vectorStore} is used.
+     */
     private final Map<String,float[]> wordToVector;
+
+    /**
+     * The memory-mapped vectors, or {@code null} if the vectors were loaded
+     * into {@link #wordToVector}.
+     */
+    private final MappedVectorStore vectorStore;
+
+    /**
+     * The words whose vectors are used when {@link #vectorStore} is set.  This
+     * restricts the mapped vocabulary to the same words that would have been
+     * loaded into {@link #wordToVector}.
+     */
+    private final Set<String> vocabulary;
     
     /**
-     * A cache from a string to the lemmas contained in the string
+     * The default number of glosses whose vectors are cached, in addition to
+     * any that are precomputed.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 100_000;
+
+    /**
+     * A cache from a string to the aggregated vector of the words in the string
      */
-    private final Map<String,float[]> glossToVecCache;
+    private final GlossVectorCache glossToVecCache;
     
 	
+    /**
+     * Creates a new similarity function using the vectors in {@code
+     * vectorsFile}, which may be either a {@link MappedVectorStore} file or a
+     * binary word2vec file, which is read into memory.
+     */
     public Word2VecSimilarity(Collection<LexicalEntry> entries,
                               IDictionary dict,
                               File vectorsFile) {
-        try {
-            Set<String> words = loadWords(dict, entries);
-            words.removeAll(Stopwords.STOP_WORDS);
-            wordToVector = loadVectors(vectorsFile, words);
-        } catch (IOException ie) {
-            throw new IOError(ie);
+        this(entries, dict, vectorsFile, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new similarity function using the vectors in {@code
+     * vectorsFile}, caching the vectors for at most {@code cacheSize} glosses.
+     */
+    public Word2VecSimilarity(Collection<LexicalEntry> entries,
+                              IDictionary dict,
+                              File vectorsFile,
+                              int cacheSize) {
+        Set<String> words = loadWords(dict, entries);
+        words.removeAll(Stopwords.STOP_WORDS);
+        if (MappedVectorStore.isVectorStore(vectorsFile)) {
+            vectorStore = MappedVectorStore.open(vectorsFile);
+            vocabulary = words;
+            wordToVector = null;
+        }
+        else {
+            try {
+                wordToVector = loadVectors(vectorsFile, words);
+            } catch (IOException ie) {
+                throw new IOError(ie);
+            }
+            vectorStore = null;
+            vocabulary = null;
         }
-        glossToVecCache = new HashMap<String,float[]>(100_000);
+        glossToVecCache = new GlossVectorCache(cacheSize);
     }   
 
+    /**
+     * Computes the vectors for both the extended glosses and the glosses
+     * without examples of every synset in the dictionary and pins them in the
+     * cache, replacing any previously precomputed glosses.  These are the two
+     * forms that the extractors and the similarity check against existing
+     * definitions compare against repeatedly, so this avoids recomputing them
+     * or having them evicted.
+     */
+    public void precompute(IDictionary dict) {
+        long start = System.currentTimeMillis();
+        List<ISynset> synsets = new ArrayList<ISynset>();
+        for (POS pos : POS.values()) {
+            Iterator<ISynset> iter = dict.getSynsetIterator(pos);
+            while (iter.hasNext())
+                synsets.add(iter.next());
+        }
+        glossToVecCache.clearPinned();
+        synsets.parallelStream().forEach(synset -> {
+                String gloss = WordNetUtils.getExtendedGloss(synset);
+                glossToVecCache.pin(gloss, computeVector(gloss));
+                gloss = WordNetUtils.getGlossWithoutExamples(synset);
+                glossToVecCache.pin(gloss, computeVector(gloss));
+            });
+        CrownLogger.verbose("Precomputed vectors for the glosses of %d " +
+                            "synsets in %d ms", synsets.size(),
+                            System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns the cache of gloss vectors, e.g., for reporting its statistics.
+     */
+    public GlossVectorCache getCache() {
+        return glossToVecCache;
+    }
+
     private Set<String> loadWords(IDictionary dict, Collection<LexicalEntry> entries) {
         CrownLogger.verbose("Getting set of unique words");
         Set<String> words = new HashSet<String>(100_000);
 
         for (LexicalEntry e : entries) {
-            String gloss =
-                e.getAnnotations().get(CrownAnnotations.Gloss.class);
+            String gloss = e.getGloss();
             words.addAll(getWords(gloss));
         }
 
@@ -127,56 +209,72 @@ public class Word2VecSimilarity implements SimilarityFunction {
     }
     
     /**
-     * TODO
+     * Returns the sum of the vectors for all the words in the gloss, or {@code
+     * null} if none of the words have vectors.
      */
-    private float[] getVector(String gloss) {
-        float[] aggregatedVec = glossToVecCache.get(gloss);
-        if (aggregatedVec != null)
-            return aggregatedVec;
+    private DenseVector getVector(String gloss) {
+        return glossToVecCache.get(gloss, this::computeVector);
+    }
 
+    private DenseVector computeVector(String gloss) {
+        float[] aggregatedVec = null;
         for (String token : getWords(gloss)) {
 
+            if (vectorStore != null) {
+                int row = (vocabulary.contains(token))
+                    ? vectorStore.indexOf(token) : -1;
+                if (row < 0)
+                    continue;
+                if (aggregatedVec == null) {
+                    aggregatedVec = new float[vectorStore.dimensions()];
+                    vectorStore.get(row, aggregatedVec);
+                }
+                else
+                    vectorStore.addTo(row, aggregatedVec);
+                continue;
+            }
+
             float[] vec = wordToVector.get(token);
             if (vec == null)
                 continue;
 
             if (aggregatedVec == null) 
                 aggregatedVec = Arrays.copyOf(vec, vec.length);
-            else {
-                for (int i = 0; i < vec.length; ++i)
-                    aggregatedVec[i] += vec[i];
-            }
+            else
+                DenseVector.addTo(vec, aggregatedVec);
         }
 
-        glossToVecCache.put(gloss, aggregatedVec);
-        return aggregatedVec;
+        return (aggregatedVec == null) ? null : new DenseVector(aggregatedVec);
     }
     
     /**
      * {@inheritDoc}
      */
     public double compare(String string1, String string2) {
-        float[] v1 = getVector(string1);
-        float[] v2 = getVector(string2);          
+        DenseVector v1 = getVector(string1);
+        DenseVector v2 = getVector(string2);          
 
         if (v1 == null || v2 == null)
             return 0;
+        return v1.cosine(v2);
+    }
 
-        float dotProduct = 0.0f;
-        float aMagnitude = 0.0f;
-        float bMagnitude = 0.0f;
-        for (int i = 0; i < v1.length ; i++) {
-            float aValue = v1[i];
-            float bValue = v2[i];
-            aMagnitude += aValue * aValue;
-            bMagnitude += bValue * bValue;
-            dotProduct += aValue * bValue;
-        }
-        aMagnitude = (float)Math.sqrt(aMagnitude);
-        bMagnitude = (float)Math.sqrt(bMagnitude);
-        return (aMagnitude == 0 || bMagnitude == 0)
-            ? 0
-            : dotProduct / (aMagnitude * bMagnitude);
+    /**
+     * {@inheritDoc}  The vector for {@code query} is looked up once and its
+     * magnitude reused for every candidate.
+     */
+    @Override public double[] scoreAll(String query,
+                                       List<String> candidates) {
+        double[] scores = new double[candidates.size()];
+        DenseVector q = getVector(query);
+        if (q == null)
+            return scores;
+        DenseVector[] vecs = new DenseVector[scores.length];
+        int i = 0;
+        for (String candidate : candidates)
+            vecs[i++] = getVector(candidate);
+        DenseVector.cosines(q, vecs, scores);
+        return scores;
     }
 
 
@@ -220,7 +318,6 @@ public class Word2VecSimilarity implements SimilarityFunction {
         CrownLogger.verbose("Loading Vectors");        
         int numWords;
         int vectorLength;
-        double len;
 
         DataInputStream fis = new DataInputStream(
             new BufferedInputStream(new FileInputStream(vectorFile)));
@@ -252,13 +349,7 @@ public class Word2VecSimilarity implements SimilarityFunction {
             }            
 
             if (words.contains(st)) {
-                len = 0;
-                for (int i = 0; i < vectorLength; i++)
-                    len += m[i] * m[i];
-                len = (float) Math.sqrt(len);
-                for (int i = 0; i < vectorLength; i++)
-                    m[i] /= len;
-                
+                normalize(m);
                 wordToVec.put(st, m);
             }
             else {
@@ -275,6 +366,18 @@ public class Word2VecSimilarity implements SimilarityFunction {
     }
 
 
+    /**
+     * Scales the vector to unit length in place.
+     */
+    static void normalize(float[] m) {
+        double len = 0;
+        for (int i = 0; i < m.length; i++)
+            len += m[i] * m[i];
+        len = (float) Math.sqrt(len);
+        for (int i = 0; i < m.length; i++)
+            m[i] /= len;
+    }
+
     /**
      * Read a float from a data input stream Credit to:
      * https://github.com/NLPchina/Word2VEC_java/blob/master/src/com/ansj/vec/Word2VEC.java
@@ -21,6 +21,15 @@ public class CoreNlpUtils {
     private static final ThreadLocal<StanfordCoreNLP> pipelines
         = new ThreadLocal<StanfordCoreNLP>();
 
+    private static final ThreadLocal<StanfordCoreNLP> taggers
+        = new ThreadLocal<StanfordCoreNLP>();
+
+    /**
+     * The options for the tokenizer, which both pipelines share so that they
+     * produce the same tokens.
+     */
+    private static final String TOKENIZE_OPTIONS = "untokenizable=noneDelete";
+
     /**
      * Returns the thread-local copy of a {@link StanfordCoreNLP} instance.
      *
@@ -31,11 +40,28 @@ public class CoreNlpUtils {
         if (pipeline == null) {
             Properties props = new Properties();
             props.put("annotators", "tokenize, ssplit, pos, lemma, parse");
-            props.put("tokenize.options", "untokenizable=noneDelete");
+            props.put("tokenize.options", TOKENIZE_OPTIONS);
             pipeline = new StanfordCoreNLP(props);
             pipelines.set(pipeline);
         }
         return pipeline;
     }
+
+    /**
+     * Returns the thread-local copy of a {@link StanfordCoreNLP} instance that
+     * only tokenizes, tags, and lemmatizes, which is much faster than the
+     * full pipeline returned by {@link #get()} when no parse is needed.
+     */
+    public static StanfordCoreNLP getTagger() {
+        StanfordCoreNLP tagger = taggers.get();
+        if (tagger == null) {
+            Properties props = new Properties();
+            props.put("annotators", "tokenize, ssplit, pos, lemma");
+            props.put("tokenize.options", TOKENIZE_OPTIONS);
+            tagger = new StanfordCoreNLP(props);
+            taggers.set(tagger);
+        }
+        return tagger;
+    }
     
 }
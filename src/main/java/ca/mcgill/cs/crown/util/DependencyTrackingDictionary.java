@@ -0,0 +1,224 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.util;
+
+import edu.mit.jwi.*;
+import edu.mit.jwi.item.*;
+import edu.mit.jwi.item.POS;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * A wrapper class around JWI's {@link IDictionary} objects that records which
+ * lemmas the current thread has looked up, so that a later build iteration can
+ * tell whether changes to the dictionary could affect the outcome of
+ * processing an entry.
+ *
+ * <p> A lookup is recorded as a <i>dependency key</i> for the lemma and part
+ * of speech, whether or not the lemma was found.  Looking up a synset (or a
+ * word in it) records the keys of all the synset's words, since a later
+ * iteration identifies changed synsets by their words rather than by their
+ * offsets, which change every time the database is regenerated.  Keys are
+ * 64-bit hashes; a collision can only cause an entry to be needlessly
+ * reprocessed.
+ *
+ * <p> Lookups are recorded only between calls to {@link #startTracking()} and
+ * {@link #stopTracking()} on the same thread.
+ */
+public class DependencyTrackingDictionary implements IDictionary {
+
+    /**
+     * The key recorded by {@link #dependOnAll()}, which is treated as matching
+     * every change.
+     */
+    private static final long ALL = Long.MIN_VALUE;
+
+    private static final ThreadLocal<TLongSet> TRACKED =
+        new ThreadLocal<TLongSet>();
+
+    private final IDictionary dict;
+
+    public DependencyTrackingDictionary(IDictionary dict) {
+        this.dict = dict;
+    }
+
+    /**
+     * Begins recording the lookups made by the current thread.
+     */
+    public static void startTracking() {
+        TRACKED.set(new TLongHashSet());
+    }
+
+    /**
+     * Stops recording the lookups made by the current thread and returns the
+     * sorted keys of everything that was looked up since {@link
+     * #startTracking()}.
+     */
+    public static long[] stopTracking() {
+        TLongSet keys = TRACKED.get();
+        TRACKED.remove();
+        if (keys == null)
+            return new long[0];
+        long[] arr = keys.toArray();
+        Arrays.sort(arr);
+        return arr;
+    }
+
+    /**
+     * Records that the current thread's result depends on the contents of the
+     * entire dictionary (e.g., on a set of synsets gathered when the
+     * dictionary was loaded), so it must always be recomputed.
+     */
+    public static void dependOnAll() {
+        TLongSet keys = TRACKED.get();
+        if (keys != null)
+            keys.add(ALL);
+    }
+
+    /**
+     * Records that the current thread's result depends on a lemma, for
+     * procedures that look lemmas up in data they gathered from the
+     * dictionary themselves rather than in the dictionary.
+     */
+    public static void dependOn(String lemma, POS pos) {
+        record(lemma, pos);
+    }
+
+    /**
+     * Returns {@code true} if any of the sorted dependency keys are in the set
+     * of changed keys.
+     */
+    public static boolean isAffected(long[] dependencies, TLongSet changed) {
+        // ALL is the smallest possible key, so it will always be first
+        if (dependencies.length > 0 && dependencies[0] == ALL)
+            return true;
+        for (long key : dependencies) {
+            if (changed.contains(key))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the dependency key for a lemma with a given part of speech,
+     * ignoring case and the distinction between spaces and underscores.
+     */
+    public static long key(String lemma, POS pos) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < lemma.length(); ++i) {
+            char c = lemma.charAt(i);
+            h = 31 * h + (Character.isWhitespace(c)
+                          ? '_' : Character.toLowerCase(c));
+        }
+        h = 31 * h + pos.getTag();
+        // Keep the sentinel out of the key space
+        return (h == ALL) ? 0 : h;
+    }
+
+    /**
+     * Adds the dependency keys of all of the synset's words to the set.
+     */
+    public static void addKeys(ISynset synset, TLongSet keys) {
+        POS pos = synset.getPOS();
+        for (IWord w : synset.getWords())
+            keys.add(key(w.getLemma(), pos));
+    }
+
+    private static void record(String lemma, POS pos) {
+        TLongSet keys = TRACKED.get();
+        if (keys != null && lemma != null && pos != null)
+            keys.add(key(lemma, pos));
+    }
+
+    private static void record(ISynset synset) {
+        TLongSet keys = TRACKED.get();
+        if (keys != null && synset != null)
+            addKeys(synset, keys);
+    }
+
+    public void close() {
+        dict.close();
+    }
+
+    public IExceptionEntry getExceptionEntry(IExceptionEntryID id) {
+        return dict.getExceptionEntry(id);
+    }
+
+    public IExceptionEntry getExceptionEntry(String surfaceForm, POS pos)  {
+        return dict.getExceptionEntry(surfaceForm, pos);
+    }
+
+    public Iterator<IExceptionEntry> getExceptionEntryIterator(POS pos) {
+        return dict.getExceptionEntryIterator(pos);
+    }
+
+    public IIndexWord getIndexWord(IIndexWordID id) {
+        record(id.getLemma(), id.getPOS());
+        return dict.getIndexWord(id);
+    }
+
+    public IIndexWord getIndexWord(String lemma, POS pos) {
+        record(lemma, pos);
+        return dict.getIndexWord(lemma, pos);
+    }
+
+    public Iterator<IIndexWord> getIndexWordIterator(POS pos) {
+        return dict.getIndexWordIterator(pos);
+    }
+
+    public ISenseEntry getSenseEntry(ISenseKey key) {
+        return dict.getSenseEntry(key);
+    }
+
+    public Iterator<ISenseEntry> getSenseEntryIterator() {
+        return dict.getSenseEntryIterator();
+    }
+
+    public ISynset getSynset(ISynsetID id) {
+        ISynset synset = dict.getSynset(id);
+        record(synset);
+        return synset;
+    }
+
+    public Iterator<ISynset> getSynsetIterator(POS pos) {
+        return dict.getSynsetIterator(pos);
+    }
+
+    public IWord getWord(ISenseKey key) {
+        IWord word = dict.getWord(key);
+        if (word != null)
+            record(word.getSynset());
+        return word;
+    }
+
+    public IWord getWord(IWordID id) {
+        IWord word = dict.getWord(id);
+        if (word != null)
+            record(word.getSynset());
+        return word;
+    }
+
+    public IVersion getVersion() {
+        return dict.getVersion();
+    }
+
+    public boolean isOpen() {
+        return dict.isOpen();
+    }
+
+    public boolean open() throws IOException {
+        return dict.open();
+    }
+}
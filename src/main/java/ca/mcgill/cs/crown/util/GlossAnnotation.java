@@ -0,0 +1,405 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.ling.CoreAnnotations.*;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.*;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation;
+import edu.stanford.nlp.trees.EnglishGrammaticalRelations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.util.CoreMap;
+
+
+/**
+ * The compact result of running the CoreNLP pipeline in {@link CoreNlpUtils}
+ * over a gloss: for each sentence, the tokens' words, lemmas, and
+ * part-of-speech tags along with the edges of its collapsed, CC-processed
+ * dependency graph.  Glosses annotated by the {@link CoreNlpUtils#getTagger()
+ * tagger} alone have no dependency graph, which {@link #isParsed()} reports.
+ * Instances are immutable and are much smaller than the full {@link
+ * Annotation}, so they can be kept for every gloss and written to disk by
+ * {@link GlossAnnotationCache}.
+ */
+public final class GlossAnnotation {
+
+    /**
+     * The relations seen when converting parses in this process, keyed by
+     * their full name (e.g., "prep_of"), so that rebuilt graphs use the same
+     * relation instances as the parser did.
+     */
+    private static final Map<String,GrammaticalRelation> RELATIONS =
+        new ConcurrentHashMap<String,GrammaticalRelation>();
+
+    private final Sentence[] sentences;
+
+    private final boolean parsed;
+
+    private GlossAnnotation(Sentence[] sentences, boolean parsed) {
+        this.sentences = sentences;
+        this.parsed = parsed;
+    }
+
+    /**
+     * Extracts the tokens and dependencies from a document that has been
+     * annotated by the {@link CoreNlpUtils} pipeline.
+     */
+    public static GlossAnnotation of(Annotation document) {
+        return of(document, true);
+    }
+
+    /**
+     * Extracts the tokens, and the dependencies if the document was parsed,
+     * from a document that has been annotated by one of the {@link
+     * CoreNlpUtils} pipelines.
+     */
+    static GlossAnnotation of(Annotation document, boolean parsed) {
+        List<CoreMap> sents = document.get(SentencesAnnotation.class);
+        Sentence[] sentences = new Sentence[sents.size()];
+        for (int i = 0; i < sentences.length; ++i)
+            sentences[i] = new Sentence(sents.get(i));
+        return new GlossAnnotation(sentences, parsed);
+    }
+
+    /**
+     * Returns {@code true} if the gloss was parsed, and so its sentences have
+     * dependency graphs, or {@code false} if it was only tagged.
+     */
+    public boolean isParsed() {
+        return parsed;
+    }
+
+    public int numSentences() {
+        return sentences.length;
+    }
+
+    public Sentence getSentence(int i) {
+        return sentences[i];
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeBoolean(parsed);
+        out.writeInt(sentences.length);
+        for (Sentence s : sentences)
+            s.write(out);
+    }
+
+    static GlossAnnotation read(DataInput in) throws IOException {
+        boolean parsed = in.readBoolean();
+        Sentence[] sentences = new Sentence[in.readInt()];
+        for (int i = 0; i < sentences.length; ++i)
+            sentences[i] = Sentence.read(in);
+        return new GlossAnnotation(sentences, parsed);
+    }
+
+    /**
+     * Returns the relation with the provided short name and specific (e.g.,
+     * the preposition of a collapsed "prep" edge), which may be {@code null}.
+     */
+    private static GrammaticalRelation toRelation(String shortName,
+                                                  String specific) {
+        String name = (specific == null)
+            ? shortName : shortName + '_' + specific;
+        GrammaticalRelation reln = RELATIONS.get(name);
+        if (reln != null)
+            return reln;
+        if (specific != null) {
+            switch (shortName) {
+            case "prep":
+                reln = EnglishGrammaticalRelations.getPrep(specific);
+                break;
+            case "prepc":
+                reln = EnglishGrammaticalRelations.getPrepC(specific);
+                break;
+            case "conj":
+                reln = EnglishGrammaticalRelations.getConj(specific);
+                break;
+            default:
+                break;
+            }
+        }
+        else
+            reln = EnglishGrammaticalRelations.valueOf(shortName);
+        if (reln == null) {
+            reln = new GrammaticalRelation(
+                GrammaticalRelation.Language.English, shortName,
+                name, GrammaticalRelation.DEPENDENT, specific);
+        }
+        RELATIONS.putIfAbsent(name, reln);
+        return reln;
+    }
+
+    /**
+     * The tokens and dependency edges of a single sentence.  Token positions
+     * are 0-based, whereas CoreNLP's token indices start at 1.
+     */
+    public static final class Sentence {
+
+        private final int sentIndex;
+
+        private final String[] words;
+
+        private final String[] lemmas;
+
+        private final String[] tags;
+
+        /**
+         * The token index (1-based) and copy count of each vertex in the
+         * dependency graph
+         */
+        private final int[] vertexTokens;
+
+        private final int[] vertexCopies;
+
+        /**
+         * The vertex numbers of the graph's roots
+         */
+        private final int[] roots;
+
+        /**
+         * The governor and dependent vertex numbers of each edge, in the order
+         * the parser's graph iterated over them
+         */
+        private final int[] edgeGovs;
+
+        private final int[] edgeDeps;
+
+        private final String[] edgeRelations;
+
+        /**
+         * The specific of each edge's relation, or {@code null} if none
+         */
+        private final String[] edgeSpecifics;
+
+        private final boolean[] edgeExtras;
+
+        private Sentence(CoreMap sentence) {
+            Integer si = sentence.get(SentenceIndexAnnotation.class);
+            sentIndex = (si == null) ? 0 : si;
+
+            List<CoreLabel> tokens = sentence.get(TokensAnnotation.class);
+            int n = tokens.size();
+            words = new String[n];
+            lemmas = new String[n];
+            tags = new String[n];
+            for (int i = 0; i < n; ++i) {
+                CoreLabel token = tokens.get(i);
+                words[i] = intern(token.get(TextAnnotation.class));
+                lemmas[i] = intern(token.get(LemmaAnnotation.class));
+                tags[i] = intern(token.get(PartOfSpeechAnnotation.class));
+            }
+
+            SemanticGraph graph = sentence.get(
+                CollapsedCCProcessedDependenciesAnnotation.class);
+            List<IndexedWord> vertices = (graph == null)
+                ? new ArrayList<IndexedWord>() : graph.vertexListSorted();
+            Map<IndexedWord,Integer> vertexNums =
+                new HashMap<IndexedWord,Integer>();
+            vertexTokens = new int[vertices.size()];
+            vertexCopies = new int[vertices.size()];
+            for (int i = 0; i < vertexTokens.length; ++i) {
+                IndexedWord v = vertices.get(i);
+                vertexTokens[i] = v.index();
+                vertexCopies[i] = v.copyCount();
+                vertexNums.put(v, i);
+            }
+
+            if (graph == null) {
+                roots = new int[0];
+                edgeGovs = edgeDeps = new int[0];
+                edgeRelations = edgeSpecifics = new String[0];
+                edgeExtras = new boolean[0];
+                return;
+            }
+
+            roots = new int[graph.getRoots().size()];
+            int r = 0;
+            for (IndexedWord root : graph.getRoots())
+                roots[r++] = vertexNums.get(root);
+
+            List<SemanticGraphEdge> edges = new ArrayList<SemanticGraphEdge>();
+            for (SemanticGraphEdge e : graph.edgeIterable())
+                edges.add(e);
+            edgeGovs = new int[edges.size()];
+            edgeDeps = new int[edges.size()];
+            edgeRelations = new String[edges.size()];
+            edgeSpecifics = new String[edges.size()];
+            edgeExtras = new boolean[edges.size()];
+            for (int i = 0; i < edgeGovs.length; ++i) {
+                SemanticGraphEdge e = edges.get(i);
+                GrammaticalRelation reln = e.getRelation();
+                edgeGovs[i] = vertexNums.get(e.getGovernor());
+                edgeDeps[i] = vertexNums.get(e.getDependent());
+                edgeRelations[i] = intern(reln.getShortName());
+                edgeSpecifics[i] = intern(reln.getSpecific());
+                edgeExtras[i] = e.isExtra();
+                RELATIONS.putIfAbsent(reln.toString(), reln);
+            }
+        }
+
+        private Sentence(int sentIndex, String[] words, String[] lemmas,
+                         String[] tags, int[] vertexTokens, int[] vertexCopies,
+                         int[] roots, int[] edgeGovs, int[] edgeDeps,
+                         String[] edgeRelations, String[] edgeSpecifics,
+                         boolean[] edgeExtras) {
+            this.sentIndex = sentIndex;
+            this.words = words;
+            this.lemmas = lemmas;
+            this.tags = tags;
+            this.vertexTokens = vertexTokens;
+            this.vertexCopies = vertexCopies;
+            this.roots = roots;
+            this.edgeGovs = edgeGovs;
+            this.edgeDeps = edgeDeps;
+            this.edgeRelations = edgeRelations;
+            this.edgeSpecifics = edgeSpecifics;
+            this.edgeExtras = edgeExtras;
+        }
+
+        /**
+         * Returns the number of tokens in the sentence.
+         */
+        public int size() {
+            return words.length;
+        }
+
+        public String getWord(int i) {
+            return words[i];
+        }
+
+        public String getLemma(int i) {
+            return lemmas[i];
+        }
+
+        public String getTag(int i) {
+            return tags[i];
+        }
+
+        /**
+         * Rebuilds the collapsed, CC-processed dependency graph of this
+         * sentence.  Vertices are recreated with the same token and sentence
+         * indices as the parser's, so the graph iterates over its edges in the
+         * same order.
+         */
+        public SemanticGraph getDependencies() {
+            SemanticGraph graph = new SemanticGraph();
+            IndexedWord[] vertices = new IndexedWord[vertexTokens.length];
+            for (int i = 0; i < vertices.length; ++i) {
+                int t = vertexTokens[i] - 1;
+                CoreLabel label = new CoreLabel();
+                label.setWord(words[t]);
+                label.setValue(words[t]);
+                label.setLemma(lemmas[t]);
+                label.setTag(tags[t]);
+                label.setIndex(vertexTokens[i]);
+                label.setSentIndex(sentIndex);
+                IndexedWord v = new IndexedWord(label);
+                if (vertexCopies[i] > 0)
+                    v.setCopyCount(vertexCopies[i]);
+                vertices[i] = v;
+                graph.addVertex(v);
+            }
+            for (int i = 0; i < edgeGovs.length; ++i) {
+                graph.addEdge(vertices[edgeGovs[i]], vertices[edgeDeps[i]],
+                              toRelation(edgeRelations[i], edgeSpecifics[i]),
+                              Double.NEGATIVE_INFINITY, edgeExtras[i]);
+            }
+            for (int r : roots)
+                graph.addRoot(vertices[r]);
+            return graph;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(sentIndex);
+            out.writeInt(words.length);
+            for (int i = 0; i < words.length; ++i) {
+                out.writeUTF(words[i]);
+                out.writeUTF(lemmas[i]);
+                out.writeUTF(tags[i]);
+            }
+            out.writeInt(vertexTokens.length);
+            for (int i = 0; i < vertexTokens.length; ++i) {
+                out.writeInt(vertexTokens[i]);
+                out.writeInt(vertexCopies[i]);
+            }
+            out.writeInt(roots.length);
+            for (int r : roots)
+                out.writeInt(r);
+            out.writeInt(edgeGovs.length);
+            for (int i = 0; i < edgeGovs.length; ++i) {
+                out.writeInt(edgeGovs[i]);
+                out.writeInt(edgeDeps[i]);
+                out.writeUTF(edgeRelations[i]);
+                out.writeBoolean(edgeSpecifics[i] != null);
+                if (edgeSpecifics[i] != null)
+                    out.writeUTF(edgeSpecifics[i]);
+                out.writeBoolean(edgeExtras[i]);
+            }
+        }
+
+        static Sentence read(DataInput in) throws IOException {
+            int sentIndex = in.readInt();
+            int n = in.readInt();
+            String[] words = new String[n];
+            String[] lemmas = new String[n];
+            String[] tags = new String[n];
+            for (int i = 0; i < n; ++i) {
+                words[i] = intern(in.readUTF());
+                lemmas[i] = intern(in.readUTF());
+                tags[i] = intern(in.readUTF());
+            }
+            int numVertices = in.readInt();
+            int[] vertexTokens = new int[numVertices];
+            int[] vertexCopies = new int[numVertices];
+            for (int i = 0; i < numVertices; ++i) {
+                vertexTokens[i] = in.readInt();
+                vertexCopies[i] = in.readInt();
+            }
+            int[] roots = new int[in.readInt()];
+            for (int i = 0; i < roots.length; ++i)
+                roots[i] = in.readInt();
+            int numEdges = in.readInt();
+            int[] edgeGovs = new int[numEdges];
+            int[] edgeDeps = new int[numEdges];
+            String[] edgeRelations = new String[numEdges];
+            String[] edgeSpecifics = new String[numEdges];
+            boolean[] edgeExtras = new boolean[numEdges];
+            for (int i = 0; i < numEdges; ++i) {
+                edgeGovs[i] = in.readInt();
+                edgeDeps[i] = in.readInt();
+                edgeRelations[i] = intern(in.readUTF());
+                if (in.readBoolean())
+                    edgeSpecifics[i] = intern(in.readUTF());
+                edgeExtras[i] = in.readBoolean();
+            }
+            return new Sentence(sentIndex, words, lemmas, tags, vertexTokens,
+                                vertexCopies, roots, edgeGovs, edgeDeps,
+                                edgeRelations, edgeSpecifics, edgeExtras);
+        }
+
+        /**
+         * Interns the (highly repetitive) token strings so that millions of
+         * cached glosses share a single copy of each.
+         */
+        private static String intern(String s) {
+            return (s == null) ? null : s.intern();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.Map;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.io.CountingInputStream;
+
+import edu.stanford.nlp.pipeline.Annotation;
+
+
+/**
+ * A cache of the CoreNLP annotations of glosses that is shared by every
+ * component needing tokens, lemmas, part-of-speech tags, or dependency parses,
+ * so that each distinct gloss is parsed only once, rather than once per
+ * component and once per iteration.  Components that only need tokens, lemmas
+ * and tags call {@link #tag(String)}, which reuses a gloss's full annotation
+ * if it has one and otherwise runs only the much faster tagging pipeline.
+ *
+ * <p> The cache can optionally be backed by a file, to which each newly-parsed
+ * gloss is appended and from which all previously-parsed glosses are loaded
+ * when the cache is opened.  This allows repeated builds over the same
+ * Wiktionary data to skip parsing entirely.  The file records the version of
+ * the annotation pipeline and is started over if it was written by a different
+ * version.
+ */
+public class GlossAnnotationCache {
+
+    private static final int MAGIC = 0x43524741;
+
+    /**
+     * The version of the file format and of the {@link CoreNlpUtils} pipeline
+     * configuration.  This should be incremented whenever either changes, so
+     * that stale annotations are not reused.
+     */
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static volatile GlossAnnotationCache instance =
+        new GlossAnnotationCache(
+            new ConcurrentHashMap<String,GlossAnnotation>(), null);
+
+    private final Map<String,GlossAnnotation> glossToAnnotation;
+
+    /**
+     * The file to which new annotations are appended, or {@code null} if the
+     * cache is only in memory.  Access is guarded by the stream's lock.
+     */
+    private final DataOutputStream out;
+
+    private final LongAdder hits;
+
+    private final LongAdder misses;
+
+    private GlossAnnotationCache(Map<String,GlossAnnotation> glossToAnnotation,
+                                 DataOutputStream out) {
+        this.glossToAnnotation = glossToAnnotation;
+        this.out = out;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+    }
+
+    /**
+     * Returns the shared cache, which is kept only in memory unless {@link
+     * #open(File)} has been called.
+     */
+    public static GlossAnnotationCache get() {
+        return instance;
+    }
+
+    /**
+     * Replaces the shared cache with one backed by the provided file, loading
+     * all of the annotations already stored in it.  If the file does not
+     * exist or was written by a different version, a new file is started.
+     * Annotations held by the previous shared cache are kept, and the previous
+     * cache is closed.
+     */
+    public static GlossAnnotationCache open(File cacheFile) {
+        return open(cacheFile, false);
+    }
+
+    /**
+     * Replaces the shared cache with one holding all of the annotations stored
+     * in the provided file, but to which new annotations are not written.
+     * This allows several processes to share the same file while only one of
+     * them writes to it.
+     */
+    public static GlossAnnotationCache openReadOnly(File cacheFile) {
+        return open(cacheFile, true);
+    }
+
+    private static synchronized GlossAnnotationCache open(File cacheFile,
+                                                          boolean readOnly) {
+        long startTime = System.nanoTime();
+        Map<String,GlossAnnotation> glossToAnnotation =
+            new ConcurrentHashMap<String,GlossAnnotation>(
+                instance.glossToAnnotation);
+        int numLoaded = 0;
+        long validLength = 0;
+
+        if (cacheFile.exists()) {
+            try (CountingInputStream cis = new CountingInputStream(
+                     new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                DataInputStream in = new DataInputStream(cis);
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    validLength = HEADER_SIZE;
+                    while (true) {
+                        String gloss = readString(in);
+                        // A gloss that was tagged and later parsed has both
+                        // records, of which the parsed one is kept
+                        glossToAnnotation.merge(gloss, GlossAnnotation.read(in),
+                            (a, b) -> (a.isParsed()) ? a : b);
+                        validLength = cis.getCount();
+                        numLoaded++;
+                    }
+                }
+            } catch (EOFException eof) {
+                // Either the end of the file or a partially-written final
+                // record, which is truncated below
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+            if (validLength == 0 && !readOnly) {
+                CrownLogger.info("Discarding gloss annotations written by a " +
+                                 "different version at %s", cacheFile);
+            }
+        }
+
+        DataOutputStream out = null;
+        if (!readOnly) {
+            try {
+                if (validLength == 0) {
+                    try (DataOutputStream header = new DataOutputStream(
+                             new FileOutputStream(cacheFile))) {
+                        header.writeInt(MAGIC);
+                        header.writeInt(VERSION);
+                    }
+                }
+                else if (validLength < cacheFile.length()) {
+                    try (RandomAccessFile raf =
+                             new RandomAccessFile(cacheFile, "rw")) {
+                        raf.setLength(validLength);
+                    }
+                }
+                out = new DataOutputStream(
+                    new BufferedOutputStream(
+                        new FileOutputStream(cacheFile, true)));
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+        instance.close();
+        instance = new GlossAnnotationCache(glossToAnnotation, out);
+
+        CrownLogger.verbose("Loaded %d gloss annotations from %s in %d ms",
+                            numLoaded, cacheFile,
+                            (System.nanoTime() - startTime) / 1_000_000);
+        return instance;
+    }
+
+    /**
+     * Returns the annotations of the gloss, parsing it with the thread-local
+     * {@link CoreNlpUtils} pipeline if it has not been parsed before.
+     * Concurrent calls for the same unparsed gloss may each parse it.
+     */
+    public GlossAnnotation annotate(String gloss) {
+        GlossAnnotation ga = glossToAnnotation.get(gloss);
+        if (ga != null && ga.isParsed()) {
+            hits.increment();
+            return ga;
+        }
+        misses.increment();
+        Annotation document = new Annotation(gloss);
+        CoreNlpUtils.get().annotate(document);
+        return add(gloss, GlossAnnotation.of(document, true));
+    }
+
+    /**
+     * Returns the tokens, lemmas, and part-of-speech tags of the gloss, which
+     * may also have been parsed if some component has needed its dependencies.
+     * Glosses that have not been seen before are only tagged, with the
+     * thread-local {@link CoreNlpUtils#getTagger() tagger}.
+     */
+    public GlossAnnotation tag(String gloss) {
+        GlossAnnotation ga = glossToAnnotation.get(gloss);
+        if (ga != null) {
+            hits.increment();
+            return ga;
+        }
+        misses.increment();
+        Annotation document = new Annotation(gloss);
+        CoreNlpUtils.getTagger().annotate(document);
+        return add(gloss, GlossAnnotation.of(document, false));
+    }
+
+    /**
+     * Adds the new annotation of the gloss, unless another thread has already
+     * added one that is at least as complete, in which case that annotation
+     * is returned instead.
+     */
+    private GlossAnnotation add(String gloss, GlossAnnotation ga) {
+        while (true) {
+            GlossAnnotation prev = glossToAnnotation.get(gloss);
+            if (prev != null && (prev.isParsed() || !ga.isParsed()))
+                return prev;
+            boolean added = (prev == null)
+                ? glossToAnnotation.putIfAbsent(gloss, ga) == null
+                : glossToAnnotation.replace(gloss, prev, ga);
+            if (added)
+                break;
+        }
+        if (out != null) {
+            synchronized (out) {
+                try {
+                    writeString(out, gloss);
+                    ga.write(out);
+                } catch (IOException ioe) {
+                    throw new IOError(ioe);
+                }
+            }
+        }
+        return ga;
+    }
+
+    /**
+     * Writes any buffered annotations to the backing file, if any.
+     */
+    public void flush() {
+        if (out == null)
+            return;
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the backing file, if any, after which no new glosses
+     * may be annotated.
+     */
+    public void close() {
+        if (out == null)
+            return;
+        synchronized (out) {
+            try {
+                out.close();
+            } catch (IOException ioe) {
+                throw new IOError(ioe);
+            }
+        }
+    }
+
+    public int size() {
+        return glossToAnnotation.size();
+    }
+
+    @Override public String toString() {
+        long h = hits.sum(), m = misses.sum();
+        return String.format("%d glosses, %d hits, %d misses " +
+                             "(%.1f%% hit rate)", size(), h, m,
+                             (h + m == 0) ? 0d : 100d * h / (h + m));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
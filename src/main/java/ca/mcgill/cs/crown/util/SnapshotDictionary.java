@@ -0,0 +1,295 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.util;
+
+import edu.mit.jwi.*;
+import edu.mit.jwi.item.*;
+import edu.mit.jwi.item.POS;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An {@link IDictionary} that loads the entire contents of a WordNet {@code
+ * dict/} directory into memory once and then serves all requests from
+ * immutable, array-backed tables.  Synsets are kept sorted by offset and index
+ * words and exception entries are kept sorted by lemma, with all lookups done
+ * by binary search.  Because nothing changes after construction, the
+ * dictionary can be shared by any number of threads without locking, unlike
+ * the {@link ThreadSafeDictionary} wrapper.
+ *
+ * <p> The {@link #close()} method only marks the dictionary as closed; the
+ * loaded data is released when the instance is no longer referenced.
+ */
+public class SnapshotDictionary implements IDictionary {
+
+    private static final Comparator<ISynset> BY_OFFSET =
+        (s1, s2) -> Integer.compare(s1.getOffset(), s2.getOffset());
+
+    private static final Comparator<IIndexWord> BY_INDEX_LEMMA =
+        (w1, w2) -> w1.getLemma().compareTo(w2.getLemma());
+
+    private static final Comparator<IExceptionEntry> BY_SURFACE_FORM =
+        (e1, e2) -> e1.getSurfaceForm().compareTo(e2.getSurfaceForm());
+
+    /**
+     * The synsets for each part of speech, indexed by {@link POS#ordinal()} and
+     * sorted by offset.
+     */
+    private final ISynset[][] synsets;
+
+    /**
+     * The offsets of the synsets in {@link #synsets}, in the same order.
+     */
+    private final int[][] synsetOffsets;
+
+    /**
+     * The index words for each part of speech, sorted by lemma.
+     */
+    private final IIndexWord[][] indexWords;
+
+    /**
+     * The lemmas of the words in {@link #indexWords}, in the same order.
+     */
+    private final String[][] indexLemmas;
+
+    /**
+     * The exception entries for each part of speech, sorted by surface form.
+     */
+    private final IExceptionEntry[][] exceptions;
+
+    /**
+     * The surface forms of the entries in {@link #exceptions}, in the same
+     * order.
+     */
+    private final String[][] exceptionForms;
+
+    /**
+     * All of the sense entries, in the order returned by the source dictionary.
+     */
+    private final ISenseEntry[] senseEntries;
+
+    /**
+     * A mapping from each sense key to its entry.  This map is never modified
+     * after construction.
+     */
+    private final Map<ISenseKey,ISenseEntry> senseKeyToEntry;
+
+    private final IVersion version;
+
+    private volatile boolean isOpen;
+
+    /**
+     * Creates a snapshot of the current contents of the provided dictionary,
+     * which must already be open.
+     */
+    public SnapshotDictionary(IDictionary source) {
+        int numPos = POS.values().length;
+        synsets = new ISynset[numPos][];
+        synsetOffsets = new int[numPos][];
+        indexWords = new IIndexWord[numPos][];
+        indexLemmas = new String[numPos][];
+        exceptions = new IExceptionEntry[numPos][];
+        exceptionForms = new String[numPos][];
+
+        for (POS pos : POS.values()) {
+            int p = pos.ordinal();
+
+            ISynset[] syns = toArray(source.getSynsetIterator(pos),
+                                     new ISynset[0]);
+            Arrays.sort(syns, BY_OFFSET);
+            int[] offsets = new int[syns.length];
+            for (int i = 0; i < syns.length; ++i)
+                offsets[i] = syns[i].getOffset();
+            synsets[p] = syns;
+            synsetOffsets[p] = offsets;
+
+            IIndexWord[] iws = toArray(source.getIndexWordIterator(pos),
+                                       new IIndexWord[0]);
+            Arrays.sort(iws, BY_INDEX_LEMMA);
+            String[] lemmas = new String[iws.length];
+            for (int i = 0; i < iws.length; ++i)
+                lemmas[i] = iws[i].getLemma();
+            indexWords[p] = iws;
+            indexLemmas[p] = lemmas;
+
+            IExceptionEntry[] excs =
+                toArray(source.getExceptionEntryIterator(pos),
+                        new IExceptionEntry[0]);
+            Arrays.sort(excs, BY_SURFACE_FORM);
+            String[] forms = new String[excs.length];
+            for (int i = 0; i < excs.length; ++i)
+                forms[i] = excs[i].getSurfaceForm();
+            exceptions[p] = excs;
+            exceptionForms[p] = forms;
+        }
+
+        senseEntries = toArray(source.getSenseEntryIterator(),
+                               new ISenseEntry[0]);
+        Map<ISenseKey,ISenseEntry> m =
+            new HashMap<ISenseKey,ISenseEntry>(senseEntries.length * 2);
+        for (ISenseEntry se : senseEntries)
+            m.put(se.getSenseKey(), se);
+        senseKeyToEntry = Collections.unmodifiableMap(m);
+
+        version = source.getVersion();
+        isOpen = true;
+    }
+
+    /**
+     * Loads the WordNet {@code dict/} directory into a new snapshot.
+     */
+    public static SnapshotDictionary load(File wnDictDir) {
+        IDictionary source = null;
+        try {
+            source = new edu.mit.jwi.Dictionary(wnDictDir.toURI().toURL());
+            if (!source.open()) {
+                throw new Error("Unable to open dictionary at " + wnDictDir);
+            }
+            return new SnapshotDictionary(source);
+        } catch (IOException ioe) {
+            throw new IOError(ioe);
+        } finally {
+            if (source != null)
+                source.close();
+        }
+    }
+
+    private static <T> T[] toArray(Iterator<T> iter, T[] arr) {
+        List<T> items = new ArrayList<T>();
+        while (iter.hasNext())
+            items.add(iter.next());
+        return items.toArray(arr);
+    }
+
+    /**
+     * Returns the number of synsets in the snapshot for this part of speech.
+     */
+    public int numSynsets(POS pos) {
+        return synsets[pos.ordinal()].length;
+    }
+
+    public void close() {
+        isOpen = false;
+    }
+
+    public IExceptionEntry getExceptionEntry(IExceptionEntryID id) {
+        return getExceptionEntry(id.getSurfaceForm(), id.getPOS());
+    }
+
+    public IExceptionEntry getExceptionEntry(String surfaceForm, POS pos)  {
+        // Normalize the surface form the same way JWI does
+        String key = new ExceptionEntryID(surfaceForm, pos).getSurfaceForm();
+        int p = pos.ordinal();
+        int i = Arrays.binarySearch(exceptionForms[p], key);
+        return (i < 0) ? null : exceptions[p][i];
+    }
+
+    public Iterator<IExceptionEntry> getExceptionEntryIterator(POS pos) {
+        return Collections.unmodifiableList(
+            Arrays.asList(exceptions[pos.ordinal()])).iterator();
+    }
+
+    public IIndexWord getIndexWord(IIndexWordID id) {
+        return find(id.getLemma(), id.getPOS());
+    }
+
+    public IIndexWord getIndexWord(String lemma, POS pos) {
+        // Normalize the lemma the same way JWI does, which also rejects empty
+        // lemmas with the same exception
+        return find(new IndexWordID(lemma, pos).getLemma(), pos);
+    }
+
+    private IIndexWord find(String normalizedLemma, POS pos) {
+        int p = pos.ordinal();
+        int i = Arrays.binarySearch(indexLemmas[p], normalizedLemma);
+        return (i < 0) ? null : indexWords[p][i];
+    }
+
+    public Iterator<IIndexWord> getIndexWordIterator(POS pos) {
+        return Collections.unmodifiableList(
+            Arrays.asList(indexWords[pos.ordinal()])).iterator();
+    }
+
+    public ISenseEntry getSenseEntry(ISenseKey key) {
+        return senseKeyToEntry.get(key);
+    }
+
+    public Iterator<ISenseEntry> getSenseEntryIterator() {
+        return Collections.unmodifiableList(
+            Arrays.asList(senseEntries)).iterator();
+    }
+
+    public ISynset getSynset(ISynsetID id) {
+        int p = id.getPOS().ordinal();
+        int i = Arrays.binarySearch(synsetOffsets[p], id.getOffset());
+        return (i < 0) ? null : synsets[p][i];
+    }
+
+    public Iterator<ISynset> getSynsetIterator(POS pos) {
+        return Collections.unmodifiableList(
+            Arrays.asList(synsets[pos.ordinal()])).iterator();
+    }
+
+    public IWord getWord(ISenseKey key) {
+        ISenseEntry entry = getSenseEntry(key);
+        if (entry == null)
+            return null;
+        ISynset synset = getSynset(new SynsetID(entry.getOffset(),
+                                                entry.getPOS()));
+        if (synset == null)
+            return null;
+        for (IWord iw : synset.getWords()) {
+            if (iw.getSenseKey().equals(key))
+                return iw;
+        }
+        return null;
+    }
+
+    public IWord getWord(IWordID id) {
+        ISynset synset = getSynset(id.getSynsetID());
+        if (synset == null)
+            return null;
+        List<IWord> words = synset.getWords();
+        int wordNum = id.getWordNumber();
+        if (wordNum > 0 && wordNum <= words.size())
+            return words.get(wordNum - 1);
+        String lemma = id.getLemma();
+        if (lemma != null) {
+            for (IWord iw : words) {
+                if (iw.getLemma().equalsIgnoreCase(lemma))
+                    return iw;
+            }
+        }
+        return null;
+    }
+
+    public IVersion getVersion() {
+        return version;
+    }
+
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    public boolean open() throws IOException {
+        isOpen = true;
+        return true;
+    }
+}
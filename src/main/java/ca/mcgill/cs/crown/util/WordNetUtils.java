@@ -12,6 +12,9 @@ import java.net.*;
 import java.util.*;
 import java.util.regex.*;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import edu.ucla.sspace.util.*;
 
 import edu.mit.jwi.*;
@@ -24,52 +27,145 @@ import edu.mit.jwi.morph.SimpleStemmer;
 
 /**
  * A collection of methods for working with WordNet through the JWI {@link
- * IDictionary} interface.
+ * IDictionary} interface.  All methods are safe to call concurrently: the
+ * stateful helpers (stemmers, matchers and buffers) are confined to the calling
+ * thread, so lookups do not contend on a class-wide monitor.  Setting the
+ * {@value #SERIALIZE_PROPERTY} system property to {@code true} restores the
+ * previous behavior where all calls were serialized, which is useful for
+ * comparing throughput.
  */
 public class WordNetUtils {
 
-    static final IStemmer MORPHY = new SimpleStemmer();
+    /**
+     * The system property that, when set to {@code true}, serializes all calls
+     * to this class through a single lock.
+     */
+    public static final String SERIALIZE_PROPERTY = "crown.serializeWordNet";
+
+    /**
+     * The lock used to serialize all calls when {@value #SERIALIZE_PROPERTY} is
+     * set, or {@code null} if calls proceed concurrently.
+     */
+    private static final Lock SERIAL_LOCK =
+        (Boolean.getBoolean(SERIALIZE_PROPERTY)) ? new ReentrantLock() : null;
+
+    /**
+     * JWI's stemmer keeps internal state while stemming, so each thread gets
+     * its own.
+     */
+    private static final ThreadLocal<IStemmer> MORPHY =
+        ThreadLocal.withInitial(SimpleStemmer::new);
     
-    static StringBuilder glossSb = new StringBuilder();
+    private static final ThreadLocal<StringBuilder> GLOSS_SB =
+        ThreadLocal.withInitial(StringBuilder::new);
 
     static final Pattern USAGE_IN_GLOSS = Pattern.compile(";[\\s]*\"[^\"]+\"");
+
+    private static final ThreadLocal<Matcher> ALL_WHITESPACE =
+        ThreadLocal.withInitial(() -> Pattern.compile("[\\s]+").matcher(""));
+
+    private static void lock() {
+        if (SERIAL_LOCK != null)
+            SERIAL_LOCK.lock();
+    }
+
+    private static void unlock() {
+        if (SERIAL_LOCK != null)
+            SERIAL_LOCK.unlock();
+    }
+
+    /**
+     * Returns {@code true} if the lemma is {@code null}, empty, or consists of
+     * only whitespace.
+     */
+    private static boolean isBlank(String lemma) {
+        if (lemma == null || lemma.length() == 0)
+            return true;
+        Matcher m = ALL_WHITESPACE.get();
+        m.reset(lemma);
+        return m.matches();
+    }
     
     /**
      * Returns the gloss of this synset, with all of its synonyms appended to
      * it.
      */
-    public static synchronized String getExtendedGloss(ISynset syn) {
-        glossSb.setLength(0);
-        glossSb.append(syn.getGloss());
-        for (IWord iw : syn.getWords()) {
-            glossSb.append(iw.getLemma()).append(' ');
+    public static String getExtendedGloss(ISynset syn) {
+        lock();
+        try {
+            StringBuilder glossSb = GLOSS_SB.get();
+            glossSb.setLength(0);
+            glossSb.append(syn.getGloss());
+            for (IWord iw : syn.getWords()) {
+                glossSb.append(iw.getLemma()).append(' ');
+            }
+            return glossSb.toString();
+        } finally {
+            unlock();
         }
-        return glossSb.toString();
+    }
+
+    /**
+     * Returns the extended glosses of the synsets, in iteration order.
+     */
+    public static List<String> getExtendedGlosses(Collection<ISynset> synsets) {
+        List<String> glosses = new ArrayList<String>(synsets.size());
+        for (ISynset syn : synsets)
+            glosses.add(getExtendedGloss(syn));
+        return glosses;
+    }
+
+    /**
+     * Returns the glosses of the synsets without their examples, in iteration
+     * order.
+     */
+    public static List<String> getGlossesWithoutExamples(
+            Collection<ISynset> synsets) {
+        List<String> glosses = new ArrayList<String>(synsets.size());
+        for (ISynset syn : synsets)
+            glosses.add(getGlossWithoutExamples(syn));
+        return glosses;
     }
 
     /**
      * Returns the gloss of this synset, without the examples contained in it
      */
-    public static synchronized String getGlossWithoutExamples(ISynset syn) {
-        Matcher m = USAGE_IN_GLOSS.matcher(syn.getGloss());
-        return m.replaceAll("");
+    public static String getGlossWithoutExamples(ISynset syn) {
+        lock();
+        try {
+            Matcher m = USAGE_IN_GLOSS.matcher(syn.getGloss());
+            return m.replaceAll("");
+        } finally {
+            unlock();
+        }
     }
     
-    public static synchronized ISynset getFirstSense(IDictionary dict,
-                                                     IIndexWord iw) {
-        List<IWordID> wids = iw.getWordIDs();
-        ISynset synset = dict.getSynset(wids.get(0).getSynsetID());
-        return synset;
+    public static ISynset getFirstSense(IDictionary dict, IIndexWord iw) {
+        lock();
+        try {
+            List<IWordID> wids = iw.getWordIDs();
+            ISynset synset = dict.getSynset(wids.get(0).getSynsetID());
+            return synset;
+        } finally {
+            unlock();
+        }
+    }
+
+    public static ISynset getFirstSense(IDictionary dict,
+                                        String lemma, POS pos) {
+        lock();
+        try {
+            return getFirstSense_(dict, lemma, pos);
+        } finally {
+            unlock();
+        }
     }
 
-    public static synchronized ISynset getFirstSense(IDictionary dict,
-                                                     String lemma, POS pos) {
+    private static ISynset getFirstSense_(IDictionary dict,
+                                          String lemma, POS pos) {
 
         // Short circuit for bad inputs
-        if (lemma == null || lemma.length() == 0)
-            return null;
-        ALL_WHITESPACE.reset(lemma);
-        if (ALL_WHITESPACE.matches())
+        if (isBlank(lemma))
             return null;
         
         // Get the WordNet sysnet if it exists
@@ -138,24 +234,32 @@ public class WordNetUtils {
     }
 
     
-    public static synchronized Set<ISynset> getSynsets(IDictionary dict,
-                                   Collection<String> lemmas, POS pos) {
-        Set<ISynset> synsets = new LinkedHashSet<ISynset>();
-        for (String lemma : lemmas)
-            synsets.addAll(getSynsets(dict, lemma, pos));
-        return synsets;
+    public static Set<ISynset> getSynsets(IDictionary dict,
+                                          Collection<String> lemmas, POS pos) {
+        lock();
+        try {
+            Set<ISynset> synsets = new LinkedHashSet<ISynset>();
+            for (String lemma : lemmas)
+                synsets.addAll(getSynsets(dict, lemma, pos));
+            return synsets;
+        } finally {
+            unlock();
+        }
     }
 
-    public static synchronized Set<ISynset> getSynsets(IDictionary dict,
-                                   String[] lemmas, POS pos) {
-        Set<ISynset> synsets = new LinkedHashSet<ISynset>();
-        for (String lemma : lemmas)
-            synsets.addAll(getSynsets(dict, lemma, pos));
-        return synsets;
+    public static Set<ISynset> getSynsets(IDictionary dict,
+                                          String[] lemmas, POS pos) {
+        lock();
+        try {
+            Set<ISynset> synsets = new LinkedHashSet<ISynset>();
+            for (String lemma : lemmas)
+                synsets.addAll(getSynsets(dict, lemma, pos));
+            return synsets;
+        } finally {
+            unlock();
+        }
     }
 
-    static final Matcher ALL_WHITESPACE = Pattern.compile("[\\s]+").matcher("");
-
     /**
      * Returns the best-effort set of synsets that could be matched to this
      * lemma and part of speech, allow for some lexical variation, such as the
@@ -167,8 +271,18 @@ public class WordNetUtils {
      * @return the set of sysnets that fuzzy-match this lemma and have the same
      *         part of speech or the empty set, if no matches were found.
      */
-    public synchronized static Set<ISynset>
+    public static Set<ISynset>
            getSynsets(IDictionary dict, String lemma, POS pos) {
+        lock();
+        try {
+            return getSynsetVariants(dict, lemma, pos);
+        } finally {
+            unlock();
+        }
+    }
+
+    private static Set<ISynset>
+            getSynsetVariants(IDictionary dict, String lemma, POS pos) {
 
         if (lemma.contains("_")) {
             Set<ISynset> tmp = new HashSet<ISynset>();
@@ -194,16 +308,13 @@ public class WordNetUtils {
         }
     }
     
-    private synchronized static Set<ISynset>
+    private static Set<ISynset>
             getSynsets_(IDictionary dict, String lemma, POS pos) {
         
         Set<ISynset> synsets = new LinkedHashSet<ISynset>();
 
         // Short circuit for bad inputs
-        if (lemma == null || lemma.length() == 0)
-            return synsets;
-        ALL_WHITESPACE.reset(lemma);
-        if (ALL_WHITESPACE.matches())
+        if (isBlank(lemma))
             return synsets;
         
         // Get the WordNet sysnet if it exists
@@ -279,11 +390,14 @@ public class WordNetUtils {
         return synsets;
     }
 
-    public static synchronized List<String> findStems(String lemma, POS pos) {
+    public static List<String> findStems(String lemma, POS pos) {
+        lock();
         try {
-            return MORPHY.findStems(lemma, pos);
+            return MORPHY.get().findStems(lemma, pos);
         } catch (Exception e) {
             return Collections.<String>emptyList();
+        } finally {
+            unlock();
         }
     }
     
@@ -320,29 +434,34 @@ public class WordNetUtils {
      * Returns {@code true} if WordNet contains an entry for this lemma and part
      * of speech, either as a sysnet or an exception.
      */
-    public static synchronized boolean isInWn(IDictionary dict, String lemma, POS pos) {
+    public static boolean isInWn(IDictionary dict, String lemma, POS pos) {
         if (lemma == null || lemma.equals(""))
             return false;
+        lock();
         try {
-            if (dict.getIndexWord(lemma, pos) != null
-                    || dict.getExceptionEntry(lemma, pos) != null)
-                return true;
-        } catch (Throwable t) {
+            try {
+                if (dict.getIndexWord(lemma, pos) != null
+                        || dict.getExceptionEntry(lemma, pos) != null)
+                    return true;
+            } catch (Throwable t) {
+                return false;
+            }
+            List<String> stems = findStems(lemma, pos);
+            for (String stem : stems) {
+                if (!stem.equals(lemma) && dict.getIndexWord(stem, pos) != null)
+                    return true;            
+            }
             return false;
+        } finally {
+            unlock();
         }
-        List<String> stems = findStems(lemma, pos);
-        for (String stem : stems) {
-            if (!stem.equals(lemma) && dict.getIndexWord(stem, pos) != null)
-                return true;            
-        }
-        return false;
     }
 
     /**
      * Returns {@code true} if WordNet already contains a synset for this lemma
      * and part of speech within three edges of the specified synset.
      */
-    public static synchronized boolean isAlreadyInWordNet(IDictionary dict,
+    public static boolean isAlreadyInWordNet(IDictionary dict,
                                              String lemma, POS pos,
                                              ISynset candidateAttachment) {
 
@@ -355,7 +474,17 @@ public class WordNetUtils {
      * and part of speech within three edges of any of the the specified
      * synsets.
      */
-    public static synchronized boolean isAlreadyInWordNet(IDictionary dict, String lemma,
+    public static boolean isAlreadyInWordNet(IDictionary dict, String lemma,
+            POS pos, Collection<ISynset> candidateAttachments) {
+        lock();
+        try {
+            return isAlreadyInWordNet_(dict, lemma, pos, candidateAttachments);
+        } finally {
+            unlock();
+        }
+    }
+
+    private static boolean isAlreadyInWordNet_(IDictionary dict, String lemma,
             POS pos, Collection<ISynset> candidateAttachments) {
         
         List<String> lemmaAndVariants = new ArrayList<String>();
@@ -397,8 +526,18 @@ public class WordNetUtils {
      * Returns {@code true} if the synset {@code start} is a descendent of the
      * synset {@code goal}.
      */
-    public static synchronized boolean isDescendent(IDictionary dict, ISynset start,
+    public static boolean isDescendent(IDictionary dict, ISynset start,
                                        ISynsetID goal) {
+        lock();
+        try {
+            return isDescendent_(dict, start, goal);
+        } finally {
+            unlock();
+        }
+    }
+
+    private static boolean isDescendent_(IDictionary dict, ISynset start,
+                                         ISynsetID goal) {
 
         if (start.getID().equals(goal))
             return true;
@@ -501,10 +640,18 @@ public class WordNetUtils {
         }
     }
 
+    /**
+     * Loads the entire WordNet dictionary into an immutable, lock-free {@link
+     * SnapshotDictionary}.
+     */
+    public static IDictionary openSnapshot(File wnDictDir) {
+        return SnapshotDictionary.load(wnDictDir);
+    }
+
     /**
      * Returns the set of lemmas contained in this synset
      */
-    public static synchronized Set<String> toLemmas(ISynset s) {
+    public static Set<String> toLemmas(ISynset s) {
         Set<String> lemmas = new HashSet<String>();
         for (IWord iw : s.getWords())
             lemmas.add(iw.getLemma());
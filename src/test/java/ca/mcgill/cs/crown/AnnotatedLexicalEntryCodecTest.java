@@ -0,0 +1,333 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.POS;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+
+import edu.stanford.nlp.util.CoreMap;
+
+import edu.ucla.sspace.util.Duple;
+
+import ca.mcgill.cs.crown.CrownOperations.Reason;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+
+/**
+ * Checks that entries written by an {@link AnnotatedLexicalEntryCodec.Writer}
+ * are read back unchanged, or skipped, by a {@link
+ * AnnotatedLexicalEntryCodec.Reader}, and that streams written with a
+ * different version or different operations are rejected.
+ */
+public class AnnotatedLexicalEntryCodecTest {
+
+    static final ISynset DOG = FakeDictionary.synset(2084071, POS.NOUN);
+
+    static final ISynset CANINE = FakeDictionary.synset(2083346, POS.NOUN);
+
+    static final ISynset PACK = FakeDictionary.synset(7994941, POS.NOUN);
+
+    static final ISynset RUN = FakeDictionary.synset(1926311, POS.VERB);
+
+    static final ISynset FAST = FakeDictionary.synset(82421, POS.ADVERB);
+
+    static final ISynset GOOD = FakeDictionary.synset(1123148, POS.ADJECTIVE);
+
+    static final IDictionary DICT =
+        FakeDictionary.of(DOG, CANINE, PACK, RUN, FAST, GOOD);
+
+    /**
+     * Returns an entry with a single gloss and no relations.
+     */
+    static LexicalEntry entry(String lemma, String id, POS pos) {
+        String gloss = "A gloss of " + lemma + ".";
+        Map<String,String> rawGlosses = new LinkedHashMap<String,String>();
+        rawGlosses.put("# " + gloss, gloss);
+        return new LexicalEntryImpl(lemma, id, pos, gloss,
+                                    Collections.singleton(gloss), rawGlosses,
+                                    Collections.<Relation>emptyList());
+    }
+
+    /**
+     * Returns annotated entries that, between them, use every kind of
+     * operation and every type of reason property.
+     */
+    static List<AnnotatedLexicalEntry> annotatedEntries() {
+        List<AnnotatedLexicalEntry> ales =
+            new ArrayList<AnnotatedLexicalEntry>();
+
+        AnnotatedLexicalEntryImpl puppy = new AnnotatedLexicalEntryImpl(
+            entry("puppy", "puppy:Noun:1", POS.NOUN));
+        puppy.setOp(CrownOperations.Hypernym.class,
+                    reason("ParentFinder", 0.75), DOG);
+        puppy.addOp(CrownOperations.MemberMeronym.class,
+                    reason("ParentFinder", 0.5), PACK);
+        puppy.addOp(CrownOperations.MemberMeronym.class,
+                    reason("RelationFinder", Double.NaN), CANINE);
+        puppy.addOp(CrownOperations.Lexicalization.class,
+                    reason("Lexicalizer", 1), "pup");
+        ales.add(puppy);
+
+        AnnotatedLexicalEntryImpl sprint = new AnnotatedLexicalEntryImpl(
+            entry("sprint", "sprint:Verb:1", POS.VERB));
+        Reason r = reason("ParentFinder", 0.25);
+        r.set("candidates", Arrays.asList("run", "dash", "run"));
+        r.set("num_candidates", 3);
+        r.set("overlap", 0.125);
+        r.setProperty("offset", 1L << 40);
+        r.setProperty("exact", true);
+        // Longer than any string that is shared, and so written twice
+        r.set("explanation", String.join(" ", Collections.nCopies(20, "run")));
+        sprint.setOp(CrownOperations.Hypernym.class, r, RUN);
+        sprint.setOp(CrownOperations.Synonym.class, r, RUN);
+        ales.add(sprint);
+
+        AnnotatedLexicalEntryImpl swiftly = new AnnotatedLexicalEntryImpl(
+            entry("swiftly", "swiftly:Adverb:1", POS.ADVERB));
+        // No heuristic and no score
+        swiftly.setOp(CrownOperations.SimilarTo.class,
+                      new Reason(AnnotatedLexicalEntryCodecTest.class), FAST);
+        swiftly.setOp(CrownOperations.Pertainym.class,
+                      reason("Pertainyms", -0.0), GOOD);
+        ales.add(swiftly);
+
+        // An entry with no operations at all
+        ales.add(new AnnotatedLexicalEntryImpl(
+            entry("caf\u00e9", "caf\u00e9:Noun:2", POS.NOUN)));
+
+        // Enough distinct strings that their numbers in the string table no
+        // longer fit in a single byte
+        AnnotatedLexicalEntryImpl many = new AnnotatedLexicalEntryImpl(
+            entry("many", "many:Adjective:1", POS.ADJECTIVE));
+        for (int i = 0; i < 300; ++i) {
+            Reason ri = reason("Heuristic" + (i % 150), i / 300d);
+            ri.set("property" + i, "value" + (i % 7));
+            many.addOp(CrownOperations.Lexicalization.class, ri, "many" + i);
+        }
+        many.setOp(CrownOperations.Antonym.class,
+                   reason("Heuristic149", 1), GOOD);
+        ales.add(many);
+        return ales;
+    }
+
+    static Reason reason(String heuristic, double score) {
+        Reason r = new Reason(CrownOperations.class);
+        r.set(Reason.HEURISTIC, heuristic);
+        r.set(Reason.SCORE, score);
+        return r;
+    }
+
+    static Map<String,LexicalEntry> byKey(List<? extends LexicalEntry> es) {
+        Map<String,LexicalEntry> keyToEntry =
+            new HashMap<String,LexicalEntry>();
+        for (LexicalEntry e : es)
+            keyToEntry.put(AnnotatedLexicalEntryCodec.key(e), e);
+        return keyToEntry;
+    }
+
+    static byte[] write(List<AnnotatedLexicalEntry> ales) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        AnnotatedLexicalEntryCodec.Writer writer =
+            new AnnotatedLexicalEntryCodec.Writer(out);
+        for (AnnotatedLexicalEntry ale : ales)
+            writer.write(ale);
+        writer.finish();
+        // Something after the stream, to check that reading stops at its end
+        out.writeInt(0xCAFE);
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    static DataInputStream in(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    @Test public void testRoundTrip() throws IOException {
+        List<AnnotatedLexicalEntry> ales = annotatedEntries();
+        DataInputStream in = in(write(ales));
+        AnnotatedLexicalEntryCodec.Reader reader =
+            new AnnotatedLexicalEntryCodec.Reader(in, DICT, byKey(ales));
+        for (AnnotatedLexicalEntry expected : ales) {
+            AnnotatedLexicalEntry actual = reader.read();
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getPos(), actual.getPos());
+            assertEquals(describe(expected), describe(actual));
+        }
+        assertNull(reader.read());
+        assertNull(reader.read());
+        assertEquals(0xCAFE, in.readInt());
+    }
+
+    @Test public void testSkip() throws IOException {
+        List<AnnotatedLexicalEntry> ales = annotatedEntries();
+        DataInputStream in = in(write(ales));
+        // Skipping needs neither a dictionary nor the entries
+        AnnotatedLexicalEntryCodec.Reader reader =
+            new AnnotatedLexicalEntryCodec.Reader(
+                in, null, Collections.<String,LexicalEntry>emptyMap());
+        int numSkipped = 0;
+        while (reader.skip())
+            numSkipped++;
+        assertEquals(ales.size(), numSkipped);
+        assertFalse(reader.skip());
+        assertEquals(0xCAFE, in.readInt());
+    }
+
+    @Test public void testEmptyStream() throws IOException {
+        DataInputStream in =
+            in(write(Collections.<AnnotatedLexicalEntry>emptyList()));
+        AnnotatedLexicalEntryCodec.Reader reader =
+            new AnnotatedLexicalEntryCodec.Reader(
+                in, DICT, Collections.<String,LexicalEntry>emptyMap());
+        assertNull(reader.read());
+        assertEquals(0xCAFE, in.readInt());
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsOtherVersion() throws IOException {
+        byte[] bytes = write(annotatedEntries());
+        // The version is the first byte
+        bytes[0]++;
+        new AnnotatedLexicalEntryCodec.Reader(
+            in(bytes), DICT, byKey(annotatedEntries()));
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsOtherOperations() throws IOException {
+        // A header without the last of the set-argument operations, as if
+        // the stream had been written before it was added
+        List<String> ops = new ArrayList<String>();
+        for (Class<?> op : CrownOperations.SINGLE_ARG_OPERATIONS)
+            ops.add(op.getName());
+        for (Class<?> op : CrownOperations.SET_ARG_OPERATIONS)
+            ops.add(op.getName());
+        ops.remove(ops.size() - 1);
+        ops.add(CrownOperations.Lexicalization.class.getName());
+
+        byte[] valid = write(Collections.<AnnotatedLexicalEntry>emptyList());
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        AnnotatedLexicalEntryCodec.writeVarInt(out, valid[0]);
+        AnnotatedLexicalEntryCodec.writeVarInt(out, ops.size());
+        for (String op : ops)
+            AnnotatedLexicalEntryCodec.writeUtf8(out, op);
+        out.writeByte(0);
+        new AnnotatedLexicalEntryCodec.Reader(
+            in(baos.toByteArray()), DICT,
+            Collections.<String,LexicalEntry>emptyMap());
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsUnknownEntry() throws IOException {
+        List<AnnotatedLexicalEntry> ales = annotatedEntries();
+        Map<String,LexicalEntry> keyToEntry = byKey(ales);
+        keyToEntry.remove(AnnotatedLexicalEntryCodec.key(ales.get(0)));
+        new AnnotatedLexicalEntryCodec.Reader(in(write(ales)), DICT, keyToEntry)
+            .read();
+    }
+
+    @Test(expected=IOException.class)
+    public void testRejectsUnknownSynset() throws IOException {
+        List<AnnotatedLexicalEntry> ales = annotatedEntries();
+        new AnnotatedLexicalEntryCodec.Reader(
+            in(write(ales)), FakeDictionary.of(CANINE, PACK), byKey(ales))
+            .read();
+    }
+
+    @Test public void testVarInts() throws IOException {
+        int[] values = { 0, 1, 63, 64, 127, 128, 255, 16383, 16384,
+                         1 << 21, Integer.MAX_VALUE, -1, Integer.MIN_VALUE };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        for (int v : values)
+            AnnotatedLexicalEntryCodec.writeVarInt(out, v);
+        DataInputStream in = in(baos.toByteArray());
+        for (int v : values)
+            assertEquals(v, AnnotatedLexicalEntryCodec.readVarInt(in));
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * Returns a description of every operation of the entry, including all
+     * of the properties of its reason, in a fixed order.
+     */
+    static List<String> describe(AnnotatedLexicalEntry ale) {
+        CoreMap operations = ale.getOperations();
+        List<String> ops = new ArrayList<String>();
+        for (Class<? extends CoreAnnotation<Duple<Reason,ISynset>>> op
+                 : CrownOperations.SINGLE_ARG_OPERATIONS) {
+            Duple<Reason,ISynset> dup = operations.get(op);
+            if (dup != null)
+                ops.add(describe(op, dup.x, dup.y));
+        }
+        for (Class<? extends CoreAnnotation<Set<Duple<Reason,ISynset>>>> op
+                 : CrownOperations.SET_ARG_OPERATIONS) {
+            Set<Duple<Reason,ISynset>> dups = operations.get(op);
+            if (dups == null)
+                continue;
+            for (Duple<Reason,ISynset> dup : dups)
+                ops.add(describe(op, dup.x, dup.y));
+        }
+        Set<Duple<Reason,String>> lexs =
+            operations.get(CrownOperations.Lexicalization.class);
+        if (lexs != null) {
+            for (Duple<Reason,String> dup : lexs) {
+                ops.add(describe(CrownOperations.Lexicalization.class,
+                                 dup.x, dup.y));
+            }
+        }
+        // Set-argument operations are kept in hash sets
+        Collections.sort(ops);
+        return ops;
+    }
+
+    private static String describe(Class<?> op, Reason r, Object value) {
+        StringBuilder sb = new StringBuilder(op.getSimpleName());
+        sb.append(' ').append(r.getOrigin().getName())
+            .append(' ').append(r.getHeuristic())
+            .append(' ').append(Double.doubleToRawLongBits(r.getScore()));
+        // The types are included so that, e.g., an int is not read as a long
+        for (Map.Entry<String,Object> e : r.getProperties().entrySet()) {
+            sb.append(' ').append(e.getKey()).append('=')
+                .append(e.getValue().getClass().getSimpleName()).append(':')
+                .append(e.getValue());
+        }
+        if (value instanceof ISynset) {
+            ISynset syn = (ISynset)value;
+            sb.append(" -> ").append(syn.getPOS()).append(syn.getOffset());
+        }
+        else
+            sb.append(" -> ").append(value);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.jwi.item.POS;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that each {@link BuildCheckpoint} is read back as it was written and
+ * that a checkpoint from another version is treated as absent.
+ */
+public class BuildCheckpointTest {
+
+    private File workingDir;
+
+    @Before public void setUp() throws IOException {
+        workingDir = Files.createTempDirectory("checkpoint-test").toFile();
+    }
+
+    @After public void tearDown() {
+        File checkpointDir = new File(workingDir, "checkpoints");
+        File[] files = checkpointDir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        checkpointDir.delete();
+        workingDir.delete();
+    }
+
+    /**
+     * Returns the entries an iteration starts with: those that are
+     * integrated, followed by three that remain.
+     */
+    private static List<LexicalEntry> startingEntries(
+            List<AnnotatedLexicalEntry> toIntegrate) {
+        List<LexicalEntry> entries = new ArrayList<LexicalEntry>(toIntegrate);
+        entries.add(AnnotatedLexicalEntryCodecTest.entry(
+                        "doggo", "doggo:Noun:1", POS.NOUN));
+        entries.add(AnnotatedLexicalEntryCodecTest.entry(
+                        "doggo", "doggo:Verb:1", POS.VERB));
+        entries.add(AnnotatedLexicalEntryCodecTest.entry(
+                        "zoomies", "zoomies:Noun:1", POS.NOUN));
+        return entries;
+    }
+
+    private static Map<LexicalEntry,long[]> dependencies(
+            List<LexicalEntry> entries) {
+        Map<LexicalEntry,long[]> deps = new HashMap<LexicalEntry,long[]>();
+        int n = entries.size();
+        deps.put(entries.get(n - 3), new long[] { 42L, -1L, Long.MIN_VALUE });
+        deps.put(entries.get(n - 2), new long[0]);
+        // The last has no dependencies recorded at all
+        return deps;
+    }
+
+    @Test public void testIntegratedRoundTrip() {
+        List<AnnotatedLexicalEntry> toIntegrate =
+            AnnotatedLexicalEntryCodecTest.annotatedEntries();
+        List<LexicalEntry> entries = startingEntries(toIntegrate);
+        List<LexicalEntry> remaining =
+            entries.subList(toIntegrate.size(), entries.size());
+        Map<LexicalEntry,long[]> deps = dependencies(entries);
+
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        assertFalse(checkpoint.isIntegrated(0));
+        checkpoint.saveIntegrated(0, toIntegrate, remaining, deps);
+        assertTrue(checkpoint.isIntegrated(0));
+        assertFalse(checkpoint.isIntegrated(1));
+        assertFalse(checkpoint.isBuilt(0));
+
+        // Restored into the same entries, as a resumed build would load them
+        List<LexicalEntry> restored = new ArrayList<LexicalEntry>(entries);
+        Map<LexicalEntry,long[]> restoredDeps =
+            new HashMap<LexicalEntry,long[]>();
+        List<AnnotatedLexicalEntry> loaded = checkpoint.loadIntegrated(
+            0, AnnotatedLexicalEntryCodecTest.DICT, restored, restoredDeps);
+
+        assertEquals(toIntegrate.size(), loaded.size());
+        for (int i = 0; i < loaded.size(); ++i) {
+            assertEquals(toIntegrate.get(i).getId(), loaded.get(i).getId());
+            assertEquals(
+                AnnotatedLexicalEntryCodecTest.describe(toIntegrate.get(i)),
+                AnnotatedLexicalEntryCodecTest.describe(loaded.get(i)));
+        }
+        assertEquals(remaining, restored);
+        assertDependencies(deps, restoredDeps);
+    }
+
+    @Test public void testRestoreRemaining() {
+        List<AnnotatedLexicalEntry> toIntegrate =
+            AnnotatedLexicalEntryCodecTest.annotatedEntries();
+        List<LexicalEntry> entries = startingEntries(toIntegrate);
+        List<LexicalEntry> remaining =
+            entries.subList(toIntegrate.size(), entries.size());
+        Map<LexicalEntry,long[]> deps = dependencies(entries);
+
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        checkpoint.saveIntegrated(3, toIntegrate, remaining, deps);
+
+        // The entries to integrate are skipped rather than read, and stale
+        // dependencies of the integrated entries are dropped
+        List<LexicalEntry> restored = new ArrayList<LexicalEntry>(entries);
+        Map<LexicalEntry,long[]> restoredDeps =
+            new HashMap<LexicalEntry,long[]>();
+        restoredDeps.put(toIntegrate.get(0), new long[] { 1L });
+        checkpoint.restoreRemaining(3, restored, restoredDeps);
+        assertEquals(remaining, restored);
+        assertDependencies(deps, restoredDeps);
+    }
+
+    @Test public void testBuiltRoundTrip() {
+        TLongSet changedKeys = new TLongHashSet();
+        for (long k = -1000; k < 1000; k += 7)
+            changedKeys.add(k * 0x9E3779B97F4A7C15L);
+        changedKeys.add(Long.MAX_VALUE);
+
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        checkpoint.saveBuilt(2, changedKeys);
+        assertTrue(checkpoint.isBuilt(2));
+        assertFalse(checkpoint.isBuilt(1));
+        assertEquals(changedKeys, checkpoint.loadBuilt(2));
+
+        // A checkpoint that is written again replaces the earlier one
+        checkpoint.saveBuilt(2, new TLongHashSet());
+        assertTrue(checkpoint.loadBuilt(2).isEmpty());
+        assertFalse(new File(workingDir, "checkpoints/iter-2.built.tmp")
+                    .exists());
+    }
+
+    @Test public void testOtherVersionIsAbsent() throws IOException {
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        checkpoint.saveBuilt(0, new TLongHashSet(new long[] { 1L }));
+        File built = new File(workingDir, "checkpoints/iter-0.built");
+        byte[] valid = Files.readAllBytes(built.toPath());
+
+        // A different version, with the same magic number
+        byte[] otherVersion = valid.clone();
+        otherVersion[7]++;
+        Files.write(built.toPath(), otherVersion);
+        assertFalse(checkpoint.isBuilt(0));
+
+        // A different magic number
+        byte[] otherMagic = valid.clone();
+        otherMagic[0]++;
+        Files.write(built.toPath(), otherMagic);
+        assertFalse(checkpoint.isBuilt(0));
+
+        // Too short to even have a header
+        Files.write(built.toPath(), Arrays.copyOf(valid, 6));
+        assertFalse(checkpoint.isBuilt(0));
+
+        File integrated = new File(workingDir, "checkpoints/iter-0.integrated");
+        try (DataOutputStream out =
+                 new DataOutputStream(new FileOutputStream(integrated))) {
+            out.writeInt(0x4352434b);
+            out.writeInt(1);
+        }
+        assertFalse(checkpoint.isIntegrated(0));
+
+        Files.write(built.toPath(), valid);
+        assertTrue(checkpoint.isBuilt(0));
+    }
+
+    @Test(expected=IOError.class)
+    public void testLoadRejectsOtherVersion() throws IOException {
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        checkpoint.saveBuilt(0, new TLongHashSet(new long[] { 1L }));
+        File built = new File(workingDir, "checkpoints/iter-0.built");
+        byte[] bytes = Files.readAllBytes(built.toPath());
+        bytes[7]++;
+        Files.write(built.toPath(), bytes);
+        checkpoint.loadBuilt(0);
+    }
+
+    @Test public void testClear() {
+        BuildCheckpoint checkpoint = new BuildCheckpoint(workingDir);
+        checkpoint.saveBuilt(0, new TLongHashSet());
+        checkpoint.saveBuilt(1, new TLongHashSet());
+        checkpoint.clear();
+        assertFalse(checkpoint.isBuilt(0));
+        assertFalse(checkpoint.isBuilt(1));
+    }
+
+    private static void assertDependencies(Map<LexicalEntry,long[]> expected,
+                                           Map<LexicalEntry,long[]> actual) {
+        assertEquals(expected.keySet(), new HashSet<LexicalEntry>(
+                         actual.keySet()));
+        for (Map.Entry<LexicalEntry,long[]> e : expected.entrySet())
+            assertArrayEquals(e.getValue(), actual.get(e.getKey()));
+    }
+}
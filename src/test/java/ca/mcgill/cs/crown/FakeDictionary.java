@@ -0,0 +1,79 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.lang.reflect.Proxy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.SynsetID;
+
+
+/**
+ * A stand-in for a WordNet dictionary that only knows its synsets' parts of
+ * speech and offsets, which is all that is needed to write and read them by
+ * reference.  Any other method throws {@link UnsupportedOperationException}.
+ */
+final class FakeDictionary {
+
+    private FakeDictionary() { }
+
+    /**
+     * Returns a dictionary whose {@link IDictionary#getSynset getSynset}
+     * returns the specified synsets and {@code null} for any other.
+     */
+    static IDictionary of(ISynset... synsets) {
+        Map<ISynsetID,ISynset> idToSynset = new HashMap<ISynsetID,ISynset>();
+        for (ISynset syn : synsets)
+            idToSynset.put(syn.getID(), syn);
+        return (IDictionary)Proxy.newProxyInstance(
+            IDictionary.class.getClassLoader(),
+            new Class<?>[] { IDictionary.class },
+            (proxy, method, args) -> {
+                if (method.getName().equals("getSynset"))
+                    return idToSynset.get(args[0]);
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    /**
+     * Returns a synset with only a part of speech and offset, which is equal
+     * to any other such synset with the same ones.
+     */
+    static ISynset synset(int offset, POS pos) {
+        ISynsetID id = new SynsetID(offset, pos);
+        return (ISynset)Proxy.newProxyInstance(
+            ISynset.class.getClassLoader(),
+            new Class<?>[] { ISynset.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "getID":
+                    return id;
+                case "getOffset":
+                    return offset;
+                case "getPOS":
+                    return pos;
+                case "equals":
+                    return args[0] instanceof ISynset
+                        && id.equals(((ISynset)args[0]).getID());
+                case "hashCode":
+                    return id.hashCode();
+                case "toString":
+                    return "Synset[" + id + "]";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
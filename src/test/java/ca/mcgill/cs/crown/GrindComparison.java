@@ -0,0 +1,136 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Compares the database that {@link LexFileCompiler} generates from a
+ * directory of lexicographer files with the one grind generates from the
+ * same files, byte for byte, and reports the first differing line of each
+ * file that differs.  The compiler is only meant to replace grind once the
+ * two agree on the WordNet 3.0 lexicographer files:
+ *
+ * <pre>
+ * java ca.mcgill.cs.crown.GrindComparison lexfile-dir dict-dir
+ * </pre>
+ *
+ * where {@code lexfile-dir} contains the lexicographer files and {@code
+ * cntlist}, e.g., {@code dict/dbfiles} of the WordNet 3.0 source
+ * distribution, and {@code dict-dir} is the WordNet dictionary, from which
+ * the {@code lexnames} file and the license headers are read.  Grind must be
+ * on the path.  Both databases are left in a temporary directory for
+ * inspection, and the exit status is 1 if they differ.
+ *
+ * <p> Run with the test class path, e.g., through {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test}.
+ */
+public class GrindComparison {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println(
+                "usage: java GrindComparison lexfile-dir dict-dir");
+            System.exit(1);
+        }
+        File dictDir = new File(args[1]);
+        File workingDir = Files.createTempDirectory("grind-comparison")
+            .toFile();
+        File lexFileDir = new File(workingDir, "lexfiles");
+        File compiledDir = new File(workingDir, "compiled");
+        lexFileDir.mkdir();
+        compiledDir.mkdir();
+        for (File f : new File(args[0]).listFiles()) {
+            if (f.isFile() && !Grind.isDatabaseFile(f.getName())) {
+                Files.copy(f.toPath(),
+                           new File(lexFileDir, f.getName()).toPath());
+            }
+        }
+
+        // The compiler reads the same directory listing as grind, before
+        // grind adds its output to it, so the files are in the same order
+        long startTime = System.nanoTime();
+        new LexFileCompiler().compile(
+            lexFileDir, Grind.lexFileNames(lexFileDir),
+            LexFileCompiler.loadLexnames(new File(dictDir, "lexnames")),
+            dictDir, compiledDir);
+        long compileTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        new Grind().runGrind(workingDir, lexFileDir);
+        long grindTime = System.nanoTime() - startTime;
+
+        Set<String> names = new TreeSet<String>();
+        for (File dir : new File[] { lexFileDir, compiledDir }) {
+            for (String name : dir.list()) {
+                if (Grind.isDatabaseFile(name))
+                    names.add(name);
+            }
+        }
+        int numDiffering = 0;
+        for (String name : names) {
+            if (!compare(new File(lexFileDir, name),
+                         new File(compiledDir, name)))
+                numDiffering++;
+        }
+
+        System.out.printf("grind: %.1f s, in-process compiler: %.1f s%n",
+                          grindTime / 1e9, compileTime / 1e9);
+        System.out.printf("%d of %d database files differ; grind's are in " +
+                          "%s and the compiler's in %s%n", numDiffering,
+                          names.size(), lexFileDir, compiledDir);
+        if (numDiffering > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Returns {@code true} if the files are identical, and otherwise prints
+     * their first differing line.
+     */
+    private static boolean compare(File grindFile, File compiledFile)
+            throws IOException {
+        String name = grindFile.getName();
+        if (!grindFile.exists() || !compiledFile.exists()) {
+            System.out.printf("%s: only generated by %s%n", name,
+                              grindFile.exists() ? "grind" : "the compiler");
+            return false;
+        }
+        byte[] expected = Files.readAllBytes(grindFile.toPath());
+        byte[] actual = Files.readAllBytes(compiledFile.toPath());
+        if (Arrays.equals(expected, actual))
+            return true;
+
+        List<String> expectedLines =
+            Files.readAllLines(grindFile.toPath(), StandardCharsets.ISO_8859_1);
+        List<String> actualLines = Files.readAllLines(
+            compiledFile.toPath(), StandardCharsets.ISO_8859_1);
+        int i = 0;
+        while (i < expectedLines.size() && i < actualLines.size()
+               && expectedLines.get(i).equals(actualLines.get(i)))
+            i++;
+        System.out.printf("%s: %d and %d bytes, first differing at line %d%n" +
+                          "  grind:    %s%n  compiler: %s%n",
+                          name, expected.length, actual.length, i + 1,
+                          (i < expectedLines.size())
+                              ? expectedLines.get(i) : "<end of file>",
+                          (i < actualLines.size())
+                              ? actualLines.get(i) : "<end of file>");
+        return false;
+    }
+}
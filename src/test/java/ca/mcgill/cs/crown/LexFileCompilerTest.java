@@ -0,0 +1,248 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks the database files {@link LexFileCompiler} writes for a few small
+ * lexicographer files against the format of grind's output.  Whether they
+ * match grind's byte for byte on real lexicographer files is checked by
+ * {@link GrindComparison}.
+ */
+public class LexFileCompilerTest {
+
+    private static final List<String> LEX_FILES = Arrays.asList(
+        "noun.Tops", "noun.animal", "verb.motion", "adj.all", "adv.all");
+
+    private File lexFileDir;
+
+    private File outDir;
+
+    @Before public void setUp() throws IOException {
+        lexFileDir = Files.createTempDirectory("lexfiles").toFile();
+        outDir = Files.createTempDirectory("compiled").toFile();
+
+        write(lexFileDir, "lexnames",
+              "03\tnoun.Tops\t1",
+              "05\tnoun.animal\t1",
+              "00\tadj.all\t3",
+              "38\tverb.motion\t2",
+              "02\tadv.all\t4");
+        write(lexFileDir, "noun.Tops",
+              "(a comment before the first synset)",
+              "{ entity, (that which is perceived (living or nonliving)) }");
+        write(lexFileDir, "noun.animal",
+              "{ animal, noun.Tops:entity,@ (a living thing) }",
+              "{ [ dog, verb.motion:chase,+ ] domestic_dog, " +
+              "Canis_familiaris, animal,@ (a domesticated canine) }",
+              "{ 4-H_Club\", animal,@ (a club whose name ends in a digit) }");
+        // The reverse of dog's pointer is written too, so it is not added
+        write(lexFileDir, "verb.motion",
+              "{ [ chase, noun.animal:dog,+ ] follow1, frames: 2,8 " +
+              "(go after) }",
+              "{ [ run, frames: 1 ] scat, frames: 2 (move fast) }");
+        write(lexFileDir, "adj.all",
+              "[{ [ HOT, cold,! ] (having a high temperature) }",
+              "{ fiery, (very hot) }",
+              "----",
+              "{ [ COLD, hot,! ] (having a low temperature) }",
+              "{ icy, (very cold) }",
+              "]",
+              "{ galore(ip), (in abundance) }");
+        write(lexFileDir, "adv.all",
+              "{ [ hotly, adj.all:hot,\\ ] (in a hot manner) }");
+        write(lexFileDir, "cntlist",
+              "5 dog%1:05:00:: 1",
+              "2 chase%2:38:00:: 1");
+
+        // The license header of the existing database is copied
+        write(outDir, "data.noun", "  1 A license  ", "  2 for the data  ");
+    }
+
+    @After public void tearDown() {
+        for (File dir : new File[] { lexFileDir, outDir }) {
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+
+    private static void write(File dir, String name, String... lines)
+            throws IOException {
+        Files.write(new File(dir, name).toPath(), Arrays.asList(lines),
+                    StandardCharsets.ISO_8859_1);
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(outDir, name).toPath()),
+                          StandardCharsets.ISO_8859_1);
+    }
+
+    private static String lines(String... lines) {
+        return String.join("\n", lines) + "\n";
+    }
+
+    private void compile() throws IOException {
+        new LexFileCompiler(2).compile(
+            lexFileDir, LEX_FILES,
+            LexFileCompiler.loadLexnames(new File(lexFileDir, "lexnames")),
+            outDir, outDir);
+    }
+
+    @Test public void testDataFiles() throws IOException {
+        compile();
+        assertEquals(lines(
+            "  1 A license  ",
+            "  2 for the data  ",
+            "00000035 03 n 01 entity 0 001 ~ 00000133 n 0000 | that which " +
+            "is perceived (living or nonliving)  ",
+            "00000133 05 n 01 animal 0 003 @ 00000035 n 0000 ~ 00000236 n " +
+            "0000 ~ 00000359 n 0000 | a living thing  ",
+            "00000236 05 n 03 dog 0 domestic_dog 0 Canis_familiaris 0 002 + " +
+            "00000000 v 0101 @ 00000133 n 0000 | a domesticated canine  ",
+            "00000359 05 n 01 4-H_Club 0 001 @ 00000133 n 0000 | a club " +
+            "whose name ends in a digit  "),
+            read("data.noun"));
+        assertEquals(lines(
+            "00000000 38 v 02 chase 0 follow 1 001 + 00000236 n 0101 02 + " +
+            "02 00 + 08 00 | go after  ",
+            "00000088 38 v 02 run 0 scat 0 000 02 + 01 01 + 02 00 | move " +
+            "fast  "),
+            read("data.verb"));
+        assertEquals(lines(
+            "00000000 00 a 01 hot 0 002 ! 00000153 a 0101 & 00000093 s 0000 " +
+            "| having a high temperature  ",
+            "00000093 00 s 01 fiery 0 001 & 00000000 a 0000 | very hot  ",
+            "00000153 00 a 01 cold 0 002 ! 00000000 a 0101 & 00000246 s 0000 " +
+            "| having a low temperature  ",
+            "00000246 00 s 01 icy 0 001 & 00000153 a 0000 | very cold  ",
+            "00000305 00 a 01 galore(ip) 0 000 | in abundance  "),
+            read("data.adj"));
+        assertEquals(lines(
+            "00000000 02 r 01 hotly 0 001 \\ 00000000 a 0101 | in a hot " +
+            "manner  "),
+            read("data.adv"));
+    }
+
+    @Test public void testIndexFiles() throws IOException {
+        compile();
+        assertEquals(lines(
+            "4-h_club n 1 1 @ 1 0 00000359  ",
+            "animal n 1 2 @ ~ 1 0 00000133  ",
+            "canis_familiaris n 1 1 @ 1 0 00000236  ",
+            "dog n 1 2 @ + 1 1 00000236  ",
+            "domestic_dog n 1 1 @ 1 0 00000236  ",
+            "entity n 1 1 ~ 1 0 00000035  "),
+            read("index.noun"));
+        assertEquals(lines(
+            "chase v 1 1 + 1 1 00000000  ",
+            "follow v 1 0 1 0 00000000  ",
+            "run v 1 0 1 0 00000088  ",
+            "scat v 1 0 1 0 00000088  "),
+            read("index.verb"));
+        assertEquals(lines(
+            "cold a 1 2 ! & 1 0 00000153  ",
+            "fiery a 1 1 & 1 0 00000093  ",
+            "galore a 1 0 1 0 00000305  ",
+            "hot a 1 2 ! & 1 0 00000000  ",
+            "icy a 1 1 & 1 0 00000246  "),
+            read("index.adj"));
+        assertEquals(lines(
+            "4-h_club%1:05:00:: 00000359 1 0",
+            "animal%1:05:00:: 00000133 1 0",
+            "canis_familiaris%1:05:00:: 00000236 1 0",
+            "chase%2:38:00:: 00000000 1 2",
+            "cold%3:00:00:: 00000153 1 0",
+            "dog%1:05:00:: 00000236 1 5",
+            "domestic_dog%1:05:00:: 00000236 1 0",
+            "entity%1:03:00:: 00000035 1 0",
+            "fiery%5:00:00:hot:00 00000093 1 0",
+            "follow%2:38:01:: 00000000 1 0",
+            "galore%3:00:00:: 00000305 1 0",
+            "hot%3:00:00:: 00000000 1 0",
+            "hotly%4:02:00:: 00000000 1 0",
+            "icy%5:00:00:cold:00 00000246 1 0",
+            "run%2:38:00:: 00000088 1 0",
+            "scat%2:38:00:: 00000088 1 0"),
+            read("index.sense"));
+    }
+
+    @Test public void testSensesOrderedByTagCount() throws IOException {
+        // Untagged senses follow the tagged ones in the order of the file
+        write(lexFileDir, "noun.animal",
+              "{ dog, (a man) }",
+              "{ dog1, (a canine) }",
+              "{ dog2, (a sausage) }");
+        write(lexFileDir, "cntlist",
+              "3 dog%1:05:01:: 1",
+              "1 dog%1:05:02:: 2");
+        compile();
+        assertTrue(read("index.noun").contains(
+            "dog n 3 1 + 3 2 00000170 00000210 00000115  \n"));
+        assertTrue(read("index.sense").contains(
+            "dog%1:05:00:: 00000115 3 0\n" +
+            "dog%1:05:01:: 00000170 1 3\n" +
+            "dog%1:05:02:: 00000210 2 1\n"));
+    }
+
+    @Test public void testOffsetsAreThoseOfTheLines() throws IOException {
+        compile();
+        Pattern offset = Pattern.compile(" ([0-9]{8}) ([nvasr]) ");
+        for (String suffix : new String[] { "noun", "verb", "adj", "adv" }) {
+            byte[] data =
+                Files.readAllBytes(new File(outDir, "data." + suffix).toPath());
+            Matcher m = offset.matcher(read("data." + suffix));
+            while (m.find()) {
+                String pos = m.group(2);
+                String target = pos.equals("n") ? "noun"
+                    : pos.equals("v") ? "verb"
+                    : pos.equals("r") ? "adv" : "adj";
+                byte[] targetData = target.equals(suffix) ? data
+                    : Files.readAllBytes(
+                        new File(outDir, "data." + target).toPath());
+                int off = Integer.parseInt(m.group(1));
+                assertEquals(m.group(1), new String(
+                    targetData, off, 8, StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testRejectsUnknownPointerTarget() throws IOException {
+        write(lexFileDir, "noun.animal",
+              "{ animal, noun.Tops:being,@ (a living thing) }");
+        compile();
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testRejectsDuplicateWords() throws IOException {
+        write(lexFileDir, "noun.animal",
+              "{ dog, (a canine) }",
+              "{ Dog, (a man) }");
+        compile();
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.lang.reflect.Proxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.IPointer;
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.ISynsetID;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+import edu.mit.jwi.item.Pointer;
+import edu.mit.jwi.item.SynsetID;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Checks that the pointer and sense counts {@link LexicographerFileCreator}
+ * looks up on demand are those of a full pass over the dictionary.
+ */
+public class LexicographerFileCreatorTest {
+
+    /**
+     * The synsets of the dictionary, by part of speech, in offset order
+     */
+    private final Map<POS,List<ISynset>> posToSynsets =
+        new HashMap<POS,List<ISynset>>();
+
+    private final Map<ISynsetID,ISynset> idToSynset =
+        new HashMap<ISynsetID,ISynset>();
+
+    /**
+     * The IDs of the synsets containing each lowercased lemma, as in the
+     * index files
+     */
+    private final Map<String,List<ISynsetID>> indexKeyToSynsets =
+        new LinkedHashMap<String,List<ISynsetID>>();
+
+    /**
+     * Adds a synset with the specified pointers and words, where each word
+     * is a lemma followed by the number of lexical pointers from it.
+     */
+    private ISynset addSynset(POS pos, int numSemanticPointerTypes,
+                              Object... lemmasAndPointers) {
+        List<ISynset> synsets = posToSynsets.get(pos);
+        if (synsets == null) {
+            synsets = new ArrayList<ISynset>();
+            posToSynsets.put(pos, synsets);
+        }
+        ISynsetID id = new SynsetID(1000 + synsets.size(), pos);
+
+        Map<IPointer,List<ISynsetID>> related =
+            new HashMap<IPointer,List<ISynsetID>>();
+        IPointer[] types = { Pointer.HYPERNYM, Pointer.HYPONYM,
+                             Pointer.SIMILAR_TO, Pointer.ALSO_SEE };
+        for (int i = 0; i < numSemanticPointerTypes; ++i) {
+            // Only the types are counted, not how many synsets they point to
+            related.put(types[i], Arrays.asList(id, id));
+        }
+
+        List<IWord> words = new ArrayList<IWord>();
+        for (int i = 0; i < lemmasAndPointers.length; i += 2) {
+            String lemma = (String)lemmasAndPointers[i];
+            int numLexicalPointers = (Integer)lemmasAndPointers[i + 1];
+            Map<IPointer,List<IWordID>> lexical =
+                new HashMap<IPointer,List<IWordID>>();
+            if (numLexicalPointers > 0) {
+                lexical.put(Pointer.DERIVATIONALLY_RELATED,
+                            Collections.<IWordID>nCopies(
+                                numLexicalPointers, null));
+            }
+            // An empty list of pointers also counts for nothing
+            lexical.put(Pointer.ANTONYM, Collections.<IWordID>emptyList());
+            words.add(proxy(IWord.class, "getLemma", lemma,
+                            "getRelatedMap", lexical));
+
+            String indexKey = pos + ":" + lemma.toLowerCase();
+            List<ISynsetID> indexed = indexKeyToSynsets.get(indexKey);
+            if (indexed == null) {
+                indexed = new ArrayList<ISynsetID>();
+                indexKeyToSynsets.put(indexKey, indexed);
+            }
+            if (!indexed.contains(id))
+                indexed.add(id);
+        }
+
+        ISynset syn = proxy(ISynset.class, "getID", id, "getWords", words,
+                            "getRelatedMap", related);
+        synsets.add(syn);
+        idToSynset.put(id, syn);
+        return syn;
+    }
+
+    private IDictionary dictionary() {
+        return (IDictionary)Proxy.newProxyInstance(
+            IDictionary.class.getClassLoader(),
+            new Class<?>[] { IDictionary.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "getSynset":
+                    return idToSynset.get(args[0]);
+                case "getSynsetIterator": {
+                    List<ISynset> synsets = posToSynsets.get(args[0]);
+                    return (synsets == null)
+                        ? Collections.<ISynset>emptyIterator()
+                        : synsets.iterator();
+                }
+                case "getIndexWord": {
+                    String lemma = (String)args[0];
+                    // As the dictionary does
+                    if (lemma.trim().isEmpty())
+                        throw new IllegalArgumentException();
+                    List<ISynsetID> ids = indexKeyToSynsets.get(
+                        args[1] + ":" + lemma.trim().toLowerCase());
+                    if (ids == null)
+                        return null;
+                    List<IWordID> wids = new ArrayList<IWordID>();
+                    for (ISynsetID id : ids)
+                        wids.add(proxy(IWordID.class, "getSynsetID", id));
+                    return proxy(IIndexWord.class, "getWordIDs", wids);
+                }
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Returns an instance of the interface that returns the specified value
+     * for each method name.
+     */
+    private static <T> T proxy(Class<T> iface, Object... namesAndValues) {
+        Map<String,Object> values = new HashMap<String,Object>();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            values.put((String)namesAndValues[i], namesAndValues[i + 1]);
+        return iface.cast(Proxy.newProxyInstance(
+            iface.getClassLoader(), new Class<?>[] { iface },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return iface.getSimpleName() + values;
+                default:
+                    if (!values.containsKey(method.getName())) {
+                        throw new UnsupportedOperationException(
+                            method.getName());
+                    }
+                    return values.get(method.getName());
+                }
+            }));
+    }
+
+    @Test public void testPointerCounts() {
+        ISynset dog = addSynset(POS.NOUN, 2, "dog", 3, "domestic_dog", 0);
+        ISynset bare = addSynset(POS.NOUN, 0, "thing", 0);
+        ISynset run = addSynset(POS.VERB, 1, "run", 1, "go", 2);
+        ISynset fast = addSynset(POS.ADJECTIVE, 4, "fast", 0);
+
+        assertEquals(5, LexicographerFileCreator
+                     .getDictionaryPointerCount(dog));
+        assertEquals(0, LexicographerFileCreator
+                     .getDictionaryPointerCount(bare));
+        assertEquals(4, LexicographerFileCreator
+                     .getDictionaryPointerCount(run));
+        assertEquals(4, LexicographerFileCreator
+                     .getDictionaryPointerCount(fast));
+        assertSameAsFullPass();
+    }
+
+    @Test public void testSenseCounts() {
+        addSynset(POS.NOUN, 1, "dog", 0, "domestic_dog", 0);
+        addSynset(POS.NOUN, 1, "dog", 0);
+        addSynset(POS.VERB, 1, "dog", 0);
+        // The same lemma, differently capitalized, in one synset
+        addSynset(POS.NOUN, 1, "Dog", 0, "dog", 0, "DOG", 0);
+        addSynset(POS.ADJECTIVE, 0, "hot", 0);
+        addSynset(POS.NOUN, 2, "hot_dog", 0, "frank", 0);
+        IDictionary dict = dictionary();
+
+        assertEquals(4, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "dog"));
+        assertEquals(1, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "Dog"));
+        assertEquals(1, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "hot_dog"));
+        // Lemmas are matched exactly, as in a full pass
+        assertEquals(0, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "hot dog"));
+        assertEquals(0, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "dOg"));
+        assertEquals(0, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, "cat"));
+        assertEquals(0, LexicographerFileCreator
+                     .getDictionarySenseCount(dict, " "));
+        assertSameAsFullPass();
+    }
+
+    private void assertSameAsFullPass() {
+        IDictionary dict = dictionary();
+        TObjectIntMap<ISynset> pointerCounts = new TObjectIntHashMap<ISynset>();
+        TObjectIntMap<String> senseCounts = new TObjectIntHashMap<String>();
+        PointerCountComparison.countAll(dict, pointerCounts, senseCounts);
+        for (ISynset syn : pointerCounts.keySet()) {
+            assertEquals(syn.toString(), pointerCounts.get(syn),
+                         LexicographerFileCreator
+                         .getDictionaryPointerCount(syn));
+        }
+        for (String lemma : senseCounts.keySet()) {
+            assertEquals(lemma, senseCounts.get(lemma),
+                         LexicographerFileCreator
+                         .getDictionarySenseCount(dict, lemma));
+        }
+    }
+}
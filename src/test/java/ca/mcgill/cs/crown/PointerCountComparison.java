@@ -0,0 +1,130 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown;
+
+import java.io.File;
+
+import java.util.Iterator;
+import java.util.List;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.ISynset;
+import edu.mit.jwi.item.IWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import ca.mcgill.cs.crown.util.WordNetUtils;
+
+
+/**
+ * Compares the pointer and sense counts that {@link LexicographerFileCreator}
+ * looks up on demand with those of a full pass over the dictionary, which is
+ * how they were counted at the start of every iteration before.  Both must
+ * agree for every synset and lemma.  It also reports the time of each, so the
+ * cost of a full pass can be compared with that of the lookups an iteration
+ * makes.
+ *
+ * <pre>
+ * java ca.mcgill.cs.crown.PointerCountComparison dict-dir
+ * </pre>
+ *
+ * Run with the test class path, e.g., through {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test}.
+ */
+public class PointerCountComparison {
+
+    private static final POS[] PARTS_OF_SPEECH =
+        { POS.NOUN, POS.VERB, POS.ADJECTIVE, POS.ADVERB };
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("usage: java PointerCountComparison dict-dir");
+            System.exit(1);
+        }
+        IDictionary dict = WordNetUtils.open(new File(args[0]));
+
+        // The first pass also loads the synsets, so it is timed twice
+        for (String pass : new String[] { "cold", "warm" }) {
+            long startTime = System.nanoTime();
+            TObjectIntMap<ISynset> pointerCounts =
+                new TObjectIntHashMap<ISynset>();
+            TObjectIntMap<String> senseCounts = new TObjectIntHashMap<String>();
+            countAll(dict, pointerCounts, senseCounts);
+            System.out.printf("Full pass (%s): %d synsets and %d lemmas in " +
+                              "%.1f ms%n", pass, pointerCounts.size(),
+                              senseCounts.size(),
+                              (System.nanoTime() - startTime) / 1e6);
+        }
+
+        TObjectIntMap<ISynset> pointerCounts = new TObjectIntHashMap<ISynset>();
+        TObjectIntMap<String> senseCounts = new TObjectIntHashMap<String>();
+        countAll(dict, pointerCounts, senseCounts);
+
+        int numDiffering = 0;
+        long startTime = System.nanoTime();
+        for (ISynset syn : pointerCounts.keySet()) {
+            int count = LexicographerFileCreator.getDictionaryPointerCount(syn);
+            if (count != pointerCounts.get(syn)) {
+                System.out.printf("%s: %d pointers on demand, %d in a full " +
+                                  "pass%n", syn.getID(), count,
+                                  pointerCounts.get(syn));
+                numDiffering++;
+            }
+        }
+        long pointerTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (String lemma : senseCounts.keySet()) {
+            int count =
+                LexicographerFileCreator.getDictionarySenseCount(dict, lemma);
+            if (count != senseCounts.get(lemma)) {
+                System.out.printf("%s: %d senses on demand, %d in a full " +
+                                  "pass%n", lemma, count,
+                                  senseCounts.get(lemma));
+                numDiffering++;
+            }
+        }
+        long senseTime = System.nanoTime() - startTime;
+
+        System.out.printf("On demand: %.2f us per synset and %.2f us per " +
+                          "lemma%n",
+                          pointerTime / 1e3 / pointerCounts.size(),
+                          senseTime / 1e3 / senseCounts.size());
+        System.out.printf("%d of %d counts differ%n", numDiffering,
+                          pointerCounts.size() + senseCounts.size());
+        dict.close();
+        if (numDiffering > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Counts the pointers of every synset and the senses of every lemma in
+     * the dictionary in a single pass, as {@link LexicographerFileCreator}
+     * used to.
+     */
+    static void countAll(IDictionary dict,
+                         TObjectIntMap<ISynset> pointerCounts,
+                         TObjectIntMap<String> senseCounts) {
+        for (POS pos : PARTS_OF_SPEECH) {
+            Iterator<ISynset> iter = dict.getSynsetIterator(pos);
+            while (iter.hasNext()) {
+                ISynset syn = iter.next();
+                pointerCounts.put(syn, syn.getRelatedMap().size());
+                for (IWord iw : syn.getWords()) {
+                    senseCounts.adjustOrPutValue(iw.getLemma(), 1, 1);
+                    for (List<IWordID> related : iw.getRelatedMap().values())
+                        pointerCounts.adjustValue(syn, related.size());
+                }
+            }
+        }
+    }
+}
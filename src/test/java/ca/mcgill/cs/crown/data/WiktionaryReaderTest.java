@@ -0,0 +1,173 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.data;
+
+import java.io.File;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.mit.jwi.item.POS;
+
+import ca.mcgill.cs.crown.LexicalEntry;
+import ca.mcgill.cs.crown.LexicalEntryImpl;
+import ca.mcgill.cs.crown.Relation;
+import ca.mcgill.cs.crown.RelationImpl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Checks that entries saved with {@link WiktionaryReader#saveAsBinary} are
+ * loaded back unchanged by {@link WiktionaryReader#loadFromBinary}, and that
+ * files of another kind or version are rejected.
+ */
+public class WiktionaryReaderTest {
+
+    private File binaryFile;
+
+    @Before public void setUp() throws IOException {
+        binaryFile = File.createTempFile("wiktionary-test", ".bin");
+    }
+
+    @After public void tearDown() {
+        binaryFile.delete();
+    }
+
+    private static LexicalEntry entry(String lemma, String id, POS pos,
+                                      List<String> rawGlosses,
+                                      Relation... relations) {
+        Set<String> glosses = new LinkedHashSet<String>();
+        Map<String,String> rawGlossToCleaned =
+            new LinkedHashMap<String,String>();
+        for (String raw : rawGlosses) {
+            String cleaned = raw.replaceAll("[\\[\\]#]", "").trim();
+            glosses.add(cleaned);
+            rawGlossToCleaned.put(raw, cleaned);
+        }
+        return new LexicalEntryImpl(
+            lemma, id, pos, String.join(" ", glosses), glosses,
+            rawGlossToCleaned,
+            new ArrayList<Relation>(Arrays.asList(relations)));
+    }
+
+    /**
+     * Returns entries that share lemmas and relation targets, including some
+     * with no glosses or relations and some whose strings are not ASCII.
+     */
+    private static List<LexicalEntry> entries() {
+        List<LexicalEntry> entries = new ArrayList<LexicalEntry>();
+        entries.add(entry(
+            "dog", "dog:Noun:1", POS.NOUN,
+            Arrays.asList("# A [[mammal]], ''Canis familiaris''.",
+                          "# A [[man]]."),
+            new RelationImpl("hound", null, Relation.RelationType.SYNONYM),
+            new RelationImpl("canine", "canine:Noun:2",
+                             Relation.RelationType.HYPERNYM),
+            new RelationImpl("cat", null, Relation.RelationType.ANTONYM)));
+        entries.add(entry(
+            "dog", "dog:Verb:1", POS.VERB,
+            Arrays.asList("# To [[follow]] persistently."),
+            new RelationImpl("hound", null, Relation.RelationType.SYNONYM)));
+        entries.add(entry(
+            "na\u00efve", "na\u00efve:Adjective:1", POS.ADJECTIVE,
+            Arrays.asList("# Lacking [[worldly]] experience \u2014 " +
+                          "\u5929\u771f."),
+            new RelationImpl("\u00e9lan", "", Relation.RelationType.HYPONYM)));
+        entries.add(entry(
+            "quickly", "quickly:Adverb:1", POS.ADVERB,
+            Collections.<String>emptyList()));
+        // Two raw glosses that are cleaned into the same gloss
+        entries.add(entry(
+            "hound", "hound:Noun:1", POS.NOUN,
+            Arrays.asList("# A [[dog]].", "# A dog.")));
+        return entries;
+    }
+
+    @Test public void testRoundTrip() {
+        List<LexicalEntry> expected = entries();
+        WiktionaryReader reader = new WiktionaryReader();
+        reader.saveAsBinary(expected, binaryFile);
+        List<LexicalEntry> actual = reader.loadFromBinary(binaryFile);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            LexicalEntry e = expected.get(i);
+            LexicalEntry a = actual.get(i);
+            assertEquals(e.getLemma(), a.getLemma());
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getPos(), a.getPos());
+            assertEquals(e.getGloss(), a.getGloss());
+            // In the same order, too
+            assertEquals(new ArrayList<String>(e.getGlosses()),
+                         new ArrayList<String>(a.getGlosses()));
+            assertEquals(new ArrayList<Map.Entry<String,String>>(
+                             e.getRawGlosses().entrySet()),
+                         new ArrayList<Map.Entry<String,String>>(
+                             a.getRawGlosses().entrySet()));
+            assertEquals(e.getRelations().size(), a.getRelations().size());
+            for (int j = 0; j < e.getRelations().size(); ++j) {
+                Relation er = e.getRelations().get(j);
+                Relation ar = a.getRelations().get(j);
+                assertEquals(er.getTargetLemma(), ar.getTargetLemma());
+                assertEquals(er.getTargetSense(), ar.getTargetSense());
+                assertEquals(er.getType(), ar.getType());
+            }
+        }
+    }
+
+    @Test public void testEmpty() {
+        WiktionaryReader reader = new WiktionaryReader();
+        reader.saveAsBinary(Collections.<LexicalEntry>emptyList(), binaryFile);
+        assertTrue(reader.loadFromBinary(binaryFile).isEmpty());
+    }
+
+    @Test public void testRejectsOtherVersion() throws IOException {
+        WiktionaryReader reader = new WiktionaryReader();
+        reader.saveAsBinary(entries(), binaryFile);
+        byte[] bytes = Files.readAllBytes(binaryFile.toPath());
+        // The version follows the magic number
+        bytes[7]++;
+        Files.write(binaryFile.toPath(), bytes);
+        assertRejected(reader, "version");
+    }
+
+    @Test public void testRejectsOtherFiles() throws IOException {
+        // E.g., the preprocessed JSON being passed where the binary is expected
+        Files.write(binaryFile.toPath(),
+                    "{\"lemma\":\"dog\"}\n".getBytes("UTF-8"));
+        assertRejected(new WiktionaryReader(), "not a binary");
+    }
+
+    private void assertRejected(WiktionaryReader reader, String message) {
+        try {
+            reader.loadFromBinary(binaryFile);
+            fail("Expected the file to be rejected");
+        } catch (IOError ioe) {
+            assertTrue(ioe.getCause() instanceof IOException);
+            assertTrue(ioe.getCause().getMessage(),
+                       ioe.getCause().getMessage().contains(message));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+import java.io.File;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.mit.jwi.IDictionary;
+
+import edu.mit.jwi.item.IIndexWord;
+import edu.mit.jwi.item.IWordID;
+import edu.mit.jwi.item.POS;
+
+import ca.mcgill.cs.crown.util.WordNetUtils;
+
+
+/**
+ * A benchmark that compares the time and allocation of {@link
+ * GreedyStringTiling} and the original implementation, {@link
+ * GreedyStringTilingOracle}, on pairs of real glosses: those of every two
+ * senses of each polysemous lemma in a WordNet dictionary, which are the kind
+ * of glosses a build compares.  It also checks that both give every pair the
+ * same score.
+ *
+ * <pre>
+ * java ca.mcgill.cs.crown.similarity.GreedyStringTilingBenchmark dict-dir [max-pairs [min-match-length]]
+ * </pre>
+ *
+ * Run with the test class path, e.g., through {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test}.
+ */
+public class GreedyStringTilingBenchmark {
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("usage: java GreedyStringTilingBenchmark " +
+                               "dict-dir [max-pairs [min-match-length]]");
+            System.exit(1);
+        }
+        int maxPairs = (args.length > 1) ? Integer.parseInt(args[1]) : 200_000;
+        int minMatchLength = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+
+        IDictionary dict = WordNetUtils.open(new File(args[0]));
+        List<String[]> pairs = glossPairs(dict, maxPairs);
+        dict.close();
+        System.out.printf("Comparing %d gloss pairs with a minimum match " +
+                          "length of %d%n", pairs.size(), minMatchLength);
+
+        SimilarityFunction oracle =
+            new GreedyStringTilingOracle(minMatchLength);
+        SimilarityFunction gst = new GreedyStringTiling(minMatchLength);
+
+        // Warm up both before timing them
+        run(oracle, pairs);
+        run(gst, pairs);
+        double[] expected = report("Original", oracle, pairs);
+        double[] actual = report("Optimized", gst, pairs);
+
+        int numDiffering = 0;
+        for (int i = 0; i < expected.length; ++i) {
+            if (Double.doubleToRawLongBits(expected[i])
+                    != Double.doubleToRawLongBits(actual[i]))
+                numDiffering++;
+        }
+        System.out.printf("%d of %d scores differ%n",
+                          numDiffering, expected.length);
+        if (numDiffering > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Returns the glosses of every two senses of each lemma, up to the
+     * maximum number of pairs.
+     */
+    private static List<String[]> glossPairs(IDictionary dict, int maxPairs) {
+        List<String[]> pairs = new ArrayList<String[]>();
+        for (POS pos : POS.values()) {
+            Iterator<IIndexWord> iter = dict.getIndexWordIterator(pos);
+            while (iter.hasNext()) {
+                List<String> glosses = new ArrayList<String>();
+                for (IWordID wid : iter.next().getWordIDs())
+                    glosses.add(dict.getWord(wid).getSynset().getGloss());
+                for (int i = 0; i < glosses.size(); ++i) {
+                    for (int j = 0; j < glosses.size(); ++j) {
+                        if (i == j)
+                            continue;
+                        pairs.add(new String[] {
+                                glosses.get(i), glosses.get(j) });
+                        if (pairs.size() == maxPairs)
+                            return pairs;
+                    }
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static double[] run(SimilarityFunction sim, List<String[]> pairs) {
+        double[] scores = new double[pairs.size()];
+        int i = 0;
+        for (String[] pair : pairs)
+            scores[i++] = sim.compare(pair[0], pair[1]);
+        return scores;
+    }
+
+    private static double[] report(String name, SimilarityFunction sim,
+                                   List<String[]> pairs) {
+        long allocatedBefore = allocatedBytes();
+        long startTime = System.nanoTime();
+        double[] scores = run(sim, pairs);
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%s: %.1f ms, %.0f ns/pair, %.0f bytes/pair%n",
+                          name, elapsed / 1e6, (double)elapsed / pairs.size(),
+                          (allocatedBefore < 0) ? Double.NaN
+                          : (double)allocated / pairs.size());
+        return scores;
+    }
+
+    /**
+     * Returns the number of bytes this thread has allocated, or {@code -1} if
+     * the JVM does not report it.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
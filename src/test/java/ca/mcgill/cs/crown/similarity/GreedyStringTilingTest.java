@@ -0,0 +1,167 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Checks that {@link GreedyStringTiling} scores every pair of strings exactly
+ * as the original implementation, {@link GreedyStringTilingOracle}, does.
+ */
+public class GreedyStringTilingTest {
+
+    /**
+     * WordNet and Wiktionary glosses of the kind that are compared during a
+     * build, including several senses of the same lemmas.
+     */
+    static final String[] GLOSSES = {
+        "a member of the genus Canis (probably descended from the common " +
+        "wolf) that has been domesticated by man since prehistoric times; " +
+        "occurs in many breeds",
+        "A mammal, Canis lupus familiaris, that has been domesticated for " +
+        "thousands of years, of highly variable appearance due to human " +
+        "breeding.",
+        "feline mammal usually having thick soft fur and no ability to " +
+        "roar: domestic cats; wildcats",
+        "A domesticated species (Felis catus) of feline animal, commonly " +
+        "kept as a house pet.",
+        "sloping land (especially the slope beside a body of water)",
+        "a financial institution that accepts deposits and channels the " +
+        "money into lending activities",
+        "An institution where one can place and borrow money and take care " +
+        "of financial affairs.",
+        "The edge of a river, lake, or other watercourse.",
+        "a long ridge or pile",
+        "move fast by using one's feet, with one foot off the ground at any " +
+        "given time",
+        "To move swiftly.",
+        "having desirable or positive qualities especially those suitable " +
+        "for a thing specified",
+        "Acting in the interest of good; ethical.",
+        "with rapid movements",
+        "a tall perennial woody plant having a main trunk and branches " +
+        "forming a distinct elevated crown; includes both gymnosperms and " +
+        "angiosperms",
+        "Any sizeable woody perennial plant with a trunk.",
+        "",
+        "a",
+        "A",
+    };
+
+    /**
+     * Characters that are likely to form matches, in both cases, along with
+     * some whose lowercase forms are unusual (e.g., that lowercase to more
+     * than one character).
+     */
+    private static final String ALPHABET =
+        "abcABC  .,;-()\u0130i\u0131I\u00dfSs\u03a3\u03c3\u03c2\u212aKk";
+
+    @Test public void testGlossPairs() {
+        for (int minMatchLength = 0; minMatchLength <= 6; ++minMatchLength) {
+            GreedyStringTiling gst = new GreedyStringTiling(minMatchLength);
+            GreedyStringTilingOracle oracle =
+                new GreedyStringTilingOracle(minMatchLength);
+            for (String g1 : GLOSSES) {
+                for (String g2 : GLOSSES)
+                    assertSameScore(oracle, gst, g1, g2);
+            }
+        }
+    }
+
+    @Test public void testRandomStrings() {
+        Random rand = new Random(42);
+        for (int minMatchLength = 0; minMatchLength <= 5; ++minMatchLength) {
+            // A single instance is reused so that its buffers are reused
+            // across strings of different lengths
+            GreedyStringTiling gst = new GreedyStringTiling(minMatchLength);
+            GreedyStringTilingOracle oracle =
+                new GreedyStringTilingOracle(minMatchLength);
+            for (int n = 0; n < 1000; ++n) {
+                int maxLength = (n % 100 == 0) ? 400 : 80;
+                String s1 = randomString(rand, rand.nextInt(maxLength));
+                String s2 = (rand.nextBoolean())
+                    ? randomString(rand, rand.nextInt(maxLength))
+                    : mutate(rand, s1);
+                assertSameScore(oracle, gst, s1, s2);
+            }
+        }
+    }
+
+    @Test public void testRandomGlossFragments() {
+        Random rand = new Random(7);
+        GreedyStringTiling gst = new GreedyStringTiling(3);
+        GreedyStringTilingOracle oracle = new GreedyStringTilingOracle(3);
+        for (int n = 0; n < 2000; ++n) {
+            String s1 = fragment(rand, GLOSSES[rand.nextInt(GLOSSES.length)]);
+            String s2 = fragment(rand, GLOSSES[rand.nextInt(GLOSSES.length)]);
+            assertSameScore(oracle, gst, s1, s2);
+        }
+    }
+
+    private static void assertSameScore(SimilarityFunction expected,
+                                        SimilarityFunction actual,
+                                        String s1, String s2) {
+        // Compared bit for bit, so that NaN (for an empty first string) must
+        // also agree
+        assertEquals("\"" + s1 + "\" vs. \"" + s2 + "\"",
+                     Double.doubleToRawLongBits(expected.compare(s1, s2)),
+                     Double.doubleToRawLongBits(actual.compare(s1, s2)));
+    }
+
+    private static String randomString(Random rand, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            // Occasionally use any character at all
+            sb.append((rand.nextInt(50) == 0)
+                      ? (char)rand.nextInt(Character.MAX_VALUE + 1)
+                      : ALPHABET.charAt(rand.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns a copy of the string with a few characters changed, inserted or
+     * removed, so that the two share long matches.
+     */
+    private static String mutate(Random rand, String s) {
+        StringBuilder sb = new StringBuilder(s);
+        int numEdits = rand.nextInt(5);
+        for (int e = 0; e < numEdits; ++e) {
+            char c = ALPHABET.charAt(rand.nextInt(ALPHABET.length()));
+            int i = (sb.length() == 0) ? 0 : rand.nextInt(sb.length());
+            switch (rand.nextInt(3)) {
+            case 0:
+                sb.insert(i, c);
+                break;
+            case 1:
+                if (sb.length() > 0)
+                    sb.setCharAt(i, c);
+                break;
+            default:
+                if (sb.length() > 0)
+                    sb.deleteCharAt(i);
+                break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String fragment(Random rand, String gloss) {
+        if (gloss.isEmpty())
+            return gloss;
+        int start = rand.nextInt(gloss.length());
+        int end = start + rand.nextInt(gloss.length() - start + 1);
+        String s = gloss.substring(start, end);
+        return (rand.nextBoolean()) ? s.toUpperCase() : s;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This source code is subject to the terms of the Creative Commons
+ * Attribution-NonCommercial-ShareAlike 4.0 license. If a copy of the BY-NC-SA
+ * 4.0 License was not distributed with this file, You can obtain one at
+ * https://creativecommons.org/licenses/by-nc-sa/4.0.
+*/
+
+package ca.mcgill.cs.crown.similarity;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOError;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Checks that a {@link MappedVectorStore} converted from a word2vec binary
+ * file finds each word and returns the same normalized vector that {@link
+ * Word2VecSimilarity} would load, and that files of another kind or version
+ * are rejected.
+ */
+public class MappedVectorStoreTest {
+
+    private File word2vecFile;
+
+    private File storeFile;
+
+    @Before public void setUp() throws IOException {
+        word2vecFile = File.createTempFile("vectors", ".bin");
+        storeFile = File.createTempFile("vectors", ".vec");
+    }
+
+    @After public void tearDown() {
+        word2vecFile.delete();
+        storeFile.delete();
+    }
+
+    /**
+     * Writes the vectors in the word2vec binary format: a header with the
+     * number of words and dimensions, then each word followed by a space and
+     * its little-endian floats.
+     */
+    private void writeWord2Vec(List<String> words, float[][] vectors)
+            throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(word2vecFile))) {
+            out.write((words.size() + " " + vectors[0].length + "\n")
+                      .getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer bb = ByteBuffer.allocate(vectors[0].length * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < words.size(); ++i) {
+                out.write((words.get(i) + " ")
+                          .getBytes(StandardCharsets.US_ASCII));
+                bb.clear();
+                for (float f : vectors[i])
+                    bb.putFloat(f);
+                out.write(bb.array());
+            }
+        }
+    }
+
+    private static float[][] randomVectors(Random rand, int n, int dims) {
+        float[][] vectors = new float[n][dims];
+        for (float[] v : vectors) {
+            for (int d = 0; d < dims; ++d)
+                v[d] = (float)rand.nextGaussian();
+        }
+        return vectors;
+    }
+
+    private static float[] normalized(float[] v) {
+        float[] copy = v.clone();
+        Word2VecSimilarity.normalize(copy);
+        return copy;
+    }
+
+    @Test public void testRoundTrip() throws IOException {
+        List<String> words = Arrays.asList(
+            "the", "dog", "cat", "dog", "hot_dog", "Dog", "</s>");
+        float[][] vectors = randomVectors(new Random(42), words.size(), 7);
+        writeWord2Vec(words, vectors);
+        MappedVectorStore.convert(word2vecFile, storeFile);
+
+        MappedVectorStore store = MappedVectorStore.open(storeFile);
+        assertEquals(7, store.dimensions());
+        assertEquals(words.size(), store.size());
+        assertEquals(0, store.indexOf("the"));
+        // A repeated word is found at its last row, as when the file is
+        // loaded into a map
+        assertEquals(3, store.indexOf("dog"));
+        assertEquals(2, store.indexOf("cat"));
+        assertEquals(4, store.indexOf("hot_dog"));
+        assertEquals(5, store.indexOf("Dog"));
+        assertEquals(6, store.indexOf("</s>"));
+        assertEquals(-1, store.indexOf("DOG"));
+        assertEquals(-1, store.indexOf("hot"));
+        assertEquals(-1, store.indexOf(""));
+
+        float[] v = new float[7];
+        for (int row = 0; row < words.size(); ++row) {
+            store.get(row, v);
+            assertArrayEquals(normalized(vectors[row]), v, 0f);
+        }
+
+        float[] sum = new float[7];
+        Arrays.fill(sum, 1f);
+        store.addTo(1, sum);
+        store.addTo(2, sum);
+        float[] dog = normalized(vectors[1]);
+        float[] cat = normalized(vectors[2]);
+        for (int d = 0; d < 7; ++d)
+            assertEquals(1f + dog[d] + cat[d], sum[d], 0f);
+    }
+
+    @Test public void testManyWords() throws IOException {
+        // Enough words that many collide in the table
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 5000; ++i)
+            words.add("w" + i);
+        float[][] vectors = randomVectors(new Random(7), words.size(), 3);
+        writeWord2Vec(words, vectors);
+        MappedVectorStore.convert(word2vecFile, storeFile);
+
+        MappedVectorStore store = MappedVectorStore.open(storeFile);
+        float[] v = new float[3];
+        for (int i = 0; i < words.size(); ++i) {
+            assertEquals(i, store.indexOf(words.get(i)));
+            store.get(i, v);
+            assertArrayEquals(normalized(vectors[i]), v, 0f);
+        }
+        assertEquals(-1, store.indexOf("w5000"));
+    }
+
+    @Test public void testIsVectorStore() throws IOException {
+        writeWord2Vec(Arrays.asList("dog"), new float[][] { { 1, 2, 3 } });
+        MappedVectorStore.convert(word2vecFile, storeFile);
+        assertTrue(MappedVectorStore.isVectorStore(storeFile));
+        assertFalse(MappedVectorStore.isVectorStore(word2vecFile));
+        assertFalse(MappedVectorStore.isVectorStore(
+                        new File(storeFile.getPath() + ".missing")));
+
+        // Too short to hold the header
+        Files.write(storeFile.toPath(), Arrays.copyOf(
+                        Files.readAllBytes(storeFile.toPath()),
+                        MappedVectorStore.HEADER_SIZE - 1));
+        assertFalse(MappedVectorStore.isVectorStore(storeFile));
+    }
+
+    @Test(expected=IOError.class)
+    public void testRejectsOtherVersion() throws IOException {
+        writeWord2Vec(Arrays.asList("dog"), new float[][] { { 1, 2, 3 } });
+        MappedVectorStore.convert(word2vecFile, storeFile);
+        byte[] bytes = Files.readAllBytes(storeFile.toPath());
+        // The version is the little-endian int after the magic number
+        bytes[4]++;
+        Files.write(storeFile.toPath(), bytes);
+        MappedVectorStore.open(storeFile);
+    }
+
+    @Test(expected=IOError.class)
+    public void testRejectsOtherFiles() throws IOException {
+        writeWord2Vec(Arrays.asList("dog"), new float[][] { { 1, 2, 3 } });
+        // Long enough to be mapped, but the word2vec file itself
+        byte[] bytes = Arrays.copyOf(
+            Files.readAllBytes(word2vecFile.toPath()),
+            MappedVectorStore.HEADER_SIZE);
+        Files.write(storeFile.toPath(), bytes);
+        MappedVectorStore.open(storeFile);
+    }
+}